@@ -478,6 +478,43 @@ th, td {
 		this.$.breakTimerDiv.style.display="none";
 	}
 
+	/*
+	 * Apply the rows that changed since the version shown.
+	 * delta.from: the version the server thinks we show; delta.to: the new version
+	 * delta.changed: the new and modified rows
+	 * delta.order: the keys of all the rows, only present if rows were inserted, removed or moved
+	 * The server sends all the rows (athletes and athletesVersion properties) instead when most rows change.
+	 */
+	applyAthletesDelta(delta) {
+		if (!this.athletes || this.athletesVersion !== delta.from) {
+			// missed an update, get all the rows
+			console.debug("athletes version " + this.athletesVersion + " expected " + delta.from);
+			this.$server.resyncAthletes();
+			return;
+		}
+		var changed = {};
+		delta.changed.forEach(function(row) {
+			changed[row.key] = row;
+		});
+		if (delta.order) {
+			var shown = {};
+			this.athletes.forEach(function(row) {
+				shown[row.key] = row;
+			});
+			this.athletes = delta.order.map(function(key) {
+				return changed[key] || shown[key];
+			});
+		} else {
+			for (var i = 0; i < this.athletes.length; i++) {
+				var row = changed[this.athletes[i].key];
+				if (row) {
+					this.set('athletes.' + i, row);
+				}
+			}
+		}
+		this.athletesVersion = delta.to;
+	}
+
 	_isEqualTo(title, string) {
 		return title == string;
 	}
@@ -0,0 +1,398 @@
+import {PolymerElement, html} from '@polymer/polymer/polymer-element.js';
+class TopTeams extends PolymerElement {
+	static get is() {
+		return 'topteams-template'
+	}
+
+	static get template() {
+		return html`<style>
+* {
+	box-sizing: border-box;
+}
+
+:root {
+  --medium-width: 9%;
+  --narrow-width: 6%;
+  --veryNarrow-width: 4%;
+  --fontSizeRank-height: 0.95em;
+  --fontSizeRows-height: 1.15em;
+  --fontSizeRank-heightXGA: 0.9em;
+  --fontSizeRows-heightXGA: 1.1em;
+}
+
+.wrapper {
+	font-family: Arial, Helvetica, sans-serif;
+	color: white;
+	background-color: black;
+	height: 100vh;
+	padding: 2vmin 2vmin 2vmin 2vmin;
+	overflow-y: hidden;
+}
+
+.attemptBar {
+	display: flex;
+	font-size: 3.6vmin;
+	justify-content: space-between;
+	width: 100%;
+	height: 4vmin;
+}
+
+.attemptBar .startNumber {
+	align-self: center;
+}
+
+.attemptBar .startNumber span {
+	font-size: 70%;
+	font-weight: bold;
+	border-width: 0.2ex;
+	border-style: solid;
+	border-color: red;
+	width: 1.5em;
+	display: flex;
+	justify-content: center;
+	align-self: center;
+}
+
+.attemptBar .athleteInfo {
+	display: flex;
+	font-size: 3.6vmin;
+	justify-content: space-between;
+	align-items: baseline;
+	width: 100%;
+}
+
+.athleteInfo .fullName {
+	font-weight: bold;
+	flex: 0 0 35%;
+	text-align: left;
+/* 	margin-left: 1em; */
+	/*margin-right: auto;*/
+	flex-grow: 0.5;
+}
+
+.athleteInfo .timer {
+	flex: 0 0 15%;
+	text-align: right;
+	font-weight: bold;
+	width: 10vw;
+	display: flex;
+	justify-content: flex-end;
+}
+
+.athleteInfo .decisionBox {
+	position: fixed;
+	top: 2vmin;
+	right: 2vmin;
+	width: 15vw;
+	height: 10vh;
+	background-color: black;
+	display: none;
+}
+
+.athleteInfo .weight {
+	color: aqua;
+	display: flex;
+	justify-content: center;
+	align-items: baseline;
+}
+
+.group {
+	font-size: 3vh;
+	margin-top: 1vh;
+	margin-bottom: 2vh;
+}
+
+table.results {
+    table-layout: auto;
+	width: 100%;
+	border-collapse: collapse;
+	border: none;
+	background-color: black;
+	/*margin-bottom: 2vmin;*/
+}
+
+:host(.dark) table.results tr {
+	background-color: black;
+	color: white;
+}
+
+:host(.light) table.results tr {
+	background-color: white;
+	color: black;
+}
+
+th, td {
+	border-collapse: collapse;
+	border: solid 1px DarkGray;
+	padding: 0.4vmin 1vmin 0.4vmin 1vmin;
+	font-size: var(--fontSizeRows-height);
+}
+
+:host(.dark) th, td {
+	font-weight: normal;
+}
+
+:host(.light) th, td {
+	font-weight: bold;
+}
+
+.ellipsis {
+  white-space: nowrap;
+  overflow: hidden;
+  text-overflow: ellipsis;
+}
+
+/* header cells for rank in the main table, wide screen */
+@media screen and (min-width: 1401px) {
+	.showThRank {
+		border-collapse: collapse;
+		border: solid 1px DarkGray;
+		border-left-style: none;
+		padding: 0.5vmin 1vmin 0.5vmin 1vmin;
+		font-size: var(--fontSizeRank-height);
+		font-weight: normal;
+		font-style: italic;
+		width: 4vw;
+		text-align: center;
+	}
+}
+
+/* header cells for rank in the main table, XGA projector */
+@media screen and (max-width: 1400px) {
+	.showThRank {
+		display: none;
+		width: 0px;
+		padding: 0 0 0 0;
+		margin: 0 0 0 0;
+		font-size: var(--fontSizeRank-heightXGA);
+	}
+}
+
+.thRank {
+	border-collapse: collapse;
+	border: solid 1px DarkGray;
+	border-left-style: none;
+	padding: 0.5vmin 1vmin 0.5vmin 1vmin;
+	font-size: var(--fontSizeRows-height);
+	font-weight: normal;
+	font-style: italic;
+	width: var(--veryNarrow-width);
+	text-align: center;
+}
+
+.narrow {
+	width: var(--narrow-width);
+	text-align: center;
+}
+
+/* rank cells in the main table, wide screen */
+@media screen and (min-width: 1401px) {
+	.showRank {
+		display: table-cell;
+		width: var(--veryNarrow-width);
+		font-size: var(--fontSizeRows-height);
+		text-align: center;
+	}
+}
+
+/* rank cells in the main table, XGA projector */
+@media screen and (max-width: 1400px) {
+	.showRank {
+		display: none;
+		width: 0px;
+		padding: 0 0 0 0;
+		margin: 0 0 0 0;
+		font-size: var(--fontSizeRows-heightXGA);
+	}
+	th,td {
+		font-size: var(--fontSizeRows-heightXGA);
+	}
+}
+
+.veryNarrow {
+	width: var(--veryNarrow-width);
+	text-align: center;
+}
+
+.medium {
+	width: 4%;
+	white-space: nowrap;
+	text-align: center;
+}
+
+.club {
+	text-align: center;
+	width: 8%;
+}
+
+.narrow {
+	width: var(--narrow-width);
+	text-align: center;
+}
+
+:host(.dark) .good {
+	background-color: green;
+	font-weight: bold;
+}
+
+:host(.light) .good {
+	background-color: green;
+	font-weight: bold;
+	color: white;
+}
+
+:host(.dark) .fail {
+	background-color: red;
+	font-weight: bold;
+}
+
+:host(.light) .fail {
+	background-color: red;
+	font-weight: bold;
+	color: white;
+}
+
+:host(.dark)  .spacer {
+	background-color: black;
+}
+
+
+:host(.light)  .spacer {
+	background-color: gray;
+}
+
+.english {
+	font-size: 85%;
+}
+
+:host(.dark) .request {
+	background-color: black;
+	font-style: italic;
+}
+
+:host(.light) .request {
+	background-color: white;
+	font-style: italic;
+}
+
+:host(.dark) .current {
+	color: yellow;
+	font-weight: bold;
+}
+
+:host(.light) .current {
+	background-color: yellow;
+	font-weight: bold;
+}
+
+.blink {
+	animation: blink 1.5s step-start 0s infinite;
+	-webkit-animation: blink 1.5s step-start 0s infinite;
+}
+@keyframes blink { 50% {opacity: 0.0;}}
+@-webkit-keyframes blink { 50% {opacity: 0.0;}}
+
+:host(.dark) .next {
+	color: orange;
+	font-weight: bold;
+}
+
+:host(.light) .next {
+	background-color: gold;
+	font-weight: bold;
+}
+
+:host(.dark) .empty {
+	background-color: black;
+	font-style: italic;
+}
+
+:host(.light) .empty {
+	background-color: white;
+	font-style: italic;
+}
+
+.breakTime {
+	/* color: #99CCFF; */
+	color: SkyBlue;
+}
+
+.athleteTimer {
+	color: yellow;
+}
+
+.v-system-error {
+	display: none;
+}
+
+.points {
+	font-weight: bold;
+}
+
+h2 {
+  font-size: 3.0vh;
+}
+</style>
+<div class="wrapper" id="resultBoardDiv">
+	<template is="dom-if" if="[[topTeamsWomen]]">
+		<h2 class="fullName" inner-h-t-m-l="[[topTeamsWomen]]"></h2>
+		<table class="results" style$="">
+			<thead>
+				<tr>
+					<th class="thRank" inner-h-t-m-l="[[t.Rank]]"></th>
+					<th inner-h-t-m-l="[[t.Team]]"></th>
+					<th class="narrow" inner-h-t-m-l="[[t.TeamPoints]]"></th>
+					<th class="narrow" inner-h-t-m-l="[[t.TeamCounted]]"></th>
+				</tr>
+			</thead>
+			<template is="dom-repeat" items="[[womensTeams]]" as="l">
+				<tr>
+					<td class="veryNarrow">[[l.rank]]</td>
+					<td class="ellipsis">[[l.teamName]]</td>
+					<td class="narrow points">[[l.points]]</td>
+					<td class="narrow">[[l.counted]]</td>
+				</tr>
+			</template>
+		</table>
+		<h2>&nbsp;</h2>
+	</template>
+	<template is="dom-if" if="[[topTeamsMen]]">
+		<h2 class="fullName" inner-h-t-m-l="[[topTeamsMen]]"></h2>
+		<table class="results" style$="">
+			<thead>
+				<tr>
+					<th class="thRank" inner-h-t-m-l="[[t.Rank]]"></th>
+					<th inner-h-t-m-l="[[t.Team]]"></th>
+					<th class="narrow" inner-h-t-m-l="[[t.TeamPoints]]"></th>
+					<th class="narrow" inner-h-t-m-l="[[t.TeamCounted]]"></th>
+				</tr>
+			</thead>
+			<template is="dom-repeat" items="[[mensTeams]]" as="l">
+				<tr>
+					<td class="veryNarrow">[[l.rank]]</td>
+					<td class="ellipsis">[[l.teamName]]</td>
+					<td class="narrow points">[[l.points]]</td>
+					<td class="narrow">[[l.counted]]</td>
+				</tr>
+			</template>
+		</table>
+	</template>
+</div>`;
+	}
+
+	ready() {
+		super.ready();
+		this.$.resultBoardDiv.style.display="block";
+	}
+
+	reset() {
+		console.debug("reset");
+		this.$.resultBoardDiv.style.display="block";
+	}
+
+	clear() {
+		this.$.resultBoardDiv.style.display="none";
+	}
+}
+
+customElements.define(TopTeams.is, TopTeams);
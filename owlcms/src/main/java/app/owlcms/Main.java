@@ -38,6 +38,7 @@ import app.owlcms.data.jpa.ProdData;
 import app.owlcms.i18n.Translator;
 import app.owlcms.init.EmbeddedJetty;
 import app.owlcms.init.OwlcmsFactory;
+import app.owlcms.publicresults.RelayPublisher;
 import app.owlcms.utils.LoggerUtils;
 import app.owlcms.utils.ResourceWalker;
 import ch.qos.logback.classic.Logger;
@@ -147,6 +148,7 @@ public class Main {
         injectData(demoMode, devMode, testMode, masters, l);
 
         OwlcmsFactory.getDefaultFOP();
+        RelayPublisher.start();
         return;
     }
 
@@ -20,6 +20,7 @@ import java.util.List;
 import javax.persistence.Cacheable;
 import javax.persistence.CascadeType;
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
 import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
@@ -32,6 +33,7 @@ import javax.persistence.Version;
 import org.slf4j.LoggerFactory;
 
 import app.owlcms.data.agegroup.AgeGroup;
+import app.owlcms.data.athleteSort.RankingIndex;
 import app.owlcms.data.category.AgeDivision;
 import app.owlcms.data.category.Category;
 import app.owlcms.data.competition.Competition;
@@ -67,7 +69,45 @@ import ch.qos.logback.classic.Logger;
  */
 @Entity
 @Cacheable
+@EntityListeners(RankingIndex.AthleteListener.class)
 public class Athlete {
+
+    /**
+     * A Sinclair factor and what it was computed from. The comparators and the
+     * displays ask for the Sinclair over and over, and the formula is costly;
+     * the factor only changes with the body weight or the gender.
+     */
+    private static final class SinclairFactor {
+        private final double bodyWeight;
+        private final Gender gender;
+        private final double factor;
+
+        SinclairFactor(double bodyWeight, Gender gender, double factor) {
+            this.bodyWeight = bodyWeight;
+            this.gender = gender;
+            this.factor = factor;
+        }
+    }
+
+    /**
+     * The value of a lift field and the string it was parsed from.
+     */
+    private static final class ParsedLift {
+        private final String source;
+        private final int value;
+
+        ParsedLift(String source, int value) {
+            this.source = source;
+            this.value = value;
+        }
+    }
+
+    /** position of the fields of each attempt in {@link #parsedLifts} */
+    private static final int SN1 = 0, SN2 = 4, SN3 = 8, CJ1 = 12, CJ2 = 16, CJ3 = 20;
+    /** offset of each field within an attempt */
+    private static final int DECLARATION = 0, CHANGE1 = 1, CHANGE2 = 2, ACTUAL = 3;
+    private static final int LIFT_FIELDS = 24;
+
     private final static Logger logger = (Logger) LoggerFactory.getLogger(Athlete.class);
     private static final int YEAR = LocalDateTime.now().getYear();
 
@@ -133,6 +173,179 @@ public class Athlete {
         }
     }
 
+    /**
+     * Requested weights, lifts and lift times: declaration, change 1, change 2,
+     * actual lift and lift time for each attempt, snatches first.
+     *
+     * Used to save the results of an athlete later, on another thread (see
+     * {@link AthleteWriteBehind}).
+     *
+     * @param a
+     * @return the values, in a fixed order
+     */
+    static String[] getResults(Athlete a) {
+        return new String[] {
+                a.snatch1Declaration, a.snatch1Change1, a.snatch1Change2, a.snatch1ActualLift,
+                toResult(a.snatch1LiftTime),
+                a.snatch2Declaration, a.snatch2Change1, a.snatch2Change2, a.snatch2ActualLift,
+                toResult(a.snatch2LiftTime),
+                a.snatch3Declaration, a.snatch3Change1, a.snatch3Change2, a.snatch3ActualLift,
+                toResult(a.snatch3LiftTime),
+                a.cleanJerk1Declaration, a.cleanJerk1Change1, a.cleanJerk1Change2, a.cleanJerk1ActualLift,
+                toResult(a.cleanJerk1LiftTime),
+                a.cleanJerk2Declaration, a.cleanJerk2Change1, a.cleanJerk2Change2, a.cleanJerk2ActualLift,
+                toResult(a.cleanJerk2LiftTime),
+                a.cleanJerk3Declaration, a.cleanJerk3Change1, a.cleanJerk3Change2, a.cleanJerk3ActualLift,
+                toResult(a.cleanJerk3LiftTime)
+        };
+    }
+
+    /**
+     * Set the values obtained from {@link #getResults(Athlete)}, without
+     * validation.
+     *
+     * @param a
+     * @param r
+     */
+    static void setResults(Athlete a, String[] r) {
+        a.snatch1Declaration = r[0];
+        a.snatch1Change1 = r[1];
+        a.snatch1Change2 = r[2];
+        a.snatch1ActualLift = r[3];
+        a.snatch1LiftTime = r[4] != null ? LocalDateTime.parse(r[4]) : null;
+        a.snatch2Declaration = r[5];
+        a.snatch2Change1 = r[6];
+        a.snatch2Change2 = r[7];
+        a.snatch2ActualLift = r[8];
+        a.snatch2LiftTime = r[9] != null ? LocalDateTime.parse(r[9]) : null;
+        a.snatch3Declaration = r[10];
+        a.snatch3Change1 = r[11];
+        a.snatch3Change2 = r[12];
+        a.snatch3ActualLift = r[13];
+        a.snatch3LiftTime = r[14] != null ? LocalDateTime.parse(r[14]) : null;
+        a.cleanJerk1Declaration = r[15];
+        a.cleanJerk1Change1 = r[16];
+        a.cleanJerk1Change2 = r[17];
+        a.cleanJerk1ActualLift = r[18];
+        a.cleanJerk1LiftTime = r[19] != null ? LocalDateTime.parse(r[19]) : null;
+        a.cleanJerk2Declaration = r[20];
+        a.cleanJerk2Change1 = r[21];
+        a.cleanJerk2Change2 = r[22];
+        a.cleanJerk2ActualLift = r[23];
+        a.cleanJerk2LiftTime = r[24] != null ? LocalDateTime.parse(r[24]) : null;
+        a.cleanJerk3Declaration = r[25];
+        a.cleanJerk3Change1 = r[26];
+        a.cleanJerk3Change2 = r[27];
+        a.cleanJerk3ActualLift = r[28];
+        a.cleanJerk3LiftTime = r[29] != null ? LocalDateTime.parse(r[29]) : null;
+    }
+
+    private static String toResult(LocalDateTime liftTime) {
+        return liftTime != null ? liftTime.toString() : null;
+    }
+
+    /**
+     * Copy the requested weights, lifts and lift times, without validation.
+     *
+     * @param dest
+     * @param src
+     */
+    public static void copyResults(Athlete dest, Athlete src) {
+        setResults(dest, getResults(src));
+    }
+
+    /**
+     * Copy the registration data, results, ranks and points, without
+     * validation. The group and category are shared.
+     *
+     * @param src
+     * @return a new athlete, not managed by the database, that does not change
+     *         when src does
+     */
+    public static Athlete copyForReporting(Athlete src) {
+        Athlete dest = new Athlete();
+        dest.id = src.id;
+        dest.version = src.version;
+        dest.lotNumber = src.lotNumber;
+        dest.startNumber = src.startNumber;
+        dest.firstName = src.firstName;
+        dest.lastName = src.lastName;
+        dest.team = src.team;
+        dest.gender = src.gender;
+        dest.fullBirthDate = src.fullBirthDate;
+        dest.bodyWeight = src.bodyWeight;
+        dest.membership = src.membership;
+        dest.group = src.group;
+        dest.category = src.category;
+        dest.qualifyingTotal = src.qualifyingTotal;
+        dest.customScore = src.customScore;
+        dest.eligibleForIndividualRanking = src.eligibleForIndividualRanking;
+        dest.eligibleForTeamRanking = src.eligibleForTeamRanking;
+
+        dest.snatch1Declaration = src.snatch1Declaration;
+        dest.snatch1Change1 = src.snatch1Change1;
+        dest.snatch1Change2 = src.snatch1Change2;
+        dest.snatch1ActualLift = src.snatch1ActualLift;
+        dest.snatch1LiftTime = src.snatch1LiftTime;
+        dest.snatch2Declaration = src.snatch2Declaration;
+        dest.snatch2Change1 = src.snatch2Change1;
+        dest.snatch2Change2 = src.snatch2Change2;
+        dest.snatch2ActualLift = src.snatch2ActualLift;
+        dest.snatch2LiftTime = src.snatch2LiftTime;
+        dest.snatch3Declaration = src.snatch3Declaration;
+        dest.snatch3Change1 = src.snatch3Change1;
+        dest.snatch3Change2 = src.snatch3Change2;
+        dest.snatch3ActualLift = src.snatch3ActualLift;
+        dest.snatch3LiftTime = src.snatch3LiftTime;
+        dest.cleanJerk1Declaration = src.cleanJerk1Declaration;
+        dest.cleanJerk1Change1 = src.cleanJerk1Change1;
+        dest.cleanJerk1Change2 = src.cleanJerk1Change2;
+        dest.cleanJerk1ActualLift = src.cleanJerk1ActualLift;
+        dest.cleanJerk1LiftTime = src.cleanJerk1LiftTime;
+        dest.cleanJerk2Declaration = src.cleanJerk2Declaration;
+        dest.cleanJerk2Change1 = src.cleanJerk2Change1;
+        dest.cleanJerk2Change2 = src.cleanJerk2Change2;
+        dest.cleanJerk2ActualLift = src.cleanJerk2ActualLift;
+        dest.cleanJerk2LiftTime = src.cleanJerk2LiftTime;
+        dest.cleanJerk3Declaration = src.cleanJerk3Declaration;
+        dest.cleanJerk3Change1 = src.cleanJerk3Change1;
+        dest.cleanJerk3Change2 = src.cleanJerk3Change2;
+        dest.cleanJerk3ActualLift = src.cleanJerk3ActualLift;
+        dest.cleanJerk3LiftTime = src.cleanJerk3LiftTime;
+
+        dest.snatchRank = src.snatchRank;
+        dest.cleanJerkRank = src.cleanJerkRank;
+        dest.totalRank = src.totalRank;
+        dest.sinclairRank = src.sinclairRank;
+        dest.robiRank = src.robiRank;
+        dest.customRank = src.customRank;
+        dest.snatchPoints = src.snatchPoints;
+        dest.cleanJerkPoints = src.cleanJerkPoints;
+        dest.totalPoints = src.totalPoints;
+        dest.sinclairPoints = src.sinclairPoints;
+        dest.customPoints = src.customPoints;
+        dest.teamSinclairRank = src.teamSinclairRank;
+        dest.teamRobiRank = src.teamRobiRank;
+        dest.teamSnatchRank = src.teamSnatchRank;
+        dest.teamCleanJerkRank = src.teamCleanJerkRank;
+        dest.teamTotalRank = src.teamTotalRank;
+        dest.teamCombinedRank = src.teamCombinedRank;
+        return dest;
+    }
+
+    /**
+     * The registration data that the rankings depend on.
+     *
+     * @param a
+     * @return equal lists for two copies of an athlete that differ only by their
+     *         results
+     */
+    public static List<Object> getRankingRegistration(Athlete a) {
+        return Arrays.asList(a.id, a.lastName, a.firstName, a.team, a.gender, a.fullBirthDate, a.bodyWeight,
+                a.lotNumber, a.group != null ? a.group.getId() : null, a.category != null ? a.category.getId() : null,
+                a.customScore, a.eligibleForIndividualRanking, a.eligibleForTeamRanking);
+    }
+
     /**
      * Checks if is empty.
      *
@@ -212,6 +425,10 @@ public class Athlete {
      * @return the int
      */
     public static int zeroIfInvalid(String value) {
+        if (value == null || value.isEmpty() || value.equals("-")) {
+            // the usual values of empty fields, without the cost of an exception
+            return 0;
+        }
         try {
             return Integer.valueOf(value);
         } catch (NumberFormatException nfe) {
@@ -338,6 +555,17 @@ public class Athlete {
     @Transient
     private boolean validation = true;
 
+    /** last Sinclair factor computed, null if none */
+    @Transient
+    private SinclairFactor sinclairFactorCache;
+
+    /**
+     * Values of the lift fields, parsed when first needed after the field has
+     * changed, null until then.
+     */
+    @Transient
+    private ParsedLift[] parsedLifts;
+
     DecimalFormat df = null;
 
     /**
@@ -417,17 +645,25 @@ public class Athlete {
     }
 
     /**
-     * @param prevVal
-     * @return
+     * @param prevVal the previous lift, negative if failed
+     * @return the weight requested when no declaration is made
      */
-    private String doAutomaticProgression(final int prevVal) {
+    private int automaticProgression(final int prevVal) {
         if (prevVal > 0) {
-            return Integer.toString(prevVal + 1);
+            return prevVal + 1;
         } else {
-            return Integer.toString(Math.abs(prevVal));
+            return Math.abs(prevVal);
         }
     }
 
+    /**
+     * @param prevVal
+     * @return
+     */
+    private String doAutomaticProgression(final int prevVal) {
+        return Integer.toString(automaticProgression(prevVal));
+    }
+
     /**
      * @param Athlete
      * @param athletes
@@ -583,22 +819,22 @@ public class Athlete {
      */
     public int getAttemptedLifts() {
         int i = 0;
-        if (zeroIfInvalid(snatch1ActualLift) != 0) {
+        if (lift(SN1 + ACTUAL) != 0) {
             i++;
         }
-        if (zeroIfInvalid(snatch2ActualLift) != 0) {
+        if (lift(SN2 + ACTUAL) != 0) {
             i++;
         }
-        if (zeroIfInvalid(snatch3ActualLift) != 0) {
+        if (lift(SN3 + ACTUAL) != 0) {
             i++;
         }
-        if (zeroIfInvalid(cleanJerk1ActualLift) != 0) {
+        if (lift(CJ1 + ACTUAL) != 0) {
             i++;
         }
-        if (zeroIfInvalid(cleanJerk2ActualLift) != 0) {
+        if (lift(CJ2 + ACTUAL) != 0) {
             i++;
         }
-        if (zeroIfInvalid(cleanJerk3ActualLift) != 0) {
+        if (lift(CJ3 + ACTUAL) != 0) {
             i++;
         }
         return i; // long ago
@@ -628,9 +864,9 @@ public class Athlete {
      * @return the bestCleanJerk
      */
     public Integer getBestCleanJerk() {
-        final int cj1 = zeroIfInvalid(cleanJerk1ActualLift);
-        final int cj2 = zeroIfInvalid(cleanJerk2ActualLift);
-        final int cj3 = zeroIfInvalid(cleanJerk3ActualLift);
+        final int cj1 = lift(CJ1 + ACTUAL);
+        final int cj2 = lift(CJ2 + ACTUAL);
+        final int cj3 = lift(CJ3 + ACTUAL);
         return max(0, cj1, cj2, cj3);
     }
 
@@ -642,13 +878,13 @@ public class Athlete {
     public int getBestCleanJerkAttemptNumber() {
         int referenceValue = getBestCleanJerk();
         if (referenceValue > 0) {
-            if (zeroIfInvalid(cleanJerk3ActualLift) == referenceValue) {
+            if (lift(CJ3 + ACTUAL) == referenceValue) {
                 return 6;
             }
-            if (zeroIfInvalid(cleanJerk2ActualLift) == referenceValue) {
+            if (lift(CJ2 + ACTUAL) == referenceValue) {
                 return 5;
             }
-            if (zeroIfInvalid(cleanJerk1ActualLift) == referenceValue) {
+            if (lift(CJ1 + ACTUAL) == referenceValue) {
                 return 4;
             }
         }
@@ -663,25 +899,25 @@ public class Athlete {
     public int getBestResultAttemptNumber() {
         int referenceValue = getBestCleanJerk();
         if (referenceValue > 0) {
-            if (zeroIfInvalid(cleanJerk3ActualLift) == referenceValue) {
+            if (lift(CJ3 + ACTUAL) == referenceValue) {
                 return 6;
             }
-            if (zeroIfInvalid(cleanJerk2ActualLift) == referenceValue) {
+            if (lift(CJ2 + ACTUAL) == referenceValue) {
                 return 5;
             }
-            if (zeroIfInvalid(cleanJerk1ActualLift) == referenceValue) {
+            if (lift(CJ1 + ACTUAL) == referenceValue) {
                 return 4;
             }
         } else {
             if (referenceValue > 0) {
                 referenceValue = getBestSnatch();
-                if (zeroIfInvalid(snatch3ActualLift) == referenceValue) {
+                if (lift(SN3 + ACTUAL) == referenceValue) {
                     return 3;
                 }
-                if (zeroIfInvalid(snatch2ActualLift) == referenceValue) {
+                if (lift(SN2 + ACTUAL) == referenceValue) {
                     return 2;
                 }
-                if (zeroIfInvalid(snatch1ActualLift) == referenceValue) {
+                if (lift(SN1 + ACTUAL) == referenceValue) {
                     return 1;
                 }
             }
@@ -695,9 +931,9 @@ public class Athlete {
      * @return the bestSnatch
      */
     public Integer getBestSnatch() {
-        final int sn1 = zeroIfInvalid(snatch1ActualLift);
-        final int sn2 = zeroIfInvalid(snatch2ActualLift);
-        final int sn3 = zeroIfInvalid(snatch3ActualLift);
+        final int sn1 = lift(SN1 + ACTUAL);
+        final int sn2 = lift(SN2 + ACTUAL);
+        final int sn3 = lift(SN3 + ACTUAL);
         return max(0, sn1, sn2, sn3);
     }
 
@@ -709,13 +945,13 @@ public class Athlete {
     public int getBestSnatchAttemptNumber() {
         int referenceValue = getBestSnatch();
         if (referenceValue > 0) {
-            if (zeroIfInvalid(snatch3ActualLift) == referenceValue) {
+            if (lift(SN3 + ACTUAL) == referenceValue) {
                 return 3;
             }
-            if (zeroIfInvalid(snatch2ActualLift) == referenceValue) {
+            if (lift(SN2 + ACTUAL) == referenceValue) {
                 return 2;
             }
-            if (zeroIfInvalid(snatch1ActualLift) == referenceValue) {
+            if (lift(SN1 + ACTUAL) == referenceValue) {
                 return 1;
             }
         }
@@ -873,7 +1109,7 @@ public class Athlete {
      * @return the clean jerk 2 automatic progression
      */
     public String getCleanJerk2AutomaticProgression() {
-        final int prevVal = zeroIfInvalid(cleanJerk1ActualLift);
+        final int prevVal = lift(CJ1 + ACTUAL);
         return doAutomaticProgression(prevVal);
     }
 
@@ -937,7 +1173,7 @@ public class Athlete {
      * @return the clean jerk 3 automatic progression
      */
     public String getCleanJerk3AutomaticProgression() {
-        final int prevVal = zeroIfInvalid(cleanJerk2ActualLift);
+        final int prevVal = lift(CJ2 + ACTUAL);
         return doAutomaticProgression(prevVal);
     }
 
@@ -1031,8 +1267,8 @@ public class Athlete {
      * @return total for clean and jerk
      */
     public int getCleanJerkTotal() {
-        final int cleanJerkTotal = max(0, zeroIfInvalid(cleanJerk1ActualLift), zeroIfInvalid(cleanJerk2ActualLift),
-                zeroIfInvalid(cleanJerk3ActualLift));
+        final int cleanJerkTotal = max(0, lift(CJ1 + ACTUAL), lift(CJ2 + ACTUAL),
+                lift(CJ3 + ACTUAL));
         return cleanJerkTotal;
     }
 
@@ -1188,22 +1424,22 @@ public class Athlete {
      * @return the first attempted lift time
      */
     public LocalDateTime getFirstAttemptedLiftTime() {
-        if (zeroIfInvalid(snatch1ActualLift) != 0) {
+        if (lift(SN1 + ACTUAL) != 0) {
             return getSnatch1LiftTime();
         }
-        if (zeroIfInvalid(snatch2ActualLift) != 0) {
+        if (lift(SN2 + ACTUAL) != 0) {
             return getSnatch2LiftTime();
         }
-        if (zeroIfInvalid(snatch3ActualLift) != 0) {
+        if (lift(SN3 + ACTUAL) != 0) {
             return getSnatch3LiftTime();
         }
-        if (zeroIfInvalid(cleanJerk1ActualLift) != 0) {
+        if (lift(CJ1 + ACTUAL) != 0) {
             return getCleanJerk1LiftTime();
         }
-        if (zeroIfInvalid(cleanJerk2ActualLift) != 0) {
+        if (lift(CJ2 + ACTUAL) != 0) {
             return getCleanJerk2LiftTime();
         }
-        if (zeroIfInvalid(cleanJerk3ActualLift) != 0) {
+        if (lift(CJ3 + ACTUAL) != 0) {
             return getCleanJerk3LiftTime();
         }
         return LocalDateTime.MAX; // forever in the future
@@ -1299,22 +1535,22 @@ public class Athlete {
      * @return the last attempted lift time
      */
     public LocalDateTime getLastAttemptedLiftTime() {
-        if (zeroIfInvalid(cleanJerk3ActualLift) != 0) {
+        if (lift(CJ3 + ACTUAL) != 0) {
             return getCleanJerk3LiftTime();
         }
-        if (zeroIfInvalid(cleanJerk2ActualLift) != 0) {
+        if (lift(CJ2 + ACTUAL) != 0) {
             return getCleanJerk2LiftTime();
         }
-        if (zeroIfInvalid(cleanJerk1ActualLift) != 0) {
+        if (lift(CJ1 + ACTUAL) != 0) {
             return getCleanJerk1LiftTime();
         }
-        if (zeroIfInvalid(snatch3ActualLift) != 0) {
+        if (lift(SN3 + ACTUAL) != 0) {
             return getSnatch3LiftTime();
         }
-        if (zeroIfInvalid(snatch2ActualLift) != 0) {
+        if (lift(SN2 + ACTUAL) != 0) {
             return getSnatch2LiftTime();
         }
-        if (zeroIfInvalid(snatch1ActualLift) != 0) {
+        if (lift(SN1 + ACTUAL) != 0) {
             return getSnatch1LiftTime();
         }
         return LocalDateTime.MIN; // long ago
@@ -1335,22 +1571,22 @@ public class Athlete {
      * @return the last successful lift time
      */
     public LocalDateTime getLastSuccessfulLiftTime() {
-        if (zeroIfInvalid(cleanJerk3ActualLift) > 0) {
+        if (lift(CJ3 + ACTUAL) > 0) {
             return getCleanJerk3LiftTime();
         }
-        if (zeroIfInvalid(cleanJerk2ActualLift) > 0) {
+        if (lift(CJ2 + ACTUAL) > 0) {
             return getCleanJerk2LiftTime();
         }
-        if (zeroIfInvalid(cleanJerk1ActualLift) > 0) {
+        if (lift(CJ1 + ACTUAL) > 0) {
             return getCleanJerk1LiftTime();
         }
-        if (zeroIfInvalid(snatch3ActualLift) > 0) {
+        if (lift(SN3 + ACTUAL) > 0) {
             return getSnatch3LiftTime();
         }
-        if (zeroIfInvalid(snatch2ActualLift) > 0) {
+        if (lift(SN2 + ACTUAL) > 0) {
             return getSnatch2LiftTime();
         }
-        if (zeroIfInvalid(snatch1ActualLift) > 0) {
+        if (lift(SN1 + ACTUAL) > 0) {
             return getSnatch1LiftTime();
         }
         return LocalDateTime.MIN; // long ago
@@ -1607,23 +1843,17 @@ public class Athlete {
     public Integer getRequestedWeightForAttempt(int attempt) {
         switch (attempt) {
         case 1:
-            return last(zeroIfInvalid(getSnatch1AutomaticProgression()), zeroIfInvalid(snatch1Declaration),
-                    zeroIfInvalid(snatch1Change1), zeroIfInvalid(snatch1Change2));
+            return requestedWeight(0, SN1);
         case 2:
-            return last(zeroIfInvalid(getSnatch2AutomaticProgression()), zeroIfInvalid(snatch2Declaration),
-                    zeroIfInvalid(snatch2Change1), zeroIfInvalid(snatch2Change2));
+            return requestedWeight(automaticProgression(lift(SN1 + ACTUAL)), SN2);
         case 3:
-            return last(zeroIfInvalid(getSnatch3AutomaticProgression()), zeroIfInvalid(snatch3Declaration),
-                    zeroIfInvalid(snatch3Change1), zeroIfInvalid(snatch3Change2));
+            return requestedWeight(automaticProgression(lift(SN2 + ACTUAL)), SN3);
         case 4:
-            return last(zeroIfInvalid(getCleanJerk1AutomaticProgression()), zeroIfInvalid(cleanJerk1Declaration),
-                    zeroIfInvalid(cleanJerk1Change1), zeroIfInvalid(cleanJerk1Change2));
+            return requestedWeight(0, CJ1);
         case 5:
-            return last(zeroIfInvalid(getCleanJerk2AutomaticProgression()), zeroIfInvalid(cleanJerk2Declaration),
-                    zeroIfInvalid(cleanJerk2Change1), zeroIfInvalid(cleanJerk2Change2));
+            return requestedWeight(automaticProgression(lift(CJ1 + ACTUAL)), CJ2);
         case 6:
-            return last(zeroIfInvalid(getCleanJerk3AutomaticProgression()), zeroIfInvalid(cleanJerk3Declaration),
-                    zeroIfInvalid(cleanJerk3Change1), zeroIfInvalid(cleanJerk3Change2));
+            return requestedWeight(automaticProgression(lift(CJ2 + ACTUAL)), CJ3);
         }
         return 0;
     }
@@ -1750,13 +1980,7 @@ public class Athlete {
         if (gender == null) {
             return 0.0;
         }
-        if (gender == Gender.M) { // $NON-NLS-1$
-            return total1 * sinclairFactor(bodyWeight1, SinclairCoefficients.menCoefficient(),
-                    SinclairCoefficients.menMaxWeight());
-        } else {
-            return total1 * sinclairFactor(bodyWeight1, SinclairCoefficients.womenCoefficient(),
-                    SinclairCoefficients.womenMaxWeight());
-        }
+        return total1 * sinclairFactor(bodyWeight1, gender);
     }
 
     /**
@@ -1765,13 +1989,7 @@ public class Athlete {
      * @return the sinclair factor
      */
     public Double getSinclairFactor() {
-        if (gender == Gender.M) { // $NON-NLS-1$
-            return sinclairFactor(this.bodyWeight, SinclairCoefficients.menCoefficient(),
-                    SinclairCoefficients.menMaxWeight());
-        } else {
-            return sinclairFactor(this.bodyWeight, SinclairCoefficients.womenCoefficient(),
-                    SinclairCoefficients.womenMaxWeight());
-        }
+        return sinclairFactor(this.bodyWeight, gender);
     }
 
     /**
@@ -1816,7 +2034,7 @@ public class Athlete {
         if (birthDate1 == null) {
             return 0.0;
         }
-        return getSinclair() * SinclairCoefficients.getSMMCoefficient(YEAR - birthDate1);
+        return getSinclair() * SinclairCoefficients.smmCoefficient(YEAR - birthDate1);
     }
 
     /**
@@ -1906,7 +2124,7 @@ public class Athlete {
      * @return the snatch 2 automatic progression
      */
     public String getSnatch2AutomaticProgression() {
-        final int prevVal = zeroIfInvalid(snatch1ActualLift);
+        final int prevVal = lift(SN1 + ACTUAL);
         return doAutomaticProgression(prevVal);
     }
 
@@ -1970,7 +2188,7 @@ public class Athlete {
      * @return the snatch 3 automatic progression
      */
     public String getSnatch3AutomaticProgression() {
-        final int prevVal = zeroIfInvalid(snatch2ActualLift);
+        final int prevVal = lift(SN2 + ACTUAL);
         return doAutomaticProgression(prevVal);
     }
 
@@ -2064,8 +2282,8 @@ public class Athlete {
      * @return total for snatch.
      */
     public int getSnatchTotal() {
-        final int snatchTotal = max(0, zeroIfInvalid(snatch1ActualLift), zeroIfInvalid(snatch2ActualLift),
-                zeroIfInvalid(snatch3ActualLift));
+        final int snatchTotal = max(0, lift(SN1 + ACTUAL), lift(SN2 + ACTUAL),
+                lift(SN3 + ACTUAL));
         return snatchTotal;
     }
 
@@ -2249,70 +2467,70 @@ public class Athlete {
         switch (attempt) {
         case 1:
             declaring =
-                    (zeroIfInvalid(snatch1Declaration) > 0) &&
-                    (zeroIfInvalid(snatch1Change1) == 0) &&
-                    (zeroIfInvalid(snatch1Change2) == 0) &&
-                    (zeroIfInvalid(snatch1ActualLift) == 0);
+                    (lift(SN1 + DECLARATION) > 0) &&
+                    (lift(SN1 + CHANGE1) == 0) &&
+                    (lift(SN1 + CHANGE2) == 0) &&
+                    (lift(SN1 + ACTUAL) == 0);
             changing = false;
             break;
         case 2:
             {
-                int ap = zeroIfInvalid(getSnatch2AutomaticProgression());
-                int decl = zeroIfInvalid(snatch2Declaration);
+                int ap = automaticProgression(lift(SN1 + ACTUAL));
+                int decl = lift(SN2 + DECLARATION);
                 declaring =
                         (ap > 0) &&
                         (decl > 0) &&
-                        (zeroIfInvalid(snatch2Change1) == 0) &&
-                        (zeroIfInvalid(snatch2Change2) == 0) &&
-                        (zeroIfInvalid(snatch2ActualLift) == 0);
+                        (lift(SN2 + CHANGE1) == 0) &&
+                        (lift(SN2 + CHANGE2) == 0) &&
+                        (lift(SN2 + ACTUAL) == 0);
                 changing = ap != decl;
             }
             break;
         case 3:
             {
-                int ap = zeroIfInvalid(getSnatch3AutomaticProgression());
-                int decl = zeroIfInvalid(snatch3Declaration);
+                int ap = automaticProgression(lift(SN2 + ACTUAL));
+                int decl = lift(SN3 + DECLARATION);
                 declaring =
                         (ap > 0) &&
                         (decl > 0) &&
-                        (zeroIfInvalid(snatch3Change1) == 0) &&
-                        (zeroIfInvalid(snatch3Change2) == 0) &&
-                        (zeroIfInvalid(snatch3ActualLift) == 0);
+                        (lift(SN3 + CHANGE1) == 0) &&
+                        (lift(SN3 + CHANGE2) == 0) &&
+                        (lift(SN3 + ACTUAL) == 0);
                 changing = ap != decl;
 
             }
             break;
         case 4:
             declaring =
-                    (zeroIfInvalid(cleanJerk1Declaration) > 0) &&
-                    (zeroIfInvalid(cleanJerk1Change1) == 0) &&
-                    (zeroIfInvalid(cleanJerk1Change2) == 0) &&
-                    (zeroIfInvalid(cleanJerk1ActualLift) == 0);
+                    (lift(CJ1 + DECLARATION) > 0) &&
+                    (lift(CJ1 + CHANGE1) == 0) &&
+                    (lift(CJ1 + CHANGE2) == 0) &&
+                    (lift(CJ1 + ACTUAL) == 0);
             changing = false;
             break;
         case 5:
             {
-                int ap = zeroIfInvalid(getCleanJerk2AutomaticProgression());
-                int decl = zeroIfInvalid(cleanJerk2Declaration);
+                int ap = automaticProgression(lift(CJ1 + ACTUAL));
+                int decl = lift(CJ2 + DECLARATION);
                 declaring =
                         (ap > 0) &&
                         (decl > 0) &&
-                        (zeroIfInvalid(cleanJerk2Change1) == 0) &&
-                        (zeroIfInvalid(cleanJerk2Change2) == 0) &&
-                        (zeroIfInvalid(cleanJerk2ActualLift) == 0);
+                        (lift(CJ2 + CHANGE1) == 0) &&
+                        (lift(CJ2 + CHANGE2) == 0) &&
+                        (lift(CJ2 + ACTUAL) == 0);
                 changing = ap != decl;
             }
             break;
         case 6:
             {
-                int ap = zeroIfInvalid(getCleanJerk3AutomaticProgression());
-                int decl = zeroIfInvalid(cleanJerk3Declaration);
+                int ap = automaticProgression(lift(CJ2 + ACTUAL));
+                int decl = lift(CJ3 + DECLARATION);
                 declaring =
                         (ap > 0) &&
                         (decl > 0) &&
-                        (zeroIfInvalid(cleanJerk3Change1) == 0) &&
-                        (zeroIfInvalid(cleanJerk3Change2) == 0) &&
-                        (zeroIfInvalid(cleanJerk3ActualLift) == 0);
+                        (lift(CJ3 + CHANGE1) == 0) &&
+                        (lift(CJ3 + CHANGE2) == 0) &&
+                        (lift(CJ3 + ACTUAL) == 0);
                 changing = ap != decl;
             }
             break;
@@ -2382,9 +2600,88 @@ public class Athlete {
                 .append(" totalRank=" + this.getRank()).append(" teamMember=" + this.getTeamMember()).toString();
     }
 
-    private Integer max(Integer... items) {
-        List<Integer> itemList = Arrays.asList(items);
-        final Integer max = Collections.max(itemList);
+    /**
+     * @param field position of the field (SN1 + DECLARATION, CJ3 + ACTUAL...)
+     * @return the value of the field, 0 if empty or invalid
+     */
+    private int lift(int field) {
+        ParsedLift[] parsed = parsedLifts;
+        if (parsed == null) {
+            parsed = new ParsedLift[LIFT_FIELDS];
+            parsedLifts = parsed;
+        }
+        String source = liftField(field);
+        ParsedLift p = parsed[field];
+        // the fields are set by the setters, but also directly by JPA
+        if (p == null || p.source != source) {
+            p = new ParsedLift(source, zeroIfInvalid(source));
+            parsed[field] = p;
+        }
+        return p.value;
+    }
+
+    private String liftField(int field) {
+        switch (field) {
+        case SN1 + DECLARATION:
+            return snatch1Declaration;
+        case SN1 + CHANGE1:
+            return snatch1Change1;
+        case SN1 + CHANGE2:
+            return snatch1Change2;
+        case SN1 + ACTUAL:
+            return snatch1ActualLift;
+        case SN2 + DECLARATION:
+            return snatch2Declaration;
+        case SN2 + CHANGE1:
+            return snatch2Change1;
+        case SN2 + CHANGE2:
+            return snatch2Change2;
+        case SN2 + ACTUAL:
+            return snatch2ActualLift;
+        case SN3 + DECLARATION:
+            return snatch3Declaration;
+        case SN3 + CHANGE1:
+            return snatch3Change1;
+        case SN3 + CHANGE2:
+            return snatch3Change2;
+        case SN3 + ACTUAL:
+            return snatch3ActualLift;
+        case CJ1 + DECLARATION:
+            return cleanJerk1Declaration;
+        case CJ1 + CHANGE1:
+            return cleanJerk1Change1;
+        case CJ1 + CHANGE2:
+            return cleanJerk1Change2;
+        case CJ1 + ACTUAL:
+            return cleanJerk1ActualLift;
+        case CJ2 + DECLARATION:
+            return cleanJerk2Declaration;
+        case CJ2 + CHANGE1:
+            return cleanJerk2Change1;
+        case CJ2 + CHANGE2:
+            return cleanJerk2Change2;
+        case CJ2 + ACTUAL:
+            return cleanJerk2ActualLift;
+        case CJ3 + DECLARATION:
+            return cleanJerk3Declaration;
+        case CJ3 + CHANGE1:
+            return cleanJerk3Change1;
+        case CJ3 + CHANGE2:
+            return cleanJerk3Change2;
+        case CJ3 + ACTUAL:
+            return cleanJerk3ActualLift;
+        default:
+            throw new IllegalArgumentException("no lift field " + field);
+        }
+    }
+
+    private int max(int... items) {
+        int max = Integer.MIN_VALUE;
+        for (int item : items) {
+            if (item > max) {
+                max = item;
+            }
+        }
         return max;
     }
 
@@ -2399,6 +2696,20 @@ public class Athlete {
         return max;
     }
 
+    /**
+     * @param attempt first field of the attempt (SN1, SN2... CJ3)
+     * @return the last weight requested, else the automatic progression
+     */
+    private int requestedWeight(int automaticProgression, int attempt) {
+        for (int field = attempt + CHANGE2; field >= attempt + DECLARATION; field--) {
+            int weight = lift(field);
+            if (weight > 0) {
+                return weight;
+            }
+        }
+        return automaticProgression > 0 ? automaticProgression : 0;
+    }
+
     /**
      * Reset forced as current.
      */
@@ -2478,7 +2789,7 @@ public class Athlete {
         }
         this.cleanJerk1ActualLift = cleanJerk1ActualLift;
         logger.info("{} cleanJerk1ActualLift={}", this, cleanJerk1ActualLift);
-        if (zeroIfInvalid(cleanJerk1ActualLift) == 0) {
+        if (lift(CJ1 + ACTUAL) == 0) {
             this.cleanJerk1LiftTime = (null);
         } else {
             this.cleanJerk1LiftTime = sqlNow();
@@ -2580,7 +2891,7 @@ public class Athlete {
         this.cleanJerk2ActualLift = cleanJerk2ActualLift;
         logger.info("{} cleanJerk2ActualLift={}", this, cleanJerk2ActualLift);
 
-        if (zeroIfInvalid(cleanJerk2ActualLift) == 0) {
+        if (lift(CJ2 + ACTUAL) == 0) {
             this.cleanJerk2LiftTime = (null);
         } else {
             this.cleanJerk2LiftTime = sqlNow();
@@ -2673,7 +2984,7 @@ public class Athlete {
         this.cleanJerk3ActualLift = cleanJerk3ActualLift;
         logger.info("{} cleanJerk3ActualLift={}", this, cleanJerk3ActualLift);
 
-        if (zeroIfInvalid(cleanJerk3ActualLift) == 0) {
+        if (lift(CJ3 + ACTUAL) == 0) {
             this.cleanJerk3LiftTime = (null);
         } else {
             this.cleanJerk3LiftTime = sqlNow();
@@ -3014,7 +3325,7 @@ public class Athlete {
         }
         this.snatch1ActualLift = snatch1ActualLift;
         logger.info("{} snatch1ActualLift={} - {}", this, snatch1ActualLift);
-        if (zeroIfInvalid(snatch1ActualLift) == 0) {
+        if (lift(SN1 + ACTUAL) == 0) {
             this.snatch1LiftTime = null;
         } else {
             this.snatch1LiftTime = sqlNow();
@@ -3113,7 +3424,7 @@ public class Athlete {
         }
         this.snatch2ActualLift = snatch2ActualLift;
         logger.info("{} snatch2ActualLift={}", this, snatch2ActualLift);
-        if (zeroIfInvalid(snatch2ActualLift) == 0) {
+        if (lift(SN2 + ACTUAL) == 0) {
             this.snatch2LiftTime = (null);
         } else {
             this.snatch2LiftTime = sqlNow();
@@ -3205,7 +3516,7 @@ public class Athlete {
         }
         this.snatch3ActualLift = snatch3ActualLift;
         logger.info("{} snatch3ActualLift={}", this, snatch3ActualLift);
-        if (zeroIfInvalid(snatch3ActualLift) == 0) {
+        if (lift(SN3 + ACTUAL) == 0) {
             this.snatch3LiftTime = (null);
         } else {
             this.snatch3LiftTime = sqlNow();
@@ -3426,20 +3737,24 @@ public class Athlete {
     }
 
     /**
-     * Compute the Sinclair formula given its parameters.
+     * Compute the Sinclair formula, or reuse the last result.
      *
-     * @param coefficient
-     * @param maxWeight
+     * @param bodyWeight1
+     * @param gender1     men's coefficients for {@link Gender#M}, women's
+     *                    otherwise
      */
-    private Double sinclairFactor(Double bodyWeight1, Double coefficient, Double maxWeight) {
+    private double sinclairFactor(Double bodyWeight1, Gender gender1) {
         if (bodyWeight1 == null) {
             return 0.0;
         }
-        if (bodyWeight1 >= maxWeight) {
-            return 1.0;
-        } else {
-            return Math.pow(10.0, coefficient * (Math.pow(Math.log10(bodyWeight1 / maxWeight), 2)));
+        // read once, may be replaced by another thread
+        SinclairFactor cached = sinclairFactorCache;
+        if (cached != null && cached.bodyWeight == bodyWeight1 && cached.gender == gender1) {
+            return cached.factor;
         }
+        double factor = SinclairCoefficients.sinclairFactor(gender1, bodyWeight1);
+        sinclairFactorCache = new SinclairFactor(bodyWeight1, gender1, factor);
+        return factor;
     }
 
     private LocalDateTime sqlNow() {
@@ -3752,6 +4067,7 @@ public class Athlete {
         if (qualTotal == 0) {
             return true;
         }
+        // the parameters, not the fields: the proposed value is not stored yet
         int sn1Decl = zeroIfInvalid(snatch1Declaration);
         int cj1Decl = zeroIfInvalid(cleanJerk1Declaration);
         logger.trace("prior to checking {} {}", sn1Decl, cj1Decl);
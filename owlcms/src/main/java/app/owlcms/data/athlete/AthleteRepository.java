@@ -8,6 +8,7 @@ package app.owlcms.data.athlete;
 
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 import javax.persistence.EntityManager;
 import javax.persistence.Query;
@@ -43,6 +44,7 @@ public class AthleteRepository {
      */
     public static int countFiltered(String lastName, Group group, Category category, AgeGroup ageGroup, AgeDivision ageDivision,
             Boolean weighedIn) {
+        // the results are not used to select the athletes
         return JPAService.runInTransaction(em -> {
             return doCountFiltered(lastName, group, category, ageGroup, ageDivision, weighedIn, em);
         });
@@ -54,6 +56,7 @@ public class AthleteRepository {
      * @param Athlete the athlete
      */
     public static void delete(Athlete Athlete) {
+        AthleteWriteBehind.discard(Athlete.getId());
         JPAService.runInTransaction(em -> {
             em.remove(getById(Athlete.getId(), em));
             return null;
@@ -155,7 +158,8 @@ public class AthleteRepository {
      */
 
     public static List<Athlete> findAll() {
-        return JPAService.runInTransaction(em -> doFindAll(em));
+        Map<Long, String[]> uncommitted = AthleteWriteBehind.getUncommitted();
+        return withUncommitted(JPAService.runInTransaction(em -> doFindAll(em)), uncommitted);
     }
 
     /**
@@ -173,9 +177,12 @@ public class AthleteRepository {
     }
 
     public static Athlete findById(long id) {
-        return JPAService.runInTransaction(em -> {
+        Map<Long, String[]> uncommitted = AthleteWriteBehind.getUncommitted();
+        Athlete athlete = JPAService.runInTransaction(em -> {
             return getById(id, em);
         });
+        withUncommitted(athlete, uncommitted);
+        return athlete;
     }
 
     /**
@@ -191,9 +198,10 @@ public class AthleteRepository {
      */
     public static List<Athlete> findFiltered(String lastName, Group group, Category category, AgeGroup ageGroup, AgeDivision ageDivision,
             Boolean weighedIn, int offset, int limit) {
-        return JPAService.runInTransaction(em -> {
+        Map<Long, String[]> uncommitted = AthleteWriteBehind.getUncommitted();
+        return withUncommitted(JPAService.runInTransaction(em -> {
             return doFindFiltered(em, lastName, group, category, ageGroup, ageDivision, weighedIn, offset, limit);
-        });
+        }), uncommitted);
     }
 
     /**
@@ -218,11 +226,47 @@ public class AthleteRepository {
      * @return the athlete
      */
     public static Athlete save(Athlete athlete) {
+        // an older copy of the results must not overwrite this one
+        AthleteWriteBehind.discard(athlete.getId());
         return JPAService.runInTransaction((em) -> {
             return em.merge(athlete);
         });
     }
 
+    /**
+     * Save the results of an athlete in the background.
+     *
+     * @param athlete the athlete
+     * @see AthleteWriteBehind
+     */
+    public static void saveLater(Athlete athlete) {
+        AthleteWriteBehind.save(athlete);
+    }
+
+    /**
+     * Give the athletes read the results that are not yet saved.
+     *
+     * @param athletes    read from the database, no longer managed
+     * @param uncommitted obtained before reading
+     * @return the athletes
+     * @see AthleteWriteBehind#getUncommitted()
+     */
+    private static List<Athlete> withUncommitted(List<Athlete> athletes, Map<Long, String[]> uncommitted) {
+        if (!uncommitted.isEmpty()) {
+            for (Athlete a : athletes) {
+                withUncommitted(a, uncommitted);
+            }
+        }
+        return athletes;
+    }
+
+    private static void withUncommitted(Athlete a, Map<Long, String[]> uncommitted) {
+        String[] results = a != null ? uncommitted.get(a.getId()) : null;
+        if (results != null) {
+            Athlete.setResults(a, results);
+        }
+    }
+
     private static void setFilteringParameters(String lastName, Group group, Category category, AgeGroup ageGroup, AgeDivision ageDivision,
             Query query) {
         if (lastName != null && lastName.trim().length() > 0) {
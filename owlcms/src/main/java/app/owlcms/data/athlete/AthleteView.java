@@ -0,0 +1,281 @@
+/***
+ * Copyright (c) 2009-2019 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.data.athlete;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import app.owlcms.data.athleteSort.AthleteSorter;
+import app.owlcms.data.athleteSort.AthleteSorter.Ranking;
+import app.owlcms.data.athleteSort.RankingSnapshot;
+import app.owlcms.data.category.Category;
+import app.owlcms.data.competition.Competition;
+
+/**
+ * What the displays show about an athlete, copied when the lifting order
+ * changes.
+ *
+ * An {@link Athlete} is modified by the field of play while the displays are
+ * rendered on their own threads; a view does not change once created, so all
+ * the values shown come from the same state of the athlete.
+ *
+ * @author owlcms
+ */
+public final class AthleteView {
+
+    /**
+     * Compute the number of lifts already done. During snatch, exclude cj
+     *
+     * @param views the athletes in the group
+     * @return number of lifts
+     * @see AthleteSorter#countLiftsDone(List)
+     */
+    public static int countLiftsDone(List<AthleteView> views) {
+        if (views == null || views.isEmpty()) {
+            return 0;
+        }
+        int totalSnatch = 0;
+        int totalCJ = 0;
+        boolean cJHasStarted = false;
+        for (AthleteView v : views) {
+            totalSnatch += v.snatchAttemptsDone;
+            totalCJ += v.cleanJerkAttemptsDone;
+            if (v.cleanJerkTotal > 0) {
+                cJHasStarted = true;
+            }
+        }
+        if (cJHasStarted || totalSnatch >= views.size() * 3) {
+            return totalCJ;
+        } else {
+            return totalSnatch;
+        }
+    }
+
+    /**
+     * @param a
+     * @param rankings ranks to show, the ranks stored in the athlete if absent
+     * @return a copy of what is shown
+     */
+    public static AthleteView of(Athlete a, RankingSnapshot rankings) {
+        return new AthleteView(a, rankings);
+    }
+
+    /**
+     * @param athletes
+     * @param rankings ranks to show, the ranks stored in the athlete if absent
+     * @param created  the views already created, by athlete id; the new views
+     *                 are added
+     * @return the views, in the same order; unmodifiable
+     */
+    public static List<AthleteView> of(List<Athlete> athletes, RankingSnapshot rankings,
+            Map<Long, AthleteView> created) {
+        if (athletes == null) {
+            return Collections.emptyList();
+        }
+        List<AthleteView> views = new ArrayList<>(athletes.size());
+        for (Athlete a : athletes) {
+            AthleteView v = a.getId() != null ? created.get(a.getId()) : null;
+            if (v == null) {
+                v = new AthleteView(a, rankings);
+                if (a.getId() != null) {
+                    created.put(a.getId(), v);
+                }
+            }
+            views.add(v);
+        }
+        return Collections.unmodifiableList(views);
+    }
+
+    private static Integer rank(Athlete a, RankingSnapshot rankings, Ranking r) {
+        Integer rank = rankings != null ? rankings.getRank(a, r) : null;
+        return rank != null ? rank : AthleteSorter.getRank(a, r);
+    }
+
+    private final Long id;
+    private final String lastName;
+    private final String firstName;
+    private final String fullName;
+    private final String team;
+    private final Gender gender;
+    private final Integer yearOfBirth;
+    private final Integer startNumber;
+    private final Integer lotNumber;
+    private final String mastersAgeGroup;
+    /** full name of the category, used to separate the categories */
+    private final String categoryName;
+    /** category as shown (short name for masters) */
+    private final String displayCategory;
+    private final Double bodyWeight;
+    private final int attemptsDone;
+    private final int attemptNumber;
+    private final int snatchAttemptsDone;
+    private final int cleanJerkAttemptsDone;
+    private final int cleanJerkTotal;
+    private final Integer liftOrderRank;
+    private final Integer nextAttemptRequestedWeight;
+    private final Integer total;
+    private final Integer snatchRank;
+    private final Integer cleanJerkRank;
+    private final Integer totalRank;
+    private final List<LiftInfo> attempts;
+
+    private AthleteView(Athlete a, RankingSnapshot rankings) {
+        this.id = a.getId();
+        this.lastName = a.getLastName();
+        this.firstName = a.getFirstName();
+        this.fullName = a.getFullName();
+        this.team = a.getTeam();
+        this.gender = a.getGender();
+        this.yearOfBirth = a.getYearOfBirth();
+        this.startNumber = a.getStartNumber();
+        this.lotNumber = a.getLotNumber();
+        this.mastersAgeGroup = a.getMastersAgeGroup();
+        Category category = a.getCategory();
+        this.categoryName = category != null ? category.getName() : null;
+        if (Competition.getCurrent().isMasters() && gender != null) {
+            this.displayCategory = a.getShortCategory();
+        } else {
+            this.displayCategory = categoryName != null ? categoryName : "";
+        }
+        this.bodyWeight = a.getBodyWeight();
+        this.attemptsDone = a.getAttemptsDone();
+        this.attemptNumber = a.getAttemptNumber();
+        this.snatchAttemptsDone = a.getSnatchAttemptsDone();
+        this.cleanJerkAttemptsDone = a.getCleanJerkAttemptsDone();
+        this.cleanJerkTotal = a.getCleanJerkTotal();
+        this.liftOrderRank = a.getLiftOrderRank();
+        this.nextAttemptRequestedWeight = a.getNextAttemptRequestedWeight();
+        this.total = a.getTotal();
+        this.snatchRank = rank(a, rankings, Ranking.SNATCH);
+        this.cleanJerkRank = rank(a, rankings, Ranking.CLEANJERK);
+        this.totalRank = rank(a, rankings, Ranking.TOTAL);
+        this.attempts = Collections.unmodifiableList(Arrays.asList(new XAthlete(a).getRequestInfoArray()));
+    }
+
+    public int getAttemptNumber() {
+        return attemptNumber;
+    }
+
+    /**
+     * @return the six attempts, with the last change of each
+     */
+    public List<LiftInfo> getAttempts() {
+        return attempts;
+    }
+
+    public int getAttemptsDone() {
+        return attemptsDone;
+    }
+
+    public Double getBodyWeight() {
+        return bodyWeight;
+    }
+
+    /**
+     * @return the full name of the category, null if none
+     */
+    public String getCategoryName() {
+        return categoryName;
+    }
+
+    public Integer getCleanJerkRank() {
+        return cleanJerkRank;
+    }
+
+    /**
+     * @return the category as shown on the displays
+     */
+    public String getDisplayCategory() {
+        return displayCategory;
+    }
+
+    public String getFirstName() {
+        return firstName;
+    }
+
+    public String getFullName() {
+        return fullName;
+    }
+
+    public Gender getGender() {
+        return gender;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getLastName() {
+        return lastName;
+    }
+
+    public Integer getLiftOrderRank() {
+        return liftOrderRank;
+    }
+
+    public Integer getLotNumber() {
+        return lotNumber;
+    }
+
+    public String getMastersAgeGroup() {
+        return mastersAgeGroup;
+    }
+
+    public Integer getNextAttemptRequestedWeight() {
+        return nextAttemptRequestedWeight;
+    }
+
+    public Integer getSnatchRank() {
+        return snatchRank;
+    }
+
+    public Integer getStartNumber() {
+        return startNumber;
+    }
+
+    public String getTeam() {
+        return team;
+    }
+
+    public Integer getTotal() {
+        return total;
+    }
+
+    public Integer getTotalRank() {
+        return totalRank;
+    }
+
+    public Integer getYearOfBirth() {
+        return yearOfBirth;
+    }
+
+    /**
+     * Used to keep the views of the athletes that were only moved by a change to
+     * another athlete: their place in the lifting order and their ranks may
+     * differ, nothing else.
+     *
+     * @param a
+     * @param rankings ranks to show, the ranks stored in the athlete if absent
+     * @return true if the view still shows the athlete, assuming its own results
+     *         have not changed
+     */
+    public boolean isCurrent(Athlete a, RankingSnapshot rankings) {
+        return Objects.equals(id, a.getId()) && Objects.equals(liftOrderRank, a.getLiftOrderRank())
+                && Objects.equals(snatchRank, rank(a, rankings, Ranking.SNATCH))
+                && Objects.equals(cleanJerkRank, rank(a, rankings, Ranking.CLEANJERK))
+                && Objects.equals(totalRank, rank(a, rankings, Ranking.TOTAL));
+    }
+
+    @Override
+    public String toString() {
+        return fullName;
+    }
+}
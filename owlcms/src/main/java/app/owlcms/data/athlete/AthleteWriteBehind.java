@@ -0,0 +1,520 @@
+/***
+ * Copyright (c) 2009-2019 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.data.athlete;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.LoggerFactory;
+
+import app.owlcms.Main;
+import app.owlcms.data.jpa.JPAService;
+import app.owlcms.utils.LoggerUtils;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+
+/**
+ * Saves the results of athletes in the background.
+ *
+ * When a decision is given, the field of play only takes a copy of the results
+ * of the athlete (see {@link Athlete#getResults(Athlete)}) and goes on with the
+ * displays. A single writer thread saves the copies: the updates received from
+ * all the platforms during a short window are committed in one transaction, and
+ * only the latest update of each athlete is written. Updates are written in the
+ * order they were received.
+ *
+ * Each update is also appended to a file in the journal directory (see
+ * {@link app.owlcms.fieldofplay.FOPJournal}), emptied once everything has been
+ * committed. If the program stops before the updates are committed, they are
+ * applied on the next start ({@link #recover()}).
+ *
+ * The {@link AthleteRepository} methods that read athletes do not wait for the
+ * writer: the results not yet committed are applied to the athletes read
+ * ({@link #getUncommitted()}). Saving or deleting an athlete drops its
+ * uncommitted results, so that they do not overwrite it later. Pending updates
+ * are written on shutdown.
+ *
+ * A batch that still cannot be committed after {@link #MAX_ATTEMPTS} tries is
+ * set aside: it is logged, no longer retried and no longer waited for, but it
+ * is kept in the pending file so that it is applied on the next start. A later
+ * update of the same athlete replaces it.
+ *
+ * In synchronous mode (<code>synchronousSaves</code> parameter, or
+ * {@link #setSynchronous(boolean)}), the results are saved immediately, as
+ * before.
+ *
+ * @author owlcms
+ */
+public class AthleteWriteBehind {
+
+    final private static Logger logger = (Logger) LoggerFactory.getLogger(AthleteWriteBehind.class);
+    static {
+        logger.setLevel(Level.INFO);
+    }
+
+    private static final String PENDING_FILE = "athletes.pending";
+    private static final String NULL = "\\N";
+    private static final long FLUSH_TIMEOUT = 30000;
+    /** longest wait for a batch that has the athlete being saved */
+    private static final long DISCARD_TIMEOUT = 2000;
+    private static final long RETRY_DELAY = 1000;
+    /** tries before a batch is set aside */
+    private static final int MAX_ATTEMPTS = 3;
+
+    /** updates arriving during this window are committed together */
+    private static final int batchMillis = Main.getIntegerParam("athleteWriteBatchMillis", 20);
+    private static volatile boolean synchronous = Main.getBooleanParam("synchronousSaves");
+
+    private static final ReentrantLock lock = new ReentrantLock();
+    /** signalled when updates are added or a flush is requested */
+    private static final Condition workAvailable = lock.newCondition();
+    /** signalled when a batch is done */
+    private static final Condition batchDone = lock.newCondition();
+    /** latest results of each athlete, by id, in order of arrival; guarded by lock */
+    private static LinkedHashMap<Long, String[]> pending = new LinkedHashMap<>();
+    /** updates set aside after failing, by id; guarded by lock */
+    private static LinkedHashMap<Long, String[]> failed = new LinkedHashMap<>();
+    /** a batch is being committed; guarded by lock */
+    private static boolean writing = false;
+    /** the batch being committed, null if none; guarded by lock */
+    private static Map<Long, String[]> inFlight;
+    /** someone is waiting for the pending updates; guarded by lock */
+    private static boolean flushRequested = false;
+    private static Thread writer;
+    private static Writer pendingLog;
+    private static boolean pendingLogOpened = false;
+
+    /**
+     * Forget the uncommitted results of an athlete that is about to be saved or
+     * deleted. If they are being committed, wait for the commit, at most
+     * {@link #DISCARD_TIMEOUT} ms.
+     *
+     * @param id
+     */
+    public static void discard(Long id) {
+        if (id == null || Thread.currentThread() == writer) {
+            return;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(DISCARD_TIMEOUT);
+        lock.lock();
+        try {
+            boolean removed = false;
+            while (true) {
+                // a failed batch is put back in the queue
+                removed |= pending.remove(id) != null;
+                removed |= failed.remove(id) != null;
+                if (inFlight == null || !inFlight.containsKey(id)) {
+                    if (removed && pending.isEmpty() && !writing) {
+                        // the old values must not be applied on next start
+                        truncatePendingLog();
+                    }
+                    return;
+                }
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    logger.warn("results of athlete {} still being saved after {} ms", id, DISCARD_TIMEOUT);
+                    return;
+                }
+                batchDone.awaitNanos(remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Wait until the pending updates are committed.
+     */
+    public static void flush() {
+        if (Thread.currentThread() == writer) {
+            return;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(FLUSH_TIMEOUT);
+        lock.lock();
+        try {
+            if (pending.isEmpty() && !writing) {
+                return;
+            }
+            if (!flushRequested) {
+                flushRequested = true;
+                workAvailable.signal();
+            }
+            while (!pending.isEmpty() || writing) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    logger.error("athlete updates not committed after {} ms, giving up waiting", FLUSH_TIMEOUT);
+                    return;
+                }
+                batchDone.awaitNanos(remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of athlete updates set aside because they could not be
+     *         saved; they are applied again on next start
+     */
+    public static int getFailedCount() {
+        lock.lock();
+        try {
+            return failed.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of athletes waiting to be saved
+     */
+    public static int getPendingCount() {
+        lock.lock();
+        try {
+            return pending.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The results waiting to be committed, to apply to athletes read from the
+     * database. Call before reading: an update committed meanwhile is found in
+     * the database, or in the values returned, or both. The updates set aside
+     * are not included, the database has the last values that could be saved.
+     *
+     * @return the latest results of each athlete, by id; a copy
+     */
+    static Map<Long, String[]> getUncommitted() {
+        lock.lock();
+        try {
+            if (pending.isEmpty() && inFlight == null) {
+                return Collections.emptyMap();
+            }
+            Map<Long, String[]> uncommitted = new HashMap<>();
+            if (inFlight != null) {
+                uncommitted.putAll(inFlight);
+            }
+            uncommitted.putAll(pending);
+            return uncommitted;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return true if called by the thread that saves the athletes
+     */
+    public static boolean isWriterThread() {
+        return Thread.currentThread() == writer;
+    }
+
+    public static boolean isSynchronous() {
+        return synchronous;
+    }
+
+    /**
+     * Apply the updates left over by a previous run. Call once at startup, before
+     * loading the groups.
+     */
+    public static void recover() {
+        Path file = pendingFile();
+        if (file == null || !Files.exists(file)) {
+            return;
+        }
+        LinkedHashMap<Long, String[]> leftOver = new LinkedHashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] f = line.split("\t", -1);
+                // id, values, end marker present only if the line was fully written
+                if (f.length != 32 || !"$".equals(f[31])) {
+                    continue;
+                }
+                String[] values = new String[30];
+                for (int i = 0; i < 30; i++) {
+                    values[i] = NULL.equals(f[i + 1]) ? null : f[i + 1];
+                }
+                leftOver.remove(Long.valueOf(f[0]));
+                leftOver.put(Long.valueOf(f[0]), values);
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.error("reading {}: {}", file, LoggerUtils.stackTrace(e));
+        }
+        if (!leftOver.isEmpty()) {
+            logger.info("saving {} athlete updates left over from previous run", leftOver.size());
+            write(leftOver);
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.error("deleting {}: {}", file, e);
+        }
+    }
+
+    /**
+     * Save the results of the athlete.
+     *
+     * Must be called by the thread that modifies the athlete; the results are
+     * copied immediately and written later.
+     *
+     * @param athlete
+     */
+    public static void save(Athlete athlete) {
+        if (synchronous || athlete.getId() == null) {
+            AthleteRepository.save(athlete);
+            return;
+        }
+        String[] results = Athlete.getResults(athlete);
+        lock.lock();
+        try {
+            startWriter();
+            logPending(athlete.getId(), results);
+            // keep the order of arrival; the latest values replace the previous ones
+            pending.remove(athlete.getId());
+            pending.put(athlete.getId(), results);
+            if (pending.size() == 1) {
+                workAvailable.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param synchronous if true, save immediately (used by tests)
+     */
+    public static void setSynchronous(boolean synchronous) {
+        if (synchronous) {
+            flush();
+        }
+        AthleteWriteBehind.synchronous = synchronous;
+    }
+
+    private static void logPending(Long id, String[] results) {
+        if (!pendingLogOpened) {
+            pendingLogOpened = true;
+            Path file = pendingFile();
+            if (file != null) {
+                try {
+                    pendingLog = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                            StandardOpenOption.APPEND);
+                } catch (IOException e) {
+                    logger.error("cannot open {}: {}", file, e);
+                }
+            }
+        }
+        if (pendingLog == null) {
+            return;
+        }
+        try {
+            StringBuilder sb = new StringBuilder(200);
+            sb.append(id);
+            for (String v : results) {
+                sb.append('\t').append(v != null ? v : NULL);
+            }
+            sb.append("\t$\n");
+            pendingLog.write(sb.toString());
+            pendingLog.flush();
+        } catch (IOException e) {
+            logger.error("writing pending athlete update: {}", e);
+        }
+    }
+
+    /**
+     * @return the file where updates are logged until committed, null if there is
+     *         no need (demo and memory modes)
+     */
+    private static Path pendingFile() {
+        if (Main.getBooleanParam("demoMode") || Main.getBooleanParam("memoryMode")) {
+            return null;
+        }
+        String dirName = Main.getStringParam("journalDir");
+        Path dir = Paths.get(dirName != null ? dirName : "journal");
+        try {
+            Files.createDirectories(dir);
+        } catch (IOException e) {
+            logger.error("cannot create directory {}: {}", dir.toAbsolutePath(), e);
+            return null;
+        }
+        return dir.resolve(PENDING_FILE);
+    }
+
+    /**
+     * Called with lock held.
+     */
+    private static void startWriter() {
+        if (writer != null) {
+            return;
+        }
+        writer = new Thread(() -> writeLoop(), "athlete-writer");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> flush(), "athlete-writer-shutdown"));
+    }
+
+    /**
+     * Called with lock held, once everything is committed or set aside. The
+     * updates set aside are written again.
+     */
+    private static void truncatePendingLog() {
+        if (pendingLog == null) {
+            return;
+        }
+        try {
+            pendingLog.close();
+            pendingLog = Files.newBufferedWriter(pendingFile(), StandardCharsets.UTF_8,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        } catch (IOException | RuntimeException e) {
+            logger.error("truncating pending athlete updates: {}", e);
+            pendingLog = null;
+            pendingLogOpened = false;
+        }
+        for (Map.Entry<Long, String[]> e : failed.entrySet()) {
+            logPending(e.getKey(), e.getValue());
+        }
+    }
+
+    private static void write(Map<Long, String[]> batch) {
+        JPAService.runInTransaction(em -> {
+            for (Map.Entry<Long, String[]> e : batch.entrySet()) {
+                Athlete a = em.find(Athlete.class, e.getKey());
+                if (a == null) {
+                    // deleted meanwhile
+                    continue;
+                }
+                Athlete.setResults(a, e.getValue());
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Save the athletes one at a time; those saved are removed from the batch.
+     *
+     * @return the ids of the athletes saved
+     */
+    private static Set<Long> writeEach(Map<Long, String[]> batch) {
+        Set<Long> saved = new HashSet<>();
+        Iterator<Map.Entry<Long, String[]>> it = batch.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Long, String[]> e = it.next();
+            try {
+                write(Collections.singletonMap(e.getKey(), e.getValue()));
+                saved.add(e.getKey());
+                it.remove();
+            } catch (RuntimeException ex) {
+                logger.error("saving athlete {} failed: {}", e.getKey(), ex.toString());
+            }
+        }
+        return saved;
+    }
+
+    private static void writeLoop() {
+        int attempts = 0;
+        while (true) {
+            LinkedHashMap<Long, String[]> batch;
+            lock.lock();
+            try {
+                while (pending.isEmpty()) {
+                    workAvailable.await();
+                }
+                // let the other platforms add to the batch
+                long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(batchMillis);
+                long remaining;
+                while (!flushRequested && (remaining = end - System.nanoTime()) > 0) {
+                    workAvailable.awaitNanos(remaining);
+                }
+                batch = pending;
+                pending = new LinkedHashMap<>();
+                writing = true;
+                inFlight = new HashMap<>(batch);
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+
+            boolean committed = false;
+            boolean setAside = false;
+            Set<Long> saved = Collections.emptySet();
+            attempts++;
+            try {
+                long start = System.currentTimeMillis();
+                write(batch);
+                committed = true;
+                logger.debug("saved {} athletes in {} ms", batch.size(), System.currentTimeMillis() - start);
+            } catch (RuntimeException e) {
+                setAside = attempts >= MAX_ATTEMPTS;
+                logger.error("saving athletes failed, {}: {}", setAside ? "giving up" : "will retry",
+                        LoggerUtils.stackTrace(e));
+                if (setAside) {
+                    // only the athletes that cannot be saved on their own are set aside
+                    saved = writeEach(batch);
+                }
+            }
+
+            lock.lock();
+            try {
+                if (committed) {
+                    attempts = 0;
+                    // older values, no longer needed on next start
+                    failed.keySet().removeAll(batch.keySet());
+                } else if (setAside) {
+                    attempts = 0;
+                    failed.keySet().removeAll(saved);
+                    batch.keySet().removeAll(pending.keySet());
+                    if (!batch.isEmpty()) {
+                        logger.error("athlete updates set aside until next start, ids {}", batch.keySet());
+                        failed.putAll(batch);
+                    }
+                } else {
+                    // put the batch back in front, newer updates win
+                    batch.keySet().removeAll(pending.keySet());
+                    batch.putAll(pending);
+                    pending = batch;
+                }
+                writing = false;
+                inFlight = null;
+                if (pending.isEmpty()) {
+                    flushRequested = false;
+                    truncatePendingLog();
+                }
+                batchDone.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            if (!committed && !setAside) {
+                try {
+                    Thread.sleep(RETRY_DELAY);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -8,8 +8,6 @@ package app.owlcms.data.athlete;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.HashMap;
-import java.util.Map.Entry;
 import java.util.Properties;
 
 import org.slf4j.LoggerFactory;
@@ -19,117 +17,134 @@ import ch.qos.logback.classic.Logger;
 
 /**
  * The Class SinclairCoefficients.
+ *
+ * The coefficients are read once from <code>/config/sinclair.properties</code>
+ * into primitive fields and a table of Sinclair-Malone-Meltzer coefficients
+ * indexed by age.
  */
 public class SinclairCoefficients {
 
+    /**
+     * Loaded on first use.
+     */
+    private static class Tables {
+        private static final Properties props = loadProps();
+        private static final double menCoefficient = doubleProp("sinclair.menCoefficient");
+        private static final double menMaxWeight = doubleProp("sinclair.menMaxWeight");
+        private static final double womenCoefficient = doubleProp("sinclair.womenCoefficient");
+        private static final double womenMaxWeight = doubleProp("sinclair.womenMaxWeight");
+        /** index is the age */
+        private static final float[] smm = loadSMM();
+
+        private static double doubleProp(String key) {
+            return Double.parseDouble((String) props.get(key));
+        }
+
+        private static Properties loadProps() {
+            Properties props = new Properties();
+            try {
+                InputStream stream = SinclairCoefficients.class.getResourceAsStream("/config/sinclair.properties");
+                props.load(stream);
+                // props.list(System.err);
+            } catch (IOException e) {
+                logger.error(LoggerUtils.stackTrace(e));
+            }
+            return props;
+        }
+
+        /**
+         * Ages missing from the file get the coefficient of the previous age.
+         */
+        private static float[] loadSMM() {
+            float[] table = new float[SMM_MAX_AGE + 1];
+            float coefficient = 1.0F;
+            for (int age = 0; age <= SMM_MAX_AGE; age++) {
+                String value = (String) props.get("smm." + age);
+                if (age > SMM_MIN_AGE && value != null) {
+                    coefficient = Float.parseFloat(value);
+                }
+                table[age] = coefficient;
+            }
+            return table;
+        }
+    }
+
     static Logger logger = (Logger) LoggerFactory.getLogger(SinclairCoefficients.class);
 
-    private static HashMap<Integer, Float> smm = null;
-    static Properties props = null;
-    static Double menCoefficient = null;
-    static Double womenCoefficient = null;
-    static Double menMaxWeight = null;
-    static Double womenMaxWeight = null;
+    /** no age adjustment up to this age */
+    private static final int SMM_MIN_AGE = 30;
+    /** same adjustment as this age for older athletes */
+    private static final int SMM_MAX_AGE = 90;
 
     /**
      * @param age
      * @return the Sinclair-Malone-Meltzer Coefficient for that age.
-     * @throws IOException
      */
     public static Float getSMMCoefficient(Integer age) {
-        if (smm == null) {
-            loadSMM();
-        }
-        if (age <= 30) {
-            return 1.0F;
-        }
-        if (age >= 90) {
-            return smm.get(90);
-        }
-        return smm.get(age);
-    }
-
-    private static void loadCoefficients() {
-        if (props == null) {
-            loadProps();
-        }
-        menCoefficient = Double.valueOf((String) props.get("sinclair.menCoefficient"));
-        menMaxWeight = Double.valueOf((String) props.get("sinclair.menMaxWeight"));
-        womenCoefficient = Double.valueOf((String) props.get("sinclair.womenCoefficient"));
-        womenMaxWeight = Double.valueOf((String) props.get("sinclair.womenMaxWeight"));
+        return smmCoefficient(age);
     }
 
     /**
-     * @throws IOException
+     * @return
      */
-    private static void loadProps() {
-        props = new Properties();
-        try {
-            InputStream stream = SinclairCoefficients.class.getResourceAsStream("/config/sinclair.properties");
-            props.load(stream);
-            // props.list(System.err);
-        } catch (IOException e) {
-            logger.error(LoggerUtils.stackTrace(e));
-        }
+    public static double menCoefficient() {
+        return Tables.menCoefficient;
     }
 
     /**
      * @return
-     * @throws IOException
      */
-    private static HashMap<Integer, Float> loadSMM() {
-
-        if (props == null) {
-            loadProps();
-        }
-
-        smm = new HashMap<>((int) (props.size() * 1.4));
-        for (Entry<Object, Object> entry : props.entrySet()) {
-            String curKey = (String) entry.getKey();
-            if (curKey.startsWith("smm.")) {
-                smm.put(Integer.valueOf(curKey.replace("smm.", "")), Float.valueOf((String) entry.getValue()));
-            }
-        }
-        return smm;
+    public static double menMaxWeight() {
+        return Tables.menMaxWeight;
     }
 
     /**
-     * @return
+     * Compute the Sinclair formula.
+     *
+     * @param gender     men's coefficients for {@link Gender#M}, women's
+     *                   otherwise
+     * @param bodyWeight
+     * @return the factor by which the total is multiplied
      */
-    public static Double menCoefficient() {
-        if (menCoefficient == null) {
-            loadCoefficients();
+    public static double sinclairFactor(Gender gender, double bodyWeight) {
+        double coefficient;
+        double maxWeight;
+        if (gender == Gender.M) {
+            coefficient = Tables.menCoefficient;
+            maxWeight = Tables.menMaxWeight;
+        } else {
+            coefficient = Tables.womenCoefficient;
+            maxWeight = Tables.womenMaxWeight;
+        }
+        if (bodyWeight >= maxWeight) {
+            return 1.0;
+        } else {
+            return Math.pow(10.0, coefficient * (Math.pow(Math.log10(bodyWeight / maxWeight), 2)));
         }
-        return menCoefficient;
     }
 
     /**
-     * @return
+     * @param age
+     * @return the Sinclair-Malone-Meltzer Coefficient for that age.
      */
-    public static Double menMaxWeight() {
-        if (menMaxWeight == null) {
-            loadCoefficients();
+    public static float smmCoefficient(int age) {
+        if (age <= SMM_MIN_AGE) {
+            return 1.0F;
         }
-        return menMaxWeight;
+        return Tables.smm[Math.min(age, SMM_MAX_AGE)];
     }
 
     /**
      * @return
      */
-    public static Double womenCoefficient() {
-        if (womenCoefficient == null) {
-            loadCoefficients();
-        }
-        return womenCoefficient;
+    public static double womenCoefficient() {
+        return Tables.womenCoefficient;
     }
 
     /**
      * @return
      */
-    public static Double womenMaxWeight() {
-        if (womenMaxWeight == null) {
-            loadCoefficients();
-        }
-        return womenMaxWeight;
+    public static double womenMaxWeight() {
+        return Tables.womenMaxWeight;
     }
 }
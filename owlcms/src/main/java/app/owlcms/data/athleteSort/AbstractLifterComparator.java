@@ -22,6 +22,50 @@ import app.owlcms.data.group.Group;
  * The Class AbstractLifterComparator.
  */
 public class AbstractLifterComparator {
+
+    /**
+     * Results used for ranking. Computing them requires parsing the lift fields
+     * and, for coefficients, floating point formulas.
+     */
+    enum Score {
+        BEST_SNATCH, BEST_CLEANJERK, TOTAL, SINCLAIR, SINCLAIR_FOR_DELTA, CATEGORY_SINCLAIR, SMM, ROBI,
+        CUSTOM_SCORE;
+
+        double of(Athlete a) {
+            Number value;
+            switch (this) {
+            case BEST_SNATCH:
+                value = a.getBestSnatch();
+                break;
+            case BEST_CLEANJERK:
+                value = a.getBestCleanJerk();
+                break;
+            case TOTAL:
+                value = a.getTotal();
+                break;
+            case SINCLAIR:
+                value = a.getSinclair();
+                break;
+            case SINCLAIR_FOR_DELTA:
+                value = a.getSinclairForDelta();
+                break;
+            case CATEGORY_SINCLAIR:
+                value = a.getCategorySinclair();
+                break;
+            case SMM:
+                value = a.getSmm();
+                break;
+            case ROBI:
+                value = a.getRobi();
+                break;
+            default:
+                value = a.getCustomScore();
+                break;
+            }
+            return value == null ? 0.0D : value.doubleValue();
+        }
+    }
+
     final private static Logger logger = LoggerFactory.getLogger(AbstractLifterComparator.class);
 
     /**
@@ -67,9 +111,7 @@ public class AbstractLifterComparator {
      * @return the int
      */
     int compareBestCleanJerk(Athlete lifter1, Athlete lifter2) {
-        Integer lifter1Value = lifter1.getBestCleanJerk();
-        Integer lifter2Value = lifter2.getBestCleanJerk();
-        return lifter1Value.compareTo(lifter2Value);
+        return Double.compare(score(lifter1, Score.BEST_CLEANJERK), score(lifter2, Score.BEST_CLEANJERK));
     }
 
     /**
@@ -106,9 +148,7 @@ public class AbstractLifterComparator {
      * @return the int
      */
     int compareBestSnatch(Athlete lifter1, Athlete lifter2) {
-        Integer lifter1Value = lifter1.getBestSnatch();
-        Integer lifter2Value = lifter2.getBestSnatch();
-        return lifter1Value.compareTo(lifter2Value);
+        return Double.compare(score(lifter1, Score.BEST_SNATCH), score(lifter2, Score.BEST_SNATCH));
     }
 
     /**
@@ -205,17 +245,11 @@ public class AbstractLifterComparator {
             return compare;
         }
 
-        Double lifter1Value = lifter1.getCategorySinclair();
-        Double lifter2Value = lifter2.getCategorySinclair();
-        final Double notWeighed = 0D;
-        if (lifter1Value == null) {
-            lifter1Value = notWeighed;
-        }
-        if (lifter2Value == null) {
-            lifter2Value = notWeighed;
-        }
+        // missing values (not weighed, not scored) count as 0
+        double lifter1Value = score(lifter1, Score.CATEGORY_SINCLAIR);
+        double lifter2Value = score(lifter2, Score.CATEGORY_SINCLAIR);
         // bigger sinclair comes first
-        return -lifter1Value.compareTo(lifter2Value);
+        return -Double.compare(lifter1Value, lifter2Value);
     }
 
     /**
@@ -248,16 +282,10 @@ public class AbstractLifterComparator {
      * @return the int
      */
     int compareCustomScore(Athlete lifter1, Athlete lifter2) {
-        Double lifter1Value = lifter1.getCustomScore();
-        Double lifter2Value = lifter2.getCustomScore();
-        final Double notScored = 0D;
-        if (lifter1Value == null) {
-            lifter1Value = notScored;
-        }
-        if (lifter2Value == null) {
-            lifter2Value = notScored;
-        }
-        return lifter1Value.compareTo(lifter2Value);
+        // missing values (not weighed, not scored) count as 0
+        double lifter1Value = score(lifter1, Score.CUSTOM_SCORE);
+        double lifter2Value = score(lifter2, Score.CUSTOM_SCORE);
+        return Double.compare(lifter1Value, lifter2Value);
     }
 
     /**
@@ -791,17 +819,11 @@ public class AbstractLifterComparator {
             return compare;
         }
 
-        Double lifter1Value = lifter1.getRobi();
-        Double lifter2Value = lifter2.getRobi();
-        final Double notWeighed = 0D;
-        if (lifter1Value == null) {
-            lifter1Value = notWeighed;
-        }
-        if (lifter2Value == null) {
-            lifter2Value = notWeighed;
-        }
+        // missing values (not weighed, not scored) count as 0
+        double lifter1Value = score(lifter1, Score.ROBI);
+        double lifter2Value = score(lifter2, Score.ROBI);
         // bigger Robi comes first
-        return -lifter1Value.compareTo(lifter2Value);
+        return -Double.compare(lifter1Value, lifter2Value);
     }
 
     /**
@@ -821,17 +843,11 @@ public class AbstractLifterComparator {
             return compare;
         }
 
-        Double lifter1Value = lifter1.getSinclair();
-        Double lifter2Value = lifter2.getSinclair();
-        final Double notWeighed = 0D;
-        if (lifter1Value == null) {
-            lifter1Value = notWeighed;
-        }
-        if (lifter2Value == null) {
-            lifter2Value = notWeighed;
-        }
+        // missing values (not weighed, not scored) count as 0
+        double lifter1Value = score(lifter1, Score.SINCLAIR);
+        double lifter2Value = score(lifter2, Score.SINCLAIR);
         // bigger sinclair comes first
-        return -lifter1Value.compareTo(lifter2Value);
+        return -Double.compare(lifter1Value, lifter2Value);
     }
 
     /**
@@ -851,17 +867,11 @@ public class AbstractLifterComparator {
             return compare;
         }
 
-        Double lifter1Value = lifter1.getSinclairForDelta();
-        Double lifter2Value = lifter2.getSinclairForDelta();
-        final Double notWeighed = 0D;
-        if (lifter1Value == null) {
-            lifter1Value = notWeighed;
-        }
-        if (lifter2Value == null) {
-            lifter2Value = notWeighed;
-        }
+        // missing values (not weighed, not scored) count as 0
+        double lifter1Value = score(lifter1, Score.SINCLAIR_FOR_DELTA);
+        double lifter2Value = score(lifter2, Score.SINCLAIR_FOR_DELTA);
         // bigger sinclair comes first
-        return -lifter1Value.compareTo(lifter2Value);
+        return -Double.compare(lifter1Value, lifter2Value);
     }
 
     /**
@@ -881,17 +891,11 @@ public class AbstractLifterComparator {
             return compare;
         }
 
-        Double lifter1Value = lifter1.getSmm();
-        Double lifter2Value = lifter2.getSmm();
-        final Double notWeighed = 0D;
-        if (lifter1Value == null) {
-            lifter1Value = notWeighed;
-        }
-        if (lifter2Value == null) {
-            lifter2Value = notWeighed;
-        }
+        // missing values (not weighed, not scored) count as 0
+        double lifter1Value = score(lifter1, Score.SMM);
+        double lifter2Value = score(lifter2, Score.SMM);
         // bigger sinclair comes first
-        return -lifter1Value.compareTo(lifter2Value);
+        return -Double.compare(lifter1Value, lifter2Value);
     }
 
     /**
@@ -924,9 +928,18 @@ public class AbstractLifterComparator {
      * @return the int
      */
     int compareTotal(Athlete lifter1, Athlete lifter2) {
-        Integer lifter1Value = lifter1.getTotal();
-        Integer lifter2Value = lifter2.getTotal();
-        return lifter1Value.compareTo(lifter2Value);
+        return Double.compare(score(lifter1, Score.TOTAL), score(lifter2, Score.TOTAL));
+    }
+
+    /**
+     * Get a result used for ranking. Missing values are 0.
+     *
+     * @param a     the athlete
+     * @param which the result
+     * @return the value
+     */
+    double score(Athlete a, Score which) {
+        return which.of(a);
     }
 
 }
@@ -17,8 +17,6 @@ import javax.persistence.Entity;
 import org.slf4j.LoggerFactory;
 
 import app.owlcms.data.athlete.Athlete;
-import app.owlcms.data.athlete.Gender;
-import app.owlcms.data.category.Category;
 import ch.qos.logback.classic.Logger;
 
 /**
@@ -30,6 +28,19 @@ import ch.qos.logback.classic.Logger;
 @Entity
 public class AthleteSorter implements Serializable {
 
+    /**
+     * An athlete and its precomputed sort key.
+     */
+    private static class KeyedAthlete {
+        private final long key;
+        private final Athlete athlete;
+
+        KeyedAthlete(long key, Athlete athlete) {
+            this.key = key;
+            this.athlete = athlete;
+        }
+    }
+
     /**
      * The Enum Ranking.
      */
@@ -44,6 +55,70 @@ public class AthleteSorter implements Serializable {
 
     }
 
+    /**
+     * Ranks and points computed for a sorted list, without modifying the
+     * athletes. Several rankings can therefore be computed at the same time on
+     * the same athletes; the results are then stored in the athletes by a single
+     * thread.
+     */
+    public static class RankAssignment {
+        private final List<Athlete> sortedList;
+        private final Ranking rankingType;
+        private final boolean byGender;
+        private final int[] ranks;
+        private final float[] points;
+
+        private RankAssignment(List<Athlete> sortedList, Ranking rankingType, boolean byGender) {
+            this.sortedList = sortedList;
+            this.rankingType = rankingType;
+            this.byGender = byGender;
+            this.ranks = new int[sortedList.size()];
+            this.points = new float[sortedList.size()];
+        }
+
+        /**
+         * Store the ranks and points in the athletes.
+         */
+        public void apply() {
+            int i = 0;
+            for (Athlete curLifter : sortedList) {
+                if (byGender && ranks[i] != -1) {
+                    setTeamRank(curLifter, 0, rankingType);
+                }
+                setRank(curLifter, ranks[i], rankingType);
+                setPoints(curLifter, points[i], rankingType);
+                i++;
+            }
+        }
+
+        /**
+         * @return the athletes, in the order given to compute the ranks
+         */
+        public List<Athlete> getSortedList() {
+            return sortedList;
+        }
+
+        /**
+         * @param i position in the sorted list
+         * @return the points of the athlete at that position
+         */
+        public float getPoints(int i) {
+            return points[i];
+        }
+
+        /**
+         * @param i position in the sorted list
+         * @return the rank of the athlete at that position
+         */
+        public int getRank(int i) {
+            return ranks[i];
+        }
+
+        public Ranking getRankingType() {
+            return rankingType;
+        }
+    }
+
     private static final long serialVersionUID = -3507146241019771820L;
 
     private static final Logger logger = (Logger) LoggerFactory.getLogger(AthleteSorter.class);
@@ -70,44 +145,7 @@ public class AthleteSorter implements Serializable {
      * @param rankingType the ranking type
      */
     public static void assignCategoryRanks(List<Athlete> sortedList, Ranking rankingType) {
-        Category prevCategory = null;
-
-        int rank = 1;
-        for (Athlete curLifter : sortedList) {
-            Category curCategory = curLifter.getCategory();
-            if (!equals(curCategory, prevCategory)) {
-                // category boundary has been crossed
-                logger.trace("category boundary crossed {}", curCategory);
-                rank = 1;
-            }
-
-            if (curLifter.isInvited() || !curLifter.getTeamMember()) {
-                logger.trace("not counted {}  {}Rank={} total={} {}",
-                        new Object[] { curLifter, rankingType, -1, curLifter.getTotal(), curLifter.isInvited() });
-                setRank(curLifter, -1, rankingType);
-                setPoints(curLifter, 0, rankingType);
-            } else {
-                // if (curLifter.getTeamMember()) {
-                // setTeamRank(curLifter, 0, rankingType);
-                // }
-                final double rankingTotal = getRankingTotal(curLifter, rankingType);
-                if (rankingTotal > 0) {
-                    setRank(curLifter, rank, rankingType);
-                    logger.trace("Athlete {}  {}rank={} total={}",
-                            new Object[] { curLifter, rankingType, getRank(curLifter, rankingType), rankingTotal });
-                    rank++;
-                } else {
-                    logger.trace("Athlete {}  {}rank={} total={}",
-                            new Object[] { curLifter, rankingType, 0, rankingTotal });
-                    setRank(curLifter, 0, rankingType);
-                    rank++;
-                }
-                final float points = computePoints(curLifter, rankingType);
-                setPoints(curLifter, points, rankingType);
-
-            }
-            prevCategory = curCategory;
-        }
+        computeCategoryRanks(sortedList, rankingType).apply();
     }
 
     /**
@@ -130,43 +168,7 @@ public class AthleteSorter implements Serializable {
      * @param rankingType the ranking type
      */
     public static void assignSinclairRanksAndPoints(List<Athlete> sortedList, Ranking rankingType) {
-        Gender prevGender = null;
-        // String prevAgeGroup = null;
-        int rank = 1;
-        for (Athlete curLifter : sortedList) {
-            final Gender curGender = curLifter.getGender();
-            // final Integer curAgeGroup = curLifter.getAgeGroup();
-            if (!equals(curGender, prevGender)
-            // || !equals(curAgeGroup,prevAgeGroup)
-            ) {
-                // category boundary has been crossed
-                rank = 1;
-            }
-
-            if (curLifter.isInvited() || !curLifter.getTeamMember()) {
-                logger.trace("invited {}  {}rank={} total={} {}",
-                        new Object[] { curLifter, rankingType, -1, curLifter.getTotal(), curLifter.isInvited() });
-                setRank(curLifter, -1, rankingType);
-                setPoints(curLifter, 0, rankingType);
-            } else {
-                setTeamRank(curLifter, 0, rankingType);
-                final double rankingTotal = getRankingTotal(curLifter, rankingType);
-                if (rankingTotal > 0) {
-                    setRank(curLifter, rank, rankingType);
-                    logger.trace("Athlete {}  {}rank={} {}={} total={}",
-                            new Object[] { curLifter, rankingType, rank, rankingTotal });
-                    rank++;
-                } else {
-                    logger.trace("Athlete {}  {}rank={} total={}",
-                            new Object[] { curLifter, rankingType, 0, rankingTotal });
-                    setRank(curLifter, 0, rankingType);
-                    rank++;
-                }
-                final float points = computePoints(curLifter, rankingType);
-                setPoints(curLifter, points, rankingType);
-            }
-            prevGender = curGender;
-        }
+        computeSinclairRanks(sortedList, rankingType).apply();
     }
 
     /**
@@ -189,30 +191,82 @@ public class AthleteSorter implements Serializable {
     }
 
     /**
+     * Compute the ranks within each category, without modifying the athletes.
+     *
+     * @param sortedList  the sorted list
+     * @param rankingType the ranking type
+     * @return the ranks and points, to be applied to the athletes
+     */
+    public static RankAssignment computeCategoryRanks(List<Athlete> sortedList, Ranking rankingType) {
+        return computeRanks(sortedList, rankingType, false);
+    }
+
+    /**
+     * Compute the ranks within each gender, without modifying the athletes.
+     *
+     * @param sortedList  the sorted list
+     * @param rankingType the ranking type
+     * @return the ranks and points, to be applied to the athletes
+     */
+    public static RankAssignment computeSinclairRanks(List<Athlete> sortedList, Ranking rankingType) {
+        return computeRanks(sortedList, rankingType, true);
+    }
+
+    /**
+     * @param rank
      * @param curLifter
      * @param rankingType
      * @return
      */
-    private static float computePoints(Athlete curLifter, Ranking rankingType) {
+    private static float computePoints(int rank, Athlete curLifter, Ranking rankingType) {
         switch (rankingType) {
         case SNATCH:
-            return pointsFormula(curLifter.getSnatchRank(), curLifter);
         case CLEANJERK:
-            return pointsFormula(curLifter.getCleanJerkRank(), curLifter);
         case TOTAL:
-            return pointsFormula(curLifter.getTotalRank(), curLifter);
         case CUSTOM:
-            return pointsFormula(curLifter.getCustomRank(), curLifter);
-        case COMBINED:
-            return pointsFormula(curLifter.getSnatchRank(), curLifter)
-                    + pointsFormula(curLifter.getCleanJerkRank(), curLifter)
-                    + pointsFormula(curLifter.getTotalRank(), curLifter);
+            return pointsFormula(rank, curLifter);
         default:
             break;
         }
         return 0;
     }
 
+    /**
+     * @param sortedList  the sorted list
+     * @param rankingType the ranking type
+     * @param byGender    ranks start again at each gender instead of each
+     *                    category
+     * @return
+     */
+    private static RankAssignment computeRanks(List<Athlete> sortedList, Ranking rankingType, boolean byGender) {
+        RankAssignment assignment = new RankAssignment(sortedList, rankingType, byGender);
+        Object prevKey = null;
+        int rank = 1;
+        int i = 0;
+        for (Athlete curLifter : sortedList) {
+            Object curKey = byGender ? curLifter.getGender() : curLifter.getCategory();
+            if (!equals(curKey, prevKey)) {
+                // category boundary has been crossed
+                logger.trace("category boundary crossed {}", curKey);
+                rank = 1;
+            }
+
+            int curRank;
+            if (curLifter.isInvited() || !curLifter.getTeamMember()) {
+                curRank = -1;
+            } else {
+                curRank = getRankingTotal(curLifter, rankingType) > 0 ? rank : 0;
+                rank++;
+            }
+            logger.trace("Athlete {}  {}rank={}", curLifter, rankingType, curRank);
+            assignment.ranks[i] = curRank;
+            assignment.points[i] = computePoints(curRank, curLifter, rankingType);
+            i++;
+            prevKey = curKey;
+        }
+        return assignment;
+    }
+
     // /**
     // * Sort athletes according to official rules (in place) for the technical
     // * meeting <tableToolbar> <li>by registration category</li> <li>by lot
@@ -342,7 +396,7 @@ public class AthleteSorter implements Serializable {
      * @param rankingType
      * @return
      */
-    private static double getRankingTotal(Athlete curLifter, Ranking rankingType) {
+    static double getRankingTotal(Athlete curLifter, Ranking rankingType) {
         switch (rankingType) {
         case SNATCH:
             return curLifter.getBestSnatch();
@@ -400,7 +454,16 @@ public class AthleteSorter implements Serializable {
      * @param toBeSorted the to be sorted
      */
     static public void liftingOrder(List<Athlete> toBeSorted) {
-        Collections.sort(toBeSorted, new LiftOrderComparator());
+        // compute each key once; stable sort, same result as LiftOrderComparator
+        boolean genderOrder = LiftOrderComparator.isGenderOrder();
+        List<KeyedAthlete> keyed = new ArrayList<>(toBeSorted.size());
+        for (Athlete a : toBeSorted) {
+            keyed.add(new KeyedAthlete(LiftOrderComparator.liftOrderKey(a, genderOrder), a));
+        }
+        keyed.sort((k1, k2) -> Long.compare(k1.key, k2.key));
+        for (int i = 0; i < keyed.size(); i++) {
+            toBeSorted.set(i, keyed.get(i).athlete);
+        }
         int liftOrder = 1;
         for (Athlete curLifter : toBeSorted) {
             curLifter.setLiftOrderRank(liftOrder++);
@@ -492,7 +555,8 @@ public class AthleteSorter implements Serializable {
      * @param rankingType the ranking type
      */
     static public void resultsOrder(List<Athlete> toBeSorted, Ranking rankingType) {
-        Collections.sort(toBeSorted, new WinningOrderComparator(rankingType));
+        // the athletes do not change during the sort, compute their results once
+        Collections.sort(toBeSorted, new WinningOrderComparator(rankingType, true));
 //        int liftOrder = 1;
 //        for (Athlete curLifter : toBeSorted) {
 ////        	setRank(curLifter,liftOrder++, rankingType);
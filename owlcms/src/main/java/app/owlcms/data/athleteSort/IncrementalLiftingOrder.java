@@ -0,0 +1,195 @@
+/***
+ * Copyright (c) 2009-2019 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.data.athleteSort;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.LoggerFactory;
+
+import app.owlcms.data.athlete.Athlete;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+
+/**
+ * Lifting order that is maintained incrementally.
+ *
+ * The list is sorted once in the same order as {@link LiftOrderComparator}, and
+ * the packed sort key of each athlete is remembered. When a single athlete
+ * changes (declaration, change, decision, forced as first), only that athlete
+ * is repositioned: its key is recomputed and its new position is found by
+ * binary search over the remembered keys. The list given to the constructor is
+ * updated in place, and the lift order rank of the athletes that moved is
+ * updated as well.
+ *
+ * @author owlcms
+ */
+public class IncrementalLiftingOrder {
+
+    /**
+     * A change of position in the lifting order. Positions start at 0.
+     */
+    public static class Move {
+        private final Athlete athlete;
+        private final int from;
+        private final int to;
+
+        Move(Athlete athlete, int from, int to) {
+            this.athlete = athlete;
+            this.from = from;
+            this.to = to;
+        }
+
+        public Athlete getAthlete() {
+            return athlete;
+        }
+
+        public int getFrom() {
+            return from;
+        }
+
+        public int getTo() {
+            return to;
+        }
+
+        /**
+         * @return true if the athlete is still at the same position
+         */
+        public boolean isUnchanged() {
+            return from == to;
+        }
+
+        @Override
+        public String toString() {
+            return athlete + " " + from + "->" + to;
+        }
+    }
+
+    final private static Logger logger = (Logger) LoggerFactory.getLogger(IncrementalLiftingOrder.class);
+    static {
+        logger.setLevel(Level.INFO);
+    }
+
+    private final List<Athlete> order;
+    /** key of the athlete at the same position in order */
+    private long[] keys = new long[0];
+    /** the athlete editing forms work on the instances from the lifting order */
+    private final Map<Athlete, Integer> positions = new IdentityHashMap<>();
+    private boolean genderOrder;
+
+    /**
+     * Sort the athletes in lifting order.
+     *
+     * @param athletes the list to be sorted and kept up to date (updated in
+     *                 place)
+     */
+    public IncrementalLiftingOrder(List<Athlete> athletes) {
+        this.order = athletes;
+        rebuild();
+    }
+
+    /**
+     * @return the athletes, in lifting order (the list given to the constructor)
+     */
+    public List<Athlete> getOrder() {
+        return order;
+    }
+
+    /**
+     * Full sort. Required when several athletes may have changed, or when the
+     * competition settings have changed.
+     */
+    public void rebuild() {
+        genderOrder = LiftOrderComparator.isGenderOrder();
+        AthleteSorter.liftingOrder(order);
+        keys = new long[order.size()];
+        positions.clear();
+        for (int i = 0; i < order.size(); i++) {
+            keys[i] = LiftOrderComparator.liftOrderKey(order.get(i), genderOrder);
+            positions.put(order.get(i), i);
+        }
+    }
+
+    /**
+     * Reposition an athlete whose requested weight, attempts or forced as first
+     * flag have changed.
+     *
+     * The resulting order is the same that a full stable sort of the previous
+     * order would give, provided the other athletes have not changed.
+     *
+     * @param changed the athlete that changed
+     * @return the move, or null if the athlete is not in the list (for instance, a
+     *         copy was edited) in which case the list was fully sorted again
+     */
+    public Move update(Athlete changed) {
+        Integer from = changed == null ? null : positions.get(changed);
+        if (from == null || genderOrder != LiftOrderComparator.isGenderOrder()) {
+            logger.debug("full lifting order recompute for {}", changed);
+            rebuild();
+            return null;
+        }
+        Athlete a = order.get(from);
+        long newKey = LiftOrderComparator.liftOrderKey(a, genderOrder);
+
+        // search the other athletes; those equal to us stay in the same relative
+        // order (stable sort)
+        int size = keys.length - 1;
+        System.arraycopy(keys, from + 1, keys, from, size - from);
+        int lo = lowerBound(newKey, size);
+        int hi = upperBound(newKey, lo, size);
+        int to = Math.min(Math.max(from, lo), hi);
+        System.arraycopy(keys, to, keys, to + 1, size - to);
+        keys[to] = newKey;
+
+        order.remove((int) from);
+        order.add(to, a);
+        for (int i = Math.min(from, to); i <= Math.max(from, to); i++) {
+            Athlete moved = order.get(i);
+            positions.put(moved, i);
+            moved.setLiftOrderRank(i + 1);
+        }
+        Move move = new Move(a, from, to);
+        logger.trace("lifting order move {}", move);
+        return move;
+    }
+
+    /**
+     * @return first position whose key is not smaller than key
+     */
+    private int lowerBound(long key, int size) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (keys[mid] < key) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * @return first position whose key is greater than key, starting from
+     *         position start
+     */
+    private int upperBound(long key, int start, int size) {
+        int lo = start;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (keys[mid] <= key) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+}
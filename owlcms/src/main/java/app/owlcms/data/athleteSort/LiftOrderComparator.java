@@ -9,13 +9,85 @@ package app.owlcms.data.athleteSort;
 import java.util.Comparator;
 
 import app.owlcms.data.athlete.Athlete;
+import app.owlcms.data.athlete.Gender;
 import app.owlcms.data.competition.Competition;
 
 /**
  * The Class LiftOrderComparator.
+ *
+ * The same criteria can be packed in a single primitive value, see
+ * {@link #liftOrderKey(Athlete, boolean)}. Sorting a list on the keys avoids
+ * parsing the lift fields on every comparison.
  */
 public class LiftOrderComparator extends AbstractLifterComparator implements Comparator<Athlete> {
 
+    private static final int TOTAL_BITS = 11;
+    private static final int TOTAL_MASK = (1 << TOTAL_BITS) - 1;
+    private static final int WEIGHT_BITS = 10;
+    private static final int START_NUMBER_BITS = 14;
+
+    /**
+     * @return true if the lifting order separates women and men
+     */
+    public static boolean isGenderOrder() {
+        Competition competition = Competition.getCurrent();
+        return competition != null && competition.isGenderOrder();
+    }
+
+    /**
+     * Compute the lifting order key of an athlete. Comparing two keys gives the
+     * same result as {@link #compare(Athlete, Athlete)}, provided the weights
+     * stay below 1000kg and the start numbers below 16383.
+     *
+     * The criteria are packed from the most significant bits down, so that the
+     * key is always positive.
+     *
+     * @param a           the athlete
+     * @param genderOrder same as {@link Competition#isGenderOrder()}
+     * @return the key
+     */
+    public static long liftOrderKey(Athlete a, boolean genderOrder) {
+        int attemptsDone = a.getAttemptsDone();
+        boolean done = attemptsDone >= 6;
+
+        // forced as first collates smallest
+        long key = a.getForcedAsCurrent() ? 0 : 1;
+        // athletes who are done lifting are at the bottom, in reverse total
+        key = pack(key, done ? 1 : 0, 1);
+        key = pack(key, done ? TOTAL_MASK - Math.min(a.getTotal(), TOTAL_MASK) : 0, TOTAL_BITS);
+        key = pack(key, attemptsDone < 3 ? 0 : 1, 1);
+        Gender gender = genderOrder ? a.getGender() : null;
+        key = pack(key, gender == null ? 0 : gender.ordinal() + 1, 2);
+        Integer requested = a.getNextAttemptRequestedWeight();
+        key = pack(key, (requested == null || requested == 0) ? 999 : requested, WEIGHT_BITS);
+        key = pack(key, attemptsDone, 3);
+
+        // progression: at same weight, whoever took the smaller previous attempt
+        // lifted first
+        int currentTry = attemptsDone + 1;
+        int previous;
+        int beforePrevious;
+        if (currentTry > 3) {
+            previous = currentTry == 6 ? Math.abs(Athlete.zeroIfInvalid(a.getCleanJerk2ActualLift())) : 0;
+            beforePrevious = currentTry >= 5 ? Math.abs(Athlete.zeroIfInvalid(a.getCleanJerk1ActualLift())) : 0;
+        } else {
+            previous = currentTry == 3 ? Math.abs(Athlete.zeroIfInvalid(a.getSnatch2ActualLift())) : 0;
+            beforePrevious = currentTry >= 2 ? Math.abs(Athlete.zeroIfInvalid(a.getSnatch1ActualLift())) : 0;
+        }
+        key = pack(key, previous, WEIGHT_BITS);
+        key = pack(key, beforePrevious, WEIGHT_BITS);
+
+        // a missing start number collates smallest
+        Integer startNumber = a.getStartNumber();
+        key = pack(key, startNumber == null ? 0 : startNumber + 1L, START_NUMBER_BITS);
+        return key;
+    }
+
+    private static long pack(long key, long value, int bits) {
+        long max = (1L << bits) - 1;
+        return (key << bits) | Math.min(Math.max(value, 0), max);
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -0,0 +1,383 @@
+/***
+ * Copyright (c) 2009-2019 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.data.athleteSort;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+/**
+ * Sorted collection that gives the position of an element in O(log n).
+ *
+ * Balanced binary tree (treap) where each node knows the size of its subtree.
+ * Each element also has a weight, so that the athletes who do not count for
+ * ranks (invited athletes, for instance) can be skipped: the rank of an athlete
+ * is the total weight of the athletes before it, plus one.
+ *
+ * Elements are found by identity, not with the comparator, so an element whose
+ * values have changed can still be removed or moved. Elements that compare
+ * equal are kept in insertion order.
+ *
+ * Not thread-safe.
+ *
+ * @author owlcms
+ *
+ * @param <T>
+ */
+public class OrderStatisticTree<T> implements Iterable<T> {
+
+    private static final class Node<T> {
+        final T value;
+        final int priority;
+        int weight;
+        Node<T> left;
+        Node<T> right;
+        Node<T> parent;
+        /** number of nodes in the subtree */
+        int size = 1;
+        /** total weight of the subtree */
+        int weightSum;
+
+        Node(T value, int weight, int priority) {
+            this.value = value;
+            this.weight = weight;
+            this.weightSum = weight;
+            this.priority = priority;
+        }
+    }
+
+    private static int size(Node<?> n) {
+        return n == null ? 0 : n.size;
+    }
+
+    private static int weightSum(Node<?> n) {
+        return n == null ? 0 : n.weightSum;
+    }
+
+    private final Comparator<? super T> comparator;
+    private final Map<T, Node<T>> nodes = new IdentityHashMap<>();
+    private final Random random = new Random(0L);
+    private Node<T> root;
+
+    public OrderStatisticTree(Comparator<? super T> comparator) {
+        this.comparator = comparator;
+    }
+
+    /**
+     * Insert at the place given by the comparator, after the elements that are
+     * equal.
+     *
+     * @param value  not already present
+     * @param weight counted by {@link #weightBefore(Object)}
+     */
+    public void add(T value, int weight) {
+        Node<T> x = newNode(value, weight);
+        if (root == null) {
+            root = x;
+            return;
+        }
+        Node<T> n = root;
+        while (true) {
+            n.size++;
+            n.weightSum += weight;
+            if (comparator.compare(value, n.value) < 0) {
+                if (n.left == null) {
+                    n.left = x;
+                    break;
+                }
+                n = n.left;
+            } else {
+                if (n.right == null) {
+                    n.right = x;
+                    break;
+                }
+                n = n.right;
+            }
+        }
+        x.parent = n;
+        rebalance(x);
+    }
+
+    /**
+     * Insert after all the elements, without using the comparator. Used to load
+     * a list that is already sorted.
+     *
+     * @param value  not already present
+     * @param weight counted by {@link #weightBefore(Object)}
+     */
+    public void addLast(T value, int weight) {
+        Node<T> x = newNode(value, weight);
+        if (root == null) {
+            root = x;
+            return;
+        }
+        Node<T> n = root;
+        while (true) {
+            n.size++;
+            n.weightSum += weight;
+            if (n.right == null) {
+                n.right = x;
+                break;
+            }
+            n = n.right;
+        }
+        x.parent = n;
+        rebalance(x);
+    }
+
+    public boolean contains(T value) {
+        return nodes.containsKey(value);
+    }
+
+    /**
+     * @return the smallest element, null if empty
+     */
+    public T first() {
+        if (root == null) {
+            return null;
+        }
+        Node<T> n = root;
+        while (n.left != null) {
+            n = n.left;
+        }
+        return n.value;
+    }
+
+    /**
+     * @param index
+     * @return the element at that position
+     */
+    public T get(int index) {
+        if (index < 0 || index >= size(root)) {
+            throw new IndexOutOfBoundsException(Integer.toString(index));
+        }
+        Node<T> n = root;
+        while (true) {
+            int leftSize = size(n.left);
+            if (index < leftSize) {
+                n = n.left;
+            } else if (index == leftSize) {
+                return n.value;
+            } else {
+                index -= leftSize + 1;
+                n = n.right;
+            }
+        }
+    }
+
+    /**
+     * @param value
+     * @return the weight given when the element was added
+     */
+    public int getWeight(T value) {
+        Node<T> x = nodes.get(value);
+        return x == null ? 0 : x.weight;
+    }
+
+    /**
+     * @param value
+     * @return the number of elements before, -1 if absent
+     */
+    public int indexOf(T value) {
+        Node<T> x = nodes.get(value);
+        if (x == null) {
+            return -1;
+        }
+        int count = size(x.left);
+        for (Node<T> n = x; n.parent != null; n = n.parent) {
+            if (n == n.parent.right) {
+                count += size(n.parent.left) + 1;
+            }
+        }
+        return count;
+    }
+
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<T>() {
+            private Node<T> next = leftmost(root);
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public T next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                T value = next.value;
+                next = successor(next);
+                return value;
+            }
+        };
+    }
+
+    /**
+     * @param value
+     * @return true if the element was present
+     */
+    public boolean remove(T value) {
+        Node<T> x = nodes.remove(value);
+        if (x == null) {
+            return false;
+        }
+        // bring the node down to a leaf, keeping the heap order of priorities
+        while (x.left != null || x.right != null) {
+            Node<T> c;
+            if (x.left == null) {
+                c = x.right;
+            } else if (x.right == null) {
+                c = x.left;
+            } else {
+                c = x.left.priority > x.right.priority ? x.left : x.right;
+            }
+            rotateUp(c);
+        }
+        Node<T> p = x.parent;
+        if (p == null) {
+            root = null;
+            return true;
+        }
+        if (p.left == x) {
+            p.left = null;
+        } else {
+            p.right = null;
+        }
+        for (Node<T> n = p; n != null; n = n.parent) {
+            n.size--;
+            n.weightSum -= x.weight;
+        }
+        return true;
+    }
+
+    public int size() {
+        return size(root);
+    }
+
+    /**
+     * @return the elements, in order
+     */
+    public List<T> toList() {
+        List<T> list = new ArrayList<>(size());
+        for (T value : this) {
+            list.add(value);
+        }
+        return list;
+    }
+
+    /**
+     * Move an element whose values have changed.
+     *
+     * @param value
+     * @param weight
+     */
+    public void update(T value, int weight) {
+        remove(value);
+        add(value, weight);
+    }
+
+    /**
+     * @param value
+     * @return the total weight of the elements before, -1 if absent
+     */
+    public int weightBefore(T value) {
+        Node<T> x = nodes.get(value);
+        if (x == null) {
+            return -1;
+        }
+        int sum = weightSum(x.left);
+        for (Node<T> n = x; n.parent != null; n = n.parent) {
+            if (n == n.parent.right) {
+                sum += weightSum(n.parent.left) + n.parent.weight;
+            }
+        }
+        return sum;
+    }
+
+    private Node<T> leftmost(Node<T> n) {
+        if (n == null) {
+            return null;
+        }
+        while (n.left != null) {
+            n = n.left;
+        }
+        return n;
+    }
+
+    private Node<T> newNode(T value, int weight) {
+        if (nodes.containsKey(value)) {
+            throw new IllegalArgumentException("already present: " + value);
+        }
+        Node<T> x = new Node<>(value, weight, random.nextInt());
+        nodes.put(value, x);
+        return x;
+    }
+
+    private void rebalance(Node<T> x) {
+        while (x.parent != null && x.priority > x.parent.priority) {
+            rotateUp(x);
+        }
+    }
+
+    private void recompute(Node<T> n) {
+        n.size = 1 + size(n.left) + size(n.right);
+        n.weightSum = n.weight + weightSum(n.left) + weightSum(n.right);
+    }
+
+    /**
+     * Rotate so that x takes the place of its parent.
+     */
+    private void rotateUp(Node<T> x) {
+        Node<T> p = x.parent;
+        Node<T> g = p.parent;
+        if (p.left == x) {
+            p.left = x.right;
+            if (x.right != null) {
+                x.right.parent = p;
+            }
+            x.right = p;
+        } else {
+            p.right = x.left;
+            if (x.left != null) {
+                x.left.parent = p;
+            }
+            x.left = p;
+        }
+        p.parent = x;
+        x.parent = g;
+        if (g == null) {
+            root = x;
+        } else if (g.left == p) {
+            g.left = x;
+        } else {
+            g.right = x;
+        }
+        recompute(p);
+        recompute(x);
+    }
+
+    private Node<T> successor(Node<T> n) {
+        if (n.right != null) {
+            return leftmost(n.right);
+        }
+        while (n.parent != null && n == n.parent.right) {
+            n = n.parent;
+        }
+        return n.parent;
+    }
+}
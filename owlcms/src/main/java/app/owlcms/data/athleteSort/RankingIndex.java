@@ -0,0 +1,449 @@
+/***
+ * Copyright (c) 2009-2019 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.data.athleteSort;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+import org.slf4j.LoggerFactory;
+
+import app.owlcms.data.athlete.Athlete;
+import app.owlcms.data.athlete.AthleteRepository;
+import app.owlcms.data.athlete.AthleteWriteBehind;
+import app.owlcms.data.athlete.Gender;
+import app.owlcms.data.athleteSort.AthleteSorter.Ranking;
+import app.owlcms.data.category.Category;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+
+/**
+ * Competition-wide rankings, kept up to date as results come in.
+ *
+ * The weighed-in athletes are read from the database once, and sorted for each
+ * ranking, one {@link OrderStatisticTree} per category (or per gender, for the
+ * Sinclair and Robi rankings). When the results of an athlete change, the
+ * athlete is moved to its new place in each ranking, and the ranks are assigned
+ * again only for its category. The Sinclair ranking of its gender is sorted
+ * again when the rankings are next published or queried, not by the field of
+ * play that reports the result. {@link #getRank(Athlete, Ranking)} gives the
+ * rank of an athlete without going through the category.
+ *
+ * The rankings are published as reporting beans (the same names as
+ * {@link app.owlcms.data.competition.Competition#computeGlobalRankings(HashMap)}).
+ * The athletes kept by the index are updated in place when later results come
+ * in and are never handed out: the published lists hold copies made when the
+ * beans are published ({@link Athlete#copyForReporting(Athlete)}), which do not
+ * change afterwards, like the {@link RankingSnapshot} (the
+ * <code>rankings</code> bean). The team scores are kept by
+ * {@link TeamRankings}; when an athlete moves, only the teams of its category
+ * are scored again. The lists of athletes sorted by team are computed for the
+ * competition book only.
+ *
+ * Changes to the registration data of athletes (weigh-in, category, team...)
+ * and to the competition rules cause the athletes to be read again, on next
+ * use.
+ *
+ * @author owlcms
+ */
+public class RankingIndex {
+
+    /**
+     * Keeps the index up to date when athletes are saved outside of the field of
+     * play.
+     */
+    public static class AthleteListener {
+
+        @PostUpdate
+        public void athleteUpdated(Athlete athlete) {
+            if (AthleteWriteBehind.isWriterThread()) {
+                // the index already has these results, or newer ones.
+                return;
+            }
+            getCurrent().update(athlete);
+        }
+
+        @PostPersist
+        @PostRemove
+        public void athleteAddedOrRemoved(Athlete athlete) {
+            getCurrent().invalidate();
+        }
+    }
+
+    final private static Logger logger = (Logger) LoggerFactory.getLogger(RankingIndex.class);
+    static {
+        logger.setLevel(Level.INFO);
+    }
+
+    /** the rankings that are kept */
+    static final Ranking[] RANKINGS = { Ranking.SNATCH, Ranking.CLEANJERK, Ranking.TOTAL, Ranking.SINCLAIR,
+            Ranking.ROBI, Ranking.CUSTOM };
+
+    private static final RankingIndex current = new RankingIndex();
+
+    /** a few tries to read a stable copy of the athletes */
+    private static final int MAX_LOADS = 3;
+
+    public static RankingIndex getCurrent() {
+        return current;
+    }
+
+    /**
+     * @param r
+     * @return true if the ranks are assigned by gender rather than by category
+     */
+    static boolean isByGender(Ranking r) {
+        return r == Ranking.SINCLAIR || r == Ranking.ROBI;
+    }
+
+    private boolean valid = false;
+    /** incremented when the athletes must be read again */
+    private long generation = 0;
+    private Map<Long, Athlete> athletes = new HashMap<>();
+    /** for each ranking, the athletes of each category (or gender) */
+    private EnumMap<Ranking, Map<Object, OrderStatisticTree<Athlete>>> partitions = new EnumMap<>(Ranking.class);
+    /** for each ranking, the ranks last computed in each category (or gender) */
+    private EnumMap<Ranking, Map<Object, AthleteSorter.RankAssignment>> assignments = new EnumMap<>(Ranking.class);
+    /** genders whose Sinclair ranking must be sorted again */
+    private Set<Object> unsortedSinclair = new HashSet<>();
+    private TreeSet<String> teams = new TreeSet<>();
+    private TeamRankings teamRankings;
+    /** last published beans, null if there were changes since */
+    private HashMap<String, Object> beans;
+
+    /**
+     * @return a number that changes when the athletes must be read again (new
+     *         weigh-in, registration change...)
+     */
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * @param athlete
+     * @param r       SNATCH, CLEANJERK, TOTAL, SINCLAIR, ROBI or CUSTOM
+     * @return the rank of the athlete in its category (its gender for Sinclair
+     *         and Robi), -1 if not ranked (invited, not a team member), 0 if no
+     *         result, null if the athlete is not in the rankings or the rankings
+     *         must be read again
+     */
+    public synchronized Integer getRank(Athlete athlete, Ranking r) {
+        if (!valid || athlete == null) {
+            return null;
+        }
+        if (r == Ranking.SINCLAIR) {
+            sortSinclair();
+        }
+        Athlete a = athletes.get(athlete.getId());
+        Map<Object, OrderStatisticTree<Athlete>> trees = partitions.get(r);
+        if (a == null || trees == null) {
+            return null;
+        }
+        OrderStatisticTree<Athlete> tree = trees.get(partitionKey(r, a));
+        if (tree == null || !tree.contains(a)) {
+            return null;
+        }
+        if (tree.getWeight(a) == 0) {
+            return -1;
+        }
+        if (AthleteSorter.getRankingTotal(a, r) <= 0) {
+            return 0;
+        }
+        return tree.weightBefore(a) + 1;
+    }
+
+    /**
+     * The rankings, computed from the database if needed.
+     *
+     * @return the reporting beans; shared, must not be modified
+     */
+    public HashMap<String, Object> getReportingBeans() {
+        for (int i = 1;; i++) {
+            long loadedGeneration;
+            synchronized (this) {
+                if (valid) {
+                    return publish();
+                }
+                loadedGeneration = generation;
+            }
+            // the database is read without holding the lock, saving an athlete
+            // invalidates or updates the index
+            List<Athlete> loaded = AthleteRepository.findAllByGroupAndWeighIn(null, true);
+            synchronized (this) {
+                if (valid) {
+                    return publish();
+                }
+                if (loadedGeneration == generation || i >= MAX_LOADS) {
+                    build(loaded);
+                    return publish();
+                }
+            }
+        }
+    }
+
+    /**
+     * The ranks and points of all the athletes, computed from the database if
+     * needed.
+     *
+     * @return the last snapshot published
+     */
+    public RankingSnapshot getSnapshot() {
+        return (RankingSnapshot) getReportingBeans().get("rankings");
+    }
+
+    /**
+     * Read the athletes again on next use.
+     */
+    public synchronized void invalidate() {
+        valid = false;
+        generation++;
+        beans = null;
+        athletes = new HashMap<>();
+        partitions = new EnumMap<>(Ranking.class);
+        assignments = new EnumMap<>(Ranking.class);
+        unsortedSinclair = new HashSet<>();
+        teamRankings = null;
+    }
+
+    /**
+     * Move the athlete to its new place in the rankings, and assign the ranks
+     * again in its category. The Sinclair ranking is only marked for sorting.
+     *
+     * @param changed a copy of the athlete with new results; the index keeps its
+     *                own copy.
+     */
+    public synchronized void update(Athlete changed) {
+        if (changed == null || changed.getId() == null) {
+            return;
+        }
+        if (!valid) {
+            // may have been read before the change
+            generation++;
+            return;
+        }
+        Athlete a = athletes.get(changed.getId());
+        if (a == null) {
+            Double bodyWeight = changed.getBodyWeight();
+            if (bodyWeight != null && bodyWeight > 0.0D) {
+                // newly weighed-in
+                invalidate();
+            }
+            return;
+        }
+        if (!Athlete.getRankingRegistration(a).equals(Athlete.getRankingRegistration(changed))) {
+            invalidate();
+            return;
+        }
+        if (a != changed) {
+            Athlete.copyResults(a, changed);
+        }
+        for (Ranking r : RANKINGS) {
+            OrderStatisticTree<Athlete> tree = partitions.get(r).get(partitionKey(r, a));
+            if (tree == null) {
+                continue;
+            }
+            if (r == Ranking.SINCLAIR) {
+                // see sortSinclair(), not done on the thread of the field of play
+                unsortedSinclair.add(partitionKey(r, a));
+                continue;
+            }
+            tree.update(a, weight(a));
+            assignRanks(r, partitionKey(r, a), tree);
+        }
+        // the points of the whole category may have changed
+        OrderStatisticTree<Athlete> category = partitions.get(Ranking.TOTAL).get(partitionKey(Ranking.TOTAL, a));
+        if (category != null) {
+            teamRankings.update(category.toList());
+        }
+        beans = null;
+    }
+
+    /**
+     * Assign the ranks in a category (or gender).
+     *
+     * Moving one athlete changes the ranks, and so the points, of every athlete
+     * between its old and new places, and the team scores and the published
+     * snapshot need the points of the whole category. The category is walked
+     * once rather than asking the tree for each rank, which would cost
+     * O(log n) per athlete instead of O(1); {@link #getRank(Athlete, Ranking)}
+     * is for a single athlete.
+     */
+    private void assignRanks(Ranking r, Object key, OrderStatisticTree<Athlete> tree) {
+        List<Athlete> partition = tree.toList();
+        AthleteSorter.RankAssignment assignment;
+        if (isByGender(r)) {
+            assignment = AthleteSorter.computeSinclairRanks(partition, r);
+        } else {
+            assignment = AthleteSorter.computeCategoryRanks(partition, r);
+        }
+        // the athletes of the index are used by the team scores and the lists
+        assignment.apply();
+        assignments.get(r).put(key, assignment);
+    }
+
+    private void build(List<Athlete> loaded) {
+        long start = System.currentTimeMillis();
+        athletes = new HashMap<>();
+        teams = new TreeSet<>();
+        for (Athlete a : loaded) {
+            athletes.put(a.getId(), a);
+            teams.add(a.getTeam());
+        }
+        partitions = new EnumMap<>(Ranking.class);
+        assignments = new EnumMap<>(Ranking.class);
+        unsortedSinclair = new HashSet<>();
+        for (Ranking r : RANKINGS) {
+            assignments.put(r, new HashMap<>());
+            // the sorted list has the athletes of each category together
+            Map<Object, List<Athlete>> lists = new HashMap<>();
+            for (Athlete a : AthleteSorter.resultsOrderCopy(loaded, r)) {
+                lists.computeIfAbsent(partitionKey(r, a), (k) -> new ArrayList<>()).add(a);
+            }
+            Map<Object, OrderStatisticTree<Athlete>> trees = new HashMap<>();
+            for (Map.Entry<Object, List<Athlete>> e : lists.entrySet()) {
+                OrderStatisticTree<Athlete> tree = newTree(r, e.getValue());
+                assignRanks(r, e.getKey(), tree);
+                trees.put(e.getKey(), tree);
+            }
+            partitions.put(r, trees);
+        }
+        teamRankings = new TeamRankings(loaded, TeamRankings.getCountedAthletes());
+        valid = true;
+        beans = null;
+        logger.debug("rankings built for {} athletes in {} ms", loaded.size(), System.currentTimeMillis() - start);
+    }
+
+    private OrderStatisticTree<Athlete> newTree(Ranking r, List<Athlete> sorted) {
+        OrderStatisticTree<Athlete> tree = new OrderStatisticTree<>(new WinningOrderComparator(r));
+        for (Athlete a : sorted) {
+            tree.addLast(a, weight(a));
+        }
+        return tree;
+    }
+
+    private Object partitionKey(Ranking r, Athlete a) {
+        if (isByGender(r)) {
+            return a.getGender();
+        }
+        Category category = a.getCategory();
+        return category != null ? category.getId() : null;
+    }
+
+    private HashMap<String, Object> publish() {
+        if (beans != null) {
+            return beans;
+        }
+        sortSinclair();
+        HashMap<String, Object> b = new HashMap<>();
+        if (athletes.isEmpty()) {
+            // as before, nothing is shown when nobody is weighed in.
+            b.put("rankings", RankingSnapshot.EMPTY);
+            beans = b;
+            return b;
+        }
+        b.put("clubs", teams);
+        // one copy of each athlete, shared by the lists
+        Map<Long, Athlete> copies = new HashMap<>(athletes.size() * 2);
+        for (Athlete a : athletes.values()) {
+            copies.put(a.getId(), Athlete.copyForReporting(a));
+        }
+        putByGender(b, "Sn", Ranking.SNATCH, copies);
+        putByGender(b, "CJ", Ranking.CLEANJERK, copies);
+        putByGender(b, "Tot", Ranking.TOTAL, copies);
+        putByGender(b, "Sinclair", Ranking.SINCLAIR, copies);
+        putByGender(b, "Robi", Ranking.ROBI, copies);
+        putByGender(b, "Cus", Ranking.CUSTOM, copies);
+        teamRankings.putStandings(b);
+        RankingSnapshot.Builder snapshot = new RankingSnapshot.Builder();
+        for (Map<Object, AthleteSorter.RankAssignment> byPartition : assignments.values()) {
+            for (AthleteSorter.RankAssignment assignment : byPartition.values()) {
+                snapshot.add(assignment);
+            }
+        }
+        b.put("rankings", snapshot.build());
+
+        int nbMen = ((List<?>) b.get("mSn")).size();
+        int nbWomen = ((List<?>) b.get("wSn")).size();
+        b.put("nbMen", nbMen);
+        b.put("nbWomen", nbWomen);
+        b.put("nbAthletes", athletes.size());
+        b.put("nbClubs", teams.size());
+        b.put("mClubs", nbMen > 0 ? teams : new ArrayList<String>());
+        b.put("wClubs", nbWomen > 0 ? teams : new ArrayList<String>());
+        beans = b;
+        return b;
+    }
+
+    /**
+     * Sort again the Sinclair rankings of the genders that had new results, and
+     * assign their ranks.
+     *
+     * During the snatch, the tentative Sinclair is only used between athletes
+     * who have not started the clean and jerk, so there is no single order in
+     * which to move an athlete. The list is nearly sorted, which the sort handles
+     * in linear time.
+     */
+    private void sortSinclair() {
+        if (unsortedSinclair.isEmpty()) {
+            return;
+        }
+        Map<Object, OrderStatisticTree<Athlete>> trees = partitions.get(Ranking.SINCLAIR);
+        for (Object key : unsortedSinclair) {
+            OrderStatisticTree<Athlete> tree = trees.get(key);
+            if (tree == null) {
+                continue;
+            }
+            List<Athlete> list = tree.toList();
+            list.sort(new WinningOrderComparator(Ranking.SINCLAIR, true));
+            tree = newTree(Ranking.SINCLAIR, list);
+            trees.put(key, tree);
+            assignRanks(Ranking.SINCLAIR, key, tree);
+        }
+        unsortedSinclair.clear();
+    }
+
+    private void putByGender(HashMap<String, Object> b, String suffix, Ranking r, Map<Long, Athlete> copies) {
+        // categories in the same order as a full sort
+        WinningOrderComparator comparator = new WinningOrderComparator(r, true);
+        List<OrderStatisticTree<Athlete>> trees = new ArrayList<>(partitions.get(r).values());
+        trees.sort((t1, t2) -> comparator.compare(t1.first(), t2.first()));
+
+        List<Athlete> sortedMen = new ArrayList<>(athletes.size());
+        List<Athlete> sortedWomen = new ArrayList<>(athletes.size());
+        for (OrderStatisticTree<Athlete> tree : trees) {
+            for (Athlete a : tree) {
+                Gender gender = a.getGender();
+                if (Gender.M == gender) {
+                    sortedMen.add(copies.get(a.getId()));
+                } else if (Gender.F == gender) {
+                    sortedWomen.add(copies.get(a.getId()));
+                } else {
+                    throw new RuntimeException("gender is " + gender);
+                }
+            }
+        }
+        b.put("m" + suffix, Collections.unmodifiableList(sortedMen));
+        b.put("w" + suffix, Collections.unmodifiableList(sortedWomen));
+    }
+
+    /**
+     * @return 0 for the athletes that do not take a rank
+     */
+    private int weight(Athlete a) {
+        return a.isInvited() || !a.getTeamMember() ? 0 : 1;
+    }
+}
@@ -0,0 +1,188 @@
+/***
+ * Copyright (c) 2009-2019 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.data.athleteSort;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import app.owlcms.data.athlete.Athlete;
+import app.owlcms.data.athleteSort.AthleteSorter.RankAssignment;
+import app.owlcms.data.athleteSort.AthleteSorter.Ranking;
+import app.owlcms.data.category.Category;
+
+/**
+ * The ranks and points of a set of athletes, keyed by athlete id.
+ *
+ * A snapshot does not change once built, and the athletes are not modified to
+ * compute it, so it can be handed to the displays while the athletes go on
+ * changing on the field of play. Building a new snapshot and replacing the
+ * reference publishes all the ranks at once.
+ *
+ * @author owlcms
+ */
+public final class RankingSnapshot {
+
+    /**
+     * Collects the ranks; may only be used to build one snapshot.
+     */
+    public static class Builder {
+        private Map<Long, Entry> entries;
+
+        public Builder() {
+            entries = new HashMap<>();
+        }
+
+        /**
+         * Start from the ranks of a previous snapshot.
+         *
+         * @param previous
+         * @param replaced the athletes whose ranks are computed again
+         */
+        private Builder(RankingSnapshot previous, List<Athlete> replaced) {
+            entries = new HashMap<>(previous.entries);
+            for (Athlete a : replaced) {
+                // the entries of the previous snapshot are shared, not updated
+                entries.remove(a.getId());
+            }
+        }
+
+        /**
+         * Record the ranks and points computed for one ranking.
+         *
+         * @param assignment
+         * @return this builder
+         */
+        public Builder add(RankAssignment assignment) {
+            int r = assignment.getRankingType().ordinal();
+            List<Athlete> athletes = assignment.getSortedList();
+            for (int i = 0; i < athletes.size(); i++) {
+                Long id = athletes.get(i).getId();
+                if (id == null) {
+                    continue;
+                }
+                Entry entry = entries.computeIfAbsent(id, (k) -> new Entry());
+                entry.ranks[r] = assignment.getRank(i);
+                entry.points[r] = assignment.getPoints(i);
+            }
+            return this;
+        }
+
+        public RankingSnapshot build() {
+            RankingSnapshot snapshot = new RankingSnapshot(entries);
+            entries = null;
+            return snapshot;
+        }
+    }
+
+    private static final class Entry {
+        private final int[] ranks = new int[RANKING_COUNT];
+        private final float[] points = new float[RANKING_COUNT];
+
+        Entry() {
+            Arrays.fill(ranks, NO_RANK);
+        }
+    }
+
+    private static final int RANKING_COUNT = Ranking.values().length;
+    /** the ranking was not computed for the athlete */
+    private static final int NO_RANK = Integer.MIN_VALUE;
+
+    public static final RankingSnapshot EMPTY = new RankingSnapshot(Collections.emptyMap());
+
+    /**
+     * Ranks within each category for the snatch, clean and jerk and total, as
+     * shown on the scoreboards.
+     *
+     * @param athletes not modified
+     * @return the ranks of the athletes
+     */
+    public static RankingSnapshot ofCategoryRanks(List<Athlete> athletes) {
+        Builder builder = new Builder();
+        for (Ranking r : new Ranking[] { Ranking.SNATCH, Ranking.CLEANJERK, Ranking.TOTAL }) {
+            List<Athlete> sorted = AthleteSorter.resultsOrderCopy(athletes, r);
+            builder.add(AthleteSorter.computeCategoryRanks(sorted, r));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Same as {@link #ofCategoryRanks(List)} after the results of one athlete
+     * have changed: only the category of that athlete is sorted again, the ranks
+     * of the other categories are those of the previous snapshot.
+     *
+     * @param athletes the athletes of the previous snapshot, not modified
+     * @param previous the ranks before the change
+     * @param changed  the athlete whose results have changed
+     * @return the ranks of the athletes
+     */
+    public static RankingSnapshot ofCategoryRanks(List<Athlete> athletes, RankingSnapshot previous,
+            Athlete changed) {
+        if (previous == null || changed == null || !previous.contains(changed)) {
+            return ofCategoryRanks(athletes);
+        }
+        Category category = changed.getCategory();
+        List<Athlete> sameCategory = new ArrayList<>();
+        for (Athlete a : athletes) {
+            if (Objects.equals(category, a.getCategory())) {
+                sameCategory.add(a);
+            }
+        }
+        Builder builder = new Builder(previous, sameCategory);
+        for (Ranking r : new Ranking[] { Ranking.SNATCH, Ranking.CLEANJERK, Ranking.TOTAL }) {
+            List<Athlete> sorted = AthleteSorter.resultsOrderCopy(sameCategory, r);
+            builder.add(AthleteSorter.computeCategoryRanks(sorted, r));
+        }
+        return builder.build();
+    }
+
+    private final Map<Long, Entry> entries;
+
+    private RankingSnapshot(Map<Long, Entry> entries) {
+        this.entries = entries;
+    }
+
+    public boolean contains(Athlete a) {
+        return a != null && entries.containsKey(a.getId());
+    }
+
+    /**
+     * @param a
+     * @param r
+     * @return the points given by the rank, null if the ranking was not computed
+     *         for the athlete
+     */
+    public Float getPoints(Athlete a, Ranking r) {
+        Entry entry = a != null ? entries.get(a.getId()) : null;
+        if (entry == null || entry.ranks[r.ordinal()] == NO_RANK) {
+            return null;
+        }
+        return entry.points[r.ordinal()];
+    }
+
+    /**
+     * @param a
+     * @param r
+     * @return the rank, -1 if not ranked (invited, not a team member), 0 if no
+     *         result, null if the ranking was not computed for the athlete
+     */
+    public Integer getRank(Athlete a, Ranking r) {
+        Entry entry = a != null ? entries.get(a.getId()) : null;
+        if (entry == null || entry.ranks[r.ordinal()] == NO_RANK) {
+            return null;
+        }
+        return entry.ranks[r.ordinal()];
+    }
+
+    public int size() {
+        return entries.size();
+    }
+}
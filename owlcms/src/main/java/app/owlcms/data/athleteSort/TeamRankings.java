@@ -0,0 +1,326 @@
+/***
+ * Copyright (c) 2009-2019 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.data.athleteSort;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import app.owlcms.Main;
+import app.owlcms.data.athlete.Athlete;
+import app.owlcms.data.athlete.Gender;
+import app.owlcms.data.athleteSort.AthleteSorter.Ranking;
+
+/**
+ * Team scores, by gender.
+ *
+ * The score of a team is the sum of the points of its members (see
+ * {@link AthleteSorter#assignCategoryRanks(List, Ranking)}); only the best
+ * results are counted when the <code>teamCountedAthletes</code> parameter is
+ * set. When the points of some athletes change, only the score of their teams
+ * is computed again, and the standings are sorted again on next use.
+ *
+ * The athletes are also kept grouped by team and gender, so the team-ordered
+ * lists of the competition book ({@link #getTeamOrder(Ranking)}) only sort the
+ * athletes of each team.
+ *
+ * Not thread-safe.
+ *
+ * @author owlcms
+ */
+public class TeamRankings {
+
+    /**
+     * The score of a team for one ranking. Does not change once created.
+     */
+    public static class TeamScore {
+        private final String team;
+        private final Gender gender;
+        private final Ranking ranking;
+        private final float points;
+        private final int counted;
+        private final int size;
+        private final int rank;
+
+        TeamScore(String team, Gender gender, Ranking ranking, float points, int counted, int size, int rank) {
+            this.team = team;
+            this.gender = gender;
+            this.ranking = ranking;
+            this.points = points;
+            this.counted = counted;
+            this.size = size;
+            this.rank = rank;
+        }
+
+        /**
+         * @return number of athletes whose points are included
+         */
+        public int getCounted() {
+            return counted;
+        }
+
+        public Gender getGender() {
+            return gender;
+        }
+
+        public float getPoints() {
+            return points;
+        }
+
+        /**
+         * @return the rank among the teams of the same gender, 0 if no points
+         */
+        public int getRank() {
+            return rank;
+        }
+
+        public Ranking getRanking() {
+            return ranking;
+        }
+
+        /**
+         * @return number of team members
+         */
+        public int getSize() {
+            return size;
+        }
+
+        public String getTeam() {
+            return team;
+        }
+
+        @Override
+        public String toString() {
+            return team + " " + gender + " " + ranking + " rank=" + rank + " points=" + points;
+        }
+    }
+
+    /**
+     * The members of a team of a given gender, and their current scores.
+     */
+    private static class Team {
+        private final String name;
+        private final Gender gender;
+        private final List<Athlete> members = new ArrayList<>();
+        private final EnumMap<Ranking, Float> points = new EnumMap<>(Ranking.class);
+        private final EnumMap<Ranking, Integer> counted = new EnumMap<>(Ranking.class);
+
+        Team(String name, Gender gender) {
+            this.name = name;
+            this.gender = gender;
+        }
+    }
+
+    /** the rankings that give points, and the suffix of their bean names */
+    static final Ranking[] TEAM_RANKINGS = { Ranking.SNATCH, Ranking.CLEANJERK, Ranking.TOTAL, Ranking.COMBINED,
+            Ranking.CUSTOM };
+    private static final String[] TEAM_SUFFIXES = { "Sn", "CJ", "Tot", "Combined", "Cus" };
+
+    /**
+     * @return the number of best results counted for each team, 0 for all
+     */
+    public static int getCountedAthletes() {
+        return Main.getIntegerParam("teamCountedAthletes", 0);
+    }
+
+    private static float getPoints(Athlete a, Ranking r) {
+        Float points;
+        switch (r) {
+        case SNATCH:
+            points = a.getSnatchPoints();
+            break;
+        case CLEANJERK:
+            points = a.getCleanJerkPoints();
+            break;
+        case TOTAL:
+            points = a.getTotalPoints();
+            break;
+        case COMBINED:
+            points = a.getCombinedPoints();
+            break;
+        case CUSTOM:
+            points = a.getCustomPoints();
+            break;
+        default:
+            points = null;
+            break;
+        }
+        return points != null ? points : 0.0F;
+    }
+
+    private final int countedAthletes;
+    private final Map<Gender, Map<String, Team>> teams = new EnumMap<>(Gender.class);
+    private final Map<Athlete, Team> teamOf = new IdentityHashMap<>();
+    /** all the athletes, team members or not, by team (no team first) and gender */
+    private final Map<String, Map<Gender, List<Athlete>>> rosters = new TreeMap<>(
+            Comparator.nullsFirst(Comparator.naturalOrder()));
+    /** sorted teams, by gender and ranking; removed when a score changes */
+    private final Map<Gender, EnumMap<Ranking, List<TeamScore>>> standings = new EnumMap<>(Gender.class);
+
+    /**
+     * @param athletes        whose points have been assigned
+     * @param countedAthletes number of best results counted, 0 for all
+     */
+    public TeamRankings(Collection<Athlete> athletes, int countedAthletes) {
+        this.countedAthletes = countedAthletes;
+        for (Athlete a : athletes) {
+            if (a.getGender() == null) {
+                continue;
+            }
+            rosters.computeIfAbsent(a.getTeam(), (n) -> new EnumMap<>(Gender.class))
+                    .computeIfAbsent(a.getGender(), (g) -> new ArrayList<>()).add(a);
+            if (!a.getTeamMember()) {
+                continue;
+            }
+            Team team = teams.computeIfAbsent(a.getGender(), (g) -> new HashMap<>())
+                    .computeIfAbsent(a.getTeam(), (n) -> new Team(n, a.getGender()));
+            team.members.add(a);
+            teamOf.put(a, team);
+        }
+        for (Map<String, Team> byName : teams.values()) {
+            for (Team team : byName.values()) {
+                computeScores(team);
+            }
+        }
+    }
+
+    /**
+     * @param gender
+     * @param r      SNATCH, CLEANJERK, TOTAL, COMBINED or CUSTOM
+     * @return the teams, best first; unmodifiable
+     */
+    public List<TeamScore> getStandings(Gender gender, Ranking r) {
+        EnumMap<Ranking, List<TeamScore>> byRanking = standings.computeIfAbsent(gender,
+                (g) -> new EnumMap<>(Ranking.class));
+        List<TeamScore> sorted = byRanking.get(r);
+        if (sorted == null) {
+            sorted = sortTeams(gender, r);
+            byRanking.put(r, sorted);
+        }
+        return sorted;
+    }
+
+    /**
+     * The athletes of the same team and gender together, best first, so that the
+     * top "n" can be given points. Same order as
+     * {@link AthleteSorter#teamRankingOrderCopy(List, Ranking)}, but only the
+     * athletes of each team are sorted, and the CUSTOM points are also used;
+     * athletes without points come last in their team.
+     *
+     * @param r SNATCH, CLEANJERK, TOTAL, COMBINED or CUSTOM
+     * @return a new list
+     */
+    public List<Athlete> getTeamOrder(Ranking r) {
+        List<Athlete> sorted = new ArrayList<>();
+        Comparator<Athlete> bestFirst = Comparator.comparingDouble((a) -> -getPoints(a, r));
+        for (Map<Gender, List<Athlete>> byGender : rosters.values()) {
+            for (List<Athlete> athletes : byGender.values()) {
+                int start = sorted.size();
+                sorted.addAll(athletes);
+                // stable, athletes with the same points stay in their order
+                sorted.subList(start, sorted.size()).sort(bestFirst);
+            }
+        }
+        return sorted;
+    }
+
+    /**
+     * Put the standings in the reporting beans (mTeamScoresTot, wTeamScoresSn,
+     * etc.)
+     *
+     * @param beans
+     */
+    public void putStandings(HashMap<String, Object> beans) {
+        for (int i = 0; i < TEAM_RANKINGS.length; i++) {
+            beans.put("mTeamScores" + TEAM_SUFFIXES[i], getStandings(Gender.M, TEAM_RANKINGS[i]));
+            beans.put("wTeamScores" + TEAM_SUFFIXES[i], getStandings(Gender.F, TEAM_RANKINGS[i]));
+        }
+    }
+
+    /**
+     * Compute the scores of the teams of these athletes.
+     *
+     * @param changed athletes whose points may have changed
+     */
+    public void update(Collection<Athlete> changed) {
+        Set<Team> dirty = new LinkedHashSet<>();
+        for (Athlete a : changed) {
+            Team team = teamOf.get(a);
+            if (team != null) {
+                dirty.add(team);
+            }
+        }
+        for (Team team : dirty) {
+            if (computeScores(team)) {
+                standings.remove(team.gender);
+            }
+        }
+    }
+
+    /**
+     * @return true if a score has changed
+     */
+    private boolean computeScores(Team team) {
+        boolean changed = false;
+        float[] points = new float[team.members.size()];
+        for (Ranking r : TEAM_RANKINGS) {
+            for (int i = 0; i < points.length; i++) {
+                points[i] = getPoints(team.members.get(i), r);
+            }
+            Arrays.sort(points);
+            int counted = countedAthletes > 0 ? Math.min(countedAthletes, points.length) : points.length;
+            float sum = 0.0F;
+            for (int i = points.length - counted; i < points.length; i++) {
+                sum += points[i];
+            }
+            Float previous = team.points.put(r, sum);
+            team.counted.put(r, counted);
+            changed = changed || previous == null || previous.floatValue() != sum;
+        }
+        return changed;
+    }
+
+    private List<TeamScore> sortTeams(Gender gender, Ranking r) {
+        Map<String, Team> byName = teams.get(gender);
+        if (byName == null) {
+            return Collections.emptyList();
+        }
+        List<Team> sorted = new ArrayList<>(byName.values());
+        sorted.sort((t1, t2) -> {
+            int compare = -Float.compare(t1.points.get(r), t2.points.get(r));
+            if (compare != 0) {
+                return compare;
+            }
+            return String.valueOf(t1.name).compareTo(String.valueOf(t2.name));
+        });
+        List<TeamScore> scores = new ArrayList<>(sorted.size());
+        int rank = 0;
+        float prevPoints = -1.0F;
+        for (int i = 0; i < sorted.size(); i++) {
+            Team team = sorted.get(i);
+            float points = team.points.get(r);
+            if (points != prevPoints) {
+                // teams with the same points share the rank
+                rank = i + 1;
+                prevPoints = points;
+            }
+            scores.add(new TeamScore(team.name, gender, r, points, team.counted.get(r), team.members.size(),
+                    points > 0 ? rank : 0));
+        }
+        return Collections.unmodifiableList(scores);
+    }
+}
@@ -7,7 +7,10 @@
 package app.owlcms.data.athleteSort;
 
 import java.time.LocalDateTime;
+import java.util.Arrays;
 import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Map;
 
 import org.slf4j.LoggerFactory;
 
@@ -30,13 +33,35 @@ public class WinningOrderComparator extends AbstractLifterComparator implements
 
     private Ranking rankingType;
 
+    /** results already computed, by athlete; NaN if not yet computed */
+    private Map<Athlete, double[]> scores;
+
     /**
      * Instantiates a new winning order comparator.
      *
      * @param rankingType the ranking type
      */
     public WinningOrderComparator(Ranking rankingType) {
+        this(rankingType, false);
+    }
+
+    /**
+     * Instantiates a new winning order comparator.
+     *
+     * When memoizing, the results of each athlete (best lifts, total, Sinclair
+     * and other coefficients) are computed the first time they are compared and
+     * then reused. This must only be used for sorting a list whose athletes do not
+     * change during the sort; long-lived comparators (e.g. grid columns) must not
+     * memoize.
+     *
+     * @param rankingType the ranking type
+     * @param memoize     true to compute each result only once
+     */
+    public WinningOrderComparator(Ranking rankingType, boolean memoize) {
         this.rankingType = rankingType;
+        if (memoize) {
+            this.scores = new IdentityHashMap<>();
+        }
     }
 
     /*
@@ -464,6 +489,25 @@ public class WinningOrderComparator extends AbstractLifterComparator implements
 
     }
 
+    @Override
+    double score(Athlete a, Score which) {
+        if (scores == null) {
+            return which.of(a);
+        }
+        double[] values = scores.get(a);
+        if (values == null) {
+            values = new double[Score.values().length];
+            Arrays.fill(values, Double.NaN);
+            scores.put(a, values);
+        }
+        double value = values[which.ordinal()];
+        if (Double.isNaN(value)) {
+            value = which.of(a);
+            values[which.ordinal()] = value;
+        }
+        return value;
+    }
+
     private void traceComparison(String where, Athlete lifter1, Athlete lifter2, int compare) {
         if (logger.isTraceEnabled()) {
             logger.trace("{} {} {} {}", where, lifter1, (compare < 0 ? "<" : (compare == 0 ? "=" : ">")), lifter2);
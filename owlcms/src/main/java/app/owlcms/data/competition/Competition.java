@@ -13,6 +13,8 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 import javax.persistence.Cacheable;
 import javax.persistence.Column;
@@ -32,6 +34,9 @@ import app.owlcms.data.athlete.AthleteRepository;
 import app.owlcms.data.athlete.Gender;
 import app.owlcms.data.athleteSort.AthleteSorter;
 import app.owlcms.data.athleteSort.AthleteSorter.Ranking;
+import app.owlcms.data.athleteSort.RankingIndex;
+import app.owlcms.data.athleteSort.RankingSnapshot;
+import app.owlcms.data.athleteSort.TeamRankings;
 import app.owlcms.data.jpa.LocaleAttributeConverter;
 import app.owlcms.ui.results.Resource;
 import app.owlcms.utils.ResourceWalker;
@@ -50,6 +55,19 @@ public class Competition {
 
     private static Competition competition;
 
+    /** the rankings computed for reports, and the suffix of their bean names */
+    private static final Ranking[] REPORT_RANKINGS = { Ranking.SNATCH, Ranking.CLEANJERK, Ranking.TOTAL,
+            Ranking.SINCLAIR, Ranking.ROBI, Ranking.CUSTOM };
+    private static final String[] REPORT_SUFFIXES = { "Sn", "CJ", "Tot", "Sinclair", "Robi", "Cus" };
+
+    /**
+     * Threads used to compute the report rankings, created on first use.
+     */
+    private static class RankingPool {
+        private static final ForkJoinPool pool = new ForkJoinPool(
+                Main.getIntegerParam("rankingThreads", Math.min(4, Runtime.getRuntime().availableProcessors())));
+    }
+
     /**
      * Gets the current.
      *
@@ -64,6 +82,17 @@ public class Competition {
 
     public static void setCurrent(Competition c) {
         competition = c;
+        // the ranking rules may have changed
+        RankingIndex.getCurrent().invalidate();
+    }
+
+    private static void putByGender(HashMap<String, Object> reportingBeans2, String suffix,
+            List<Athlete> sortedAthletes) {
+        List<Athlete> sortedMen = new ArrayList<>(sortedAthletes.size());
+        List<Athlete> sortedWomen = new ArrayList<>(sortedAthletes.size());
+        splitByGender(sortedAthletes, sortedMen, sortedWomen);
+        reportingBeans2.put("m" + suffix, sortedMen);
+        reportingBeans2.put("w" + suffix, sortedWomen);
     }
 
     public static void splitByGender(List<Athlete> sortedAthletes, List<Athlete> sortedMen, List<Athlete> sortedWomen) {
@@ -142,11 +171,30 @@ public class Competition {
     @Transient
     private HashMap<String, Object> reportingBeans;
 
+    /**
+     * Make the rankings available for live displays.
+     *
+     * The rankings are kept up to date by {@link RankingIndex} and are only read
+     * from the database when the registration data has changed. The team
+     * standings are included, not the team-ordered lists of the competition book.
+     */
     public void computeGlobalRankings() {
-        this.setGlobalRankingRecompute(true);
-        computeGlobalRankings(reportingBeans);
+        this.reportingBeans = RankingIndex.getCurrent().getReportingBeans();
     }
 
+    /**
+     * Compute the rankings for reports, starting from the database.
+     *
+     * The rankings are computed in parallel. Each ranking sorts its own copy of
+     * the athlete list and computes the ranks without modifying the athletes
+     * ({@link AthleteSorter.RankAssignment}); the ranks are then stored in the
+     * athletes by the calling thread, and published as a {@link RankingSnapshot}
+     * (<code>rankings</code>). The team standings (<code>mTeamScoresTot</code>,
+     * etc.) and the team-ordered lists (<code>mTeam</code>, etc.) are then
+     * obtained from a single {@link TeamRankings}.
+     *
+     * @param reportingBeans2 the map where the lists are stored
+     */
     public void computeGlobalRankings(HashMap<String, Object> reportingBeans2) {
         List<Athlete> athletes = AthleteRepository.findAllByGroupAndWeighIn(null, true);
         if (athletes.isEmpty()) {
@@ -154,6 +202,21 @@ public class Competition {
             //throw new RuntimeException("No athletes.");
             return;
         }
+        long start = System.currentTimeMillis();
+        ForkJoinPool pool = RankingPool.pool;
+
+        List<ForkJoinTask<AthleteSorter.RankAssignment>> rankTasks = new ArrayList<>(REPORT_RANKINGS.length);
+        for (Ranking r : REPORT_RANKINGS) {
+            rankTasks.add(pool.submit(() -> {
+                List<Athlete> sortedAthletes = AthleteSorter.resultsOrderCopy(athletes, r);
+                if (r == Ranking.SINCLAIR || r == Ranking.ROBI) {
+                    return AthleteSorter.computeSinclairRanks(sortedAthletes, r);
+                } else {
+                    return AthleteSorter.computeCategoryRanks(sortedAthletes, r);
+                }
+            }));
+        }
+
         // extract club lists
         TreeSet<String> teams = new TreeSet<>();
         for (Athlete curAthlete : athletes) {
@@ -162,101 +225,48 @@ public class Competition {
         reportingBeans2.put("clubs", teams);
         logger.debug("teams {}", teams);
 
-        List<Athlete> sortedAthletes;
-        List<Athlete> sortedMen = null;
-        List<Athlete> sortedWomen = null;
-
-        sortedAthletes = AthleteSorter.resultsOrderCopy(athletes, Ranking.SNATCH);
-        AthleteSorter.assignCategoryRanks(sortedAthletes, Ranking.SNATCH);
-        sortedMen = new ArrayList<>(sortedAthletes.size());
-        sortedWomen = new ArrayList<>(sortedAthletes.size());
-        splitByGender(sortedAthletes, sortedMen, sortedWomen);
-        reportingBeans2.put("mSn", sortedMen);
-        reportingBeans2.put("wSn", sortedWomen);
+        RankingSnapshot.Builder snapshot = new RankingSnapshot.Builder();
+        for (int i = 0; i < REPORT_RANKINGS.length; i++) {
+            AthleteSorter.RankAssignment ranks = rankTasks.get(i).join();
+            ranks.apply();
+            snapshot.add(ranks);
+            putByGender(reportingBeans2, REPORT_SUFFIXES[i], ranks.getSortedList());
+        }
+        reportingBeans2.put("rankings", snapshot.build());
 
         // only needed once
-        reportingBeans2.put("nbMen", sortedMen.size());
-        reportingBeans2.put("nbWomen", sortedWomen.size());
-        reportingBeans2.put("nbAthletes", sortedAthletes.size());
+        int nbMen = ((List<?>) reportingBeans2.get("mSn")).size();
+        int nbWomen = ((List<?>) reportingBeans2.get("wSn")).size();
+        reportingBeans2.put("nbMen", nbMen);
+        reportingBeans2.put("nbWomen", nbWomen);
+        reportingBeans2.put("nbAthletes", athletes.size());
         reportingBeans2.put("nbClubs", teams.size());
-        if (sortedMen.size() > 0) {
+        if (nbMen > 0) {
             reportingBeans2.put("mClubs", teams);
         } else {
             reportingBeans2.put("mClubs", new ArrayList<String>());
         }
-        if (sortedWomen.size() > 0) {
+        if (nbWomen > 0) {
             reportingBeans2.put("wClubs", teams);
         } else {
             reportingBeans2.put("wClubs", new ArrayList<String>());
         }
 
-        sortedAthletes = AthleteSorter.resultsOrderCopy(athletes, Ranking.CLEANJERK);
-        AthleteSorter.assignCategoryRanks(sortedAthletes, Ranking.CLEANJERK);
-        sortedMen = new ArrayList<>(sortedAthletes.size());
-        sortedWomen = new ArrayList<>(sortedAthletes.size());
-        splitByGender(sortedAthletes, sortedMen, sortedWomen);
-        reportingBeans2.put("mCJ", sortedMen);
-        reportingBeans2.put("wCJ", sortedWomen);
-
-        sortedAthletes = AthleteSorter.resultsOrderCopy(athletes, Ranking.TOTAL);
-        AthleteSorter.assignCategoryRanks(sortedAthletes, Ranking.TOTAL);
-        sortedMen = new ArrayList<>(sortedAthletes.size());
-        sortedWomen = new ArrayList<>(sortedAthletes.size());
-        splitByGender(sortedAthletes, sortedMen, sortedWomen);
-        reportingBeans2.put("mTot", sortedMen);
-        reportingBeans2.put("wTot", sortedWomen);
-
-        sortedAthletes = AthleteSorter.resultsOrderCopy(athletes, Ranking.SINCLAIR);
-        AthleteSorter.assignSinclairRanksAndPoints(sortedAthletes, Ranking.SINCLAIR);
-        sortedMen = new ArrayList<>(sortedAthletes.size());
-        sortedWomen = new ArrayList<>(sortedAthletes.size());
-        splitByGender(sortedAthletes, sortedMen, sortedWomen);
-        reportingBeans2.put("mSinclair", sortedMen);
-        reportingBeans2.put("wSinclair", sortedWomen);
-        logger.debug("mSinclair {}", sortedMen);
-        logger.debug("wSinclair {}", sortedWomen);
-
-        sortedAthletes = AthleteSorter.resultsOrderCopy(athletes, Ranking.ROBI);
-        AthleteSorter.assignSinclairRanksAndPoints(sortedAthletes, Ranking.ROBI);
-        sortedMen = new ArrayList<>(sortedAthletes.size());
-        sortedWomen = new ArrayList<>(sortedAthletes.size());
-        splitByGender(sortedAthletes, sortedMen, sortedWomen);
-        reportingBeans2.put("mRobi", sortedMen);
-        reportingBeans2.put("wRobi", sortedWomen);
-
-        sortedAthletes = AthleteSorter.resultsOrderCopy(athletes, Ranking.CUSTOM);
-        AthleteSorter.assignCategoryRanks(sortedAthletes, Ranking.CUSTOM);
-        sortedMen = new ArrayList<>(sortedAthletes.size());
-        sortedWomen = new ArrayList<>(sortedAthletes.size());
-        splitByGender(sortedAthletes, sortedMen, sortedWomen);
-        reportingBeans2.put("mCus", sortedMen);
-        reportingBeans2.put("wCus", sortedWomen);
+        TeamRankings teamRankings = new TeamRankings(athletes, TeamRankings.getCountedAthletes());
+        teamRankings.putStandings(reportingBeans2);
 
         // team-oriented rankings. These put all the athletes from the same team
         // together,
         // sorted from best to worst, so that the top "n" can be given points
-        sortedAthletes = AthleteSorter.teamRankingOrderCopy(athletes, Ranking.CUSTOM);
-        sortedMen = new ArrayList<>(sortedAthletes.size());
-        sortedWomen = new ArrayList<>(sortedAthletes.size());
-        splitByGender(sortedAthletes, sortedMen, sortedWomen);
-        reportingBeans2.put("mCustom", sortedMen);
-        reportingBeans2.put("wCustom", sortedWomen);
-
-        sortedAthletes = AthleteSorter.teamRankingOrderCopy(athletes, Ranking.COMBINED);
-        sortedMen = new ArrayList<>(sortedAthletes.size());
-        sortedWomen = new ArrayList<>(sortedAthletes.size());
-        splitByGender(sortedAthletes, sortedMen, sortedWomen);
-        reportingBeans2.put("mCombined", sortedMen);
-        reportingBeans2.put("wCombined", sortedWomen);
+        putByGender(reportingBeans2, "Custom", teamRankings.getTeamOrder(Ranking.CUSTOM));
+        List<Athlete> sortedAthletes = teamRankings.getTeamOrder(Ranking.COMBINED);
+        putByGender(reportingBeans2, "Combined", sortedAthletes);
         reportingBeans2.put("mwCombined", sortedAthletes);
-
-        AthleteSorter.teamRankingOrder(sortedAthletes, Ranking.TOTAL);
-        sortedMen = new ArrayList<>(sortedAthletes.size());
-        sortedWomen = new ArrayList<>(sortedAthletes.size());
-        splitByGender(sortedAthletes, sortedMen, sortedWomen);
-        reportingBeans2.put("mTeam", sortedMen);
-        reportingBeans2.put("wTeam", sortedWomen);
+        sortedAthletes = teamRankings.getTeamOrder(Ranking.TOTAL);
+        putByGender(reportingBeans2, "Team", sortedAthletes);
         reportingBeans2.put("mwTeam", sortedAthletes);
+        logger.debug("report rankings computed for {} athletes in {} ms", athletes.size(),
+                System.currentTimeMillis() - start);
     }
 
     public String getAgeGroupsFileName() {
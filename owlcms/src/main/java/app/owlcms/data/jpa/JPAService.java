@@ -43,6 +43,7 @@ import com.google.common.collect.ImmutableMap;
 import app.owlcms.Main;
 import app.owlcms.data.agegroup.AgeGroup;
 import app.owlcms.data.athlete.Athlete;
+import app.owlcms.data.athlete.AthleteWriteBehind;
 import app.owlcms.data.category.Category;
 import app.owlcms.data.competition.Competition;
 import app.owlcms.data.group.Group;
@@ -73,6 +74,7 @@ public class JPAService {
      * Close.
      */
     public static void close() {
+        AthleteWriteBehind.flush();
         if (factory != null) {
             factory.close();
         }
@@ -0,0 +1,202 @@
+/***
+ * Copyright (c) 2009-2019 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.displays;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.slf4j.LoggerFactory;
+
+import app.owlcms.data.athlete.AthleteView;
+import app.owlcms.data.competition.Competition;
+import app.owlcms.init.OwlcmsSession;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import elemental.json.Json;
+import elemental.json.JsonArray;
+import elemental.json.JsonObject;
+import elemental.json.JsonValue;
+
+/**
+ * The athletes JSON sent to the displays of a field of play.
+ *
+ * The field of play copies the athletes into new {@link AthleteView} lists
+ * each time the order changes. The JSON for a list is computed by the first
+ * display that needs it and reused by all the other displays of the same kind
+ * and language; the cached value must not be modified.
+ *
+ * Each JSON computed gets a new version number. For displays that only send
+ * what changed, the difference between two versions is also computed once.
+ *
+ * @author owlcms
+ */
+public class RenderCache {
+
+    /**
+     * The JSON for one list of athletes. Does not change once created.
+     */
+    public static final class Rendered {
+        /** kind of display, language and competition settings */
+        private final String key;
+        private final List<AthleteView> views;
+        private final JsonValue json;
+        private final long version;
+
+        Rendered(String key, List<AthleteView> views, JsonValue json, long version) {
+            this.key = key;
+            this.views = views;
+            this.json = json;
+            this.version = version;
+        }
+
+        /**
+         * @return the JSON, shared; must not be modified
+         */
+        public JsonValue getJson() {
+            return json;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+    }
+
+    /** the last difference computed for a kind of display and language */
+    private static final class Delta {
+        private final Rendered from;
+        private final Rendered to;
+        private final JsonObject json;
+
+        Delta(Rendered from, Rendered to, JsonObject json) {
+            this.from = from;
+            this.to = to;
+            this.json = json;
+        }
+    }
+
+    final private static Logger logger = (Logger) LoggerFactory.getLogger(RenderCache.class);
+    static {
+        logger.setLevel(Level.INFO);
+    }
+
+    /** key of a row in the arrays compared by {@link #getDelta(Rendered, Rendered)} */
+    public static final String ROW_KEY = "key";
+
+    /**
+     * Compare two arrays of rows identified by {@link #ROW_KEY}.
+     *
+     * The result has the versions compared (<code>from</code> and
+     * <code>to</code>), the new or modified rows (<code>changed</code>) and, only
+     * if rows were inserted, removed or moved, the keys of all the rows in their
+     * new order (<code>order</code>).
+     *
+     * @param from
+     * @param to
+     * @return the difference, null if the JSON values are not arrays
+     */
+    static JsonObject computeDelta(Rendered from, Rendered to) {
+        if (!(from.json instanceof JsonArray) || !(to.json instanceof JsonArray)) {
+            return null;
+        }
+        JsonArray fromRows = (JsonArray) from.json;
+        JsonArray toRows = (JsonArray) to.json;
+        Map<String, String> previous = new HashMap<>();
+        for (int i = 0; i < fromRows.length(); i++) {
+            JsonObject row = fromRows.getObject(i);
+            previous.put(row.getString(ROW_KEY), row.toJson());
+        }
+
+        JsonArray changed = Json.createArray();
+        JsonArray order = Json.createArray();
+        boolean moved = fromRows.length() != toRows.length();
+        for (int i = 0; i < toRows.length(); i++) {
+            JsonObject row = toRows.getObject(i);
+            String key = row.getString(ROW_KEY);
+            String before = previous.get(key);
+            if (before == null || !before.equals(row.toJson())) {
+                changed.set(changed.length(), row);
+            }
+            if (!moved && !key.equals(fromRows.getObject(i).getString(ROW_KEY))) {
+                moved = true;
+            }
+            order.set(i, key);
+        }
+
+        JsonObject delta = Json.createObject();
+        delta.put("from", from.version);
+        delta.put("to", to.version);
+        delta.put("changed", changed);
+        if (moved) {
+            delta.put("order", order);
+        }
+        return delta;
+    }
+
+    private final Map<String, Rendered> rendered = new HashMap<>();
+    private final Map<String, Delta> deltas = new HashMap<>();
+    private long version = 0;
+
+    /**
+     * Get the JSON for the athletes, computing it if the list has changed since
+     * the last call.
+     *
+     * @param kind     the display, each kind has its own format
+     * @param views    the athletes, as copied by the field of play
+     * @param renderer computes the JSON; must only depend on the athletes, the
+     *                 language and the competition settings
+     * @return the JSON, shared; must not be modified
+     */
+    public JsonValue get(String kind, List<AthleteView> views, Function<List<AthleteView>, JsonValue> renderer) {
+        return getRendered(kind, views, renderer).getJson();
+    }
+
+    /**
+     * Get the difference between two versions of the JSON for a kind of display.
+     *
+     * The displays of a field of play usually show the same versions, so the
+     * last difference is kept for the next display of the same kind and
+     * language.
+     *
+     * @param from the version shown
+     * @param to   the version to show, obtained from
+     *             {@link #getRendered(String, List, Function)}
+     * @return the difference (see {@link #computeDelta(Rendered, Rendered)}),
+     *         shared; null if the JSON values are not arrays of rows
+     */
+    public synchronized JsonObject getDelta(Rendered from, Rendered to) {
+        Delta d = deltas.get(to.key);
+        if (d == null || d.from != from || d.to != to) {
+            d = new Delta(from, to, computeDelta(from, to));
+            deltas.put(to.key, d);
+        }
+        return d.json;
+    }
+
+    /**
+     * Same as {@link #get(String, List, Function)}, with the version.
+     *
+     * @param kind
+     * @param views
+     * @param renderer
+     * @return the JSON and its version
+     */
+    public synchronized Rendered getRendered(String kind, List<AthleteView> views,
+            Function<List<AthleteView>, JsonValue> renderer) {
+        Locale locale = OwlcmsSession.getLocale();
+        String key = kind + "/" + locale + "/" + Competition.getCurrent().isMasters();
+        Rendered r = rendered.get(key);
+        if (r == null || r.views != views) {
+            r = new Rendered(key, views, renderer.apply(views), ++version);
+            rendered.put(key, r);
+            logger.trace("rendered {} version {} for {} athletes", key, version, views.size());
+        }
+        return r;
+    }
+}
@@ -33,6 +33,7 @@ import app.owlcms.components.elements.BreakTimerElement;
 import app.owlcms.components.elements.DecisionElement;
 import app.owlcms.components.elements.Plates;
 import app.owlcms.data.athlete.Athlete;
+import app.owlcms.data.athlete.AthleteView;
 import app.owlcms.data.group.Group;
 import app.owlcms.fieldofplay.BreakType;
 import app.owlcms.fieldofplay.FOPState;
@@ -161,14 +162,16 @@ public class AttemptBoard extends PolymerTemplate<AttemptBoard.AttemptBoardModel
             return;
         }
 
+        // the athlete may be modified by the field of play while we read it
+        AthleteView v = fop.getAthleteView(a);
         AttemptBoardModel model = getModel();
-        model.setLastName(a.getLastName());
-        model.setFirstName(a.getFirstName());
-        model.setTeamName(a.getTeam());
-        model.setStartNumber(a.getStartNumber());
-        String formattedAttempt = formatAttempt(a.getAttemptNumber());
+        model.setLastName(v.getLastName());
+        model.setFirstName(v.getFirstName());
+        model.setTeamName(v.getTeam());
+        model.setStartNumber(v.getStartNumber());
+        String formattedAttempt = formatAttempt(v.getAttemptNumber());
         model.setAttempt(formattedAttempt);
-        model.setWeight(a.getNextAttemptRequestedWeight());
+        model.setWeight(v.getNextAttemptRequestedWeight());
         showPlates();
         this.getElement().callJsFunction("reset");
     }
@@ -6,7 +6,6 @@
  */
 package app.owlcms.displays.liftingorder;
 
-import java.util.Collections;
 import java.util.Enumeration;
 import java.util.List;
 
@@ -30,9 +29,7 @@ import com.vaadin.flow.theme.Theme;
 import com.vaadin.flow.theme.lumo.Lumo;
 
 import app.owlcms.data.athlete.Athlete;
-import app.owlcms.data.athleteSort.AthleteSorter;
-import app.owlcms.data.category.Category;
-import app.owlcms.data.competition.Competition;
+import app.owlcms.data.athlete.AthleteView;
 import app.owlcms.data.group.Group;
 import app.owlcms.displays.DarkModeParameters;
 import app.owlcms.displays.attemptboard.BreakDisplay;
@@ -119,7 +116,8 @@ public class LiftingOrder extends PolymerTemplate<LiftingOrder.LiftingOrderModel
     }
 
     private EventBus uiEventBus;
-    private List<Athlete> order;
+    /** the athletes as copied by the field of play after the last sort */
+    private List<AthleteView> order;
     private Group curGroup;
     private int liftsDone;
 
@@ -151,7 +149,7 @@ public class LiftingOrder extends PolymerTemplate<LiftingOrder.LiftingOrderModel
     public void doBreak() {
         OwlcmsSession.withFop(fop -> UIEventProcessor.uiAccess(this, uiEventBus, () -> {
             LiftingOrderModel model = getModel();
-            order = fop.getLiftingOrder();
+            order = fop.getLiftingOrderViews();
             model.setHidden(false);
             doUpdate(fop.getCurAthlete(), null);
         }));
@@ -192,19 +190,12 @@ public class LiftingOrder extends PolymerTemplate<LiftingOrder.LiftingOrderModel
         updateBottom(model, computeLiftType(a));
     }
 
-    private JsonValue getAthletesJson(List<Athlete> list2) {
+    private JsonValue getAthletesJson(List<AthleteView> list2) {
         JsonArray jath = Json.createArray();
         int athx = 0;
-        List<Athlete> list3 = Collections.unmodifiableList(list2);
-        for (Athlete a : list3) {
+        for (AthleteView a : list2) {
             JsonObject ja = Json.createObject();
-            Category curCat = a.getCategory();
-            String category;
-            if (Competition.getCurrent().isMasters()) {
-                category = a.getShortCategory();
-            } else {
-                category = curCat != null ? curCat.getName() : "";
-            }
+            String category = a.getDisplayCategory();
             ja.put("fullName", a.getFullName() != null ? a.getFullName() : "");
             ja.put("teamName", a.getTeam() != null ? a.getTeam() : "");
             ja.put("yearOfBirth", a.getYearOfBirth());
@@ -213,7 +204,7 @@ public class LiftingOrder extends PolymerTemplate<LiftingOrder.LiftingOrderModel
             String mastersAgeGroup = a.getMastersAgeGroup();
             ja.put("mastersAgeGroup", mastersAgeGroup != null ? mastersAgeGroup : "");
             ja.put("category", category != null ? category : "");
-            ja.put("nextAttemptNo", AthleteGridContent.formatAttemptNumber(a));
+            ja.put("nextAttemptNo", AthleteGridContent.formatAttemptNumber(a.getAttemptsDone(), a.getAttemptNumber()));
             Integer nextAttemptRequestedWeight = a.getNextAttemptRequestedWeight();
             ja.put("requestedWeight", nextAttemptRequestedWeight == 0 ? "-" : nextAttemptRequestedWeight.toString());
             Integer liftOrderRank = a.getLiftOrderRank();
@@ -283,8 +274,8 @@ public class LiftingOrder extends PolymerTemplate<LiftingOrder.LiftingOrderModel
         OwlcmsSession.withFop(fop -> {
             init();
             // sync with current status of FOP
-            order = fop.getLiftingOrder();
-            liftsDone = AthleteSorter.countLiftsDone(order);
+            order = fop.getLiftingOrderViews();
+            liftsDone = AthleteView.countLiftsDone(order);
             syncWithFOP(null);
             // we listen on uiEventBus.
             uiEventBus = uiEventBusRegister(this, fop);
@@ -338,7 +329,7 @@ public class LiftingOrder extends PolymerTemplate<LiftingOrder.LiftingOrderModel
         UIEventProcessor.uiAccess(this, uiEventBus, e, () -> {
             Athlete a = e.getAthlete();
             getModel().setHidden(false);
-            liftsDone = AthleteSorter.countLiftsDone(order);
+            liftsDone = AthleteView.countLiftsDone(order);
             doUpdate(a, e);
         });
     }
@@ -376,8 +367,10 @@ public class LiftingOrder extends PolymerTemplate<LiftingOrder.LiftingOrderModel
         uiLog(e);
         UIEventProcessor.uiAccess(this, uiEventBus, e, () -> {
             Athlete a = e.getAthlete();
-            order = e.getLiftingOrder();
-            liftsDone = AthleteSorter.countLiftsDone(order);
+            if (e.getLiftingOrderViews() != null) {
+                order = e.getLiftingOrderViews();
+            }
+            liftsDone = AthleteView.countLiftsDone(order);
             doUpdate(a, e);
         });
     }
@@ -448,9 +441,11 @@ public class LiftingOrder extends PolymerTemplate<LiftingOrder.LiftingOrderModel
             model.setGroupName(
                     curGroup != null ? Translator.translate("Scoreboard.GroupLiftType", curGroup.getName(), liftType)
                             : "");
+            model.setLiftsDone(Translator.translate("Scoreboard.AttemptsDone", liftsDone));
+            // computed once for all the lifting order displays of the field of play
+            this.getElement().setPropertyJson("athletes",
+                    fop.getRenderCache().get("liftingOrder", order, this::getAthletesJson));
         });
-        model.setLiftsDone(Translator.translate("Scoreboard.AttemptsDone", liftsDone));
-        this.getElement().setPropertyJson("athletes", getAthletesJson(order));
     }
 
 }
@@ -6,7 +6,6 @@
  */
 package app.owlcms.displays.scoreboard;
 
-import java.util.Collections;
 import java.util.Enumeration;
 import java.util.List;
 
@@ -16,6 +15,7 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.eventbus.EventBus;
 import com.google.common.eventbus.Subscribe;
 import com.vaadin.flow.component.AttachEvent;
+import com.vaadin.flow.component.ClientCallable;
 import com.vaadin.flow.component.Tag;
 import com.vaadin.flow.component.UI;
 import com.vaadin.flow.component.contextmenu.ContextMenu;
@@ -34,14 +34,13 @@ import app.owlcms.components.elements.AthleteTimerElement;
 import app.owlcms.components.elements.BreakTimerElement;
 import app.owlcms.components.elements.DecisionElement;
 import app.owlcms.data.athlete.Athlete;
+import app.owlcms.data.athlete.AthleteView;
 import app.owlcms.data.athlete.LiftDefinition.Changes;
 import app.owlcms.data.athlete.LiftInfo;
-import app.owlcms.data.athlete.XAthlete;
-import app.owlcms.data.athleteSort.AthleteSorter;
-import app.owlcms.data.category.Category;
-import app.owlcms.data.competition.Competition;
 import app.owlcms.data.group.Group;
 import app.owlcms.displays.DarkModeParameters;
+import app.owlcms.displays.RenderCache;
+import app.owlcms.displays.RenderCache.Rendered;
 import app.owlcms.displays.attemptboard.BreakDisplay;
 import app.owlcms.fieldofplay.BreakType;
 import app.owlcms.fieldofplay.UIEvent;
@@ -137,7 +136,10 @@ public class Scoreboard extends PolymerTemplate<Scoreboard.ScoreboardModel> impl
     private DecisionElement decisions; // Flow creates it
 
     private EventBus uiEventBus;
-    private List<Athlete> order;
+    /** the athletes as copied by the field of play after the last sort */
+    private List<AthleteView> order;
+    /** the athletes JSON last sent to the browser, null if none */
+    private Rendered shownAthletes;
     private Group curGroup;
     private int liftsDone;
 
@@ -263,13 +265,8 @@ public class Scoreboard extends PolymerTemplate<Scoreboard.ScoreboardModel> impl
                 : (total.startsWith("-") ? "(" + total.substring(1) + ")" : total);
     }
 
-    public void getAthleteJson(Athlete a, JsonObject ja, Category curCat) {
-        String category;
-        if (Competition.getCurrent().isMasters()) {
-            category = a.getShortCategory();
-        } else {
-            category = curCat != null ? curCat.getName() : "";
-        }
+    public void getAthleteJson(AthleteView a, JsonObject ja) {
+        String category = a.getDisplayCategory();
         ja.put("fullName", a.getFullName() != null ? a.getFullName() : "");
         ja.put("teamName", a.getTeam() != null ? a.getTeam() : "");
         ja.put("yearOfBirth", a.getYearOfBirth());
@@ -297,23 +294,24 @@ public class Scoreboard extends PolymerTemplate<Scoreboard.ScoreboardModel> impl
      * @param list2
      * @return
      */
-    private JsonValue getAthletesJson(List<Athlete> list2) {
+    private JsonValue getAthletesJson(List<AthleteView> list2) {
         JsonArray jath = Json.createArray();
         int athx = 0;
-        Category prevCat = null;
-        List<Athlete> list3 = Collections.unmodifiableList(list2);
-        for (Athlete a : list3) {
+        String prevCat = null;
+        for (AthleteView a : list2) {
             JsonObject ja = Json.createObject();
-            Category curCat = a.getCategory();
+            String curCat = a.getCategoryName();
             if (curCat != null && !curCat.equals(prevCat)) {
                 // changing categories, put marker before athlete
+                ja.put(RenderCache.ROW_KEY, "c" + curCat);
                 ja.put("isSpacer", true);
                 jath.set(athx, ja);
                 ja = Json.createObject();
                 prevCat = curCat;
                 athx++;
             }
-            getAthleteJson(a, ja, curCat);
+            ja.put(RenderCache.ROW_KEY, a.getId() != null ? "a" + a.getId() : "i" + athx);
+            getAthleteJson(a, ja);
             jath.set(athx, ja);
             athx++;
         }
@@ -329,17 +327,16 @@ public class Scoreboard extends PolymerTemplate<Scoreboard.ScoreboardModel> impl
      * @param a
      * @return json string with nested attempts values
      */
-    protected void getAttemptsJson(Athlete a) {
+    protected void getAttemptsJson(AthleteView a) {
         sattempts = Json.createArray();
         cattempts = Json.createArray();
-        XAthlete x = new XAthlete(a);
-        Integer liftOrderRank = x.getLiftOrderRank();
-        Integer curLift = x.getAttemptsDone();
+        Integer liftOrderRank = a.getLiftOrderRank();
+        int curLift = a.getAttemptsDone();
         int ix = 0;
-        for (LiftInfo i : x.getRequestInfoArray()) {
+        for (LiftInfo i : a.getAttempts()) {
             JsonObject jri = Json.createObject();
             String stringValue = i.getStringValue();
-            boolean notDone = x.getAttemptsDone() < 6;
+            boolean notDone = curLift < 6;
             String blink = (notDone ? " blink" : "");
 
             jri.put("goodBadClassName", "narrow empty");
@@ -415,6 +412,7 @@ public class Scoreboard extends PolymerTemplate<Scoreboard.ScoreboardModel> impl
         });
         setTranslationMap();
         order = ImmutableList.of();
+        shownAthletes = null;
     }
 
     @Override
@@ -437,8 +435,8 @@ public class Scoreboard extends PolymerTemplate<Scoreboard.ScoreboardModel> impl
         OwlcmsSession.withFop(fop -> {
             init();
             // sync with current status of FOP
-            order = fop.getDisplayOrder();
-            liftsDone = AthleteSorter.countLiftsDone(order);
+            order = fop.getDisplayOrderViews();
+            liftsDone = AthleteView.countLiftsDone(order);
             syncWithFOP(null);
             // we listen on uiEventBus.
             uiEventBus = uiEventBusRegister(this, fop);
@@ -452,6 +450,44 @@ public class Scoreboard extends PolymerTemplate<Scoreboard.ScoreboardModel> impl
      */
     public void reset() {
         order = ImmutableList.of();
+        shownAthletes = null;
+    }
+
+    /**
+     * Called by the browser when it missed an update of the athletes.
+     */
+    @ClientCallable
+    public void resyncAthletes() {
+        logger.debug("{} resync athletes", this);
+        if (shownAthletes != null) {
+            sendAllAthletes(shownAthletes);
+        }
+    }
+
+    /**
+     * Send all the athletes. The browser then applies the differences to this
+     * version.
+     */
+    private void sendAllAthletes(Rendered rendered) {
+        this.getElement().setPropertyJson("athletes", rendered.getJson());
+        this.getElement().setProperty("athletesVersion", rendered.getVersion());
+    }
+
+    /**
+     * Send the rows that differ from those shown, or all the rows if most have
+     * changed.
+     */
+    private void sendAthletes(RenderCache cache, Rendered rendered) {
+        if (rendered == shownAthletes) {
+            return;
+        }
+        JsonObject delta = shownAthletes != null ? cache.getDelta(shownAthletes, rendered) : null;
+        if (delta == null || delta.getArray("changed").length() * 2 > ((JsonArray) rendered.getJson()).length()) {
+            sendAllAthletes(rendered);
+        } else {
+            this.getElement().callJsFunction("applyAthletesDelta", delta);
+        }
+        shownAthletes = rendered;
     }
 
     @Override
@@ -493,12 +529,13 @@ public class Scoreboard extends PolymerTemplate<Scoreboard.ScoreboardModel> impl
             Athlete a = e.getAthlete();
             getModel().setHidden(false);
             if (a == null) {
-                order = fop.getLiftingOrder();
-                a = order.size() > 0 ? order.get(0) : null;
-                liftsDone = AthleteSorter.countLiftsDone(order);
+                List<Athlete> liftingOrder = fop.getLiftingOrder();
+                a = liftingOrder.size() > 0 ? liftingOrder.get(0) : null;
+                order = fop.getLiftingOrderViews();
+                liftsDone = AthleteView.countLiftsDone(order);
                 doUpdate(a, e);
             } else {
-                liftsDone = AthleteSorter.countLiftsDone(order);
+                liftsDone = AthleteView.countLiftsDone(order);
                 doUpdate(a, e);
             }
         }));
@@ -551,8 +588,10 @@ public class Scoreboard extends PolymerTemplate<Scoreboard.ScoreboardModel> impl
         uiEventLogger.debug("### {} isDisplayToggle={}", this.getClass().getSimpleName(), e.isDisplayToggle());
         UIEventProcessor.uiAccess(this, uiEventBus, e, () -> {
             Athlete a = e.getAthlete();
-            order = e.getDisplayOrder();
-            liftsDone = AthleteSorter.countLiftsDone(order);
+            if (e.getDisplayOrderViews() != null) {
+                order = e.getDisplayOrderViews();
+            }
+            liftsDone = AthleteView.countLiftsDone(order);
             doUpdate(a, e);
         });
     }
@@ -624,9 +663,11 @@ public class Scoreboard extends PolymerTemplate<Scoreboard.ScoreboardModel> impl
             model.setGroupName(
                     curGroup != null ? Translator.translate("Scoreboard.GroupLiftType", curGroup.getName(), liftType)
                             : "");
-            order = fop.getDisplayOrder();
+            order = fop.getDisplayOrderViews();
             model.setLiftsDone(Translator.translate("Scoreboard.AttemptsDone", liftsDone));
-            this.getElement().setPropertyJson("athletes", getAthletesJson(order));
+            // computed once for all the scoreboards of the field of play
+            RenderCache cache = fop.getRenderCache();
+            sendAthletes(cache, cache.getRendered("scoreboard", order, this::getAthletesJson));
         });
 
     }
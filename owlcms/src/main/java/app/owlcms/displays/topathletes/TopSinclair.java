@@ -6,11 +6,7 @@
  */
 package app.owlcms.displays.topathletes;
 
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Enumeration;
-import java.util.List;
-import java.util.ListIterator;
 
 import org.slf4j.LoggerFactory;
 
@@ -32,10 +28,6 @@ import com.vaadin.flow.theme.lumo.Lumo;
 
 import app.owlcms.data.athlete.Athlete;
 import app.owlcms.data.athlete.Gender;
-import app.owlcms.data.athlete.LiftDefinition.Changes;
-import app.owlcms.data.athlete.LiftInfo;
-import app.owlcms.data.athlete.XAthlete;
-import app.owlcms.data.competition.Competition;
 import app.owlcms.displays.DarkModeParameters;
 import app.owlcms.displays.attemptboard.BreakDisplay;
 import app.owlcms.fieldofplay.FieldOfPlay;
@@ -52,7 +44,6 @@ import ch.qos.logback.classic.Logger;
 import elemental.json.Json;
 import elemental.json.JsonArray;
 import elemental.json.JsonObject;
-import elemental.json.JsonValue;
 
 /**
  * Class TopSinclair
@@ -104,12 +95,8 @@ public class TopSinclair extends PolymerTemplate<TopSinclair.LiftingOrderModel>
 
     private EventBus uiEventBus;
 
-    JsonArray sattempts;
-    JsonArray cattempts;
-    private double topManSinclair;
-    private double topWomanSinclair;
-    private List<Athlete> sortedMen;
-    private List<Athlete> sortedWomen;
+    /** the same rankings are received from the bus of every platform */
+    private long shownRankingVersion = -1;
     private boolean darkMode;
     private ContextMenu contextMenu;
     private Location location;
@@ -145,186 +132,6 @@ public class TopSinclair extends PolymerTemplate<TopSinclair.LiftingOrderModel>
         });
     }
 
-    public void doUpdate(Competition competition) {
-        this.getElement().callJsFunction("reset");
-
-        setSortedMen(competition.getGlobalSinclairRanking(Gender.M));
-        setSortedWomen(competition.getGlobalSinclairRanking(Gender.F));
-
-        topManSinclair = 0.0D;
-        List<Athlete> sortedMen2 = getSortedMen();
-        if (sortedMen2 != null && !sortedMen2.isEmpty()) {
-            ListIterator<Athlete> iterMen = sortedMen2.listIterator();
-            while (iterMen.hasNext()) {
-                Athlete curMan = iterMen.next();
-                Double curSinclair = (curMan.getAttemptsDone() <= 3 ? curMan.getSinclairForDelta()
-                        : curMan.getSinclair());
-                if (curSinclair <= 0) {
-                    iterMen.remove();
-                } else {
-                    if (curSinclair > topManSinclair) {
-                        topManSinclair = curSinclair;
-                    }
-                }
-            }
-            int minMen = java.lang.Math.min(5, sortedMen2.size());
-            setSortedMen(sortedMen2.subList(0, minMen));
-        } else {
-            setSortedMen(new ArrayList<Athlete>());
-        }
-//        Athlete topMan = (getSortedMen().size() > 0 ? getSortedMen().get(0) : null);
-//        topManSinclair = (topMan != null ? topMan.getSinclairForDelta() : 999.0D);
-
-        topWomanSinclair = 0.0D;
-        List<Athlete> sortedWomen2 = getSortedWomen();
-        if (sortedMen2 != null && !sortedMen2.isEmpty()) {
-            ListIterator<Athlete> iterWomen = sortedWomen2.listIterator();
-            while (iterWomen.hasNext()) {
-                Athlete curWoman = iterWomen.next();
-                Double curSinclair = curWoman.getSinclairForDelta();
-                if (curSinclair <= 0) {
-                    iterWomen.remove();
-                } else {
-                    if (curSinclair > topWomanSinclair) {
-                        topWomanSinclair = curSinclair;
-                    }
-                }
-            }
-            int minWomen = java.lang.Math.min(5, getSortedWomen().size());
-            setSortedWomen(getSortedWomen().subList(0, minWomen));
-        } else {
-            setSortedWomen(new ArrayList<Athlete>());
-        }
-
-        updateBottom(getModel());
-    }
-
-    private String formatInt(Integer total) {
-        if (total == null || total == 0) {
-            return "-";
-        } else if (total == -1) {
-            return "inv.";// invited lifter, not eligible.
-        } else if (total < 0) {
-            return "(" + Math.abs(total) + ")";
-        } else {
-            return total.toString();
-        }
-    }
-
-    private String formatKg(String total) {
-        return (total == null || total.trim().isEmpty()) ? "-"
-                : (total.startsWith("-") ? "(" + total.substring(1) + ")" : total);
-    }
-
-    public void getAthleteJson(Athlete a, JsonObject ja, Gender g, int needed) {
-        String category;
-        if (Competition.getCurrent().isMasters()) {
-            category = a.getShortCategory();
-        } else {
-            category = a.getCategory() != null ? a.getCategory().getName() : "";
-        }
-        ja.put("fullName", a.getFullName() != null ? a.getFullName() : "");
-        ja.put("teamName", a.getTeam() != null ? a.getTeam() : "");
-        ja.put("yearOfBirth", a.getYearOfBirth());
-        Integer startNumber = a.getStartNumber();
-        ja.put("startNumber", (startNumber != null ? startNumber.toString() : ""));
-        String mastersAgeGroup = a.getMastersAgeGroup();
-        ja.put("mastersAgeGroup", mastersAgeGroup != null ? mastersAgeGroup : "");
-        ja.put("category", category != null ? category : "");
-        getAttemptsJson(a);
-        ja.put("sattempts", sattempts);
-        ja.put("cattempts", cattempts);
-        ja.put("total", formatInt(a.getTotal()));
-        ja.put("bw", String.format("%.2f", a.getBodyWeight()));
-        ja.put("sinclair", String.format("%.3f", a.getSinclair()));
-        ja.put("needed", formatInt(needed));
-    }
-
-    private JsonValue getAthletesJson(List<Athlete> list2) {
-        JsonArray jath = Json.createArray();
-        int athx = 0;
-        List<Athlete> list3 = Collections.unmodifiableList(list2);
-        for (Athlete a : list3) {
-            JsonObject ja = Json.createObject();
-            Gender curGender = a.getGender();
-
-            int needed;
-            if (curGender == Gender.F) {
-                needed = (int) Math
-                        .round(Math.ceil((topWomanSinclair - a.getSinclairForDelta()) / a.getSinclairFactor()));
-            } else {
-                needed = (int) Math
-                        .round(Math.ceil((topManSinclair - a.getSinclairForDelta()) / a.getSinclairFactor()));
-            }
-            getAthleteJson(a, ja, curGender, needed);
-            jath.set(athx, ja);
-            athx++;
-        }
-        return jath;
-    }
-
-    /**
-     * Compute Json string ready to be used by web component template
-     *
-     * CSS classes are pre-computed and passed along with the values; weights are
-     * formatted.
-     *
-     * @param a
-     * @return json string with nested attempts values
-     */
-    protected void getAttemptsJson(Athlete a) {
-        sattempts = Json.createArray();
-        cattempts = Json.createArray();
-        XAthlete x = new XAthlete(a);
-        Integer liftOrderRank = x.getLiftOrderRank();
-        Integer curLift = x.getAttemptsDone();
-        int ix = 0;
-        for (LiftInfo i : x.getRequestInfoArray()) {
-            JsonObject jri = Json.createObject();
-            String stringValue = i.getStringValue();
-            boolean notDone = x.getAttemptsDone() < 6;
-            String blink = (notDone ? " blink" : "");
-
-            jri.put("goodBadClassName", "veryNarrow empty");
-            jri.put("stringValue", "");
-            if (i.getChangeNo() >= 0) {
-                String trim = stringValue != null ? stringValue.trim() : "";
-                switch (Changes.values()[i.getChangeNo()]) {
-                case ACTUAL:
-                    if (!trim.isEmpty()) {
-                        if (trim.contentEquals("-") || trim.contentEquals("0")) {
-                            jri.put("goodBadClassName", "veryNarrow fail");
-                            jri.put("stringValue", "-");
-                        } else {
-                            boolean failed = stringValue.startsWith("-");
-                            jri.put("goodBadClassName", failed ? "veryNarrow fail" : "veryNarrow good");
-                            jri.put("stringValue", formatKg(stringValue));
-                        }
-                    }
-                    break;
-                default:
-                    if (stringValue != null && !trim.isEmpty()) {
-                        String highlight = i.getLiftNo() == curLift && liftOrderRank == 1 ? (" current" + blink)
-                                : (i.getLiftNo() == curLift && liftOrderRank == 2) ? " next" : "";
-                        jri.put("goodBadClassName", "veryNarrow request");
-                        if (notDone) {
-                            jri.put("className", highlight);
-                        }
-                        jri.put("stringValue", stringValue);
-                    }
-                    break;
-                }
-            }
-
-            if (ix < 3) {
-                sattempts.set(ix, jri);
-            } else {
-                cattempts.set(ix % 3, jri);
-            }
-            ix++;
-        }
-    }
-
     @Override
     public ContextMenu getContextMenu() {
         return contextMenu;
@@ -350,18 +157,6 @@ public class TopSinclair extends PolymerTemplate<TopSinclair.LiftingOrderModel>
         return getTranslation("Scoreboard.TopSinclair");
     }
 
-//    private String formatAttempt(Integer attemptNo) {
-//        return Translator.translate("AttemptBoard_attempt_number", (attemptNo % 3) + 1);
-//    }
-
-    private List<Athlete> getSortedMen() {
-        return this.sortedMen;
-    }
-
-    private List<Athlete> getSortedWomen() {
-        return this.sortedWomen;
-    }
-
     @Override
     public boolean isDarkMode() {
         return this.darkMode;
@@ -387,9 +182,9 @@ public class TopSinclair extends PolymerTemplate<TopSinclair.LiftingOrderModel>
             // we listen on all the uiEventBus.
             uiEventBus = uiEventBusRegister(this, fop);
         }
-        Competition competition = Competition.getCurrent();
-        competition.computeGlobalRankings();
-        doUpdate(competition);
+        TopSinclairBoard.getCurrent().addDisplay();
+        this.getElement().callJsFunction("reset");
+        updateBottom(getModel());
         logger.debug("onAttach end");
     }
 
@@ -413,16 +208,6 @@ public class TopSinclair extends PolymerTemplate<TopSinclair.LiftingOrderModel>
         this.locationUI = locationUI;
     }
 
-    private void setSortedMen(List<Athlete> sortedMen) {
-        this.sortedMen = sortedMen;
-        logger.debug("sortedMen = {} -- {}", getSortedMen(), LoggerUtils.whereFrom());
-    }
-
-    private void setSortedWomen(List<Athlete> sortedWomen) {
-        this.sortedWomen = sortedWomen;
-        logger.debug("sortedWomen = {} -- {}", getSortedWomen(), LoggerUtils.whereFrom());
-    }
-
     protected void setTranslationMap() {
         JsonObject translations = Json.createObject();
         Enumeration<String> keys = Translator.getKeys();
@@ -438,10 +223,15 @@ public class TopSinclair extends PolymerTemplate<TopSinclair.LiftingOrderModel>
     @Subscribe
     public void slaveGlobalRankingUpdated(UIEvent.GlobalRankingUpdated e) {
         uiLog(e);
-        Competition competition = Competition.getCurrent();
-
+        synchronized (this) {
+            if (e.getVersion() <= shownRankingVersion) {
+                return;
+            }
+            shownRankingVersion = e.getVersion();
+        }
         UIEventProcessor.uiAccess(this, uiEventBus, () -> {
-            doUpdate(competition);
+            this.getElement().callJsFunction("reset");
+            updateBottom(getModel());
         });
     }
 
@@ -463,17 +253,21 @@ public class TopSinclair extends PolymerTemplate<TopSinclair.LiftingOrderModel>
         }
     }
 
+    /**
+     * Show the top athletes; the JSON is shared by all the displays.
+     */
     private void updateBottom(LiftingOrderModel model) {
-        getModel().setFullName(getTranslation("Scoreboard.TopSinclair"));
-        List<Athlete> sortedMen2 = getSortedMen();
-        logger.debug("updateBottom {}", sortedMen2);
+        model.setFullName(getTranslation("Scoreboard.TopSinclair"));
+        TopSinclairBoard board = TopSinclairBoard.getCurrent();
+        JsonArray men = board.getAthletesJson(Gender.M);
+        logger.debug("updateBottom {}", men.length());
         this.getElement().setProperty("topSinclairMen",
-                sortedMen2 != null && sortedMen2.size() > 0 ? getTranslation("Scoreboard.TopSinclairMen") : "");
-        this.getElement().setPropertyJson("sortedMen", getAthletesJson(sortedMen2));
-        List<Athlete> sortedWomen2 = getSortedWomen();
+                men.length() > 0 ? getTranslation("Scoreboard.TopSinclairMen") : "");
+        this.getElement().setPropertyJson("sortedMen", men);
+        JsonArray women = board.getAthletesJson(Gender.F);
         this.getElement().setProperty("topSinclairWomen",
-                sortedWomen2 != null && sortedWomen2.size() > 0 ? getTranslation("Scoreboard.TopSinclairWomen") : "");
-        this.getElement().setPropertyJson("sortedWomen", getAthletesJson(sortedWomen2));
+                women.length() > 0 ? getTranslation("Scoreboard.TopSinclairWomen") : "");
+        this.getElement().setPropertyJson("sortedWomen", women);
     }
 
 }
@@ -0,0 +1,344 @@
+/***
+ * Copyright (c) 2009-2019 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.displays.topathletes;
+
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import org.slf4j.LoggerFactory;
+
+import app.owlcms.data.athlete.Athlete;
+import app.owlcms.data.athlete.Gender;
+import app.owlcms.data.athlete.LiftDefinition.Changes;
+import app.owlcms.data.athlete.LiftInfo;
+import app.owlcms.data.athlete.XAthlete;
+import app.owlcms.data.athleteSort.RankingIndex;
+import app.owlcms.data.competition.Competition;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import elemental.json.Json;
+import elemental.json.JsonArray;
+import elemental.json.JsonObject;
+import elemental.json.JsonValue;
+
+/**
+ * The best Sinclair results of each gender, shared by all the
+ * {@link TopSinclair} displays.
+ *
+ * Only the best {@link #TOP_COUNT} athletes of each gender are kept, sorted by
+ * Sinclair. When the results of an athlete change, its place is updated in
+ * O(log {@link #TOP_COUNT}) and its JSON values are computed once. The JSON
+ * arrays sent to the displays, including the weight each athlete needs to take
+ * first place, are computed on first use after a change and are shared by all
+ * the displays.
+ *
+ * When an athlete falls out of the top, the athlete that replaces it is not
+ * known; the top is then read again from the {@link RankingIndex}, as it is
+ * when the athletes of the index have been read again.
+ *
+ * @author owlcms
+ */
+public class TopSinclairBoard {
+
+    /**
+     * An athlete of the top, with the values shown. Does not change once created.
+     */
+    private static final class Entry {
+        private final Long id;
+        private final Gender gender;
+        private final double score;
+        private final double sinclairForDelta;
+        private final double sinclairFactor;
+        /** the values shown, except the weight needed; must not be modified */
+        private final JsonObject json;
+
+        Entry(Athlete a) {
+            this.id = a.getId();
+            this.gender = a.getGender();
+            this.score = getScore(a);
+            this.sinclairForDelta = a.getSinclairForDelta();
+            this.sinclairFactor = a.getSinclairFactor();
+            this.json = getAthleteJson(a);
+        }
+    }
+
+    final private static Logger logger = (Logger) LoggerFactory.getLogger(TopSinclairBoard.class);
+    static {
+        logger.setLevel(Level.INFO);
+    }
+
+    /** number of athletes shown for each gender */
+    public static final int TOP_COUNT = 5;
+
+    /** best first; ties in the order of registration */
+    private static final Comparator<Entry> ORDER = Comparator.<Entry>comparingDouble((e) -> -e.score)
+            .thenComparing((e) -> e.id);
+
+    private static final TopSinclairBoard current = new TopSinclairBoard();
+
+    public static TopSinclairBoard getCurrent() {
+        return current;
+    }
+
+    private static String formatInt(Integer total) {
+        if (total == null || total == 0) {
+            return "-";
+        } else if (total == -1) {
+            return "inv.";// invited lifter, not eligible.
+        } else if (total < 0) {
+            return "(" + Math.abs(total) + ")";
+        } else {
+            return total.toString();
+        }
+    }
+
+    private static String formatKg(String total) {
+        return (total == null || total.trim().isEmpty()) ? "-"
+                : (total.startsWith("-") ? "(" + total.substring(1) + ")" : total);
+    }
+
+    private static JsonObject getAthleteJson(Athlete a) {
+        JsonObject ja = Json.createObject();
+        String category;
+        if (Competition.getCurrent().isMasters()) {
+            category = a.getShortCategory();
+        } else {
+            category = a.getCategory() != null ? a.getCategory().getName() : "";
+        }
+        ja.put("fullName", a.getFullName() != null ? a.getFullName() : "");
+        ja.put("teamName", a.getTeam() != null ? a.getTeam() : "");
+        ja.put("yearOfBirth", a.getYearOfBirth());
+        Integer startNumber = a.getStartNumber();
+        ja.put("startNumber", (startNumber != null ? startNumber.toString() : ""));
+        String mastersAgeGroup = a.getMastersAgeGroup();
+        ja.put("mastersAgeGroup", mastersAgeGroup != null ? mastersAgeGroup : "");
+        ja.put("category", category != null ? category : "");
+        putAttemptsJson(a, ja);
+        ja.put("total", formatInt(a.getTotal()));
+        ja.put("bw", String.format("%.2f", a.getBodyWeight()));
+        ja.put("sinclair", String.format("%.3f", a.getSinclair()));
+        return ja;
+    }
+
+    /**
+     * @return the Sinclair used to rank the athlete; during the snatch, the
+     *         Sinclair of the best snatch for men
+     */
+    private static double getScore(Athlete a) {
+        if (a.getGender() == Gender.M && a.getAttemptsDone() > 3) {
+            return a.getSinclair();
+        }
+        return a.getSinclairForDelta();
+    }
+
+    /**
+     * Compute the attempts ready to be used by web component template
+     *
+     * CSS classes are pre-computed and passed along with the values; weights are
+     * formatted.
+     */
+    private static void putAttemptsJson(Athlete a, JsonObject ja) {
+        JsonArray sattempts = Json.createArray();
+        JsonArray cattempts = Json.createArray();
+        XAthlete x = new XAthlete(a);
+        Integer liftOrderRank = x.getLiftOrderRank();
+        Integer curLift = x.getAttemptsDone();
+        int ix = 0;
+        for (LiftInfo i : x.getRequestInfoArray()) {
+            JsonObject jri = Json.createObject();
+            String stringValue = i.getStringValue();
+            boolean notDone = x.getAttemptsDone() < 6;
+            String blink = (notDone ? " blink" : "");
+
+            jri.put("goodBadClassName", "veryNarrow empty");
+            jri.put("stringValue", "");
+            if (i.getChangeNo() >= 0) {
+                String trim = stringValue != null ? stringValue.trim() : "";
+                switch (Changes.values()[i.getChangeNo()]) {
+                case ACTUAL:
+                    if (!trim.isEmpty()) {
+                        if (trim.contentEquals("-") || trim.contentEquals("0")) {
+                            jri.put("goodBadClassName", "veryNarrow fail");
+                            jri.put("stringValue", "-");
+                        } else {
+                            boolean failed = stringValue.startsWith("-");
+                            jri.put("goodBadClassName", failed ? "veryNarrow fail" : "veryNarrow good");
+                            jri.put("stringValue", formatKg(stringValue));
+                        }
+                    }
+                    break;
+                default:
+                    if (stringValue != null && !trim.isEmpty()) {
+                        String highlight = i.getLiftNo() == curLift && liftOrderRank == 1 ? (" current" + blink)
+                                : (i.getLiftNo() == curLift && liftOrderRank == 2) ? " next" : "";
+                        jri.put("goodBadClassName", "veryNarrow request");
+                        if (notDone) {
+                            jri.put("className", highlight);
+                        }
+                        jri.put("stringValue", stringValue);
+                    }
+                    break;
+                }
+            }
+
+            if (ix < 3) {
+                sattempts.set(ix, jri);
+            } else {
+                cattempts.set(ix % 3, jri);
+            }
+            ix++;
+        }
+        ja.put("sattempts", sattempts);
+        ja.put("cattempts", cattempts);
+    }
+
+    private final Map<Gender, TreeSet<Entry>> top = new EnumMap<>(Gender.class);
+    private final Map<Long, Entry> entries = new HashMap<>();
+    /** generation of the index when the top was read, -1 if never */
+    private long indexGeneration = -1;
+    /** an athlete has left the top, the one that takes its place is unknown */
+    private boolean incomplete = false;
+    /** JSON arrays shown, null if there were changes since */
+    private final Map<Gender, JsonArray> shown = new EnumMap<>(Gender.class);
+
+    private TopSinclairBoard() {
+        for (Gender g : Gender.values()) {
+            top.put(g, new TreeSet<>(ORDER));
+        }
+    }
+
+    /**
+     * Called by each display when it is attached. The board is only told about
+     * new results while the competition-wide rankings are kept up to date (see
+     * {@link app.owlcms.fieldofplay.FieldOfPlay#updateGlobalRankings(Athlete)}),
+     * so this turns them on.
+     */
+    public void addDisplay() {
+        Competition.getCurrent().computeGlobalRankings();
+    }
+
+    /**
+     * @param g
+     * @return the athletes of the top, with the weight needed to take first
+     *         place; shared, must not be modified
+     */
+    public synchronized JsonArray getAthletesJson(Gender g) {
+        RankingIndex index = RankingIndex.getCurrent();
+        if (incomplete || indexGeneration != index.getGeneration()) {
+            read(index);
+        }
+        JsonArray json = shown.get(g);
+        if (json == null) {
+            json = computeJson(top.get(g));
+            shown.put(g, json);
+        }
+        return json;
+    }
+
+    /**
+     * Move the athlete to its new place in the top.
+     *
+     * Must be called by the thread that modifies the athlete.
+     *
+     * @param a athlete whose results have changed
+     */
+    public synchronized void update(Athlete a) {
+        if (a == null || a.getId() == null || a.getGender() == null) {
+            return;
+        }
+        Entry previous = entries.remove(a.getId());
+        boolean wasFull = false;
+        if (previous != null) {
+            TreeSet<Entry> previousTop = top.get(previous.gender);
+            wasFull = previousTop.size() >= TOP_COUNT;
+            previousTop.remove(previous);
+            shown.clear();
+        }
+        boolean added = offer(a);
+        if (previous != null && !added && wasFull) {
+            logger.debug("{} left the top", a);
+            incomplete = true;
+        }
+    }
+
+    private JsonArray computeJson(TreeSet<Entry> genderTop) {
+        JsonArray jath = Json.createArray();
+        if (genderTop.isEmpty()) {
+            return jath;
+        }
+        double topSinclair = genderTop.first().score;
+        int athx = 0;
+        for (Entry e : genderTop) {
+            JsonObject ja = Json.createObject();
+            for (String key : e.json.keys()) {
+                JsonValue value = e.json.get(key);
+                ja.put(key, value);
+            }
+            int needed = (int) Math.round(Math.ceil((topSinclair - e.sinclairForDelta) / e.sinclairFactor));
+            ja.put("needed", formatInt(needed));
+            jath.set(athx, ja);
+            athx++;
+        }
+        return jath;
+    }
+
+    /**
+     * Add the athlete if it belongs in the top.
+     *
+     * @return true if added
+     */
+    private boolean offer(Athlete a) {
+        TreeSet<Entry> genderTop = top.get(a.getGender());
+        double score = getScore(a);
+        if (score <= 0) {
+            return false;
+        }
+        if (genderTop.size() >= TOP_COUNT) {
+            Entry last = genderTop.last();
+            if (score < last.score || (score == last.score && a.getId() > last.id)) {
+                return false;
+            }
+        }
+        Entry e = new Entry(a);
+        genderTop.add(e);
+        entries.put(e.id, e);
+        if (genderTop.size() > TOP_COUNT) {
+            entries.remove(genderTop.pollLast().id);
+        }
+        shown.clear();
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void read(RankingIndex index) {
+        HashMap<String, Object> beans = index.getReportingBeans();
+        long generation = index.getGeneration();
+        for (TreeSet<Entry> genderTop : top.values()) {
+            genderTop.clear();
+        }
+        entries.clear();
+        shown.clear();
+        for (String name : new String[] { "mSinclair", "wSinclair" }) {
+            List<Athlete> athletes = (List<Athlete>) beans.get(name);
+            if (athletes == null) {
+                continue;
+            }
+            for (Athlete a : athletes) {
+                if (a.getId() != null && a.getGender() != null) {
+                    offer(a);
+                }
+            }
+        }
+        indexGeneration = generation;
+        incomplete = false;
+        logger.debug("top read from index generation {}", generation);
+    }
+}
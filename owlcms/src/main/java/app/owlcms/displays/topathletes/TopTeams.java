@@ -0,0 +1,262 @@
+/***
+ * Copyright (c) 2009-2019 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.displays.topathletes;
+
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+
+import org.slf4j.LoggerFactory;
+
+import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.Subscribe;
+import com.vaadin.flow.component.AttachEvent;
+import com.vaadin.flow.component.Tag;
+import com.vaadin.flow.component.UI;
+import com.vaadin.flow.component.contextmenu.ContextMenu;
+import com.vaadin.flow.component.dependency.JsModule;
+import com.vaadin.flow.component.page.Push;
+import com.vaadin.flow.component.polymertemplate.PolymerTemplate;
+import com.vaadin.flow.router.HasDynamicTitle;
+import com.vaadin.flow.router.Location;
+import com.vaadin.flow.router.Route;
+import com.vaadin.flow.templatemodel.TemplateModel;
+import com.vaadin.flow.theme.Theme;
+import com.vaadin.flow.theme.lumo.Lumo;
+
+import app.owlcms.data.athleteSort.RankingIndex;
+import app.owlcms.data.athleteSort.TeamRankings.TeamScore;
+import app.owlcms.data.competition.Competition;
+import app.owlcms.displays.DarkModeParameters;
+import app.owlcms.displays.attemptboard.BreakDisplay;
+import app.owlcms.fieldofplay.FieldOfPlay;
+import app.owlcms.fieldofplay.UIEvent;
+import app.owlcms.i18n.Translator;
+import app.owlcms.init.OwlcmsFactory;
+import app.owlcms.ui.lifting.UIEventProcessor;
+import app.owlcms.ui.shared.RequireLogin;
+import app.owlcms.ui.shared.SafeEventBusRegistration;
+import app.owlcms.utils.LoggerUtils;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import elemental.json.Json;
+import elemental.json.JsonArray;
+import elemental.json.JsonObject;
+
+/**
+ * Class TopTeams
+ *
+ * Show the team standings on the total, as computed by the
+ * {@link app.owlcms.data.athleteSort.TeamRankings} of the competition-wide
+ * rankings.
+ *
+ */
+@SuppressWarnings("serial")
+@Tag("topteams-template")
+@JsModule("./components/TopTeams.js")
+@Route("displays/topteams")
+@Theme(value = Lumo.class, variant = Lumo.DARK)
+@Push
+public class TopTeams extends PolymerTemplate<TopTeams.TopTeamsModel> implements DarkModeParameters,
+        SafeEventBusRegistration, UIEventProcessor, BreakDisplay, HasDynamicTitle, RequireLogin {
+
+    /**
+     * TopTeamsModel
+     *
+     * Vaadin Flow propagates these variables to the corresponding Polymer template
+     * JavaScript properties.
+     */
+    public interface TopTeamsModel extends TemplateModel {
+
+        String getFullName();
+
+        Boolean isHidden();
+
+        void setFullName(String lastName);
+
+        void setHidden(boolean b);
+    }
+
+    final private static Logger logger = (Logger) LoggerFactory.getLogger(TopTeams.class);
+    final private static Logger uiEventLogger = (Logger) LoggerFactory.getLogger("UI" + logger.getName());
+
+    static {
+        logger.setLevel(Level.INFO);
+        uiEventLogger.setLevel(Level.INFO);
+    }
+
+    /** number of teams shown for each gender */
+    public static final int TOP_COUNT = 10;
+
+    /**
+     * @param scores the standings, best first
+     * @return the teams that have points, at most {@link #TOP_COUNT}
+     */
+    static JsonArray getTeamsJson(List<TeamScore> scores) {
+        JsonArray jteams = Json.createArray();
+        if (scores == null) {
+            return jteams;
+        }
+        int teamx = 0;
+        for (TeamScore score : scores) {
+            if (score.getRank() == 0 || teamx >= TOP_COUNT) {
+                // teams without points are last
+                break;
+            }
+            JsonObject jt = Json.createObject();
+            jt.put("rank", score.getRank());
+            jt.put("teamName", score.getTeam() != null ? score.getTeam() : "");
+            jt.put("points", String.format("%.0f", score.getPoints()));
+            jt.put("counted", score.getCounted() + "/" + score.getSize());
+            jteams.set(teamx, jt);
+            teamx++;
+        }
+        return jteams;
+    }
+
+    private EventBus uiEventBus;
+
+    /** the same rankings are received from the bus of every platform */
+    private long shownRankingVersion = -1;
+    private boolean darkMode;
+    private ContextMenu contextMenu;
+    private Location location;
+    private UI locationUI;
+
+    /**
+     * Instantiates a new team standings display.
+     */
+    public TopTeams() {
+    }
+
+    @Override
+    public void doBreak() {
+        // the standings do not change during a break
+    }
+
+    @Override
+    public ContextMenu getContextMenu() {
+        return contextMenu;
+    }
+
+    @Override
+    public Location getLocation() {
+        return this.location;
+    }
+
+    @Override
+    public UI getLocationUI() {
+        return this.locationUI;
+    }
+
+    @Override
+    public String getPageTitle() {
+        return getTranslation("Scoreboard.TopTeams");
+    }
+
+    @Override
+    public boolean isDarkMode() {
+        return this.darkMode;
+    }
+
+    @Override
+    public boolean isIgnoreGroupFromURL() {
+        return true;
+    }
+
+    /*
+     * @see com.vaadin.flow.component.Component#onAttach(com.vaadin.flow.component.
+     * AttachEvent)
+     */
+    @Override
+    protected void onAttach(AttachEvent attachEvent) {
+        logger.debug("onAttach start");
+        buildContextMenu(this);
+        setDarkMode(this, isDarkMode(), false);
+        setTranslationMap();
+        for (FieldOfPlay fop : OwlcmsFactory.getFOPs()) {
+            // we listen on all the uiEventBus.
+            uiEventBus = uiEventBusRegister(this, fop);
+        }
+        // the standings are only published while the rankings are kept up to date
+        Competition.getCurrent().computeGlobalRankings();
+        updateBottom(RankingIndex.getCurrent().getReportingBeans());
+        logger.debug("onAttach end");
+    }
+
+    @Override
+    public void setContextMenu(ContextMenu contextMenu) {
+        this.contextMenu = contextMenu;
+    }
+
+    @Override
+    public void setDarkMode(boolean dark) {
+        this.darkMode = dark;
+    }
+
+    @Override
+    public void setLocation(Location location) {
+        this.location = location;
+    }
+
+    @Override
+    public void setLocationUI(UI locationUI) {
+        this.locationUI = locationUI;
+    }
+
+    protected void setTranslationMap() {
+        JsonObject translations = Json.createObject();
+        Enumeration<String> keys = Translator.getKeys();
+        while (keys.hasMoreElements()) {
+            String curKey = keys.nextElement();
+            if (curKey.startsWith("Scoreboard.")) {
+                translations.put(curKey.replace("Scoreboard.", ""), Translator.translate(curKey));
+            }
+        }
+        this.getElement().setPropertyJson("t", translations);
+    }
+
+    @Subscribe
+    public void slaveGlobalRankingUpdated(UIEvent.GlobalRankingUpdated e) {
+        uiLog(e);
+        synchronized (this) {
+            if (e.getVersion() <= shownRankingVersion) {
+                return;
+            }
+            shownRankingVersion = e.getVersion();
+        }
+        UIEventProcessor.uiAccess(this, uiEventBus, () -> updateBottom(e.getRankings()));
+    }
+
+    public void uiLog(UIEvent e) {
+        if (e == null) {
+            uiEventLogger.debug("### {} {}", this.getClass().getSimpleName(), LoggerUtils.whereFrom());
+        } else {
+            uiEventLogger.debug("### {} {} {}", this.getClass().getSimpleName(), e.getClass().getSimpleName(),
+                    LoggerUtils.whereFrom());
+        }
+    }
+
+    /**
+     * Show the standings on the total.
+     *
+     * @param rankings the reporting beans, shared, must not be modified
+     */
+    @SuppressWarnings("unchecked")
+    private void updateBottom(HashMap<String, Object> rankings) {
+        getModel().setFullName(getTranslation("Scoreboard.TopTeams"));
+        JsonArray men = getTeamsJson((List<TeamScore>) rankings.get("mTeamScoresTot"));
+        logger.debug("updateBottom {}", men.length());
+        this.getElement().setProperty("topTeamsMen", men.length() > 0 ? getTranslation("Scoreboard.TopTeamsMen") : "");
+        this.getElement().setPropertyJson("mensTeams", men);
+        JsonArray women = getTeamsJson((List<TeamScore>) rankings.get("wTeamScoresTot"));
+        this.getElement().setProperty("topTeamsWomen",
+                women.length() > 0 ? getTranslation("Scoreboard.TopTeamsWomen") : "");
+        this.getElement().setPropertyJson("womensTeams", women);
+    }
+
+}
@@ -320,6 +320,9 @@ public class FOPEvent {
 
     protected Athlete athlete;
 
+    /** System.nanoTime() when the event was created, for latency measurements */
+    private final long createdNanos = System.nanoTime();
+
     public FOPEvent(Athlete athlete, Object origin) {
         this.athlete = athlete;
         this.origin = origin;
@@ -333,6 +336,10 @@ public class FOPEvent {
         return athlete;
     }
 
+    public long getCreatedNanos() {
+        return createdNanos;
+    }
+
     public Object getOrigin() {
         return origin;
     }
@@ -0,0 +1,254 @@
+/***
+ * Copyright (c) 2009-2019 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.fieldofplay;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.LoggerFactory;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+
+/**
+ * Single-threaded event loop owned by a {@link FieldOfPlay}.
+ *
+ * All the processing for a field of play (FOP events, delayed decisions, timer
+ * callbacks) is queued in an inbox and executed in order by one thread.
+ * Because there is a single writer, the field of play state does not need to
+ * be locked. The loop also keeps simple statistics so that the time events
+ * spend waiting in the inbox and being handled can be monitored.
+ *
+ * @author owlcms
+ */
+public class FOPEventLoop implements Executor {
+
+    /**
+     * A queued task, remembers when it was submitted.
+     */
+    private class TimedTask implements Runnable {
+        private final Runnable task;
+        private final long submitted = System.nanoTime();
+        /** holds a slot of {@link #capacity} until run */
+        private final boolean external;
+
+        TimedTask(Runnable task, boolean external) {
+            this.task = task;
+            this.external = external;
+        }
+
+        @Override
+        public void run() {
+            long started = System.nanoTime();
+            try {
+                task.run();
+            } catch (Throwable t) {
+                logger.error("{} task failed {}", name, t);
+            } finally {
+                if (external) {
+                    capacity.release();
+                }
+                long ended = System.nanoTime();
+                record(started - submitted, ended - started);
+            }
+        }
+    }
+
+    private static final int INBOX_CAPACITY = 1000;
+
+    /** waiting time in the inbox above which we log a warning */
+    private static final long SLOW_WAIT_MILLIS = 500;
+
+    final private Logger logger = (Logger) LoggerFactory.getLogger(FOPEventLoop.class);
+    {
+        logger.setLevel(Level.INFO);
+    }
+
+    private final String name;
+    private final ThreadPoolExecutor executor;
+    /** tasks that other threads may still queue before having to wait */
+    private final Semaphore capacity = new Semaphore(INBOX_CAPACITY);
+    private volatile Thread loopThread;
+
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong totalRunNanos = new AtomicLong();
+    private final AtomicLong maxRunNanos = new AtomicLong();
+
+    /**
+     * Instantiates a new event loop.
+     *
+     * @param name used to name the thread (normally the platform name)
+     */
+    public FOPEventLoop(String name) {
+        this.name = "FOP-" + name;
+        // not bounded: tasks queued by the loop itself must not wait, see execute()
+        BlockingQueue<Runnable> inbox = new LinkedBlockingQueue<>();
+        this.executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, inbox, (r) -> {
+            Thread t = new Thread(r, this.name);
+            t.setDaemon(true);
+            loopThread = t;
+            return t;
+        }, (r, ex) -> {
+            throw new RejectedExecutionException(name + " is shut down");
+        });
+    }
+
+    /**
+     * Queue a task; it will run after all the tasks already queued.
+     *
+     * If {@link #INBOX_CAPACITY} tasks from other threads are waiting, the
+     * submitting thread waits. The loop itself (a handler posting a follow-up
+     * event) never waits, since waiting would never end; its tasks are still
+     * queued behind the others, so the order is kept.
+     *
+     * @see java.util.concurrent.Executor#execute(java.lang.Runnable)
+     */
+    @Override
+    public void execute(Runnable task) {
+        if (isLoopThread()) {
+            executor.execute(new TimedTask(task, false));
+            return;
+        }
+        if (!capacity.tryAcquire()) {
+            logger.warn("{} inbox full, waiting", name);
+            try {
+                capacity.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RejectedExecutionException(e);
+            }
+        }
+        try {
+            executor.execute(new TimedTask(task, true));
+        } catch (RejectedExecutionException e) {
+            capacity.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Queue a task and wait until it has been run.
+     *
+     * Used by screens that manipulate the field of play directly and immediately
+     * read back the result. When called from the loop thread, runs inline.
+     *
+     * @param task
+     */
+    public void executeAndWait(Runnable task) {
+        if (isLoopThread()) {
+            task.run();
+            return;
+        }
+        CountDownLatch done = new CountDownLatch(1);
+        execute(() -> {
+            try {
+                task.run();
+            } finally {
+                done.countDown();
+            }
+        });
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return average time in milliseconds spent handling a task
+     */
+    public double getAverageRunMillis() {
+        long n = processed.get();
+        return n == 0 ? 0.0D : totalRunNanos.get() / (n * 1000000.0D);
+    }
+
+    /**
+     * @return average time in milliseconds a task waits in the inbox before being
+     *         handled
+     */
+    public double getAverageWaitMillis() {
+        long n = processed.get();
+        return n == 0 ? 0.0D : totalWaitNanos.get() / (n * 1000000.0D);
+    }
+
+    /**
+     * @return longest time in milliseconds spent handling a task
+     */
+    public double getMaxRunMillis() {
+        return maxRunNanos.get() / 1000000.0D;
+    }
+
+    /**
+     * @return longest time in milliseconds a task has waited in the inbox
+     */
+    public double getMaxWaitMillis() {
+        return maxWaitNanos.get() / 1000000.0D;
+    }
+
+    /**
+     * @return the thread name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return number of tasks handled so far
+     */
+    public long getProcessedCount() {
+        return processed.get();
+    }
+
+    /**
+     * @return number of tasks waiting in the inbox
+     */
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * @return true if the current thread is the event loop thread
+     */
+    public boolean isLoopThread() {
+        return Thread.currentThread() == loopThread;
+    }
+
+    /**
+     * Stop accepting tasks; tasks already queued are still run.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private void record(long waitNanos, long runNanos) {
+        processed.incrementAndGet();
+        totalWaitNanos.addAndGet(waitNanos);
+        totalRunNanos.addAndGet(runNanos);
+        maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+        maxRunNanos.accumulateAndGet(runNanos, Math::max);
+        if (waitNanos > TimeUnit.MILLISECONDS.toNanos(SLOW_WAIT_MILLIS)) {
+            logger.warn("{} task waited {}ms in inbox ({} still queued)", name,
+                    TimeUnit.NANOSECONDS.toMillis(waitNanos), getQueueDepth());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s [queued=%d, processed=%d, avgWait=%.1fms, maxWait=%.1fms, avgRun=%.1fms, maxRun=%.1fms]",
+                name, getQueueDepth(), getProcessedCount(), getAverageWaitMillis(), getMaxWaitMillis(),
+                getAverageRunMillis(), getMaxRunMillis());
+    }
+}
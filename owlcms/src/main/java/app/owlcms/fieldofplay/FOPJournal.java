@@ -0,0 +1,284 @@
+/***
+ * Copyright (c) 2009-2019 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.fieldofplay;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+
+import org.slf4j.LoggerFactory;
+
+import app.owlcms.Main;
+import app.owlcms.ui.shared.BreakManagement.CountdownType;
+import app.owlcms.utils.LoggerUtils;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+
+/**
+ * Append-only journal of a field of play.
+ *
+ * After each {@link FOPEvent} is processed, one line is appended with the
+ * event and the resulting state of the field of play (state, current athlete,
+ * clock owner, athlete and break timers, referee decisions). Lines are
+ * buffered and written when the event loop has no more events waiting (group
+ * commit), so a burst of events costs a single write.
+ *
+ * After a crash, the last complete line is enough to restore the field of play
+ * (see {@link FieldOfPlay#recover()}); the lifts themselves are in the
+ * database. The journal is truncated when a new group is loaded.
+ *
+ * Files are named after the platform, in the directory given by the
+ * <code>journalDir</code> parameter (OWLCMS_JOURNALDIR, default "journal").
+ * Journaling is off in demo and memory modes, since there is nothing to
+ * recover.
+ *
+ * @author owlcms
+ */
+public class FOPJournal {
+
+    /**
+     * State of a field of play after an event.
+     */
+    static class Entry {
+        private static final String VERSION = "1";
+        private static final String SEPARATOR = "\t";
+        private static final int FIELDS = 21;
+
+        long seq;
+        long millis;
+        String event;
+        Long athleteId;
+        FOPState state;
+        String groupName;
+        Long curAthleteId;
+        Long clockOwnerId;
+        Long previousAthleteId;
+        int athleteTimeRemaining;
+        int athleteTimeAtLastStop;
+        boolean athleteTimerRunning;
+        BreakType breakType;
+        CountdownType countdownType;
+        int breakTimeRemaining;
+        boolean breakTimerRunning;
+        boolean breakIndefinite;
+        LocalDateTime breakEnd;
+        Boolean[] decisions = new Boolean[3];
+
+        static Entry parse(String line) {
+            String[] f = line.split(SEPARATOR, -1);
+            if (f.length != FIELDS || !VERSION.equals(f[0])) {
+                return null;
+            }
+            try {
+                Entry e = new Entry();
+                e.seq = Long.parseLong(f[1]);
+                e.millis = Long.parseLong(f[2]);
+                e.event = f[3];
+                e.athleteId = parseLong(f[4]);
+                e.state = f[5].isEmpty() ? null : FOPState.valueOf(f[5]);
+                e.groupName = f[6].isEmpty() ? null : unescape(f[6]);
+                e.curAthleteId = parseLong(f[7]);
+                e.clockOwnerId = parseLong(f[8]);
+                e.previousAthleteId = parseLong(f[9]);
+                e.athleteTimeRemaining = Integer.parseInt(f[10]);
+                e.athleteTimeAtLastStop = Integer.parseInt(f[11]);
+                e.athleteTimerRunning = Boolean.parseBoolean(f[12]);
+                e.breakType = f[13].isEmpty() ? null : BreakType.valueOf(f[13]);
+                e.countdownType = f[14].isEmpty() ? null : CountdownType.valueOf(f[14]);
+                e.breakTimeRemaining = Integer.parseInt(f[15]);
+                e.breakTimerRunning = Boolean.parseBoolean(f[16]);
+                e.breakIndefinite = Boolean.parseBoolean(f[17]);
+                e.breakEnd = f[18].isEmpty() ? null : LocalDateTime.parse(f[18]);
+                String d = f[19];
+                for (int i = 0; i < 3 && i < d.length(); i++) {
+                    char c = d.charAt(i);
+                    e.decisions[i] = c == '1' ? Boolean.TRUE : (c == '0' ? Boolean.FALSE : null);
+                }
+                // f[20] is the end marker, present only if the line was fully written
+                return "$".equals(f[20]) ? e : null;
+            } catch (RuntimeException ex) {
+                return null;
+            }
+        }
+
+        private static String escape(String s) {
+            return s.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n");
+        }
+
+        private static String format(Object o) {
+            return o == null ? "" : o.toString();
+        }
+
+        private static Long parseLong(String s) {
+            return s.isEmpty() ? null : Long.valueOf(s);
+        }
+
+        private static String unescape(String s) {
+            StringBuilder sb = new StringBuilder(s.length());
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                if (c == '\\' && i + 1 < s.length()) {
+                    char n = s.charAt(++i);
+                    sb.append(n == 't' ? '\t' : (n == 'n' ? '\n' : n));
+                } else {
+                    sb.append(c);
+                }
+            }
+            return sb.toString();
+        }
+
+        String toLine() {
+            StringBuilder d = new StringBuilder(3);
+            for (Boolean b : decisions) {
+                d.append(b == null ? '-' : (b ? '1' : '0'));
+            }
+            return String.join(SEPARATOR, VERSION, Long.toString(seq), Long.toString(millis), event,
+                    format(athleteId), format(state), groupName == null ? "" : escape(groupName),
+                    format(curAthleteId), format(clockOwnerId), format(previousAthleteId),
+                    Integer.toString(athleteTimeRemaining), Integer.toString(athleteTimeAtLastStop),
+                    Boolean.toString(athleteTimerRunning), format(breakType), format(countdownType),
+                    Integer.toString(breakTimeRemaining), Boolean.toString(breakTimerRunning),
+                    Boolean.toString(breakIndefinite), format(breakEnd), d.toString(), "$");
+        }
+
+        @Override
+        public String toString() {
+            return toLine();
+        }
+    }
+
+    final private static Logger logger = (Logger) LoggerFactory.getLogger(FOPJournal.class);
+    static {
+        logger.setLevel(Level.INFO);
+    }
+
+    /**
+     * Open the journal for a platform.
+     *
+     * @param platformName
+     * @return the journal, or null if journaling is disabled or the directory
+     *         cannot be created
+     */
+    public static FOPJournal open(String platformName) {
+        if (Main.getBooleanParam("demoMode") || Main.getBooleanParam("memoryMode")) {
+            return null;
+        }
+        String dirName = Main.getStringParam("journalDir");
+        Path dir = Paths.get(dirName != null ? dirName : "journal");
+        try {
+            Files.createDirectories(dir);
+        } catch (IOException e) {
+            logger.error("cannot create journal directory {}: {}", dir.toAbsolutePath(), e);
+            return null;
+        }
+        return new FOPJournal(dir.resolve(platformName.replaceAll("[^A-Za-z0-9_.-]", "_") + ".journal"));
+    }
+
+    private final Path file;
+    private Writer writer;
+    private long seq = 0;
+    private int pendingLines = 0;
+
+    FOPJournal(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Flush and close the file.
+     */
+    public void close() {
+        try {
+            if (writer != null) {
+                writer.close();
+            }
+        } catch (IOException e) {
+            logger.error("closing journal {}: {}", file, e);
+        } finally {
+            writer = null;
+        }
+    }
+
+    /**
+     * @return the journal file
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Read back the journal.
+     *
+     * @return the last complete entry, or null if there is none
+     */
+    Entry readLast() {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        Entry last = null;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Entry e = Entry.parse(line);
+                if (e != null) {
+                    last = e;
+                }
+            }
+        } catch (IOException e) {
+            logger.error("reading journal {}: {}", file, e);
+        }
+        if (last != null) {
+            seq = last.seq;
+        }
+        return last;
+    }
+
+    /**
+     * Append an entry. Must be called from the field of play event loop.
+     *
+     * @param entry      the state after the event
+     * @param endOfBatch if true, no other event is waiting, write now
+     */
+    void record(Entry entry, boolean endOfBatch) {
+        try {
+            if (writer == null) {
+                writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                        StandardOpenOption.APPEND);
+            }
+            entry.seq = ++seq;
+            writer.write(entry.toLine());
+            writer.write('\n');
+            pendingLines++;
+            if (endOfBatch) {
+                writer.flush();
+                logger.trace("journal {} wrote {} entries", file.getFileName(), pendingLines);
+                pendingLines = 0;
+            }
+        } catch (IOException e) {
+            logger.error("journal {} write failed, will reopen: {}", file, LoggerUtils.stackTrace(e));
+            close();
+        }
+    }
+
+    /**
+     * Discard the entries for the previous group.
+     */
+    void truncate() {
+        close();
+        try {
+            writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            logger.error("journal {} truncate failed: {}", file, e);
+        }
+    }
+}
@@ -15,25 +15,40 @@ import static app.owlcms.fieldofplay.FOPState.TIME_RUNNING;
 import static app.owlcms.fieldofplay.FOPState.TIME_STOPPED;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import javax.sound.sampled.Mixer;
 
 import org.slf4j.LoggerFactory;
 
+import com.google.common.eventbus.AsyncEventBus;
 import com.google.common.eventbus.EventBus;
 import com.google.common.eventbus.Subscribe;
+import com.vaadin.flow.component.Component;
 import com.vaadin.flow.component.notification.Notification;
 import com.vaadin.flow.component.notification.Notification.Position;
 
+import app.owlcms.Main;
 import app.owlcms.data.athlete.Athlete;
 import app.owlcms.data.athlete.AthleteRepository;
+import app.owlcms.data.athlete.AthleteView;
 import app.owlcms.data.athleteSort.AthleteSorter;
+import app.owlcms.data.athleteSort.IncrementalLiftingOrder;
+import app.owlcms.data.athleteSort.RankingSnapshot;
 import app.owlcms.data.competition.Competition;
 import app.owlcms.data.group.Group;
+import app.owlcms.data.group.GroupRepository;
 import app.owlcms.data.platform.Platform;
+import app.owlcms.displays.RenderCache;
 import app.owlcms.fieldofplay.FOPEvent.BarbellOrPlatesChanged;
 import app.owlcms.fieldofplay.FOPEvent.BreakPaused;
 import app.owlcms.fieldofplay.FOPEvent.BreakStarted;
@@ -50,6 +65,8 @@ import app.owlcms.fieldofplay.FOPEvent.TimeStarted;
 import app.owlcms.fieldofplay.FOPEvent.TimeStopped;
 import app.owlcms.fieldofplay.FOPEvent.WeightChange;
 import app.owlcms.i18n.Translator;
+import app.owlcms.metrics.LatencyMetrics;
+import app.owlcms.metrics.LatencyMetrics.Stage;
 import app.owlcms.sound.Sound;
 import app.owlcms.sound.Tone;
 import app.owlcms.ui.shared.BreakManagement.CountdownType;
@@ -67,30 +84,61 @@ import ch.qos.logback.classic.Logger;
  * The main method is {@link #handleFOPEvent(FOPEvent)} which implements a state
  * automaton and processes events received on the event bus.
  *
+ * Outside of testing mode, events are not processed on the thread that posts
+ * them. Each field of play owns a {@link FOPEventLoop}; events and delayed tasks
+ * are queued and handled one at a time, in order, so the state below is only
+ * ever modified by the loop thread.
+ *
  * @author owlcms
  */
 public class FieldOfPlay {
 
+    /**
+     * Delayed tasks for this field of play. The tasks are scheduled on the shared
+     * {@link FieldOfPlay#delayScheduler} and run on our event loop when due.
+     */
     private class DelayTimer {
-        private final Timer t = new Timer();
+        private final Set<ScheduledFuture<?>> pending = ConcurrentHashMap.newKeySet();
+
+        public void cancelAll() {
+            for (ScheduledFuture<?> f : pending) {
+                f.cancel(false);
+            }
+            pending.clear();
+        }
 
-        public TimerTask schedule(final Runnable r, long delay) {
+        public int getPendingCount() {
+            pending.removeIf(ScheduledFuture::isDone);
+            return pending.size();
+        }
+
+        public ScheduledFuture<?> schedule(final Runnable r, long delay) {
             if (isTestingMode()) {
                 r.run();
                 return null;
             } else {
-                final TimerTask task = new TimerTask() {
-                    @Override
-                    public void run() {
-                        r.run();
-                    }
-                };
-                t.schedule(task, delay);
-                return task;
+                pending.removeIf(ScheduledFuture::isDone);
+                ScheduledFuture<?> f = delayScheduler.schedule(() -> runOnEventLoop(r), delay, TimeUnit.MILLISECONDS);
+                pending.add(f);
+                return f;
             }
         }
     }
 
+    /**
+     * One thread for all the delayed tasks of all the fields of play (decision
+     * display, decision reset). The thread only hands the tasks over to the
+     * relevant event loop.
+     */
+    private static final ScheduledThreadPoolExecutor delayScheduler = new ScheduledThreadPoolExecutor(1, (r) -> {
+        Thread t = new Thread(r, "FOP-scheduler");
+        t.setDaemon(true);
+        return t;
+    });
+    static {
+        delayScheduler.setRemoveOnCancelPolicy(true);
+    }
+
     private static final int REVERSAL_DELAY = 3000;
 
     private static final long DECISION_VISIBLE_DURATION = 3500;
@@ -109,6 +157,9 @@ public class FieldOfPlay {
     private Athlete clockOwner;
     private Athlete curAthlete;
     private EventBus fopEventBus = null;
+    private FOPEventLoop eventLoop = null;
+    private final DelayTimer delayTimer = new DelayTimer();
+    private FOPJournal journal = null;
     private EventBus uiEventBus = null;
     private Group group = null;
     private String name;
@@ -119,7 +170,30 @@ public class FieldOfPlay {
     private IProxyTimer breakTimer;
     private BreakType breakType;
     private List<Athlete> liftingOrder;
+    private IncrementalLiftingOrder incrementalLiftingOrder;
+    private IncrementalLiftingOrder.Move liftingOrderMove;
     private List<Athlete> displayOrder;
+    /** ranks of the athletes of the group; the athletes are not modified */
+    private RankingSnapshot groupRankings = RankingSnapshot.EMPTY;
+    /** what the displays show, copied after each sort; replaced, never modified */
+    private volatile List<AthleteView> liftingOrderViews = Collections.emptyList();
+    private volatile List<AthleteView> displayOrderViews = Collections.emptyList();
+    /** JSON computed from the views, shared by the displays */
+    private final RenderCache renderCache = new RenderCache();
+
+    /**
+     * consecutive lifting order updates that do not change the current athlete or
+     * the clock are merged during this many milliseconds (0 to disable)
+     */
+    private final int liftingOrderUpdateWindow = Main.getIntegerParam("liftingOrderUpdateWindow", 150);
+    /** current athlete and clock last sent to the displays */
+    private Athlete shownCurAthlete;
+    private Integer shownClock;
+    /** the most recent update being held back, null if none */
+    private FOPEvent pendingOrderUpdate;
+    private boolean pendingCurrentDisplayAffected;
+    private int pendingOrderUpdateCount;
+
     private int curWeight;
     private Tone downSignal;
     private boolean initialWarningEmitted;
@@ -128,6 +202,8 @@ public class FieldOfPlay {
     private boolean downEmitted;
     private Boolean[] refereeDecision;
     private boolean decisionDisplayScheduled = false;
+    /** the decision has been scheduled for display but has not been applied yet */
+    private boolean decisionDisplayPending = false;
 
     private Integer[] refereeTime;
     private Boolean goodLift;
@@ -147,8 +223,10 @@ public class FieldOfPlay {
      */
     public FieldOfPlay(Group group, Platform platform2) {
         this.name = platform2.getName();
-        this.fopEventBus = new EventBus("FOP-" + name);
-        this.uiEventBus = new EventBus("UI-" + name);
+        this.eventLoop = new FOPEventLoop(name);
+        this.fopEventBus = new AsyncEventBus("FOP-" + name, eventLoop);
+        this.uiEventBus = new UIEventBus("UI-" + name, this::resyncEvent);
+        this.journal = FOPJournal.open(name);
         this.athleteTimer = null;
         this.breakTimer = new ProxyBreakTimer(this);
         this.setPlatform(platform2);
@@ -163,9 +241,16 @@ public class FieldOfPlay {
      */
     public FieldOfPlay(List<Athlete> athletes, IProxyTimer timer1, IProxyTimer breakTimer1, boolean testingMode) {
         this.name = "test";
-        this.fopEventBus = new EventBus("FOP-" + this.name);
-        this.uiEventBus = new EventBus("UI-" + this.name);
         this.setTestingMode(testingMode);
+        if (testingMode) {
+            // events are processed synchronously by the posting thread
+            this.fopEventBus = new EventBus("FOP-" + this.name);
+            this.uiEventBus = new EventBus("UI-" + this.name);
+        } else {
+            this.eventLoop = new FOPEventLoop(name);
+            this.fopEventBus = new AsyncEventBus("FOP-" + this.name, eventLoop);
+            this.uiEventBus = new UIEventBus("UI-" + this.name, this::resyncEvent);
+        }
         init(athletes, timer1, breakTimer1);
     }
 
@@ -242,17 +327,17 @@ public class FieldOfPlay {
         } else {
             logger.debug("&&3.C1 no clock owner, time is not running");
             // time is not running
-            recomputeLiftingOrder();
+            recomputeLiftingOrder(changingAthlete, true);
             setStateUnlessInBreak(CURRENT_ATHLETE_DISPLAYED);
             logger.debug("&&3.C2 displaying, curAthlete={}, state={}", curAthlete, state);
             uiDisplayCurrentAthleteAndTime(true, wc, false);
-            updateGlobalRankings();
+            updateGlobalRankings(changingAthlete);
         }
     }
 
     private void doWeightChange(WeightChange wc, Athlete changingAthlete, Athlete clockOwner,
             boolean currentDisplayAffected) {
-        recomputeLiftingOrder(currentDisplayAffected);
+        recomputeLiftingOrder(changingAthlete, currentDisplayAffected);
         // if the currentAthlete owns the clock, then the next ui update will show the
         // correct athlete and
         // the time needs to be restarted (state = TIME_STOPPED). Going to TIME_STOPPED
@@ -271,7 +356,7 @@ public class FieldOfPlay {
                 curAthlete, currentDisplayAffected, newState);
         setStateUnlessInBreak(newState);
         uiDisplayCurrentAthleteAndTime(currentDisplayAffected, wc, false);
-        updateGlobalRankings();
+        updateGlobalRankings(changingAthlete);
     }
 
     public void emitDown(FOPEvent e) {
@@ -339,6 +424,23 @@ public class FieldOfPlay {
         return countdownType;
     }
 
+    /**
+     * @param a
+     * @return what the displays show about the athlete, as copied after the last
+     *         sort; copied now if the athlete is not in the lifting order
+     */
+    public AthleteView getAthleteView(Athlete a) {
+        List<AthleteView> views = liftingOrderViews;
+        if (a.getId() != null) {
+            for (AthleteView v : views) {
+                if (a.getId().equals(v.getId())) {
+                    return v;
+                }
+            }
+        }
+        return AthleteView.of(a, groupRankings);
+    }
+
     /**
      * @return the current athlete (to be called, or currently lifting)
      */
@@ -350,6 +452,44 @@ public class FieldOfPlay {
         return displayOrder;
     }
 
+    /**
+     * @return what the displays show about the athletes, in display order;
+     *         unmodifiable
+     */
+    public List<AthleteView> getDisplayOrderViews() {
+        return displayOrderViews;
+    }
+
+    /**
+     * @return the ranks within each category of the athletes in the display
+     *         order
+     */
+    public RankingSnapshot getGroupRankings() {
+        return groupRankings;
+    }
+
+    /**
+     * @return the event loop that processes our events, null in testing mode.
+     */
+    public FOPEventLoop getEventLoop() {
+        return eventLoop;
+    }
+
+    /**
+     * @return number of delayed tasks (decision display, decision reset) not yet
+     *         run for this field of play
+     */
+    public int getPendingTaskCount() {
+        return delayTimer.getPendingCount();
+    }
+
+    /**
+     * @return number of delayed tasks waiting, all fields of play combined
+     */
+    public static int getScheduledTaskCount() {
+        return delayScheduler.getQueue().size();
+    }
+
     /**
      * @return the fopEventBus
      */
@@ -364,6 +504,13 @@ public class FieldOfPlay {
         return group;
     }
 
+    /**
+     * @return the athletes JSON shared by the displays of this field of play
+     */
+    public RenderCache getRenderCache() {
+        return renderCache;
+    }
+
     /**
      * @return the lifters
      */
@@ -371,6 +518,14 @@ public class FieldOfPlay {
         return liftingOrder;
     }
 
+    /**
+     * @return what the displays show about the athletes, in lifting order;
+     *         unmodifiable
+     */
+    public List<AthleteView> getLiftingOrderViews() {
+        return liftingOrderViews;
+    }
+
     /**
      * @return the logger
      */
@@ -442,6 +597,8 @@ public class FieldOfPlay {
 
     /**
      * @return the bus on which we post commands for the listening browser pages.
+     *         Outside of testing mode this is a {@link UIEventBus}, which delivers
+     *         asynchronously to each page.
      */
     public EventBus getUiEventBus() {
         return uiEventBus;
@@ -466,10 +623,29 @@ public class FieldOfPlay {
      * stop/start/manage timers is delegated to implementers of IProxyTimer; these
      * classes remember the time and broadcast to all listening timers.
      *
+     * The time spent waiting in the queue and processing is recorded in
+     * {@link LatencyMetrics}, and the UIEvents created meanwhile remember when
+     * the FOPEvent was created.
+     *
      * @param e the event
      */
     @Subscribe
     public void handleFOPEvent(FOPEvent e) {
+        long start = System.nanoTime();
+        LatencyMetrics.record(Stage.FOP_QUEUE, e.getClass(), null, start - e.getCreatedNanos());
+        long previousTrigger = LatencyMetrics.setTrigger(e.getCreatedNanos());
+        try {
+            processFOPEvent(e);
+        } finally {
+            LatencyMetrics.setTrigger(previousTrigger);
+            LatencyMetrics.record(Stage.FOP_PROCESS, e.getClass(), null, System.nanoTime() - start);
+            if (journal != null) {
+                journal.record(journalEntry(e), eventLoop == null || eventLoop.getQueueDepth() == 0);
+            }
+        }
+    }
+
+    private void processFOPEvent(FOPEvent e) {
         logger.debug("state {}, event received {} {}", this.getState(), e.getClass().getSimpleName(), e);
         // it is always possible to explicitly interrupt competition (break between the
         // two lifts, technical incident, etc.)
@@ -484,10 +660,21 @@ public class FieldOfPlay {
             uiShowPlates((BarbellOrPlatesChanged) e);
             return;
         } else if (e instanceof SwitchGroup) {
+            // the decision of the last lift of the group may still be waiting for the
+            // reversal delay; apply it now, before the athletes are reloaded.
+            showPendingDecision(e.getOrigin());
             if (state != BREAK && state != INACTIVE) {
                 setState(INACTIVE);
                 athleteTimer.stop();
             }
+            // the decision reset and held-back order update of the previous group are
+            // no longer relevant
+            delayTimer.cancelAll();
+            pendingOrderUpdate = null;
+            resetEmittedFlags();
+            if (journal != null) {
+                journal.truncate();
+            }
             loadGroup(((SwitchGroup) e).getGroup(), this);
             recomputeLiftingOrder();
             getUiEventBus().post(new UIEvent.SwitchGroup(((SwitchGroup) e).getGroup(), e.getOrigin()));
@@ -684,7 +871,7 @@ public class FieldOfPlay {
         return decisionDisplayScheduled;
     }
 
-    private synchronized boolean isDownEmitted() {
+    private boolean isDownEmitted() {
         return downEmitted;
     }
 
@@ -692,11 +879,11 @@ public class FieldOfPlay {
         return getSoundMixer() != null;
     }
 
-    private synchronized boolean isFinalWarningEmitted() {
+    private boolean isFinalWarningEmitted() {
         return finalWarningEmitted;
     }
 
-    private synchronized boolean isInitialWarningEmitted() {
+    private boolean isInitialWarningEmitted() {
         return initialWarningEmitted;
     }
 
@@ -704,7 +891,7 @@ public class FieldOfPlay {
         return testingMode;
     }
 
-    private synchronized boolean isTimeoutEmitted() {
+    private boolean isTimeoutEmitted() {
         return timeoutEmitted;
     }
 
@@ -759,13 +946,97 @@ public class FieldOfPlay {
         }
     }
 
-    public synchronized void recomputeLiftingOrder() {
-        recomputeLiftingOrder(true);
+    public void recomputeLiftingOrder() {
+        recomputeLiftingOrder(null, true);
+    }
+
+    /**
+     * Restore the state saved in the journal before a crash or restart.
+     *
+     * The group is reloaded from the database, then the state, current athlete,
+     * clock owner, timers and referee decisions are set back. The athlete clock
+     * is restored stopped, with the time it had at the last event: the
+     * timekeeper restarts it. A running break timer keeps counting from the
+     * time of the last event, as a break would have.
+     *
+     * @return true if a state was restored
+     */
+    public boolean recover() {
+        if (journal == null) {
+            return false;
+        }
+        FOPJournal.Entry entry = journal.readLast();
+        if (entry == null || entry.groupName == null) {
+            return false;
+        }
+        Group g = GroupRepository.findByName(entry.groupName);
+        if (g == null) {
+            logger.warn("{} cannot recover, group {} not found", getName(), entry.groupName);
+            return false;
+        }
+        runOnEventLoopAndWait(() -> restore(g, entry));
+        logger.info("{} recovered group {} state {} current athlete {} from {}", getName(), entry.groupName, state,
+                curAthlete, journal.getFile());
+        return true;
+    }
+
+    private Athlete findInLiftingOrder(Long id) {
+        if (id == null || liftingOrder == null) {
+            return null;
+        }
+        for (Athlete a : liftingOrder) {
+            if (id.equals(a.getId())) {
+                return a;
+            }
+        }
+        return null;
+    }
+
+    private FOPJournal.Entry journalEntry(FOPEvent e) {
+        FOPJournal.Entry entry = new FOPJournal.Entry();
+        entry.millis = System.currentTimeMillis();
+        entry.event = e.getClass().getSimpleName();
+        entry.athleteId = e.getAthlete() != null ? e.getAthlete().getId() : null;
+        entry.state = state;
+        entry.groupName = group != null ? group.getName() : null;
+        entry.curAthleteId = curAthlete != null ? curAthlete.getId() : null;
+        entry.clockOwnerId = clockOwner != null ? clockOwner.getId() : null;
+        entry.previousAthleteId = previousAthlete != null ? previousAthlete.getId() : null;
+        if (athleteTimer != null) {
+            entry.athleteTimeRemaining = athleteTimer.getLiveTimeRemaining();
+            entry.athleteTimeAtLastStop = athleteTimer.getTimeRemainingAtLastStop();
+            entry.athleteTimerRunning = athleteTimer.isRunning();
+        }
+        entry.breakType = breakType;
+        entry.countdownType = countdownType;
+        if (breakTimer != null) {
+            entry.breakTimeRemaining = breakTimer.getLiveTimeRemaining();
+            entry.breakTimerRunning = breakTimer.isRunning();
+            if (breakTimer instanceof ProxyBreakTimer) {
+                entry.breakIndefinite = ((ProxyBreakTimer) breakTimer).isIndefinite();
+                entry.breakEnd = ((ProxyBreakTimer) breakTimer).getEnd();
+            }
+        }
+        if (refereeDecision != null) {
+            System.arraycopy(refereeDecision, 0, entry.decisions, 0, 3);
+        }
+        return entry;
     }
 
-    private void recomputeLiftingOrder(boolean currentDisplayAffected) {
-        AthleteSorter.liftingOrder(this.liftingOrder);
-        setDisplayOrder(AthleteSorter.displayOrderCopy(this.liftingOrder));
+    /**
+     * Recompute the lifting order.
+     *
+     * When a single athlete has changed (weight change, decision) only that athlete
+     * is repositioned, the display order does not change. Otherwise everything is
+     * sorted again.
+     *
+     * @param changedAthlete         the athlete that changed, null if unknown or
+     *                               several
+     * @param currentDisplayAffected if true, reset the clock for the current
+     *                               athlete
+     */
+    private void recomputeLiftingOrder(Athlete changedAthlete, boolean currentDisplayAffected) {
+        sortLiftingOrder(changedAthlete);
         this.setCurAthlete(this.liftingOrder.isEmpty() ? null : this.liftingOrder.get(0));
         int timeAllowed = getTimeAllowed();
         logger.debug("recomputed lifting order curAthlete={} prevlifter={} time={} [{}]",
@@ -776,6 +1047,63 @@ public class FieldOfPlay {
         }
     }
 
+    private void sortLiftingOrder(Athlete changedAthlete) {
+        if (incrementalLiftingOrder == null || incrementalLiftingOrder.getOrder() != this.liftingOrder) {
+            incrementalLiftingOrder = new IncrementalLiftingOrder(this.liftingOrder);
+            liftingOrderMove = null;
+        } else if (changedAthlete == null) {
+            incrementalLiftingOrder.rebuild();
+            liftingOrderMove = null;
+        } else {
+            liftingOrderMove = incrementalLiftingOrder.update(changedAthlete);
+        }
+        if (liftingOrderMove != null && displayOrder != null) {
+            // same athletes, display order only depends on registration data
+            setDisplayOrder(displayOrder, changedAthlete);
+        } else {
+            setDisplayOrder(AthleteSorter.displayOrderCopy(this.liftingOrder));
+        }
+    }
+
+    private void restore(Group g, FOPJournal.Entry entry) {
+        loadGroup(g, this);
+        setCurAthlete(findInLiftingOrder(entry.curAthleteId));
+        setClockOwner(findInLiftingOrder(entry.clockOwnerId));
+        setPreviousAthlete(findInLiftingOrder(entry.previousAthleteId));
+        resetDecisions();
+        System.arraycopy(entry.decisions, 0, refereeDecision, 0, 3);
+
+        // the clock cannot have kept running while we were down
+        getAthleteTimer().setTimeRemaining(entry.athleteTimeRemaining);
+
+        setBreakType(entry.breakType);
+        setCountdownType(entry.countdownType);
+        if (entry.state == BREAK && breakTimer != null) {
+            ProxyBreakTimer bt = getBreakTimer();
+            if (entry.breakIndefinite) {
+                bt.setIndefinite();
+            } else {
+                int elapsed = entry.breakTimerRunning ? (int) (System.currentTimeMillis() - entry.millis) : 0;
+                bt.setTimeRemaining(Math.max(0, entry.breakTimeRemaining - elapsed));
+                bt.setEnd(entry.breakEnd);
+            }
+            if (entry.breakTimerRunning) {
+                bt.start();
+            }
+        }
+
+        FOPState restored = entry.state;
+        if (restored == TIME_RUNNING || restored == DOWN_SIGNAL_VISIBLE) {
+            // referees enter the decision again if it was not complete
+            restored = TIME_STOPPED;
+        } else if (restored == DECISION_VISIBLE) {
+            // the decision was saved, the reset was pending
+            restored = CURRENT_ATHLETE_DISPLAYED;
+            resetDecisions();
+        }
+        setState(restored != null ? restored : INACTIVE);
+    }
+
     /**
      * Reset decisions. Invoked when recomputing lifting order when a fresh clock is
      * given.
@@ -785,6 +1113,36 @@ public class FieldOfPlay {
         refereeTime = new Integer[3];
     }
 
+    /**
+     * Run a task on the event loop, after the events already queued. Screens that
+     * manipulate the field of play directly (instead of posting a {@link FOPEvent})
+     * use this so that all changes are made by the same thread. In testing mode,
+     * or if already on the loop, the task is run immediately.
+     *
+     * @param task
+     */
+    public void runOnEventLoop(Runnable task) {
+        if (eventLoop == null || eventLoop.isLoopThread()) {
+            task.run();
+        } else {
+            eventLoop.execute(task);
+        }
+    }
+
+    /**
+     * Same as {@link #runOnEventLoop(Runnable)}, but wait until the task has been
+     * run. Used when the caller reads back the field of play state right away.
+     *
+     * @param task
+     */
+    public void runOnEventLoopAndWait(Runnable task) {
+        if (eventLoop == null) {
+            task.run();
+        } else {
+            eventLoop.executeAndWait(task);
+        }
+    }
+
     private void resetEmittedFlags() {
         setInitialWarningEmitted(false);
         setFinalWarningEmitted(false);
@@ -806,6 +1164,17 @@ public class FieldOfPlay {
         this.breakType = breakType;
     }
 
+    /**
+     * Event sent to a display that has fallen behind, instead of the events it
+     * missed. The displays reload everything from the field of play when the
+     * group is switched.
+     *
+     * @return the event
+     */
+    private Object resyncEvent() {
+        return new UIEvent.SwitchGroup(getGroup(), this);
+    }
+
     private void setClockOwner(Athlete athlete) {
         logger.trace("***setting clock owner to {} [{}]", athlete, LoggerUtils.whereFrom());
         this.clockOwner = athlete;
@@ -815,6 +1184,31 @@ public class FieldOfPlay {
         this.countdownType = countdownType;
     }
 
+    /**
+     * Keep the views of the athletes that were only moved by the change: those
+     * whose place and ranks are the same are not copied again.
+     *
+     * @param views          where the views kept are put, by athlete id
+     * @param changedAthlete the only athlete whose results have changed
+     */
+    private void reuseViews(Map<Long, AthleteView> views, Athlete changedAthlete) {
+        Map<Long, AthleteView> previous = new HashMap<>();
+        for (AthleteView v : liftingOrderViews) {
+            if (v.getId() != null) {
+                previous.put(v.getId(), v);
+            }
+        }
+        for (Athlete a : liftingOrder) {
+            if (a == changedAthlete || a.getId() == null) {
+                continue;
+            }
+            AthleteView v = previous.get(a.getId());
+            if (v != null && v.isCurrent(a, groupRankings)) {
+                views.put(a.getId(), v);
+            }
+        }
+    }
+
     private void setCurAthlete(Athlete athlete) {
         logger.trace("changing curAthlete to {} [{}]", athlete, LoggerUtils.whereFrom());
         this.curAthlete = athlete;
@@ -825,16 +1219,40 @@ public class FieldOfPlay {
     }
 
     public void setDisplayOrder(List<Athlete> displayOrder) {
+        setDisplayOrder(displayOrder, null);
+    }
+
+    /**
+     * @param displayOrder
+     * @param changedAthlete the only athlete whose results have changed since the
+     *                       last call, with the same athletes; null if unknown
+     */
+    private void setDisplayOrder(List<Athlete> displayOrder, Athlete changedAthlete) {
         this.displayOrder = displayOrder;
-        AthleteSorter.assignCategoryRanks(displayOrder);
+        // the athletes are shared with the displays, the ranks are published
+        // separately
+        if (displayOrder == null) {
+            this.groupRankings = RankingSnapshot.EMPTY;
+        } else if (changedAthlete != null) {
+            this.groupRankings = RankingSnapshot.ofCategoryRanks(displayOrder, groupRankings, changedAthlete);
+        } else {
+            this.groupRankings = RankingSnapshot.ofCategoryRanks(displayOrder);
+        }
+        // both lists show the same athletes, each is copied once
+        Map<Long, AthleteView> views = new HashMap<>();
+        if (changedAthlete != null) {
+            reuseViews(views, changedAthlete);
+        }
+        this.liftingOrderViews = AthleteView.of(liftingOrder, groupRankings, views);
+        this.displayOrderViews = AthleteView.of(displayOrder, groupRankings, views);
     }
 
-    private synchronized void setDownEmitted(boolean downEmitted) {
+    private void setDownEmitted(boolean downEmitted) {
         logger.trace("downEmitted {}", downEmitted);
         this.downEmitted = downEmitted;
     }
 
-    private synchronized void setFinalWarningEmitted(boolean finalWarningEmitted) {
+    private void setFinalWarningEmitted(boolean finalWarningEmitted) {
         logger.trace("finalWarningEmitted {}", finalWarningEmitted);
         this.finalWarningEmitted = finalWarningEmitted;
     }
@@ -848,7 +1266,7 @@ public class FieldOfPlay {
         this.group = group;
     }
 
-    private synchronized void setInitialWarningEmitted(boolean initialWarningEmitted) {
+    private void setInitialWarningEmitted(boolean initialWarningEmitted) {
         logger.trace("initialWarningEmitted {}", initialWarningEmitted);
         this.initialWarningEmitted = initialWarningEmitted;
     }
@@ -926,19 +1344,32 @@ public class FieldOfPlay {
         this.testingMode = testingMode;
     }
 
-    private synchronized void setTimeoutEmitted(boolean timeoutEmitted) {
+    private void setTimeoutEmitted(boolean timeoutEmitted) {
         logger.trace("timeoutEmitted {}", timeoutEmitted);
         this.timeoutEmitted = timeoutEmitted;
     }
 
-    synchronized private void showDecisionAfterDelay(Object origin2) {
+    private void showDecisionAfterDelay(Object origin2) {
         logger.debug("scheduling decision display");
         assert !isDecisionDisplayScheduled(); // caller checks.
         setDecisionDisplayScheduled(true); // so there are never two scheduled...
-        new DelayTimer().schedule(() -> showDecisionNow(origin2), REVERSAL_DELAY);
+        decisionDisplayPending = true;
+        delayTimer.schedule(() -> showPendingDecision(origin2), REVERSAL_DELAY);
 
     }
 
+    /**
+     * Apply the decision scheduled by {@link #showDecisionAfterDelay(Object)}, if
+     * it has not been applied already. Called when the delay expires, or earlier
+     * when switching group so that the last lift is not lost.
+     */
+    private void showPendingDecision(Object origin) {
+        if (decisionDisplayPending) {
+            decisionDisplayPending = false;
+            showDecisionNow(origin);
+        }
+    }
+
     /**
      * The decision is confirmed as official after the 3 second delay following
      * majority. After this delay, manual announcer intervention is required to
@@ -960,13 +1391,15 @@ public class FieldOfPlay {
             curAthlete.failedLift();
         }
         curAthlete.resetForcedAsCurrent();
-        AthleteRepository.save(curAthlete);
+        AthleteRepository.saveLater(curAthlete);
         uiShowRefereeDecisionOnSlaveDisplays(curAthlete, goodLift, refereeDecision, refereeTime, origin);
-        recomputeLiftingOrder();
-        updateGlobalRankings();
+        // the next athlete becomes current
+        Athlete decided = curAthlete;
+        recomputeLiftingOrder(curAthlete, true);
+        updateGlobalRankings(decided);
         setState(DECISION_VISIBLE);
         // tell ourself to reset after 3 secs.
-        new DelayTimer().schedule(() -> fopEventBus.post(new DecisionReset(origin)), DECISION_VISIBLE_DURATION);
+        delayTimer.schedule(() -> fopEventBus.post(new DecisionReset(origin)), DECISION_VISIBLE_DURATION);
     }
 
     /**
@@ -988,13 +1421,15 @@ public class FieldOfPlay {
             curAthlete.failedLift();
         }
         curAthlete.resetForcedAsCurrent();
-        AthleteRepository.save(curAthlete);
+        AthleteRepository.saveLater(curAthlete);
         uiShowRefereeDecisionOnSlaveDisplays(curAthlete, goodLift, refereeDecision, refereeTime, origin);
-        recomputeLiftingOrder();
-        updateGlobalRankings();
+        // the next athlete becomes current
+        Athlete decided = curAthlete;
+        recomputeLiftingOrder(curAthlete, true);
+        updateGlobalRankings(decided);
         setState(DECISION_VISIBLE);
         // tell ourself to reset after 3 secs.
-        new DelayTimer().schedule(() -> fopEventBus.post(new DecisionReset(origin)), DECISION_VISIBLE_DURATION);
+        delayTimer.schedule(() -> fopEventBus.post(new DecisionReset(origin)), DECISION_VISIBLE_DURATION);
     }
 
     /**
@@ -1004,7 +1439,8 @@ public class FieldOfPlay {
      */
     public void startLifting(Group group, Object origin) {
         logger.trace("startLifting {}", LoggerUtils.stackTrace());
-        loadGroup(group, origin);
+        // queued ahead of the StartLifting event
+        runOnEventLoop(() -> loadGroup(group, origin));
         logger.trace("{} start lifting for group {} origin={}", this.getName(),
                 (group != null ? group.getName() : group), origin);
         getFopEventBus().post(new StartLifting(origin));
@@ -1067,7 +1503,70 @@ public class FieldOfPlay {
         setState(TIME_RUNNING);
     }
 
+    /**
+     * Tell the displays about the new lifting order.
+     *
+     * When the marshall enters several changes in quick succession, the changes
+     * that leave the current athlete and the clock alone are held back for
+     * {@link #liftingOrderUpdateWindow} milliseconds and sent as a single update.
+     * Anything that affects the current athlete or the clock is sent immediately,
+     * together with the changes held back.
+     *
+     * @param currentDisplayAffected
+     * @param e
+     * @param displayToggle
+     */
     public void uiDisplayCurrentAthleteAndTime(boolean currentDisplayAffected, FOPEvent e, boolean displayToggle) {
+        if (canHoldBack(e, displayToggle)) {
+            pendingCurrentDisplayAffected = pendingCurrentDisplayAffected || currentDisplayAffected;
+            pendingOrderUpdateCount++;
+            if (pendingOrderUpdate == null) {
+                delayTimer.schedule(() -> uiSendPendingOrderUpdate(), liftingOrderUpdateWindow);
+            }
+            pendingOrderUpdate = e;
+            return;
+        }
+        if (pendingOrderUpdate != null) {
+            // this update includes the ones held back
+            currentDisplayAffected = currentDisplayAffected || pendingCurrentDisplayAffected;
+            pendingOrderUpdate = null;
+            liftingOrderMove = null;
+        }
+        uiSendLiftingOrderUpdate(currentDisplayAffected, e, displayToggle);
+    }
+
+    /**
+     * @return true if the update only concerns the order of the athletes after the
+     *         current one
+     */
+    private boolean canHoldBack(FOPEvent e, boolean displayToggle) {
+        if (liftingOrderUpdateWindow <= 0 || isTestingMode() || displayToggle || !(e instanceof WeightChange)) {
+            return false;
+        }
+        Athlete changingAthlete = e.getAthlete();
+        return curAthlete != null && curAthlete == shownCurAthlete
+                && Objects.equals(getAthleteTimer().getTimeRemaining(), shownClock)
+                && changingAthlete != curAthlete && changingAthlete != clockOwner;
+    }
+
+    private void uiSendPendingOrderUpdate() {
+        FOPEvent e = pendingOrderUpdate;
+        if (e == null) {
+            // already sent with a more important update
+            return;
+        }
+        pendingOrderUpdate = null;
+        logger.debug("sending {} lifting order updates as one", pendingOrderUpdateCount);
+        if (pendingOrderUpdateCount > 1) {
+            // the move only describes the last change
+            liftingOrderMove = null;
+        }
+        uiSendLiftingOrderUpdate(pendingCurrentDisplayAffected, e, false);
+    }
+
+    private void uiSendLiftingOrderUpdate(boolean currentDisplayAffected, FOPEvent e, boolean displayToggle) {
+        pendingCurrentDisplayAffected = false;
+        pendingOrderUpdateCount = 0;
         Integer clock = getAthleteTimer().getTimeRemaining();
 
         curWeight = 0;
@@ -1085,8 +1584,19 @@ public class FieldOfPlay {
         if (state == FOPState.BREAK) {
             inBreak = ((breakTimer != null && breakTimer.isRunning()));
         }
-        uiEventBus.post(new UIEvent.LiftingOrderUpdated(curAthlete, nextAthlete, previousAthlete, changingAthlete,
-                liftingOrder, getDisplayOrder(), clock, currentDisplayAffected, displayToggle, e.getOrigin(), inBreak));
+        // displays receive the event later, on their own thread; the lifting order is
+        // sorted in place so they get a copy.
+        UIEvent.LiftingOrderUpdated update = new UIEvent.LiftingOrderUpdated(curAthlete, nextAthlete,
+                previousAthlete, changingAthlete, new ArrayList<>(liftingOrder), getDisplayOrder(), clock,
+                currentDisplayAffected, displayToggle, e.getOrigin(), inBreak);
+        // the move is only meaningful for the first update after the recompute
+        update.setLiftingOrderMove(liftingOrderMove);
+        update.setGroupRankings(groupRankings);
+        update.setViews(liftingOrderViews, displayOrderViews);
+        liftingOrderMove = null;
+        uiEventBus.post(update);
+        shownCurAthlete = curAthlete;
+        shownClock = clock;
 
         logger.info("current athlete = {} attempt {}, requested = {}, timeAllowed={} timeRemainingAtLastStop={}",
                 curAthlete, curAthlete != null ? curAthlete.getAttemptedLifts() + 1 : 0, curWeight, clock,
@@ -1099,7 +1609,7 @@ public class FieldOfPlay {
         uiEventLogger.info("requested weight: {} (from curAthlete {})", nextAttemptRequestedWeight, getCurAthlete());
     }
 
-    private synchronized void uiShowDownSignalOnSlaveDisplays(Object origin2) {
+    private void uiShowDownSignalOnSlaveDisplays(Object origin2) {
         boolean emitSoundsOnServer2 = isEmitSoundsOnServer();
         boolean downEmitted2 = isDownEmitted();
         uiEventLogger.debug("showDownSignalOnSlaveDisplays server={} emitted={}", emitSoundsOnServer2, downEmitted2);
@@ -1124,10 +1634,6 @@ public class FieldOfPlay {
                 refereeDecision2[2], origin2));
     }
 
-    private void uiShowUpdatedRankings() {
-        uiEventBus.post(new UIEvent.GlobalRankingUpdated(this));
-    }
-
     private void uiShowUpdateOnJuryScreen() {
         uiEventLogger.trace("uiShowUpdateOnJuryScreen");
         uiEventBus.post(new UIEvent.RefereeUpdate(curAthlete, refereeDecision[0], refereeDecision[1],
@@ -1144,19 +1650,33 @@ public class FieldOfPlay {
             // ignore
             return;
         }
-        String text = Translator.translate("Unexpected_Notification", e.getClass().getSimpleName(), state);
         logger/**/.warn(Translator.translate("Unexpected_Logging"), e.getClass().getSimpleName(), state);
-        Notification.show(text, 5000, Position.BOTTOM_END);
+        // we are running on the event loop, not in the browser request; notify the
+        // screen that sent the event.
+        Object origin = e.getOrigin();
+        if (origin instanceof Component) {
+            ((Component) origin).getUI().ifPresent(ui -> ui.access(() -> {
+                String text = Translator.translate("Unexpected_Notification", e.getClass().getSimpleName(), state);
+                Notification.show(text, 5000, Position.BOTTOM_END);
+            }));
+        }
     }
 
     public void updateGlobalRankings() {
-        logger.trace("update rankings {}", LoggerUtils.whereFrom());
+        updateGlobalRankings(null);
+    }
+
+    /**
+     * The displays of all the platforms are updated shortly after, together with
+     * the changes made on the other platforms meanwhile.
+     *
+     * @param changed the athlete whose results have changed, null if unknown
+     */
+    public void updateGlobalRankings(Athlete changed) {
         Competition competition = Competition.getCurrent();
         if (competition.isGlobalRankingRecompute()) {
-            competition.computeGlobalRankings();
-            uiShowUpdatedRankings();
+            GlobalRankingService.getCurrent().requestUpdate(changed, isTestingMode());
         }
-
     }
 
     private void updateRefereeDecisions(FOPEvent.DecisionFullUpdate e) {
@@ -1184,8 +1704,7 @@ public class FieldOfPlay {
      * @param curAthlete
      */
     private void weightChangeDoNotDisturb(WeightChange e) {
-        AthleteSorter.liftingOrder(this.liftingOrder);
-        this.setDisplayOrder(AthleteSorter.displayOrderCopy(this.liftingOrder));
+        sortLiftingOrder(e.getAthlete());
         uiDisplayCurrentAthleteAndTime(false, e, false);
     }
 
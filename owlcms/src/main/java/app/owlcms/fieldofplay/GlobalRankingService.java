@@ -0,0 +1,164 @@
+/***
+ * Copyright (c) 2009-2019 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.fieldofplay;
+
+import java.util.HashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.LoggerFactory;
+
+import com.google.common.eventbus.EventBus;
+
+import app.owlcms.Main;
+import app.owlcms.data.athlete.Athlete;
+import app.owlcms.data.athleteSort.RankingIndex;
+import app.owlcms.data.competition.Competition;
+import app.owlcms.displays.topathletes.TopSinclairBoard;
+import app.owlcms.init.OwlcmsFactory;
+import app.owlcms.utils.LoggerUtils;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+
+/**
+ * Competition-wide rankings, shared by all the fields of play.
+ *
+ * The results of each athlete are given to the {@link RankingIndex} and to the
+ * {@link TopSinclairBoard} as soon as they change. Publishing the rankings is
+ * delayed: the requests received from all the platforms during a short window
+ * (<code>globalRankingWindow</code> parameter, in ms, 0 to disable) are served
+ * by a single publication. Each publication has a new version number, and is
+ * sent as a
+ * {@link UIEvent.GlobalRankingUpdated} on the bus of every field of play, so a
+ * display listening to several platforms gets the same version several times
+ * and can ignore the repeats.
+ *
+ * @author owlcms
+ */
+public class GlobalRankingService {
+
+    final private static Logger logger = (Logger) LoggerFactory.getLogger(GlobalRankingService.class);
+    static {
+        logger.setLevel(Level.INFO);
+    }
+
+    private static final GlobalRankingService current = new GlobalRankingService();
+
+    public static GlobalRankingService getCurrent() {
+        return current;
+    }
+
+    /** requests received during this window are published together */
+    private final int window = Main.getIntegerParam("globalRankingWindow", 250);
+
+    private final ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, (r) -> {
+        Thread t = new Thread(r, "global-rankings");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /** publications are made one at a time, in version order */
+    private final Object publishLock = new Object();
+
+    /** a publication is scheduled; guarded by this */
+    private boolean scheduled = false;
+    /** requests served by the scheduled publication; guarded by this */
+    private int requestCount = 0;
+    /** guarded by this */
+    private long version = 0;
+    /** guarded by this */
+    private HashMap<String, Object> rankings;
+
+    private GlobalRankingService() {
+    }
+
+    /**
+     * @return the last rankings published, null if none yet
+     */
+    public synchronized HashMap<String, Object> getRankings() {
+        return rankings;
+    }
+
+    /**
+     * @return the version of the last rankings published, 0 if none yet
+     */
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    /**
+     * Update the rankings and tell the displays of all the fields of play.
+     *
+     * Must be called by the thread that modifies the athlete (the event loop of
+     * its field of play).
+     *
+     * @param changed   the athlete whose results have changed, null if unknown
+     * @param immediate publish in the calling thread, without waiting (used when
+     *                  testing)
+     */
+    public void requestUpdate(Athlete changed, boolean immediate) {
+        logger.trace("update rankings {}", LoggerUtils.whereFrom());
+        // the index takes a copy of the results, cheap
+        RankingIndex.getCurrent().update(changed);
+        TopSinclairBoard.getCurrent().update(changed);
+        if (immediate || window <= 0) {
+            synchronized (this) {
+                requestCount++;
+            }
+            publish();
+            return;
+        }
+        synchronized (this) {
+            requestCount++;
+            if (scheduled) {
+                return;
+            }
+            scheduled = true;
+        }
+        scheduler.schedule(() -> publish(), window, TimeUnit.MILLISECONDS);
+    }
+
+    private void publish() {
+        synchronized (publishLock) {
+            int requests;
+            synchronized (this) {
+                scheduled = false;
+                requests = requestCount;
+                requestCount = 0;
+            }
+            if (requests == 0) {
+                // already published by an immediate request
+                return;
+            }
+            long newVersion;
+            HashMap<String, Object> newRankings;
+            try {
+                newRankings = RankingIndex.getCurrent().getReportingBeans();
+                Competition competition = Competition.getCurrent();
+                if (competition.isGlobalRankingRecompute()) {
+                    competition.computeGlobalRankings();
+                }
+            } catch (RuntimeException e) {
+                logger.error("computing rankings: {}", LoggerUtils.stackTrace(e));
+                return;
+            }
+            synchronized (this) {
+                newVersion = ++version;
+                rankings = newRankings;
+            }
+            logger.debug("rankings version {} published for {} requests", newVersion, requests);
+            UIEvent.GlobalRankingUpdated e = new UIEvent.GlobalRankingUpdated(newRankings, newVersion, this);
+            for (FieldOfPlay fop : OwlcmsFactory.getFOPs()) {
+                EventBus uiEventBus = fop.getUiEventBus();
+                if (uiEventBus != null) {
+                    uiEventBus.post(e);
+                }
+            }
+        }
+    }
+
+}
@@ -23,6 +23,16 @@ public interface IProxyTimer {
      */
     public int getTimeRemaining();
 
+    /**
+     * Time remaining right now. Unlike {@link #getTimeRemaining()}, the time
+     * elapsed since the timer was started is taken into account.
+     *
+     * @return the time remaining
+     */
+    public default int getLiveTimeRemaining() {
+        return getTimeRemaining();
+    }
+
     /**
      * @return time remaining when the clock owner last stopped it.
      */
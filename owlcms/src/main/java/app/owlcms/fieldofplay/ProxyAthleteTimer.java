@@ -53,7 +53,19 @@ public class ProxyAthleteTimer implements IProxyTimer {
 
     @Override
     public void finalWarning(Object origin) {
-        fop.emitFinalWarning();
+        // called from the browser timer, not from the field of play
+        fop.runOnEventLoop(() -> fop.emitFinalWarning());
+    }
+
+    /**
+     * @see app.owlcms.fieldofplay.IProxyTimer#getLiveTimeRemaining()
+     */
+    @Override
+    public int getLiveTimeRemaining() {
+        if (running) {
+            return (int) (timeRemaining - (System.currentTimeMillis() - startMillis));
+        }
+        return timeRemaining;
     }
 
     /**
@@ -77,7 +89,7 @@ public class ProxyAthleteTimer implements IProxyTimer {
      */
     @Override
     public void initialWarning(Object origin) {
-        fop.emitInitialWarning();
+        fop.runOnEventLoop(() -> fop.emitInitialWarning());
     }
 
     /**
@@ -132,11 +144,13 @@ public class ProxyAthleteTimer implements IProxyTimer {
 
     @Override
     public void timeOver(Object origin) {
-        if (running) {
-            this.stop();
-        }
-        fop.emitTimeOver();
-        fop.getFopEventBus().post(new FOPEvent.TimeOver(origin));
+        fop.runOnEventLoop(() -> {
+            if (running) {
+                this.stop();
+            }
+            fop.emitTimeOver();
+            fop.getFopEventBus().post(new FOPEvent.TimeOver(origin));
+        });
     }
 
 }
@@ -71,6 +71,17 @@ public class ProxyBreakTimer implements IProxyTimer {
         return end;
     }
 
+    /**
+     * @see app.owlcms.fieldofplay.IProxyTimer#getLiveTimeRemaining()
+     */
+    @Override
+    public int getLiveTimeRemaining() {
+        if (running) {
+            return (int) (timeRemaining - (System.currentTimeMillis() - startMillis));
+        }
+        return timeRemaining;
+    }
+
     /**
      * @see app.owlcms.fieldofplay.IProxyTimer#getTimeRemaining()
      */
@@ -179,6 +190,11 @@ public class ProxyBreakTimer implements IProxyTimer {
      */
     @Override
     public void timeOver(Object origin) {
+        // called from the browser timer, not from the field of play
+        fop.runOnEventLoop(() -> doTimeOver(origin));
+    }
+
+    private void doTimeOver(Object origin) {
         if (running && !isIndefinite()) {
             this.stop();
         } else {
@@ -8,12 +8,18 @@ package app.owlcms.fieldofplay;
 
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Objects;
 
 import com.vaadin.flow.component.UI;
 
 import app.owlcms.data.athlete.Athlete;
+import app.owlcms.data.athlete.AthleteView;
+import app.owlcms.data.athleteSort.IncrementalLiftingOrder;
+import app.owlcms.data.athleteSort.RankingSnapshot;
 import app.owlcms.data.group.Group;
+import app.owlcms.metrics.LatencyMetrics;
 import app.owlcms.ui.shared.BreakManagement.CountdownType;
 
 /**
@@ -262,9 +268,30 @@ public class UIEvent {
         }
     }
 
+    /**
+     * New competition-wide rankings, see {@link GlobalRankingService}.
+     */
     static public class GlobalRankingUpdated extends UIEvent {
-        public GlobalRankingUpdated(Object object) {
-            super(object);
+        private HashMap<String, Object> rankings;
+        private long version;
+
+        /**
+         * @param rankings the reporting beans, shared, must not be modified
+         * @param version  increases with each new publication
+         * @param origin   the origin
+         */
+        public GlobalRankingUpdated(HashMap<String, Object> rankings, long version, Object origin) {
+            super(origin);
+            this.rankings = rankings;
+            this.version = version;
+        }
+
+        public HashMap<String, Object> getRankings() {
+            return rankings;
+        }
+
+        public long getVersion() {
+            return version;
         }
     }
 
@@ -306,6 +333,10 @@ public class UIEvent {
         private Athlete changingAthlete;
         private boolean displayToggle;
         private boolean inBreak;
+        private IncrementalLiftingOrder.Move liftingOrderMove;
+        private RankingSnapshot groupRankings;
+        private List<AthleteView> liftingOrderViews;
+        private List<AthleteView> displayOrderViews;
 
         /**
          * Instantiates a new lifting order updated command.
@@ -351,6 +382,13 @@ public class UIEvent {
             return displayOrder;
         }
 
+        /**
+         * @return what the displays show, in display order; null if not provided
+         */
+        public List<AthleteView> getDisplayOrderViews() {
+            return displayOrderViews;
+        }
+
         /**
          * Gets the lifting order.
          *
@@ -360,6 +398,13 @@ public class UIEvent {
             return liftingOrder;
         }
 
+        /**
+         * @return what the displays show, in lifting order; null if not provided
+         */
+        public List<AthleteView> getLiftingOrderViews() {
+            return liftingOrderViews;
+        }
+
         /**
          * Gets the next athlete.
          *
@@ -387,6 +432,28 @@ public class UIEvent {
             return timeAllowed;
         }
 
+        /**
+         * Gets the position change of the athlete that triggered the update.
+         *
+         * Only present when a single athlete was repositioned in the lifting order;
+         * null when the whole order was recomputed. Lagging displays may skip
+         * updates (see {@link #supersedes(LiftingOrderUpdated)}), so this is a hint
+         * and {@link #getLiftingOrder()} remains the reference.
+         *
+         * @return the move, or null
+         */
+        public IncrementalLiftingOrder.Move getLiftingOrderMove() {
+            return liftingOrderMove;
+        }
+
+        /**
+         * @return the ranks of the athletes in the display order, null if not
+         *         provided
+         */
+        public RankingSnapshot getGroupRankings() {
+            return groupRankings;
+        }
+
         /**
          * @return true if the current event requires to stop the timer
          */
@@ -410,6 +477,41 @@ public class UIEvent {
             this.inBreak = inBreak;
         }
 
+        public void setLiftingOrderMove(IncrementalLiftingOrder.Move liftingOrderMove) {
+            this.liftingOrderMove = liftingOrderMove;
+        }
+
+        public void setGroupRankings(RankingSnapshot groupRankings) {
+            this.groupRankings = groupRankings;
+        }
+
+        /**
+         * @param liftingOrderViews the athletes as shown, in lifting order
+         * @param displayOrderViews the athletes as shown, in display order
+         */
+        public void setViews(List<AthleteView> liftingOrderViews, List<AthleteView> displayOrderViews) {
+            this.liftingOrderViews = liftingOrderViews;
+            this.displayOrderViews = displayOrderViews;
+        }
+
+        /**
+         * Used to skip stale updates for displays that are lagging behind. The
+         * newer event carries the full lifting order, so the older one can be
+         * skipped as long as it did not ask for something the newer one does not
+         * (resetting the current athlete display, toggling the display, notifying
+         * a different change).
+         *
+         * @param older an update not yet delivered
+         * @return true if this event makes the older one unnecessary
+         */
+        public boolean supersedes(LiftingOrderUpdated older) {
+            return Objects.equals(getOrigin(), older.getOrigin())
+                    && (currentDisplayAffected || !older.currentDisplayAffected)
+                    && displayToggle == older.displayToggle
+                    && inBreak == older.inBreak
+                    && (older.changingAthlete == null || older.changingAthlete.equals(changingAthlete));
+        }
+
     }
 
     /**
@@ -570,6 +672,15 @@ public class UIEvent {
 
     private Object origin;
 
+    /** System.nanoTime() when the event was created */
+    private final long createdNanos = System.nanoTime();
+
+    /**
+     * creation time of the FOPEvent that caused this event, same as createdNanos
+     * if not created while processing a FOPEvent
+     */
+    private final long triggerNanos = LatencyMetrics.getTrigger(createdNanos);
+
     private UIEvent(Athlete athlete, Object origin) {
         this(origin);
         this.athlete = athlete;
@@ -588,6 +699,10 @@ public class UIEvent {
         return athlete;
     }
 
+    public long getCreatedNanos() {
+        return createdNanos;
+    }
+
     /**
      * Gets the origin.
      *
@@ -597,4 +712,8 @@ public class UIEvent {
         return origin;
     }
 
+    public long getTriggerNanos() {
+        return triggerNanos;
+    }
+
 }
@@ -0,0 +1,373 @@
+/***
+ * Copyright (c) 2009-2019 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.fieldofplay;
+
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.slf4j.LoggerFactory;
+
+import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.Subscribe;
+import com.google.common.reflect.TypeToken;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+
+/**
+ * Event bus used to broadcast {@link UIEvent}s to the displays attached to a
+ * field of play.
+ *
+ * Unlike the standard EventBus, {@link #post(Object)} does not run the
+ * subscribers. Each registered subscriber (normally one display) gets its own
+ * queue, drained by a shared thread pool. Events are delivered to a given
+ * subscriber in the order they were posted, but a slow or stalled display only
+ * delays itself.
+ *
+ * When a subscriber falls behind, consecutive events that supersede one another
+ * (a newer {@link UIEvent.SetTime}, a newer compatible
+ * {@link UIEvent.LiftingOrderUpdated}, newer rankings) replace the stale one instead of being
+ * queued. If a queue still overflows, the oldest event that a later queued one
+ * supersedes is dropped. An event that nothing later replaces is never dropped,
+ * whether it carries a full state or is a transition (a decision, its reset, a
+ * new group): if no event can go, the queue is replaced by a resync event that
+ * makes the display reload the whole state of the field of play. A subscriber that does not accept the resync
+ * event keeps all its transitions.
+ *
+ * @author owlcms
+ */
+public class UIEventBus extends EventBus {
+
+    /**
+     * Queue of events for one subscriber.
+     */
+    private class SubscriberQueue implements Runnable {
+        private final String description;
+        private final List<Class<?>> eventTypes;
+        private final EventBus delivery;
+        private final ArrayDeque<Object> pending = new ArrayDeque<>();
+        private boolean scheduled = false;
+        private volatile boolean active = true;
+        /** warned that the queue is over capacity */
+        private boolean overflowing = false;
+
+        SubscriberQueue(Object listener) {
+            this.description = listener.getClass().getSimpleName() + "@"
+                    + Integer.toHexString(System.identityHashCode(listener));
+            this.eventTypes = subscribedTypes(listener.getClass());
+            // private bus so that Guava finds and invokes the @Subscribe methods
+            this.delivery = new EventBus((exception, context) -> logger.error("{} {} failed: {}", identifier(),
+                    context.getSubscriberMethod().getName(), exception));
+            this.delivery.register(listener);
+        }
+
+        boolean accepts(Object event) {
+            for (Class<?> type : eventTypes) {
+                if (type.isInstance(event)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void enqueue(Object event) {
+            boolean mustSchedule;
+            synchronized (this) {
+                Object last = pending.peekLast();
+                if (last != null && supersedes(event, last)) {
+                    pending.pollLast();
+                    coalesced.incrementAndGet();
+                }
+                pending.addLast(event);
+                if (pending.size() > SUBSCRIBER_QUEUE_CAPACITY) {
+                    overflow();
+                } else {
+                    overflowing = false;
+                }
+                mustSchedule = !scheduled;
+                scheduled = true;
+            }
+            if (mustSchedule) {
+                dispatchPool.execute(this);
+            }
+        }
+
+        /**
+         * Make room in a full queue without losing a transition.
+         */
+        private void overflow() {
+            Object[] queued = pending.toArray();
+            int i = 0;
+            for (Iterator<Object> it = pending.iterator(); it.hasNext(); i++) {
+                Object e = it.next();
+                if (isSupersededLater(queued, i)) {
+                    it.remove();
+                    droppedCount.incrementAndGet();
+                    logger.warn("{} {} is not keeping up, dropping {}", identifier(), description,
+                            e.getClass().getSimpleName());
+                    return;
+                }
+            }
+            Object resync = resyncEvent != null ? resyncEvent.get() : null;
+            if (resync != null && accepts(resync)) {
+                // the display reloads everything, so nothing queued is needed
+                pending.clear();
+                pending.addLast(resync);
+                resyncCount.incrementAndGet();
+                logger.warn("{} {} is not keeping up, resynchronizing", identifier(), description);
+            } else if (!overflowing) {
+                overflowing = true;
+                logger.warn("{} {} is not keeping up, {} events queued", identifier(), description,
+                        pending.size());
+            }
+        }
+
+        int getDepth() {
+            synchronized (this) {
+                return pending.size();
+            }
+        }
+
+        /**
+         * Deliver the pending events, one at a time.
+         */
+        @Override
+        public void run() {
+            while (true) {
+                Object event;
+                synchronized (this) {
+                    event = pending.pollFirst();
+                    if (event == null || !active) {
+                        pending.clear();
+                        scheduled = false;
+                        return;
+                    }
+                }
+                delivery.post(event);
+                delivered.incrementAndGet();
+            }
+        }
+
+        void stop() {
+            active = false;
+            synchronized (this) {
+                pending.clear();
+            }
+        }
+    }
+
+    private static final int SUBSCRIBER_QUEUE_CAPACITY = 100;
+
+    private static final int DISPATCH_THREADS = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+
+    private static final AtomicInteger threadCount = new AtomicInteger();
+
+    /** shared by all the fields of play */
+    private static final ExecutorService dispatchPool = Executors.newFixedThreadPool(DISPATCH_THREADS, (r) -> {
+        Thread t = new Thread(r, "UI-dispatch-" + threadCount.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    });
+
+    final private static Logger logger = (Logger) LoggerFactory.getLogger(UIEventBus.class);
+    static {
+        logger.setLevel(Level.INFO);
+    }
+
+    /**
+     * List the event types a listener subscribes to.
+     *
+     * @param listenerClass
+     * @return the parameter types of the @Subscribe methods
+     */
+    private static List<Class<?>> subscribedTypes(Class<?> listenerClass) {
+        List<Class<?>> types = new ArrayList<>();
+        // same lookup as EventBus: all superclasses and interfaces
+        for (Class<?> c : TypeToken.of(listenerClass).getTypes().rawTypes()) {
+            for (Method m : c.getDeclaredMethods()) {
+                if (m.isAnnotationPresent(Subscribe.class) && m.getParameterCount() == 1) {
+                    types.add(m.getParameterTypes()[0]);
+                }
+            }
+        }
+        return types;
+    }
+
+    /**
+     * @param queued the events waiting in a subscriber queue, oldest first
+     * @param i      index of an event in queued
+     * @return true if an event of the same class queued after it supersedes it,
+     *         so that missing it is harmless
+     */
+    static boolean isSupersededLater(Object[] queued, int i) {
+        Object older = queued[i];
+        for (int j = i + 1; j < queued.length; j++) {
+            Object newer = queued[j];
+            if (newer.getClass() == older.getClass() && supersedes(newer, older)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Determine whether a newly posted event makes the last queued one obsolete.
+     *
+     * @param newer the event being posted
+     * @param older the last event waiting in a subscriber queue
+     * @return true if older need not be delivered
+     */
+    static boolean supersedes(Object newer, Object older) {
+        if (newer instanceof UIEvent.SetTime && older instanceof UIEvent.SetTime) {
+            return Objects.equals(((UIEvent) newer).getOrigin(), ((UIEvent) older).getOrigin());
+        }
+        if (newer instanceof UIEvent.GlobalRankingUpdated && older instanceof UIEvent.GlobalRankingUpdated) {
+            return ((UIEvent.GlobalRankingUpdated) newer).getVersion() >= ((UIEvent.GlobalRankingUpdated) older)
+                    .getVersion();
+        }
+        if (newer instanceof UIEvent.LiftingOrderUpdated && older instanceof UIEvent.LiftingOrderUpdated) {
+            return ((UIEvent.LiftingOrderUpdated) newer).supersedes((UIEvent.LiftingOrderUpdated) older);
+        }
+        return false;
+    }
+
+    private final Map<Object, SubscriberQueue> queues = new IdentityHashMap<>();
+
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong resyncCount = new AtomicLong();
+    private final Supplier<Object> resyncEvent;
+
+    /**
+     * Instantiates a new UI event bus.
+     *
+     * @param identifier the bus name
+     */
+    public UIEventBus(String identifier) {
+        this(identifier, null);
+    }
+
+    /**
+     * Instantiates a new UI event bus.
+     *
+     * @param identifier  the bus name
+     * @param resyncEvent creates an event that makes a display reload the current
+     *                    state, sent to displays that have fallen too far behind
+     */
+    public UIEventBus(String identifier, Supplier<Object> resyncEvent) {
+        super(identifier);
+        this.resyncEvent = resyncEvent;
+    }
+
+    /**
+     * @return number of events removed because a newer one made them obsolete
+     */
+    public long getCoalescedCount() {
+        return coalesced.get();
+    }
+
+    /**
+     * @return number of events delivered to subscribers
+     */
+    public long getDeliveredCount() {
+        return delivered.get();
+    }
+
+    /**
+     * @return number of full-state events dropped because a subscriber queue was
+     *         full
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * @return the number of events waiting, for each subscriber (display)
+     */
+    public Map<String, Integer> getQueueDepths() {
+        Map<String, Integer> depths = new LinkedHashMap<>();
+        for (SubscriberQueue q : snapshot()) {
+            depths.put(q.description, q.getDepth());
+        }
+        return depths;
+    }
+
+    /**
+     * @return number of times a subscriber queue was replaced by a resync event
+     */
+    public long getResyncCount() {
+        return resyncCount.get();
+    }
+
+    /**
+     * Queue the event for every subscriber interested in it. Returns immediately.
+     *
+     * @see com.google.common.eventbus.EventBus#post(java.lang.Object)
+     */
+    @Override
+    public void post(Object event) {
+        for (SubscriberQueue q : snapshot()) {
+            if (q.accepts(event)) {
+                q.enqueue(event);
+            }
+        }
+    }
+
+    /**
+     * @see com.google.common.eventbus.EventBus#register(java.lang.Object)
+     */
+    @Override
+    public void register(Object listener) {
+        synchronized (queues) {
+            if (!queues.containsKey(listener)) {
+                queues.put(listener, new SubscriberQueue(listener));
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return identifier() + " [subscribers=" + snapshot().size() + ", delivered=" + getDeliveredCount()
+                + ", coalesced=" + getCoalescedCount() + ", dropped=" + getDroppedCount() + ", resyncs="
+                + getResyncCount() + "]";
+    }
+
+    /**
+     * @see com.google.common.eventbus.EventBus#unregister(java.lang.Object)
+     */
+    @Override
+    public void unregister(Object listener) {
+        SubscriberQueue q;
+        synchronized (queues) {
+            q = queues.remove(listener);
+        }
+        if (q == null) {
+            // same behaviour as EventBus
+            throw new IllegalArgumentException("missing event subscriber for " + listener);
+        }
+        q.stop();
+    }
+
+    private List<SubscriberQueue> snapshot() {
+        synchronized (queues) {
+            return new ArrayList<>(queues.values());
+        }
+    }
+}
@@ -32,6 +32,8 @@ import org.slf4j.LoggerFactory;
 import com.vaadin.flow.server.startup.ServletContextListeners;
 
 import app.owlcms.Main;
+import app.owlcms.metrics.MetricsServlet;
+import app.owlcms.publicresults.PublicResultsServlet;
 import app.owlcms.utils.LoggerUtils;
 import ch.qos.logback.classic.Logger;
 
@@ -65,12 +67,16 @@ public class EmbeddedJetty {
         Context servletContext = context.getServletContext();
         servletContext.setExtendedListenerTypes(true);
         context.addEventListener(new ServletContextListeners());
+        // more specific than the Vaadin servlet mapping, so takes precedence
+        context.addServlet(MetricsServlet.class, "/metrics");
+        // long polls and event streams are served without holding a thread
+        context.addServlet(PublicResultsServlet.class, "/public/results/*").setAsyncSupported(true);
 
         Server server = new Server(port);
         server.setHandler(context);
         ServletContextHandler scHandler = (ServletContextHandler) server.getHandler();
         scHandler.getServletHandler().addFilterWithMapping(HttpsEnforcer.class, "/*",
-                EnumSet.of(DispatcherType.REQUEST));
+                EnumSet.of(DispatcherType.REQUEST)).setAsyncSupported(true);
 
         try {
             server.start();
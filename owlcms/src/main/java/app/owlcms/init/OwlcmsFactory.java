@@ -16,6 +16,7 @@ import java.util.Optional;
 import org.slf4j.LoggerFactory;
 
 import app.owlcms.data.athlete.Athlete;
+import app.owlcms.data.athlete.AthleteWriteBehind;
 import app.owlcms.data.platform.Platform;
 import app.owlcms.data.platform.PlatformRepository;
 import app.owlcms.fieldofplay.FieldOfPlay;
@@ -102,6 +103,8 @@ public class OwlcmsFactory {
     }
 
     private static void initFOPByName() {
+        // results saved in the background but not yet committed when the program stopped
+        AthleteWriteBehind.recover();
         fopByName = new HashMap<>();
         for (Platform platform : PlatformRepository.findAll()) {
             String name = platform.getName();
@@ -109,6 +112,8 @@ public class OwlcmsFactory {
             logger.trace("fop {}", fop.getName());
             // no group selected, no athletes, announcer will need to pick a group.
             fop.init(new LinkedList<Athlete>(), new ProxyAthleteTimer(fop), new ProxyBreakTimer(fop));
+            // after a crash, resume where the platform was
+            fop.recover();
             fopByName.put(name, fop);
         }
     }
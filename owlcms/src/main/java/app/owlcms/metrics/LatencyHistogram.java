@@ -0,0 +1,115 @@
+/***
+ * Copyright (c) 2009-2019 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of durations, safe to update from any thread without locking.
+ *
+ * Durations are counted in microseconds, in buckets that grow by a quarter of
+ * a power of two (1, 2, 3, 4, 5, 6, 7, 8, 10, 12, 14, 16, 20...), so a
+ * percentile is known within 25%.
+ *
+ * @author owlcms
+ */
+public class LatencyHistogram {
+
+    private static final int BUCKETS = 160;
+
+    /**
+     * @param micros
+     * @return the bucket for a duration
+     */
+    static int bucket(long micros) {
+        if (micros < 4) {
+            return (int) Math.max(0, micros);
+        }
+        int exp = 63 - Long.numberOfLeadingZeros(micros);
+        int mantissa = (int) ((micros >>> (exp - 2)) & 3);
+        return Math.min(BUCKETS - 1, 4 * (exp - 1) + mantissa);
+    }
+
+    /**
+     * @param bucket
+     * @return the smallest duration in the bucket
+     */
+    static long lowerBound(int bucket) {
+        if (bucket < 4) {
+            return bucket;
+        }
+        int exp = bucket / 4 + 1;
+        return (4L + bucket % 4) << (exp - 2);
+    }
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalMicros = new AtomicLong();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getMaxMicros() {
+        return maxMicros.get();
+    }
+
+    public double getMeanMicros() {
+        long n = count.get();
+        return n == 0 ? 0 : (double) totalMicros.get() / n;
+    }
+
+    /**
+     * @param p between 0 and 100
+     * @return the duration below which p percent of the durations fall, in
+     *         microseconds (the middle of the bucket, never above the maximum)
+     */
+    public long getPercentileMicros(double p) {
+        long n = count.get();
+        if (n == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(p / 100.0 * n));
+        if (rank >= n) {
+            return maxMicros.get();
+        }
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                long mid = (lowerBound(i) + lowerBound(i + 1) - 1) / 2;
+                return Math.min(mid, maxMicros.get());
+            }
+        }
+        return maxMicros.get();
+    }
+
+    /**
+     * @param nanos the duration
+     */
+    public void record(long nanos) {
+        long micros = nanos / 1000;
+        counts.incrementAndGet(bucket(micros));
+        count.incrementAndGet();
+        totalMicros.addAndGet(micros);
+        maxMicros.accumulateAndGet(micros, Math::max);
+    }
+
+    /**
+     * Start counting again. Durations recorded at the same time may be lost.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.set(0);
+        totalMicros.set(0);
+        maxMicros.set(0);
+    }
+}
@@ -0,0 +1,293 @@
+/***
+ * Copyright (c) 2009-2019 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.metrics;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.LoggerFactory;
+
+import com.google.common.eventbus.EventBus;
+
+import app.owlcms.fieldofplay.FOPEventLoop;
+import app.owlcms.fieldofplay.FieldOfPlay;
+import app.owlcms.fieldofplay.UIEventBus;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import elemental.json.Json;
+import elemental.json.JsonArray;
+import elemental.json.JsonObject;
+
+/**
+ * Latency of the path from a {@link app.owlcms.fieldofplay.FOPEvent} to the
+ * browsers.
+ *
+ * A referee decision, for instance, goes through these stages:
+ * <ol>
+ * <li>{@link Stage#FOP_QUEUE}: the FOPEvent waits in the queue of the field of
+ * play event loop</li>
+ * <li>{@link Stage#FOP_PROCESS}: the field of play processes it and posts
+ * UIEvents</li>
+ * <li>{@link Stage#UI_DISPATCH}: each UIEvent waits to be delivered to each
+ * display</li>
+ * <li>{@link Stage#UI_ACCESS}: the display waits for the lock on its browser
+ * session</li>
+ * <li>{@link Stage#PUSH}: the changes are sent to the browser; this stage is
+ * measured from the creation of the FOPEvent, so it is the total delay</li>
+ * </ol>
+ * A histogram is kept for each stage and event type, and for the UI stages,
+ * for each kind of display as well.
+ *
+ * @author owlcms
+ */
+public class LatencyMetrics {
+
+    /**
+     * Summary of one histogram.
+     */
+    public static class Row {
+        private final Stage stage;
+        private final String event;
+        private final String display;
+        private final long count;
+        private final double mean;
+        private final long p50;
+        private final long p90;
+        private final long p99;
+        private final long max;
+
+        Row(Stage stage, String event, String display, LatencyHistogram h) {
+            this.stage = stage;
+            this.event = event;
+            this.display = display;
+            this.count = h.getCount();
+            this.mean = h.getMeanMicros() / 1000.0;
+            this.p50 = h.getPercentileMicros(50);
+            this.p90 = h.getPercentileMicros(90);
+            this.p99 = h.getPercentileMicros(99);
+            this.max = h.getMaxMicros();
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public String getDisplay() {
+            return display;
+        }
+
+        public String getEvent() {
+            return event;
+        }
+
+        /**
+         * @return the longest duration, in milliseconds
+         */
+        public double getMax() {
+            return max / 1000.0;
+        }
+
+        /**
+         * @return the average duration, in milliseconds
+         */
+        public double getMean() {
+            return mean;
+        }
+
+        /**
+         * @return the median, in milliseconds
+         */
+        public double getP50() {
+            return p50 / 1000.0;
+        }
+
+        /**
+         * @return the 90th percentile, in milliseconds
+         */
+        public double getP90() {
+            return p90 / 1000.0;
+        }
+
+        /**
+         * @return the 99th percentile, in milliseconds
+         */
+        public double getP99() {
+            return p99 / 1000.0;
+        }
+
+        public Stage getStage() {
+            return stage;
+        }
+
+        JsonObject toJson() {
+            JsonObject o = Json.createObject();
+            o.put("stage", stage.getKey());
+            o.put("event", event);
+            if (display != null) {
+                o.put("display", display);
+            }
+            o.put("count", count);
+            o.put("meanMs", mean);
+            o.put("p50Ms", getP50());
+            o.put("p90Ms", getP90());
+            o.put("p99Ms", getP99());
+            o.put("maxMs", getMax());
+            return o;
+        }
+    }
+
+    public enum Stage {
+        FOP_QUEUE("fop.queue"), FOP_PROCESS("fop.process"), UI_DISPATCH("ui.dispatch"), UI_ACCESS("ui.access"),
+        PUSH("push");
+
+        private final String key;
+
+        Stage(String key) {
+            this.key = key;
+        }
+
+        public String getKey() {
+            return key;
+        }
+    }
+
+    private static class Entry {
+        final Stage stage;
+        final String event;
+        final String display;
+        final LatencyHistogram histogram = new LatencyHistogram();
+
+        Entry(Stage stage, String event, String display) {
+            this.stage = stage;
+            this.event = event;
+            this.display = display;
+        }
+    }
+
+    final private static Logger logger = (Logger) LoggerFactory.getLogger(LatencyMetrics.class);
+    static {
+        logger.setLevel(Level.INFO);
+    }
+
+    private static final Map<String, Entry> histograms = new ConcurrentHashMap<>();
+
+    /**
+     * creation time of the FOPEvent being processed by the current thread, 0 if
+     * none
+     */
+    private static final ThreadLocal<long[]> trigger = ThreadLocal.withInitial(() -> new long[1]);
+
+    /**
+     * @param ifNone value returned when the current thread is not processing a
+     *               FOPEvent
+     * @return the creation time of the FOPEvent being processed
+     */
+    public static long getTrigger(long ifNone) {
+        long t = trigger.get()[0];
+        return t != 0 ? t : ifNone;
+    }
+
+    /**
+     * @return a summary of every histogram, sorted by stage, event and display
+     */
+    public static List<Row> getRows() {
+        List<Row> rows = new ArrayList<>();
+        for (Entry e : histograms.values()) {
+            rows.add(new Row(e.stage, e.event, e.display, e.histogram));
+        }
+        rows.sort(Comparator.comparing(Row::getStage).thenComparing(Row::getEvent)
+                .thenComparing(Row::getDisplay, Comparator.nullsFirst(Comparator.naturalOrder())));
+        return rows;
+    }
+
+    /**
+     * Record a duration.
+     *
+     * @param stage
+     * @param event   the event class
+     * @param display the display class, null for the field of play stages
+     * @param nanos   the duration
+     */
+    public static void record(Stage stage, Class<?> event, Class<?> display, long nanos) {
+        String eventName = event.getSimpleName();
+        String displayName = display != null ? display.getSimpleName() : null;
+        String key = stage.getKey() + "|" + eventName + "|" + (displayName != null ? displayName : "");
+        Entry entry = histograms.get(key);
+        if (entry == null) {
+            entry = histograms.computeIfAbsent(key, (k) -> new Entry(stage, eventName, displayName));
+        }
+        entry.histogram.record(nanos);
+    }
+
+    public static void reset() {
+        logger.info("latency metrics reset");
+        for (Entry e : histograms.values()) {
+            e.histogram.reset();
+        }
+    }
+
+    /**
+     * Mark the current thread as processing a FOPEvent. The UIEvents created
+     * meanwhile remember that time.
+     *
+     * @param createdNanos creation time of the event, 0 when done
+     * @return the previous value, to be restored when done
+     */
+    public static long setTrigger(long createdNanos) {
+        long[] t = trigger.get();
+        long previous = t[0];
+        t[0] = createdNanos;
+        return previous;
+    }
+
+    /**
+     * @param fops the fields of play whose queues are included
+     * @return the histograms and the state of the queues, in JSON
+     */
+    public static String toJson(Collection<FieldOfPlay> fops) {
+        JsonObject result = Json.createObject();
+        JsonArray latencies = Json.createArray();
+        int i = 0;
+        for (Row r : getRows()) {
+            latencies.set(i++, r.toJson());
+        }
+        result.put("latencies", latencies);
+
+        JsonArray queues = Json.createArray();
+        i = 0;
+        for (FieldOfPlay fop : fops) {
+            JsonObject q = Json.createObject();
+            q.put("fop", fop.getName());
+            FOPEventLoop loop = fop.getEventLoop();
+            if (loop != null) {
+                q.put("fopQueueDepth", loop.getQueueDepth());
+                q.put("fopProcessed", loop.getProcessedCount());
+                q.put("fopMaxWaitMs", loop.getMaxWaitMillis());
+                q.put("fopMaxRunMs", loop.getMaxRunMillis());
+            }
+            EventBus bus = fop.getUiEventBus();
+            if (bus instanceof UIEventBus) {
+                UIEventBus uiBus = (UIEventBus) bus;
+                q.put("uiDelivered", uiBus.getDeliveredCount());
+                q.put("uiCoalesced", uiBus.getCoalescedCount());
+                q.put("uiDropped", uiBus.getDroppedCount());
+                int depth = 0;
+                for (Integer d : uiBus.getQueueDepths().values()) {
+                    depth = Math.max(depth, d);
+                }
+                q.put("uiMaxQueueDepth", depth);
+            }
+            queues.set(i++, q);
+        }
+        result.put("queues", queues);
+        return result.toJson();
+    }
+}
@@ -0,0 +1,35 @@
+/***
+ * Copyright (c) 2009-2019 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.metrics;
+
+import java.io.IOException;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import app.owlcms.init.OwlcmsFactory;
+
+/**
+ * Latency histograms and event queue sizes, in JSON, for monitoring tools.
+ *
+ * Mapped to /metrics by {@link app.owlcms.init.EmbeddedJetty}.
+ *
+ * @author owlcms
+ */
+@SuppressWarnings("serial")
+public class MetricsServlet extends HttpServlet {
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        resp.setContentType("application/json");
+        resp.setCharacterEncoding("UTF-8");
+        resp.setHeader("Cache-Control", "no-cache");
+        resp.getWriter().write(LatencyMetrics.toJson(OwlcmsFactory.getFOPs()));
+    }
+
+}
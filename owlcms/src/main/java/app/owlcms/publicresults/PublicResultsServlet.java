@@ -0,0 +1,337 @@
+/***
+ * Copyright (c) 2009-2019 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.publicresults;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.slf4j.LoggerFactory;
+
+import app.owlcms.Main;
+import app.owlcms.fieldofplay.FieldOfPlay;
+import app.owlcms.init.OwlcmsFactory;
+import app.owlcms.publicresults.ResultsFeed.Snapshot;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+
+/**
+ * Read-only results for spectators, without a Vaadin session.
+ *
+ * Mapped to /public/results/* by {@link app.owlcms.init.EmbeddedJetty}. The
+ * field of play is given by the <code>fop</code> parameter, the first one by
+ * default.
+ * <ul>
+ * <li><code>GET /public/results</code> returns the current results in JSON, or
+ * 304 if <code>If-None-Match</code> has the current ETag. With
+ * <code>wait=true</code>, the 304 is only sent if the results have not changed
+ * after {@link #POLL_TIMEOUT} ms (long poll).</li>
+ * <li><code>GET /public/results/stream</code> sends the results, then each
+ * change, as server-sent events.</li>
+ * </ul>
+ * Viewers only cost a connection: the results are serialized once per change by
+ * the {@link ResultsFeed}, and the responses are written in non-blocking mode,
+ * so no thread waits for a slow viewer.
+ *
+ * @author owlcms
+ */
+@SuppressWarnings("serial")
+public class PublicResultsServlet extends HttpServlet {
+
+    /**
+     * The answer to a long poll, written in non-blocking mode.
+     */
+    private static class Answer implements WriteListener {
+        private final AsyncContext context;
+        private final ServletOutputStream out;
+        private final byte[] json;
+        /** guarded by this */
+        private boolean written;
+
+        Answer(AsyncContext context, byte[] json) throws IOException {
+            this.context = context;
+            this.out = context.getResponse().getOutputStream();
+            this.json = json;
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            logger.debug("viewer gone {}", t.toString());
+            complete(context);
+        }
+
+        /**
+         * Called by the container when the output is set in non-blocking mode, and
+         * again when the write is done.
+         */
+        @Override
+        public synchronized void onWritePossible() {
+            try {
+                if (!out.isReady()) {
+                    // called again when ready
+                    return;
+                }
+                if (!written) {
+                    written = true;
+                    out.write(json);
+                    if (!out.isReady()) {
+                        return;
+                    }
+                }
+                complete(context);
+            } catch (IOException | IllegalStateException e) {
+                logger.debug("viewer gone {}", e.toString());
+                complete(context);
+            }
+        }
+    }
+
+    /**
+     * A viewer following the changes, written in non-blocking mode. Only the last
+     * snapshot not yet written is kept, so a slow viewer skips versions instead of
+     * holding the others back.
+     */
+    private static class Stream implements Consumer<Snapshot>, WriteListener {
+        private final AsyncContext context;
+        private final ResultsFeed feed;
+        private final ServletOutputStream out;
+        /** the last snapshot not yet written; guarded by this */
+        private Snapshot next;
+        /** written and not yet flushed; guarded by this */
+        private boolean unflushed;
+
+        Stream(AsyncContext context, ResultsFeed feed) throws IOException {
+            this.context = context;
+            this.feed = feed;
+            this.out = context.getResponse().getOutputStream();
+        }
+
+        /**
+         * Called by the feed; does not block.
+         */
+        @Override
+        public void accept(Snapshot s) {
+            synchronized (this) {
+                next = s;
+            }
+            onWritePossible();
+        }
+
+        void close() {
+            feed.removeStream(this);
+            complete(context);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            logger.debug("viewer gone {}", t.toString());
+            close();
+        }
+
+        /**
+         * Called by the container when the previous write or flush is done, and by
+         * {@link #accept(Snapshot)}. While the viewer does not take the data,
+         * {@link ServletOutputStream#isReady()} is false and the snapshots received
+         * in the meantime replace each other.
+         */
+        @Override
+        public void onWritePossible() {
+            // closed without holding the lock, the feed calls accept() with its own
+            if (!write()) {
+                close();
+            }
+        }
+
+        /**
+         * @return false if the viewer is gone
+         */
+        private synchronized boolean write() {
+            try {
+                while (out.isReady()) {
+                    if (next != null) {
+                        Snapshot s = next;
+                        next = null;
+                        out.write(s.getEvent());
+                        unflushed = true;
+                    } else if (unflushed) {
+                        unflushed = false;
+                        out.flush();
+                    } else {
+                        return true;
+                    }
+                }
+                // called again when ready
+                return true;
+            } catch (IOException | IllegalStateException e) {
+                logger.debug("viewer gone {}", e.toString());
+                return false;
+            }
+        }
+    }
+
+    final private static Logger logger = (Logger) LoggerFactory.getLogger(PublicResultsServlet.class);
+    static {
+        logger.setLevel(Level.INFO);
+    }
+
+    /** how long a long poll waits for a change, in milliseconds */
+    static final long POLL_TIMEOUT = Main.getIntegerParam("publicResultsPollTimeout", 25000);
+
+    private static void complete(AsyncContext context) {
+        try {
+            context.complete();
+        } catch (IllegalStateException e) {
+            // already completed by the container
+        }
+    }
+
+    private static FieldOfPlay findFop(String name) {
+        try {
+            return name != null ? OwlcmsFactory.getFOPByName(name) : OwlcmsFactory.getDefaultFOP();
+        } catch (RuntimeException e) {
+            // no platform defined
+            return null;
+        }
+    }
+
+    private static void send(HttpServletResponse resp, Snapshot s) throws IOException {
+        setHeaders(resp, s);
+        resp.getOutputStream().write(s.getJson());
+    }
+
+    private static void setHeaders(HttpServletResponse resp, Snapshot s) {
+        resp.setContentType("application/json");
+        resp.setCharacterEncoding("UTF-8");
+        resp.setHeader("Cache-Control", "no-cache");
+        resp.setHeader("ETag", s.getEtag());
+        resp.setContentLength(s.getJson().length);
+    }
+
+    private static void sendNotModified(HttpServletResponse resp, Snapshot s) {
+        resp.setHeader("Cache-Control", "no-cache");
+        resp.setHeader("ETag", s.getEtag());
+        resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        FieldOfPlay fop = findFop(req.getParameter("fop"));
+        if (fop == null) {
+            resp.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        ResultsFeed feed = ResultsFeed.get(fop);
+        String path = req.getPathInfo();
+        if (path == null || path.equals("/")) {
+            String etag = req.getHeader("If-None-Match");
+            Snapshot s = feed.getSnapshot();
+            if (!s.getEtag().equals(etag)) {
+                send(resp, s);
+            } else if ("true".equals(req.getParameter("wait"))) {
+                poll(req, feed, etag);
+            } else {
+                sendNotModified(resp, s);
+            }
+        } else if (path.equals("/stream")) {
+            stream(req, resp, feed);
+        } else {
+            resp.sendError(HttpServletResponse.SC_NOT_FOUND);
+        }
+    }
+
+    /**
+     * Answer when the results change, or after {@link #POLL_TIMEOUT} with 304.
+     */
+    private void poll(HttpServletRequest req, ResultsFeed feed, String etag) {
+        AsyncContext context = req.startAsync();
+        context.setTimeout(POLL_TIMEOUT);
+        AtomicBoolean answered = new AtomicBoolean();
+        Consumer<Snapshot> waiter = (s) -> {
+            if (answered.compareAndSet(false, true)) {
+                try {
+                    HttpServletResponse resp = (HttpServletResponse) context.getResponse();
+                    setHeaders(resp, s);
+                    // the container calls the answer, which writes without waiting
+                    resp.getOutputStream().setWriteListener(new Answer(context, s.getJson()));
+                } catch (IOException | IllegalStateException e) {
+                    logger.debug("viewer gone {}", e.toString());
+                    complete(context);
+                }
+            }
+        };
+        context.addListener(new AsyncListener() {
+            @Override
+            public void onComplete(AsyncEvent event) {
+                feed.removeWaiter(waiter);
+            }
+
+            @Override
+            public void onError(AsyncEvent event) {
+                answered.set(true);
+                feed.removeWaiter(waiter);
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+            }
+
+            @Override
+            public void onTimeout(AsyncEvent event) {
+                feed.removeWaiter(waiter);
+                if (answered.compareAndSet(false, true)) {
+                    sendNotModified((HttpServletResponse) context.getResponse(), feed.getSnapshot());
+                    context.complete();
+                }
+            }
+        });
+        feed.awaitChange(etag, waiter);
+    }
+
+    private void stream(HttpServletRequest req, HttpServletResponse resp, ResultsFeed feed) throws IOException {
+        resp.setContentType("text/event-stream");
+        resp.setCharacterEncoding("UTF-8");
+        resp.setHeader("Cache-Control", "no-cache");
+        // no buffering by proxies
+        resp.setHeader("X-Accel-Buffering", "no");
+        resp.flushBuffer();
+        AsyncContext context = req.startAsync();
+        context.setTimeout(0);
+        Stream stream = new Stream(context, feed);
+        // the container calls onWritePossible() once ready
+        resp.getOutputStream().setWriteListener(stream);
+        context.addListener(new AsyncListener() {
+            @Override
+            public void onComplete(AsyncEvent event) {
+                feed.removeStream(stream);
+            }
+
+            @Override
+            public void onError(AsyncEvent event) {
+                feed.removeStream(stream);
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+            }
+
+            @Override
+            public void onTimeout(AsyncEvent event) {
+                stream.close();
+            }
+        });
+        feed.addStream(stream);
+    }
+}
@@ -0,0 +1,271 @@
+/***
+ * Copyright (c) 2009-2019 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.publicresults;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+
+import org.slf4j.LoggerFactory;
+
+import com.google.common.eventbus.Subscribe;
+
+import app.owlcms.Main;
+import app.owlcms.fieldofplay.FieldOfPlay;
+import app.owlcms.fieldofplay.UIEvent;
+import app.owlcms.init.OwlcmsFactory;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import elemental.json.Json;
+import elemental.json.JsonObject;
+
+/**
+ * Sends the state of the fields of play to a relay server, which serves it to
+ * the public.
+ *
+ * Enabled by the <code>relayUrl</code> parameter (for example
+ * <code>https://relay.example.org/upstream</code>); <code>relayKey</code> must
+ * match the key of the relay, which refuses connections without one, and
+ * <code>relayName</code> distinguishes competitions that use the same relay.
+ * The key is sent in the <code>Authorization</code> header, not in the URL,
+ * so it does not appear in the logs of proxies.
+ *
+ * A single HTTP request is kept open to the relay whatever the number of
+ * viewers. Each message is a topic (<code>platform/kind</code>) and a JSON
+ * value; the kinds are <code>results</code> (from the {@link ResultsFeed}),
+ * <code>timer</code> and <code>decision</code>. Only the last value of a topic
+ * waits to be sent, and all the last values are sent again after reconnecting.
+ *
+ * @author owlcms
+ */
+public class RelayPublisher implements Runnable {
+
+    /**
+     * Follows the timer and decisions of a field of play.
+     */
+    public class FopListener {
+        private final String name;
+
+        FopListener(FieldOfPlay fop) {
+            this.name = fop.getName();
+        }
+
+        @Subscribe
+        public void slaveDecision(UIEvent.Decision e) {
+            JsonObject json = Json.createObject();
+            json.put("shown", true);
+            putDecision(json, "decision", e.decision);
+            putDecision(json, "ref1", e.ref1);
+            putDecision(json, "ref2", e.ref2);
+            putDecision(json, "ref3", e.ref3);
+            publish(name + "/decision", json);
+        }
+
+        @Subscribe
+        public void slaveDecisionReset(UIEvent.DecisionReset e) {
+            JsonObject json = Json.createObject();
+            json.put("shown", false);
+            publish(name + "/decision", json);
+        }
+
+        @Subscribe
+        public void slaveSetTime(UIEvent.SetTime e) {
+            publishTimer(false, e.getTimeRemaining());
+        }
+
+        @Subscribe
+        public void slaveStartTime(UIEvent.StartTime e) {
+            publishTimer(true, e.getTimeRemaining());
+        }
+
+        @Subscribe
+        public void slaveStopTime(UIEvent.StopTime e) {
+            publishTimer(false, e.getTimeRemaining());
+        }
+
+        private void publishTimer(boolean running, Integer timeRemaining) {
+            JsonObject json = Json.createObject();
+            json.put("running", running);
+            json.put("timeRemaining", timeRemaining != null ? timeRemaining : 0);
+            // viewers correct for the time spent in transit
+            json.put("at", System.currentTimeMillis());
+            publish(name + "/timer", json);
+        }
+
+        private void putDecision(JsonObject json, String key, Boolean value) {
+            if (value != null) {
+                json.put(key, value);
+            } else {
+                json.put(key, Json.createNull());
+            }
+        }
+    }
+
+    final private static Logger logger = (Logger) LoggerFactory.getLogger(RelayPublisher.class);
+    static {
+        logger.setLevel(Level.INFO);
+    }
+
+    /** an empty message is sent when idle, the relay drops silent connections */
+    private static final long KEEPALIVE_MS = 10000;
+    private static final long MAX_RETRY_MS = 30000;
+
+    private static RelayPublisher current;
+
+    public static RelayPublisher getCurrent() {
+        return current;
+    }
+
+    /**
+     * Start sending the fields of play to the relay, if one is configured.
+     */
+    public static synchronized void start() {
+        String url = Main.getStringParam("relayUrl");
+        if (url == null || url.trim().isEmpty() || current != null) {
+            return;
+        }
+        String name = Main.getStringParam("relayName");
+        String key = Main.getStringParam("relayKey");
+        if (key == null || key.isEmpty()) {
+            logger.warn("relayKey is not set, the relay will refuse the connection");
+        }
+        current = new RelayPublisher(url.trim(), key, name != null ? name : "owlcms");
+        for (FieldOfPlay fop : OwlcmsFactory.getFOPs()) {
+            current.follow(fop);
+        }
+        Thread t = new Thread(current, "relay-publisher");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    private final String url;
+    private final String key;
+    private final String name;
+    /** last value of each topic */
+    private final Map<String, byte[]> latest = new LinkedHashMap<>();
+    /** topics whose last value has not been sent */
+    private final LinkedHashSet<String> pending = new LinkedHashSet<>();
+
+    private RelayPublisher(String url, String key, String name) {
+        this.url = url;
+        this.key = key;
+        this.name = name;
+    }
+
+    /**
+     * Send the results, timer and decisions of a field of play.
+     *
+     * @param fop
+     */
+    public void follow(FieldOfPlay fop) {
+        String topic = fop.getName() + "/results";
+        ResultsFeed.get(fop).addStream((s) -> publish(topic, s.getJson()));
+        fop.getUiEventBus().register(new FopListener(fop));
+    }
+
+    /**
+     * Queue a value; a value of the same topic not yet sent is replaced.
+     *
+     * @param topic
+     * @param json  UTF-8
+     */
+    public synchronized void publish(String topic, byte[] json) {
+        latest.put(topic, json);
+        pending.add(topic);
+        notifyAll();
+    }
+
+    @Override
+    public void run() {
+        long retry = 1000;
+        while (true) {
+            HttpURLConnection connection = null;
+            try {
+                connection = connect();
+                logger.info("connected to relay {}", url);
+                retry = 1000;
+                synchronized (this) {
+                    pending.addAll(latest.keySet());
+                }
+                send(new DataOutputStream(new BufferedOutputStream(connection.getOutputStream())));
+            } catch (IOException e) {
+                logger.warn("relay {} unavailable: {}", url, e.toString());
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                if (connection != null) {
+                    connection.disconnect();
+                }
+            }
+            try {
+                Thread.sleep(retry);
+            } catch (InterruptedException e) {
+                return;
+            }
+            retry = Math.min(retry * 2, MAX_RETRY_MS);
+        }
+    }
+
+    private HttpURLConnection connect() throws IOException {
+        String query = "instance=" + URLEncoder.encode(name, "UTF-8");
+        HttpURLConnection connection = (HttpURLConnection) new URL(url + (url.contains("?") ? "&" : "?") + query)
+                .openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setChunkedStreamingMode(0);
+        connection.setRequestProperty("Content-Type", "application/octet-stream");
+        if (key != null) {
+            connection.setRequestProperty("Authorization", "Bearer " + key);
+        }
+        connection.connect();
+        return connection;
+    }
+
+    /**
+     * Each message is the topic (modified UTF-8, see
+     * {@link DataOutputStream#writeUTF(String)}), the length of the value, and
+     * the value. The keepalive message has an empty topic and no value.
+     */
+    private void send(DataOutputStream out) throws IOException, InterruptedException {
+        while (true) {
+            String topic = null;
+            byte[] json = null;
+            synchronized (this) {
+                if (pending.isEmpty()) {
+                    wait(KEEPALIVE_MS);
+                }
+                Iterator<String> it = pending.iterator();
+                if (it.hasNext()) {
+                    topic = it.next();
+                    it.remove();
+                    json = latest.get(topic);
+                }
+            }
+            if (topic != null) {
+                out.writeUTF(topic);
+                out.writeInt(json.length);
+                out.write(json);
+            } else {
+                out.writeUTF("");
+                out.writeInt(0);
+            }
+            out.flush();
+        }
+    }
+
+    private void publish(String topic, JsonObject json) {
+        publish(topic, json.toJson().getBytes(StandardCharsets.UTF_8));
+    }
+}
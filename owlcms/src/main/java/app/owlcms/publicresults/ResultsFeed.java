@@ -0,0 +1,298 @@
+/***
+ * Copyright (c) 2009-2019 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.publicresults;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+import org.slf4j.LoggerFactory;
+
+import com.google.common.eventbus.Subscribe;
+
+import app.owlcms.data.athlete.Athlete;
+import app.owlcms.data.athlete.AthleteView;
+import app.owlcms.data.athlete.LiftDefinition.Changes;
+import app.owlcms.data.athlete.LiftInfo;
+import app.owlcms.data.group.Group;
+import app.owlcms.fieldofplay.BreakType;
+import app.owlcms.fieldofplay.FOPState;
+import app.owlcms.fieldofplay.FieldOfPlay;
+import app.owlcms.fieldofplay.UIEvent;
+import app.owlcms.utils.LoggerUtils;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import elemental.json.Json;
+import elemental.json.JsonArray;
+import elemental.json.JsonObject;
+import elemental.json.JsonValue;
+
+/**
+ * The results of a field of play, for the public.
+ *
+ * A feed listens to the UI events of its field of play like a display would,
+ * but there is only one per field of play whatever the number of viewers. Each
+ * time the results change, they are serialized once into a {@link Snapshot}
+ * that is sent as is to all the viewers.
+ *
+ * @author owlcms
+ */
+public class ResultsFeed {
+
+    /**
+     * The results at one point in time, serialized. Does not change once
+     * created.
+     */
+    public static final class Snapshot {
+        private final long version;
+        private final String etag;
+        private final byte[] json;
+        private final byte[] event;
+
+        Snapshot(String feedId, long version, String json) {
+            this.version = version;
+            this.etag = "\"" + feedId + "-" + version + "\"";
+            this.json = json.getBytes(StandardCharsets.UTF_8);
+            this.event = ("id: " + version + "\nevent: results\ndata: " + json + "\n\n")
+                    .getBytes(StandardCharsets.UTF_8);
+        }
+
+        /**
+         * @return the value for the ETag header, quoted
+         */
+        public String getEtag() {
+            return etag;
+        }
+
+        /**
+         * @return the results as a server-sent event; shared, must not be modified
+         */
+        public byte[] getEvent() {
+            return event;
+        }
+
+        /**
+         * @return the results in JSON, UTF-8; shared, must not be modified
+         */
+        public byte[] getJson() {
+            return json;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+    }
+
+    final private static Logger logger = (Logger) LoggerFactory.getLogger(ResultsFeed.class);
+    static {
+        logger.setLevel(Level.INFO);
+    }
+
+    private static final Map<FieldOfPlay, ResultsFeed> feeds = new ConcurrentHashMap<>();
+
+    /**
+     * Get the feed of a field of play, creating it on first use.
+     *
+     * @param fop
+     * @return the feed
+     */
+    public static ResultsFeed get(FieldOfPlay fop) {
+        return feeds.computeIfAbsent(fop, ResultsFeed::new);
+    }
+
+    private static JsonArray attemptsJson(List<LiftInfo> attempts, int from) {
+        JsonArray array = Json.createArray();
+        for (int ix = 0; ix < 3; ix++) {
+            LiftInfo i = attempts.get(from + ix);
+            String stringValue = i.getStringValue();
+            String trim = stringValue != null ? stringValue.trim() : "";
+            String weight = "";
+            String status = "";
+            if (i.getChangeNo() >= 0 && !trim.isEmpty()) {
+                if (Changes.values()[i.getChangeNo()] == Changes.ACTUAL) {
+                    if (trim.contentEquals("-") || trim.contentEquals("0")) {
+                        status = "fail";
+                    } else if (trim.startsWith("-")) {
+                        weight = trim.substring(1);
+                        status = "fail";
+                    } else {
+                        weight = trim;
+                        status = "good";
+                    }
+                } else {
+                    weight = trim;
+                    status = "request";
+                }
+            }
+            JsonObject jri = Json.createObject();
+            jri.put("weight", weight);
+            jri.put("status", status);
+            array.set(ix, jri);
+        }
+        return array;
+    }
+
+    private static JsonObject athleteJson(AthleteView a) {
+        JsonObject ja = Json.createObject();
+        ja.put("fullName", a.getFullName() != null ? a.getFullName() : "");
+        ja.put("team", a.getTeam() != null ? a.getTeam() : "");
+        ja.put("category", a.getDisplayCategory());
+        ja.put("yearOfBirth", number(a.getYearOfBirth()));
+        ja.put("startNumber", number(a.getStartNumber()));
+        ja.put("snatch", attemptsJson(a.getAttempts(), 0));
+        ja.put("snatchRank", number(a.getSnatchRank()));
+        ja.put("cleanJerk", attemptsJson(a.getAttempts(), 3));
+        ja.put("cleanJerkRank", number(a.getCleanJerkRank()));
+        ja.put("total", number(a.getTotal()));
+        ja.put("totalRank", number(a.getTotalRank()));
+        ja.put("liftOrderRank", number(a.getLiftOrderRank()));
+        return ja;
+    }
+
+    private static JsonValue number(Integer value) {
+        return value != null ? Json.create(value) : Json.createNull();
+    }
+
+    private final FieldOfPlay fop;
+    /** distinguishes the versions of a feed from those of a previous one */
+    private final String feedId = Long.toString(System.currentTimeMillis(), 36);
+    private Snapshot snapshot;
+    /** the JSON of the snapshot, to detect events that change nothing */
+    private String shownJson;
+    /**
+     * called once, with the next snapshot; must not block, may remove itself
+     */
+    private final List<Consumer<Snapshot>> waiting = new ArrayList<>();
+    /** called with every snapshot; must not block, may remove itself */
+    private final Set<Consumer<Snapshot>> streams = new HashSet<>();
+
+    private ResultsFeed(FieldOfPlay fop) {
+        this.fop = fop;
+        this.shownJson = computeJson();
+        this.snapshot = new Snapshot(feedId, 1, shownJson);
+        fop.getUiEventBus().register(this);
+        logger.info("public results feed started for {}", fop.getName());
+    }
+
+    /**
+     * Follow all the changes.
+     *
+     * @param stream called with the current snapshot, then with each new one
+     *               until removed; must not block
+     */
+    public synchronized void addStream(Consumer<Snapshot> stream) {
+        streams.add(stream);
+        stream.accept(snapshot);
+    }
+
+    /**
+     * Wait for the results to change.
+     *
+     * @param etag   the version the viewer has
+     * @param waiter called once with the first snapshot that has another version,
+     *               immediately if the current one does; must not block
+     */
+    public synchronized void awaitChange(String etag, Consumer<Snapshot> waiter) {
+        if (!snapshot.getEtag().equals(etag)) {
+            waiter.accept(snapshot);
+        } else {
+            waiting.add(waiter);
+        }
+    }
+
+    public synchronized Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * @return number of viewers waiting or following the changes
+     */
+    public synchronized int getViewerCount() {
+        return waiting.size() + streams.size();
+    }
+
+    public synchronized void removeStream(Consumer<Snapshot> stream) {
+        streams.remove(stream);
+    }
+
+    public synchronized void removeWaiter(Consumer<Snapshot> waiter) {
+        waiting.remove(waiter);
+    }
+
+    /**
+     * Any event may change what is shown; the results are serialized again and
+     * sent if they differ.
+     *
+     * @param e
+     */
+    @Subscribe
+    public void slaveUIEvent(UIEvent e) {
+        try {
+            update();
+        } catch (Exception ex) {
+            logger.error("{} {}", fop.getName(), LoggerUtils.stackTrace(ex));
+        }
+    }
+
+    private String computeJson() {
+        JsonObject json = Json.createObject();
+        json.put("fop", fop.getName());
+        Group g = fop.getGroup();
+        json.put("group", g != null ? g.getName() : "");
+        FOPState state = fop.getState();
+        json.put("state", state != null ? state.name() : "");
+        BreakType breakType = fop.getBreakType();
+        json.put("breakType", state == FOPState.BREAK && breakType != null ? breakType.name() : "");
+
+        List<AthleteView> views = fop.getDisplayOrderViews();
+        json.put("liftsDone", AthleteView.countLiftsDone(views));
+        Athlete curAthlete = fop.getCurAthlete();
+        if (curAthlete != null && curAthlete.getAttemptsDone() < 6) {
+            AthleteView cur = fop.getAthleteView(curAthlete);
+            JsonObject jc = Json.createObject();
+            jc.put("fullName", cur.getFullName() != null ? cur.getFullName() : "");
+            jc.put("team", cur.getTeam() != null ? cur.getTeam() : "");
+            jc.put("startNumber", number(cur.getStartNumber()));
+            jc.put("attemptsDone", cur.getAttemptsDone());
+            jc.put("weight", number(cur.getNextAttemptRequestedWeight()));
+            json.put("current", jc);
+        } else {
+            json.put("current", Json.createNull());
+        }
+        JsonArray athletes = Json.createArray();
+        for (AthleteView a : views) {
+            athletes.set(athletes.length(), athleteJson(a));
+        }
+        json.put("athletes", athletes);
+        return json.toJson();
+    }
+
+    private synchronized void update() {
+        String json = computeJson();
+        if (json.equals(shownJson)) {
+            return;
+        }
+        shownJson = json;
+        snapshot = new Snapshot(feedId, snapshot.getVersion() + 1, json);
+        List<Consumer<Snapshot>> answered = new ArrayList<>(waiting);
+        waiting.clear();
+        for (Consumer<Snapshot> waiter : answered) {
+            waiter.accept(snapshot);
+        }
+        // copied, a viewer that is gone removes itself
+        for (Consumer<Snapshot> stream : new ArrayList<>(streams)) {
+            stream.accept(snapshot);
+        }
+        logger.debug("{} version {} sent to {} viewers", fop.getName(), snapshot.getVersion(),
+                answered.size() + streams.size());
+    }
+}
@@ -14,6 +14,7 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Set;
 
+import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
 import org.slf4j.Logger;
@@ -22,6 +23,7 @@ import org.slf4j.LoggerFactory;
 import com.google.common.io.ByteStreams;
 
 import app.owlcms.data.athlete.Athlete;
+import app.owlcms.data.athleteSort.TeamRankings.TeamScore;
 import app.owlcms.data.competition.Competition;
 import app.owlcms.data.jpa.JPAService;
 import app.owlcms.i18n.Translator;
@@ -38,6 +40,13 @@ public class JXLSCompetitionBook extends JXLSWorkbookStreamSource {
 
     private static final long serialVersionUID = 1L;
 
+    /** sheet added when the template has none, with the team standings */
+    private static final String TEAM_STANDINGS_SHEET = "TeamStandings";
+    /** bean and title of each section of the team standings sheet */
+    private static final String[][] TEAM_STANDINGS = { { "mTeamScoresTot", "MT" }, { "wTeamScoresTot", "WT" },
+            { "mTeamScoresCombined", "MCT" }, { "wTeamScoresCombined", "WCT" }, { "mTeamScoresCus", "MXT" },
+            { "wTeamScoresCus", "WXT" } };
+
     @SuppressWarnings("unused")
     private Logger logger = LoggerFactory.getLogger(JXLSCompetitionBook.class);
     private byte[] finalPackageTemplate;
@@ -123,6 +132,7 @@ public class JXLSCompetitionBook extends JXLSWorkbookStreamSource {
         setTeamSheetPrintArea(workbook, "WCT", nbClubs);
         setTeamSheetPrintArea(workbook, "MWCT", nbClubs);
 
+        addTeamStandingsSheet(workbook);
         translateSheets(workbook);
         workbook.setForceFormulaRecalculation(true);
 
@@ -136,6 +146,49 @@ public class JXLSCompetitionBook extends JXLSWorkbookStreamSource {
         Competition.getCurrent().computeGlobalRankings(reportingBeans);
     }
 
+    /**
+     * Add a sheet with the team standings (see
+     * {@link app.owlcms.data.athleteSort.TeamRankings}), unless the template
+     * already has one. Only the teams that have points are listed.
+     *
+     * @param workbook
+     */
+    @SuppressWarnings("unchecked")
+    private void addTeamStandingsSheet(Workbook workbook) {
+        if (workbook.getSheet(TEAM_STANDINGS_SHEET) != null) {
+            return;
+        }
+        Sheet sheet = workbook.createSheet(TEAM_STANDINGS_SHEET);
+        Locale locale = OwlcmsSession.getLocale();
+        int rowNum = 0;
+        for (String[] section : TEAM_STANDINGS) {
+            List<TeamScore> scores = (List<TeamScore>) getReportingBeans().get(section[0]);
+            if (scores == null || scores.isEmpty() || scores.get(0).getRank() == 0) {
+                continue;
+            }
+            sheet.createRow(rowNum++).createCell(0)
+                    .setCellValue(Translator.translate("CompetitionBook." + section[1], locale));
+            Row header = sheet.createRow(rowNum++);
+            header.createCell(0).setCellValue(Translator.translate("Rank", locale));
+            header.createCell(1).setCellValue(Translator.translate("Team", locale));
+            header.createCell(2).setCellValue(Translator.translate("CompetitionBook.TeamPoints", locale));
+            header.createCell(3).setCellValue(Translator.translate("CompetitionBook.TeamCounted", locale));
+            for (TeamScore score : scores) {
+                if (score.getRank() == 0) {
+                    break;
+                }
+                Row row = sheet.createRow(rowNum++);
+                row.createCell(0).setCellValue(score.getRank());
+                row.createCell(1).setCellValue(score.getTeam() != null ? score.getTeam() : "");
+                row.createCell(2).setCellValue(score.getPoints());
+                row.createCell(3).setCellValue(score.getCounted() + "/" + score.getSize());
+            }
+            rowNum++;
+        }
+        // in 1/256 of a character
+        sheet.setColumnWidth(1, 30 * 256);
+    }
+
     private void setTeamSheetPrintArea(Workbook workbook, String sheetName, int nbClubs) {
         // int sheetIndex = workbook.getSheetIndex(sheetName);
         // if (sheetIndex >= 0) {
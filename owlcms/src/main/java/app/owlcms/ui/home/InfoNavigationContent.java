@@ -21,6 +21,7 @@ import com.github.appreciated.layout.FlexibleGridLayout;
 import com.vaadin.flow.component.Component;
 import com.vaadin.flow.component.UI;
 import com.vaadin.flow.component.button.Button;
+import com.vaadin.flow.component.grid.Grid;
 import com.vaadin.flow.component.html.H3;
 import com.vaadin.flow.component.html.Label;
 import com.vaadin.flow.component.orderedlayout.BoxSizing;
@@ -33,6 +34,8 @@ import com.vaadin.flow.router.Route;
 import app.owlcms.components.NavigationPage;
 import app.owlcms.i18n.Translator;
 import app.owlcms.init.OwlcmsFactory;
+import app.owlcms.metrics.LatencyMetrics;
+import app.owlcms.metrics.LatencyMetrics.Row;
 import app.owlcms.ui.shared.BaseNavigationContent;
 import app.owlcms.ui.shared.OwlcmsRouterLayout;
 import app.owlcms.utils.DebugUtils;
@@ -109,9 +112,42 @@ public class InfoNavigationContent extends BaseNavigationContent implements Navi
         addP(license, getTranslation("TranslationDocumentation"));
         doGroup(getTranslation("reloadTranslationInfo"), grid1, license);
 
+        buildLatency(license);
         return license;
     }
 
+    /**
+     * Response times from the field of play to the displays, with the stage where
+     * the time is spent.
+     */
+    private void buildLatency(VerticalLayout wrapper) {
+        Grid<Row> latencies = new Grid<>();
+        latencies.addColumn((r) -> r.getStage().getKey()).setHeader(getTranslation("Latency.Stage"))
+                .setSortable(true);
+        latencies.addColumn(Row::getEvent).setHeader(getTranslation("Latency.Event")).setSortable(true);
+        latencies.addColumn(Row::getDisplay).setHeader(getTranslation("Latency.Display")).setSortable(true);
+        latencies.addColumn(Row::getCount).setHeader(getTranslation("Latency.Count"));
+        latencies.addColumn((r) -> String.format("%.1f", r.getP50())).setHeader("p50 (ms)");
+        latencies.addColumn((r) -> String.format("%.1f", r.getP90())).setHeader("p90 (ms)");
+        latencies.addColumn((r) -> String.format("%.1f", r.getP99())).setHeader("p99 (ms)");
+        latencies.addColumn((r) -> String.format("%.1f", r.getMax())).setHeader("max (ms)");
+        latencies.setItems(LatencyMetrics.getRows());
+        latencies.setHeightByRows(true);
+
+        Button refresh = new Button(getTranslation("Latency.Refresh"),
+                buttonClickEvent -> latencies.setItems(LatencyMetrics.getRows()));
+        Button reset = new Button(getTranslation("Latency.Reset"), buttonClickEvent -> {
+            LatencyMetrics.reset();
+            latencies.setItems(LatencyMetrics.getRows());
+        });
+        FlexibleGridLayout buttons = HomeNavigationContent.navigationGrid(refresh, reset);
+
+        wrapper.add(new H3(getTranslation("Latency.Title")));
+        addP(wrapper, getTranslation("Latency.Info"));
+        doGroup(getTranslation("Latency.Actions"), buttons, wrapper);
+        fillH(latencies, wrapper);
+    }
+
     /**
      * The left part of the top bar.
      * 
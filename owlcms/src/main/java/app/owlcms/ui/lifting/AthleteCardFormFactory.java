@@ -666,7 +666,7 @@ public class AthleteCardFormFactory extends OwlcmsCrudFormFactory<Athlete> imple
                     AthleteRepository.save(originalAthlete);
                     OwlcmsSession.withFop((fop) -> {
                         fop.getFopEventBus().post(new FOPEvent.WeightChange(this.getOrigin(), originalAthlete));
-                        fop.updateGlobalRankings();
+                        fop.runOnEventLoop(() -> fop.updateGlobalRankings());
                     });
                     origin.closeDialog();
                 });
@@ -15,6 +15,8 @@ import com.vaadin.flow.component.UIDetachedException;
 import com.vaadin.flow.server.Command;
 
 import app.owlcms.fieldofplay.UIEvent;
+import app.owlcms.metrics.LatencyMetrics;
+import app.owlcms.metrics.LatencyMetrics.Stage;
 
 public interface UIEventProcessor {
 
@@ -58,6 +60,10 @@ public interface UIEventProcessor {
      * the timekeeper device, there is no need to obey the command to stop the clock
      * on all the other devices, since we are the cause of that event.
      * 
+     * When there is an event, the delays until the display receives it, until the
+     * command runs, and until the changes are pushed are recorded in
+     * {@link LatencyMetrics}.
+     * 
      * @param attachedComponent the component we are updating (any of them if
      *                          several)
      * @param uiEventBus        the bus on which we are listening
@@ -77,12 +83,12 @@ public interface UIEventProcessor {
                 if (eventOrigin != null && eventOrigin.equals(selfOrigin)) {
                     return;
                 }
-                if (attachedUI.get() != null) {
-                    attachedUI.get().access(command);
-                } else {
+                UI ui = attachedUI.get();
+                if (ui == null) {
                     // can't happen in theory, but does in practice !?
-                    UI.getCurrent().access(command);
+                    ui = UI.getCurrent();
                 }
+                ui.access(e != null ? timed(ui, attachedComponent, e, command) : command);
             } catch (UIDetachedException e1) {
                 if (uiEventBus != null) {
                     uiEventBus.unregister(attachedComponent);
@@ -97,4 +103,20 @@ public interface UIEventProcessor {
         }
     }
 
+    /**
+     * Wrap the command so the time taken to reach the UI and the browser is
+     * recorded.
+     */
+    static Command timed(UI ui, Component display, UIEvent e, Command command) {
+        long received = System.nanoTime();
+        LatencyMetrics.record(Stage.UI_DISPATCH, e.getClass(), display.getClass(), received - e.getCreatedNanos());
+        return () -> {
+            LatencyMetrics.record(Stage.UI_ACCESS, e.getClass(), display.getClass(), System.nanoTime() - received);
+            command.execute();
+            // runs when the response or push message is written
+            ui.beforeClientResponse(ui, (ctx) -> LatencyMetrics.record(Stage.PUSH, e.getClass(), display.getClass(),
+                    System.nanoTime() - e.getTriggerNanos()));
+        };
+    }
+
 }
\ No newline at end of file
@@ -90,8 +90,15 @@ public abstract class AthleteGridContent extends VerticalLayout
     }
 
     public static String formatAttemptNumber(Athlete a) {
-        Integer attemptsDone = a.getAttemptsDone();
-        Integer attemptNumber = a.getAttemptNumber();
+        return formatAttemptNumber(a.getAttemptsDone(), a.getAttemptNumber());
+    }
+
+    /**
+     * @param attemptsDone
+     * @param attemptNumber number of the next attempt, 1..3
+     * @return the next lift and attempt, or done
+     */
+    public static String formatAttemptNumber(int attemptsDone, int attemptNumber) {
         return (attemptsDone >= 3)
                 ? ((attemptsDone >= 6) ? Translator.translate("Done")
                         : Translator.translate("C_and_J_number", attemptNumber))
@@ -612,14 +619,14 @@ public abstract class AthleteGridContent extends VerticalLayout
                         logger.debug("filter switching group from {} to {}",
                                 oldGroup != null ? oldGroup.getName() : null,
                                 newGroup != null ? newGroup.getName() : null);
-                        fop.getFopEventBus().post(new FOPEvent.SwitchGroup(newGroup, this));
+                        // wait for the group to be loaded; the UI SwitchGroup that follows
+                        // has this screen as origin and is ignored by slaveSwitchGroup
+                        fop.runOnEventLoopAndWait(() -> fop.handleFOPEvent(new FOPEvent.SwitchGroup(newGroup, this)));
                         oldGroup = newGroup;
-                        // this assumes that SwitchGroup post is synchronous and has loaded.
-                        // otherwise we should listen for UI SwitchGroup event.
                         syncWithFOP(true);
                         updateURLLocation(getLocationUI(), getLocation(), newGroup);
                     } else {
-                        fop.loadGroup(newGroup, this);
+                        fop.runOnEventLoopAndWait(() -> fop.loadGroup(newGroup, this));
                         syncWithFOP(true);
                     }
                 });
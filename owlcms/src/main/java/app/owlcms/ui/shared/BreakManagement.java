@@ -175,18 +175,20 @@ public class BreakManagement extends VerticalLayout implements SafeEventBusRegis
         dt = new HorizontalLayout();
         athleteButton = new Button(
                 getTranslation(DisplayType.class.getSimpleName() + "." + DisplayType.LIFT_INFO.name()), (e) -> {
-                    OwlcmsSession.withFop(fop -> {
+                    OwlcmsSession.withFop(fop -> fop.runOnEventLoop(() -> {
                         fop.recomputeLiftingOrder();
                         fop.uiDisplayCurrentAthleteAndTime(false, new FOPEvent(null, this), true);
-                    });
+                    }));
                 });
         countdownButton = new Button(
                 getTranslation(DisplayType.class.getSimpleName() + "." + DisplayType.COUNTDOWN_INFO.name()), (e) -> {
-                    OwlcmsSession.withFop(fop -> {
+                    BreakType breakType = bt.getValue();
+                    CountdownType countdownType = ct.getValue();
+                    OwlcmsSession.withFop(fop -> fop.runOnEventLoop(() -> {
                         fop.recomputeLiftingOrder();
-                        OwlcmsSession.getFop().getUiEventBus()
-                                .post(new UIEvent.BreakStarted(0, this, true, bt.getValue(), ct.getValue()));
-                    });
+                        fop.getUiEventBus()
+                                .post(new UIEvent.BreakStarted(0, this, true, breakType, countdownType));
+                    }));
                 });
         athleteButton.getThemeNames().add("secondary contrast");
         countdownButton.getThemeNames().add("secondary contrast");
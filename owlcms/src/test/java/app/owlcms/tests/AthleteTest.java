@@ -7,6 +7,9 @@
 package app.owlcms.tests;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.Field;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -14,8 +17,11 @@ import org.junit.Test;
 import app.owlcms.data.agegroup.AgeGroup;
 import app.owlcms.data.athlete.Athlete;
 import app.owlcms.data.athlete.Gender;
+import app.owlcms.data.athlete.RuleViolationException;
+import app.owlcms.data.athlete.SinclairCoefficients;
 import app.owlcms.data.category.AgeDivision;
 import app.owlcms.data.category.Category;
+import app.owlcms.data.competition.Competition;
 
 public class AthleteTest {
 
@@ -136,5 +142,73 @@ public class AthleteTest {
         assertEquals("total with full bomb out", 0, (long) athlete.getTotal());
     }
 
+    @Test
+    public void testSinclair() {
+        athlete.setSnatch1ActualLift("60");
+        athlete.setCleanJerk1ActualLift("80");
+        assertEquals(140 * sinclairFactor(0.751945030, 175.508, 68.5), athlete.getSinclair(), 0.0001);
+        // the factor is computed again when the body weight or the gender change
+        athlete.setBodyWeight(80.0);
+        assertEquals(140 * sinclairFactor(0.751945030, 175.508, 80.0), athlete.getSinclair(), 0.0001);
+        athlete.setGender(Gender.F);
+        assertEquals(140 * sinclairFactor(0.783497476, 153.655, 80.0), athlete.getSinclair(), 0.0001);
+        athlete.setBodyWeight(160.0);
+        assertEquals(140.0, athlete.getSinclair(), 0.0001);
+        assertEquals(1.0F, SinclairCoefficients.smmCoefficient(25), 0.0001);
+        assertEquals(SinclairCoefficients.smmCoefficient(90), SinclairCoefficients.smmCoefficient(95), 0.0001);
+        assertEquals(140.0 * SinclairCoefficients.smmCoefficient(90), athlete.getSmm(), 0.0001);
+    }
+
+    /**
+     * JPA sets the fields directly, the parsed values must follow.
+     */
+    @Test
+    public void testLiftFieldSetDirectly() throws Exception {
+        athlete.setSnatch1ActualLift("60");
+        athlete.setCleanJerk1ActualLift("80");
+        assertEquals(60, (long) athlete.getBestSnatch());
+        assertEquals(140, (long) athlete.getTotal());
+
+        Field snatch1 = Athlete.class.getDeclaredField("snatch1ActualLift");
+        snatch1.setAccessible(true);
+        snatch1.set(athlete, "65");
+        assertEquals(65, (long) athlete.getBestSnatch());
+        assertEquals(145, (long) athlete.getTotal());
+        snatch1.set(athlete, "-65");
+        assertEquals(0, (long) athlete.getBestSnatch());
+        assertEquals(0, (long) athlete.getTotal());
+    }
+
+    /**
+     * The proposed declaration is checked, not the one stored.
+     */
+    @Test
+    public void testStartingTotalsRuleUsesNewDeclaration() throws Exception {
+        Field current = Competition.class.getDeclaredField("competition");
+        current.setAccessible(true);
+        Object previous = current.get(null);
+        try {
+            Competition competition = new Competition();
+            competition.setEnforce20kgRule(true);
+            current.set(null, competition);
+            athlete.setQualifyingTotal(150);
+            // 60 + 75 is within 20 kg of 150
+            athlete.validateCleanJerk1Declaration("75");
+            try {
+                // 60 + 60 is not, even though the stored declaration (80) is
+                athlete.validateCleanJerk1Declaration("60");
+                fail("starting total rule not enforced");
+            } catch (RuleViolationException e) {
+                // expected
+            }
+        } finally {
+            current.set(null, previous);
+        }
+    }
+
+    private double sinclairFactor(double coefficient, double maxWeight, double bodyWeight) {
+        return Math.pow(10.0, coefficient * Math.pow(Math.log10(bodyWeight / maxWeight), 2));
+    }
+
 
 }
@@ -0,0 +1,132 @@
+/***
+ * Copyright (c) 2009-2019 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import app.owlcms.data.athlete.Athlete;
+import app.owlcms.data.athlete.AthleteRepository;
+import app.owlcms.data.athlete.AthleteView;
+import app.owlcms.data.athlete.Gender;
+import app.owlcms.data.athleteSort.AthleteSorter;
+import app.owlcms.data.athleteSort.RankingSnapshot;
+import app.owlcms.data.group.Group;
+import app.owlcms.data.group.GroupRepository;
+import app.owlcms.data.jpa.JPAService;
+import app.owlcms.fieldofplay.FOPEvent;
+import app.owlcms.fieldofplay.FieldOfPlay;
+
+public class AthleteViewTest {
+
+	@BeforeClass
+	public static void setupTests() {
+		JPAService.init(true, true);
+	}
+
+	@AfterClass
+	public static void tearDownTests() {
+		JPAService.close();
+	}
+
+	@Test
+	public void unchangedByLifts() {
+		TestData.insertInitialData(5, true);
+		JPAService.runInTransaction((em) -> {
+			Group gA = GroupRepository.doFindByName("A", em);
+			Group gB = GroupRepository.doFindByName("B", em);
+			Group gC = GroupRepository.doFindByName("C", em);
+			TestData.deleteAllLifters(em);
+			TestData.insertSampleLifters(em, 4, gA, gB, gC);
+			return null;
+		});
+		List<Athlete> athletes = AthleteRepository.findAll();
+		AthleteSorter.assignLotNumbers(athletes);
+		for (Athlete a : athletes) {
+			a.setGender(Gender.M);
+			a.setSnatch1Declaration("60");
+			a.setCleanJerk1Declaration("80");
+		}
+		AthleteSorter.liftingOrder(athletes);
+		Athlete first = athletes.get(0);
+		first.successfulLift();
+		AthleteSorter.liftingOrder(athletes);
+
+		RankingSnapshot rankings = RankingSnapshot.ofCategoryRanks(athletes);
+		Map<Long, AthleteView> created = new HashMap<>();
+		List<AthleteView> views = AthleteView.of(athletes, rankings, created);
+		List<AthleteView> again = AthleteView.of(athletes, rankings, created);
+		assertSame(views.get(0), again.get(0));
+		assertEquals(AthleteSorter.countLiftsDone(athletes), AthleteView.countLiftsDone(views));
+
+		AthleteView v = created.get(first.getId());
+		assertEquals(1, v.getAttemptsDone());
+		assertEquals("60", v.getAttempts().get(0).getStringValue());
+		assertEquals(rankings.getRank(first, AthleteSorter.Ranking.SNATCH), v.getSnatchRank());
+
+		// the view keeps what was shown
+		first.failedLift();
+		assertEquals(1, v.getAttemptsDone());
+		assertEquals(first.getFullName(), v.getFullName());
+	}
+
+	@Test
+	public void keptWhenOnlyMoved() {
+		TestData.insertInitialData(5, true);
+		JPAService.runInTransaction((em) -> {
+			Group gA = GroupRepository.doFindByName("A", em);
+			Group gB = GroupRepository.doFindByName("B", em);
+			Group gC = GroupRepository.doFindByName("C", em);
+			TestData.deleteAllLifters(em);
+			TestData.insertSampleLifters(em, 4, gA, gB, gC);
+			return null;
+		});
+		List<Athlete> athletes = AthleteRepository.findAll();
+		AthleteSorter.assignLotNumbers(athletes);
+		for (int i = 0; i < athletes.size(); i++) {
+			athletes.get(i).setSnatch1Declaration(Integer.toString(60 + i));
+			athletes.get(i).setCleanJerk1Declaration("80");
+		}
+		FieldOfPlay fop = new FieldOfPlay(athletes, new MockCountdownTimer(), new MockCountdownTimer(), true);
+		Map<Long, AthleteView> before = new HashMap<>();
+		Map<Long, Integer> ranksBefore = new HashMap<>();
+		for (AthleteView v : fop.getLiftingOrderViews()) {
+			before.put(v.getId(), v);
+			ranksBefore.put(v.getId(), v.getLiftOrderRank());
+		}
+
+		// the current athlete moves behind two others
+		Athlete cur = fop.getCurAthlete();
+		cur.setSnatch1Change1("62");
+		fop.getFopEventBus().post(new FOPEvent.WeightChange(this, cur));
+
+		int kept = 0;
+		for (AthleteView v : fop.getLiftingOrderViews()) {
+			AthleteView old = before.get(v.getId());
+			if (v.getId().equals(cur.getId())) {
+				assertNotSame(old, v);
+				assertEquals("62", v.getAttempts().get(0).getStringValue());
+			} else if (v.getLiftOrderRank().equals(ranksBefore.get(v.getId()))) {
+				assertSame(old, v);
+				kept++;
+			} else {
+				assertNotSame(old, v);
+			}
+		}
+		assertTrue(kept > 0);
+	}
+}
@@ -0,0 +1,165 @@
+/***
+ * Copyright (c) 2009-2019 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import app.owlcms.data.athlete.Athlete;
+import app.owlcms.data.athlete.AthleteRepository;
+import app.owlcms.data.athlete.AthleteWriteBehind;
+import app.owlcms.data.group.Group;
+import app.owlcms.data.group.GroupRepository;
+import app.owlcms.data.jpa.JPAService;
+
+/**
+ * Results saved in the background are found by the repository, latest values
+ * first.
+ */
+public class AthleteWriteBehindTest {
+
+	@BeforeClass
+	public static void setupTests() throws IOException {
+		System.setProperty("journalDir", Files.createTempDirectory("journal").toString());
+		JPAService.init(true, true);
+	}
+
+	@AfterClass
+	public static void tearDownTests() {
+		JPAService.close();
+	}
+
+	@Before
+	public void setupTest() {
+		TestData.insertInitialData(5, true);
+		JPAService.runInTransaction((em) -> {
+			Group gA = GroupRepository.doFindByName("A", em);
+			Group gB = GroupRepository.doFindByName("B", em);
+			Group gC = GroupRepository.doFindByName("C", em);
+			TestData.deleteAllLifters(em);
+			TestData.insertSampleLifters(em, 5, gA, gB, gC);
+			return null;
+		});
+	}
+
+	@After
+	public void tearDownTest() {
+		AthleteWriteBehind.setSynchronous(false);
+	}
+
+	@Test
+	public void latestValuesSaved() {
+		List<Athlete> athletes = AthleteRepository.findAll();
+		for (int i = 0; i < 3; i++) {
+			for (Athlete a : athletes) {
+				a.setSnatch1Declaration(Integer.toString(60 + i));
+				AthleteRepository.saveLater(a);
+			}
+		}
+		Athlete first = athletes.get(0);
+		first.setSnatch1ActualLift("62");
+		first.setCleanJerk1Declaration("80");
+		AthleteRepository.saveLater(first);
+
+		// committed or not
+		checkLatest(AthleteRepository.findAll(), first);
+		AthleteWriteBehind.flush();
+		assertEquals(0, AthleteWriteBehind.getPendingCount());
+		checkLatest(AthleteRepository.findAll(), first);
+	}
+
+	@Test
+	public void savedAthleteNotOverwritten() {
+		Athlete a = AthleteRepository.findAll().get(0);
+		a.setSnatch1Declaration("61");
+		AthleteRepository.saveLater(a);
+		Athlete edited = AthleteRepository.findById(a.getId());
+		assertEquals("61", edited.getSnatch1Declaration());
+		edited.setSnatch1Declaration("65");
+		AthleteRepository.save(edited);
+
+		AthleteWriteBehind.flush();
+		assertEquals("65", AthleteRepository.findById(a.getId()).getSnatch1Declaration());
+	}
+
+	@Test
+	public void failingUpdateSetAside() throws Exception {
+		List<Athlete> athletes = AthleteRepository.findAll();
+		Athlete bad = athletes.get(0);
+		Athlete good = athletes.get(1);
+		// too long for the column, the update can never be committed
+		Field declaration = Athlete.class.getDeclaredField("snatch1Declaration");
+		declaration.setAccessible(true);
+		declaration.set(bad, String.join("", Collections.nCopies(300, "9")));
+		AthleteRepository.saveLater(bad);
+		good.setSnatch1Declaration("71");
+		AthleteRepository.saveLater(good);
+
+		// the readers do not wait for the retries
+		long start = System.currentTimeMillis();
+		assertEquals("71", AthleteRepository.findById(good.getId()).getSnatch1Declaration());
+		assertTrue(System.currentTimeMillis() - start < 1000);
+
+		// flushing stops waiting once the update is set aside
+		AthleteWriteBehind.flush();
+		assertTrue(System.currentTimeMillis() - start < 10000);
+		assertEquals("71", AthleteRepository.findById(good.getId()).getSnatch1Declaration());
+		assertEquals(0, AthleteWriteBehind.getPendingCount());
+		assertEquals(1, AthleteWriteBehind.getFailedCount());
+
+		// kept for the next start
+		Path pending = Paths.get(System.getProperty("journalDir"), "athletes.pending");
+		String content = new String(Files.readAllBytes(pending), StandardCharsets.UTF_8);
+		assertTrue(content.startsWith(bad.getId() + "\t"));
+
+		// a later update of the athlete replaces it
+		bad.setSnatch1Declaration("72");
+		AthleteRepository.saveLater(bad);
+		AthleteWriteBehind.flush();
+		assertEquals("72", AthleteRepository.findById(bad.getId()).getSnatch1Declaration());
+		assertEquals(0, AthleteWriteBehind.getFailedCount());
+	}
+
+	@Test
+	public void synchronous() {
+		AthleteWriteBehind.setSynchronous(true);
+		Athlete a = AthleteRepository.findAll().get(0);
+		a.setSnatch1Declaration("70");
+		AthleteRepository.saveLater(a);
+		assertEquals(0, AthleteWriteBehind.getPendingCount());
+		assertEquals("70", AthleteRepository.findById(a.getId()).getSnatch1Declaration());
+	}
+
+	private void checkLatest(List<Athlete> athletes, Athlete first) {
+		for (Athlete a : athletes) {
+			assertEquals("62", a.getSnatch1Declaration());
+			if (a.getId().equals(first.getId())) {
+				assertEquals("62", a.getSnatch1ActualLift());
+				assertEquals("80", a.getCleanJerk1Declaration());
+			} else {
+				assertNotEquals("62", a.getSnatch1ActualLift());
+			}
+		}
+	}
+
+}
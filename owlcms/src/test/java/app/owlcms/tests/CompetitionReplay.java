@@ -0,0 +1,579 @@
+/***
+ * Copyright (c) 2009-2019 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.tests;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.LoggerFactory;
+
+import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.Subscribe;
+
+import app.owlcms.data.agegroup.AgeGroupRepository;
+import app.owlcms.data.athlete.Athlete;
+import app.owlcms.data.athlete.AthleteRepository;
+import app.owlcms.data.athlete.Gender;
+import app.owlcms.data.category.AgeDivision;
+import app.owlcms.data.category.Category;
+import app.owlcms.data.category.CategoryRepository;
+import app.owlcms.data.competition.Competition;
+import app.owlcms.data.group.Group;
+import app.owlcms.data.group.GroupRepository;
+import app.owlcms.data.jpa.JPAService;
+import app.owlcms.data.platform.Platform;
+import app.owlcms.fieldofplay.FOPEvent;
+import app.owlcms.fieldofplay.FieldOfPlay;
+import app.owlcms.fieldofplay.UIEvent;
+import app.owlcms.fieldofplay.UIEventBus;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+
+/**
+ * Replay of a full competition, at accelerated time.
+ *
+ * A competition (platforms, groups, athletes with declarations) is created in
+ * the database from a seed, and a script of steps is played on each platform:
+ * a good or bad lift for the current athlete, or a change for a given start
+ * number. The script is either generated from the same seed or read from a
+ * file, so a recorded sequence can be replayed as often as needed.
+ *
+ * Each platform runs in its own thread, with a {@link FieldOfPlay} in testing
+ * mode (mock timers, events processed by the posting thread, delays skipped).
+ * The UI events of the field of play are forwarded to a {@link UIEventBus} with
+ * a number of simulated displays, as they would be to the browsers.
+ *
+ * Measured are the time taken to process each field of play event, the time
+ * taken for each UI event to reach a display, the bytes allocated by the
+ * platform threads, the garbage collections, and the total wall time.
+ *
+ * @author owlcms
+ */
+public class CompetitionReplay {
+
+    public enum Action {
+        GOOD, BAD, CHANGE
+    }
+
+    /**
+     * Latency samples, in nanoseconds.
+     */
+    public static class Latencies {
+        private long[] samples = new long[1024];
+        private int count = 0;
+
+        public synchronized void add(long nanos) {
+            if (count == samples.length) {
+                samples = Arrays.copyOf(samples, count * 2);
+            }
+            samples[count++] = nanos;
+        }
+
+        public synchronized int getCount() {
+            return count;
+        }
+
+        /**
+         * @param p between 0 and 100
+         * @return the sample at percentile p, in nanoseconds
+         */
+        public synchronized long percentile(double p) {
+            if (count == 0) {
+                return 0;
+            }
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            int i = (int) Math.ceil(p / 100.0 * count) - 1;
+            return sorted[Math.max(0, Math.min(count - 1, i))];
+        }
+
+        synchronized void addAll(Latencies other) {
+            for (int i = 0; i < other.count; i++) {
+                add(other.samples[i]);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return String.format("n=%6d p50=%8.3f p90=%8.3f p99=%8.3f max=%8.3f ms", getCount(), millis(percentile(50)),
+                    millis(percentile(90)), millis(percentile(99)), millis(percentile(100)));
+        }
+
+        private static double millis(long nanos) {
+            return nanos / 1_000_000.0;
+        }
+    }
+
+    /**
+     * Setup parameters. The same parameters always create the same
+     * competition.
+     */
+    public static class Setup {
+        int athletes = 320;
+        int platforms = 3;
+        int groupSize = 16;
+        long seed = 0;
+
+        String toLine() {
+            return String.join(SEPARATOR, "setup", Integer.toString(athletes), Integer.toString(platforms),
+                    Integer.toString(groupSize), Long.toString(seed));
+        }
+
+        @Override
+        public String toString() {
+            return "athletes=" + athletes + " platforms=" + platforms + " groupSize=" + groupSize + " seed=" + seed;
+        }
+    }
+
+    /**
+     * One step of the script.
+     */
+    public static class Step {
+        final String group;
+        final Action action;
+        /** for a change, the start number of the athlete in the group */
+        final int startNumber;
+        /** for a change, kilograms added to the weight requested */
+        final int increment;
+
+        Step(String group, Action action, int startNumber, int increment) {
+            this.group = group;
+            this.action = action;
+            this.startNumber = startNumber;
+            this.increment = increment;
+        }
+
+        static Step parse(String line) {
+            String[] f = line.split(SEPARATOR);
+            Action action = Action.valueOf(f[1]);
+            if (action == Action.CHANGE) {
+                return new Step(f[0], action, Integer.parseInt(f[2]), Integer.parseInt(f[3]));
+            }
+            return new Step(f[0], action, 0, 0);
+        }
+
+        String toLine() {
+            if (action == Action.CHANGE) {
+                return String.join(SEPARATOR, group, action.name(), Integer.toString(startNumber),
+                        Integer.toString(increment));
+            }
+            return String.join(SEPARATOR, group, action.name());
+        }
+    }
+
+    /**
+     * Stands for a scoreboard: reads what a browser would render.
+     */
+    public class Display {
+        @Subscribe
+        public void uiEvent(UIEvent e) {
+            Long posted = uiPostTimes.get(e);
+            if (posted != null) {
+                uiLatencies.add(System.nanoTime() - posted);
+            }
+            Athlete a = e.getAthlete();
+            if (a != null) {
+                rendered.addAndGet(a.getFullName().length());
+            }
+            if (e instanceof UIEvent.LiftingOrderUpdated) {
+                List<Athlete> order = ((UIEvent.LiftingOrderUpdated) e).getDisplayOrder();
+                rendered.addAndGet(order != null ? order.size() : 0);
+            }
+            received.incrementAndGet();
+        }
+    }
+
+    /**
+     * Copies the events of the field of play to the displays, as the UI classes
+     * do.
+     */
+    class Forwarder {
+        private final UIEventBus displays;
+
+        Forwarder(UIEventBus displays) {
+            this.displays = displays;
+        }
+
+        @Subscribe
+        public void uiEvent(UIEvent e) {
+            uiPostTimes.put(e, System.nanoTime());
+            displays.post(e);
+        }
+    }
+
+    static final String SEPARATOR = "\t";
+
+    final private static Logger logger = (Logger) LoggerFactory.getLogger(CompetitionReplay.class);
+    static {
+        logger.setLevel(Level.INFO);
+    }
+
+    private final Setup setup;
+    private final int nbDisplays;
+    private final boolean globalRankings;
+
+    private final Map<String, Latencies> fopLatencies = new TreeMap<>();
+    private final Latencies uiLatencies = new Latencies();
+    private final Map<Object, Long> uiPostTimes = Collections.synchronizedMap(new IdentityHashMap<>());
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong rendered = new AtomicLong();
+    private final AtomicLong skippedChanges = new AtomicLong();
+    private final AtomicLong allocatedBytes = new AtomicLong();
+    private long wallNanos;
+    private long gcCount;
+    private long gcMillis;
+    private int steps;
+
+    /**
+     * @param setup          what to create
+     * @param nbDisplays     how many displays per platform
+     * @param globalRankings if true, rankings are recomputed after each
+     *                       decision, as when the ranking reports are in use
+     */
+    public CompetitionReplay(Setup setup, int nbDisplays, boolean globalRankings) {
+        this.setup = setup;
+        this.nbDisplays = nbDisplays;
+        this.globalRankings = globalRankings;
+    }
+
+    /**
+     * Read a script saved by {@link #save(Path, Setup, List)}.
+     *
+     * @param file
+     * @param setup receives the setup parameters recorded in the file
+     * @return the steps
+     * @throws IOException
+     */
+    public static List<Step> load(Path file, Setup setup) throws IOException {
+        List<Step> script = new ArrayList<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            if (line.startsWith("setup" + SEPARATOR)) {
+                String[] f = line.split(SEPARATOR);
+                setup.athletes = Integer.parseInt(f[1]);
+                setup.platforms = Integer.parseInt(f[2]);
+                setup.groupSize = Integer.parseInt(f[3]);
+                setup.seed = Long.parseLong(f[4]);
+            } else {
+                script.add(Step.parse(line));
+            }
+        }
+        return script;
+    }
+
+    public static void save(Path file, Setup setup, List<Step> script) throws IOException {
+        try (BufferedWriter w = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            w.write("# owlcms competition replay");
+            w.newLine();
+            w.write(setup.toLine());
+            w.newLine();
+            for (Step s : script) {
+                w.write(s.toLine());
+                w.newLine();
+            }
+        }
+    }
+
+    private static void changeWeight(Athlete a, String weight) {
+        switch (a.getAttemptsDone() + 1) {
+        case 1:
+            a.setSnatch1Change1(weight);
+            break;
+        case 2:
+            a.setSnatch2Change1(weight);
+            break;
+        case 3:
+            a.setSnatch3Change1(weight);
+            break;
+        case 4:
+            a.setCleanJerk1Change1(weight);
+            break;
+        case 5:
+            a.setCleanJerk2Change1(weight);
+            break;
+        case 6:
+            a.setCleanJerk3Change1(weight);
+            break;
+        }
+    }
+
+    private static String groupName(int platform, int group) {
+        return "P" + (platform + 1) + "-G" + (group + 1);
+    }
+
+    /**
+     * Create the competition in the database. Existing athletes are removed.
+     */
+    public void createCompetition() {
+        Random r = new Random(setup.seed);
+        JPAService.runInTransaction(em -> {
+            Competition.setCurrent(new Competition());
+            AgeGroupRepository.insertAgeGroups(em, EnumSet.of(AgeDivision.IWF));
+            TestData.deleteAllLifters(em);
+
+            LocalDateTime w = LocalDateTime.now();
+            int nbGroups = (setup.athletes + setup.groupSize - 1) / setup.groupSize;
+            Platform[] platforms = new Platform[setup.platforms];
+            for (int p = 0; p < setup.platforms; p++) {
+                platforms[p] = new Platform("Platform " + (p + 1));
+            }
+            List<Group> groups = new ArrayList<>();
+            for (int g = 0; g < nbGroups; g++) {
+                // groups are spread over the platforms, in turn
+                int p = g % setup.platforms;
+                Group group = new Group(groupName(p, g / setup.platforms), w, w.plusHours(2 + g / setup.platforms));
+                group.setPlatform(platforms[p]);
+                em.persist(group);
+                groups.add(group);
+            }
+            for (int i = 0; i < setup.athletes; i++) {
+                Group group = groups.get(i / setup.groupSize);
+                // a group is all men or all women
+                Gender gender = (i / setup.groupSize) % 2 == 0 ? Gender.M : Gender.F;
+                double bw = gender == Gender.M ? 56.0 + r.nextInt(48) + r.nextDouble()
+                        : 46.0 + r.nextInt(38) + r.nextDouble();
+                Athlete a = new Athlete();
+                a.setGroup(group);
+                a.setFirstName("F" + i);
+                a.setLastName("Athlete" + i);
+                a.setGender(gender);
+                a.setTeam("Team" + r.nextInt(20));
+                a.setYearOfBirth(1995);
+                a.setBodyWeight(bw);
+                Category c = CategoryRepository.findByGenderAgeBW(gender, 25, bw).get(0);
+                a.setCategory(em.contains(c) ? c : em.merge(c));
+                int snatch = (int) (bw * (gender == Gender.M ? 1.35 : 1.1)) + r.nextInt(10);
+                a.setSnatch1Declaration(Integer.toString(snatch));
+                a.setCleanJerk1Declaration(Integer.toString((int) (snatch * 1.22) + r.nextInt(5)));
+                em.persist(a);
+            }
+            em.flush();
+            TestData.drawLots(em);
+            for (Group g : groups) {
+                TestData.assignStartNumbers(em, g);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Generate a script from the seed. Every athlete takes six attempts, and
+     * about one lift in three is preceded by a change.
+     *
+     * @return the steps, group after group
+     */
+    public List<Step> generateScript() {
+        Random r = new Random(setup.seed + 1);
+        List<Step> script = new ArrayList<>();
+        int nbGroups = (setup.athletes + setup.groupSize - 1) / setup.groupSize;
+        for (int g = 0; g < nbGroups; g++) {
+            String group = groupName(g % setup.platforms, g / setup.platforms);
+            int size = Math.min(setup.groupSize, setup.athletes - g * setup.groupSize);
+            for (int lift = 0; lift < size * 6; lift++) {
+                if (r.nextInt(3) == 0) {
+                    script.add(new Step(group, Action.CHANGE, 1 + r.nextInt(size), 1 + r.nextInt(3)));
+                }
+                script.add(new Step(group, r.nextInt(10) < 7 ? Action.GOOD : Action.BAD, 0, 0));
+            }
+        }
+        return script;
+    }
+
+    /**
+     * @return the report
+     */
+    public String report() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("competition replay: %s displays=%d globalRankings=%s%n", setup, nbDisplays,
+                globalRankings));
+        sb.append(String.format("steps=%d skippedChanges=%d wall=%.1f ms%n", steps, skippedChanges.get(),
+                wallNanos / 1_000_000.0));
+        sb.append(String.format("allocated=%.1f MB (%.1f MB/s) gc=%d (%d ms)%n", allocatedBytes.get() / 1048576.0,
+                allocatedBytes.get() / 1048576.0 / (wallNanos / 1_000_000_000.0), gcCount, gcMillis));
+        Latencies all = new Latencies();
+        for (Map.Entry<String, Latencies> e : fopLatencies.entrySet()) {
+            sb.append(String.format("  %-20s %s%n", e.getKey(), e.getValue()));
+            all.addAll(e.getValue());
+        }
+        sb.append(String.format("  %-20s %s%n", "all FOP events", all));
+        sb.append(String.format("  %-20s %s (received=%d)%n", "UI to display", uiLatencies, received.get()));
+        return sb.toString();
+    }
+
+    /**
+     * @return the processing time of all field of play events
+     */
+    public Latencies getAllFopLatencies() {
+        Latencies all = new Latencies();
+        for (Latencies l : fopLatencies.values()) {
+            all.addAll(l);
+        }
+        return all;
+    }
+
+    /**
+     * Play the script. The platforms run in parallel, the groups of a platform
+     * one after the other.
+     *
+     * @param script
+     * @throws InterruptedException
+     */
+    public void run(List<Step> script) throws InterruptedException {
+        this.steps = script.size();
+        Map<String, Map<String, List<Step>>> byPlatform = new TreeMap<>();
+        for (Step s : script) {
+            String platform = s.group.substring(0, s.group.indexOf('-'));
+            byPlatform.computeIfAbsent(platform, (k) -> new LinkedHashMap<>())
+                    .computeIfAbsent(s.group, (k) -> new ArrayList<>()).add(s);
+        }
+        if (globalRankings) {
+            Competition.getCurrent().computeGlobalRankings();
+        }
+
+        long gcCount0 = 0;
+        long gcMillis0 = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gcCount0 += gc.getCollectionCount();
+            gcMillis0 += gc.getCollectionTime();
+        }
+
+        List<Thread> threads = new ArrayList<>();
+        List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+        long start = System.nanoTime();
+        for (Map.Entry<String, Map<String, List<Step>>> p : byPlatform.entrySet()) {
+            Thread t = new Thread(() -> {
+                UIEventBus displays = new UIEventBus("replay-" + p.getKey());
+                for (int i = 0; i < nbDisplays; i++) {
+                    displays.register(new Display());
+                }
+                long allocated0 = allocatedBytes();
+                for (Map.Entry<String, List<Step>> g : p.getValue().entrySet()) {
+                    playGroup(g.getKey(), g.getValue(), displays);
+                }
+                allocatedBytes.addAndGet(allocatedBytes() - allocated0);
+                waitForDisplays(displays);
+            }, "replay-" + p.getKey());
+            t.setUncaughtExceptionHandler((th, e) -> failures.add(e));
+            threads.add(t);
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        wallNanos = System.nanoTime() - start;
+
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gcCount += gc.getCollectionCount();
+            gcMillis += gc.getCollectionTime();
+        }
+        gcCount -= gcCount0;
+        gcMillis -= gcMillis0;
+        if (!failures.isEmpty()) {
+            throw new RuntimeException(failures.get(0));
+        }
+    }
+
+    /**
+     * @return bytes allocated so far by the current thread, 0 if the JVM cannot
+     *         tell
+     */
+    private long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+
+    private Athlete findByStartNumber(List<Athlete> athletes, int startNumber) {
+        for (Athlete a : athletes) {
+            if (a.getStartNumber() != null && a.getStartNumber() == startNumber) {
+                return a;
+            }
+        }
+        return null;
+    }
+
+    private void playGroup(String groupName, List<Step> steps, UIEventBus displays) {
+        Group group = GroupRepository.findByName(groupName);
+        List<Athlete> athletes = AthleteRepository.findAllByGroupAndWeighIn(group, true);
+        FieldOfPlay fop = new FieldOfPlay(athletes, new MockCountdownTimer(), new MockCountdownTimer(), true);
+        fop.getLogger().setLevel(Level.WARN);
+        fop.getUiEventBus().register(new Forwarder(displays));
+        EventBus fopBus = fop.getFopEventBus();
+        logger.debug("{}: {} athletes, {} steps", groupName, athletes.size(), steps.size());
+
+        for (Step s : steps) {
+            if (s.action == Action.CHANGE) {
+                Athlete a = findByStartNumber(fop.getLiftingOrder(), s.startNumber);
+                if (a == null || a.getAttemptsDone() >= 6 || a == fop.getCurAthlete()) {
+                    skippedChanges.incrementAndGet();
+                    continue;
+                }
+                changeWeight(a, Integer.toString(a.getNextAttemptRequestedWeight() + s.increment));
+                post(fopBus, new FOPEvent.WeightChange(this, a));
+            } else {
+                Athlete cur = fop.getCurAthlete();
+                if (cur == null || cur.getAttemptsDone() >= 6) {
+                    throw new IllegalStateException(groupName + ": no athlete left for lift");
+                }
+                boolean good = s.action == Action.GOOD;
+                post(fopBus, new FOPEvent.TimeStarted(this));
+                post(fopBus, new FOPEvent.DownSignal(this));
+                post(fopBus, new FOPEvent.DecisionFullUpdate(this, cur, good, good, good, 0, 0, 0));
+                post(fopBus, new FOPEvent.DecisionReset(this));
+            }
+        }
+    }
+
+    private void post(EventBus fopBus, FOPEvent e) {
+        long start = System.nanoTime();
+        fopBus.post(e);
+        long elapsed = System.nanoTime() - start;
+        Latencies l;
+        synchronized (fopLatencies) {
+            l = fopLatencies.computeIfAbsent(e.getClass().getSimpleName(), (k) -> new Latencies());
+        }
+        l.add(elapsed);
+    }
+
+    private void waitForDisplays(UIEventBus displays) {
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (System.currentTimeMillis() < deadline) {
+            if (displays.getQueueDepths().values().stream().allMatch((d) -> d == 0)) {
+                return;
+            }
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        logger.warn("displays not drained: {}", displays.getQueueDepths());
+    }
+}
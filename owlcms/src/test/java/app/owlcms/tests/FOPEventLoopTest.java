@@ -0,0 +1,44 @@
+/***
+ * Copyright (c) 2009-2019 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.tests;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import app.owlcms.fieldofplay.FOPEventLoop;
+
+public class FOPEventLoopTest {
+
+	@Test
+	public void selfPostedTasksKeepOrder() {
+		FOPEventLoop loop = new FOPEventLoop("test");
+		List<Integer> ran = new ArrayList<>();
+		int n = 2500;
+		loop.executeAndWait(() -> {
+			// more follow-up tasks than the inbox accepts from other threads
+			for (int i = 0; i < n; i++) {
+				int ix = i;
+				loop.execute(() -> ran.add(ix));
+			}
+			ran.add(-1);
+		});
+		// runs after everything queued above
+		loop.executeAndWait(() -> {
+		});
+		loop.shutdown();
+
+		assertEquals(n + 1, ran.size());
+		assertEquals(-1, (int) ran.get(0));
+		for (int i = 0; i < n; i++) {
+			assertEquals(i, (int) ran.get(i + 1));
+		}
+	}
+}
@@ -0,0 +1,214 @@
+/***
+ * Copyright (c) 2009-2019 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import app.owlcms.data.athlete.Athlete;
+import app.owlcms.data.athlete.AthleteRepository;
+import app.owlcms.data.athleteSort.AthleteSorter;
+import app.owlcms.data.group.Group;
+import app.owlcms.data.group.GroupRepository;
+import app.owlcms.data.jpa.JPAService;
+import app.owlcms.fieldofplay.BreakType;
+import app.owlcms.fieldofplay.FOPEvent;
+import app.owlcms.fieldofplay.FOPJournal;
+import app.owlcms.fieldofplay.FOPState;
+import app.owlcms.fieldofplay.FieldOfPlay;
+import app.owlcms.fieldofplay.ProxyBreakTimer;
+import app.owlcms.ui.shared.BreakManagement.CountdownType;
+
+/**
+ * The state of a field of play is read back from its journal after a restart.
+ */
+public class FOPJournalTest {
+
+	/** position of the fields in a journal line */
+	private static final int MILLIS = 2, EVENT = 3, STATE = 5, BREAK_TYPE = 13, COUNTDOWN_TYPE = 14,
+			BREAK_TIME = 15, BREAK_RUNNING = 16, DECISIONS = 19, END = 20;
+
+	private static Group gA;
+
+	@BeforeClass
+	public static void setupTests() throws IOException {
+		System.setProperty("journalDir", Files.createTempDirectory("journal").toString());
+		JPAService.init(true, true);
+	}
+
+	@AfterClass
+	public static void tearDownTests() {
+		JPAService.close();
+	}
+
+	private List<Athlete> athletes;
+	private Path file;
+
+	@Before
+	public void setupTest() throws IOException {
+		TestData.insertInitialData(5, true);
+		JPAService.runInTransaction((em) -> {
+			gA = GroupRepository.doFindByName("A", em);
+			Group gB = GroupRepository.doFindByName("B", em);
+			Group gC = GroupRepository.doFindByName("C", em);
+			TestData.deleteAllLifters(em);
+			TestData.insertSampleLifters(em, 5, gA, gB, gC);
+			return null;
+		});
+		athletes = AthleteRepository.findAllByGroupAndWeighIn(gA, true);
+		AthleteSorter.assignLotNumbers(athletes);
+		for (Athlete a : athletes) {
+			a.setSnatch1Declaration("60");
+			a.setCleanJerk1Declaration("80");
+			AthleteRepository.save(a);
+		}
+		athletes = AthleteRepository.findAllByGroupAndWeighIn(gA, true);
+		file = Paths.get(System.getProperty("journalDir"), "test.journal");
+		Files.deleteIfExists(file);
+	}
+
+	@Test
+	public void entryRoundTrip() throws Exception {
+		String[] f = fields(FOPState.BREAK, athletes.get(0));
+		f[6] = "A\\tB\\\\C";
+		f[BREAK_TYPE] = BreakType.FIRST_SNATCH.name();
+		f[COUNTDOWN_TYPE] = CountdownType.TARGET.name();
+		f[18] = "2019-11-30T14:30";
+		f[DECISIONS] = "10-";
+		String line = String.join("\t", f);
+
+		Class<?> entryClass = Class.forName("app.owlcms.fieldofplay.FOPJournal$Entry");
+		Method parse = entryClass.getDeclaredMethod("parse", String.class);
+		parse.setAccessible(true);
+		Method toLine = entryClass.getDeclaredMethod("toLine");
+		toLine.setAccessible(true);
+		Object entry = parse.invoke(null, line);
+		assertEquals(line, toLine.invoke(entry));
+		Field groupName = entryClass.getDeclaredField("groupName");
+		groupName.setAccessible(true);
+		assertEquals("A\tB\\C", groupName.get(entry));
+
+		// the end marker is missing if the line was not fully written
+		assertNull(parse.invoke(null, line.substring(0, line.length() - 2)));
+	}
+
+	@Test
+	public void tornLastLineSkipped() throws Exception {
+		Athlete first = athletes.get(0);
+		Athlete second = athletes.get(1);
+		String complete = String.join("\t", fields(FOPState.CURRENT_ATHLETE_DISPLAYED, first));
+		String[] f = fields(FOPState.TIME_STOPPED, second);
+		f[END] = "";
+		String torn = String.join("\t", f);
+		write(complete, torn.substring(0, torn.length() / 2));
+
+		FieldOfPlay fop = newFop();
+		assertTrue(fop.recover());
+		assertEquals(FOPState.CURRENT_ATHLETE_DISPLAYED, fop.getState());
+		assertEquals(first.getId(), fop.getCurAthlete().getId());
+	}
+
+	@Test
+	public void truncatedOnGroupSwitch() throws Exception {
+		write(String.join("\t", fields(FOPState.TIME_STOPPED, athletes.get(0))));
+
+		FieldOfPlay fop = newFop();
+		fop.getFopEventBus().post(new FOPEvent.SwitchGroup(gA, this));
+
+		List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+		assertEquals(1, lines.size());
+		assertEquals("SwitchGroup", lines.get(0).split("\t")[EVENT]);
+	}
+
+	@Test
+	public void runningClockRestoredStopped() throws Exception {
+		Athlete cur = athletes.get(1);
+		write(String.join("\t", fields(FOPState.TIME_RUNNING, cur)));
+
+		FieldOfPlay fop = newFop();
+		assertTrue(fop.recover());
+		assertEquals(FOPState.TIME_STOPPED, fop.getState());
+		assertEquals(cur.getId(), fop.getCurAthlete().getId());
+		assertEquals(45000, fop.getAthleteTimer().getTimeRemaining());
+	}
+
+	@Test
+	public void visibleDecisionReset() throws Exception {
+		String[] f = fields(FOPState.DECISION_VISIBLE, athletes.get(0));
+		f[DECISIONS] = "11-";
+		write(String.join("\t", f));
+
+		FieldOfPlay fop = newFop();
+		assertTrue(fop.recover());
+		assertEquals(FOPState.CURRENT_ATHLETE_DISPLAYED, fop.getState());
+		Field decisions = FieldOfPlay.class.getDeclaredField("refereeDecision");
+		decisions.setAccessible(true);
+		assertEquals(Arrays.asList(null, null, null), Arrays.asList((Boolean[]) decisions.get(fop)));
+	}
+
+	@Test
+	public void breakTimeAdjustedForDowntime() throws Exception {
+		String[] f = fields(FOPState.BREAK, athletes.get(0));
+		f[MILLIS] = Long.toString(System.currentTimeMillis() - 60000);
+		f[BREAK_TYPE] = BreakType.FIRST_SNATCH.name();
+		f[COUNTDOWN_TYPE] = CountdownType.DURATION.name();
+		f[BREAK_TIME] = "600000";
+		f[BREAK_RUNNING] = "true";
+		write(String.join("\t", f));
+
+		FieldOfPlay fop = newFop();
+		assertTrue(fop.recover());
+		assertEquals(FOPState.BREAK, fop.getState());
+		assertEquals(BreakType.FIRST_SNATCH, fop.getBreakType());
+		ProxyBreakTimer breakTimer = fop.getBreakTimer();
+		assertTrue(breakTimer.isRunning());
+		int remaining = breakTimer.getTimeRemaining();
+		assertTrue(Integer.toString(remaining), remaining <= 540000 && remaining > 530000);
+	}
+
+	/**
+	 * @return the fields of a complete journal line for group A
+	 */
+	private String[] fields(FOPState state, Athlete cur) {
+		String id = cur.getId().toString();
+		return new String[] { "1", "1", Long.toString(System.currentTimeMillis()), "TimeStarted", id, state.name(),
+				"A", id, id, "", "45000", "60000", "false", "", "", "0", "false", "false", "", "---", "$" };
+	}
+
+	/**
+	 * A field of play in testing mode, with a journal and a real break timer.
+	 */
+	private FieldOfPlay newFop() throws Exception {
+		FieldOfPlay fop = new FieldOfPlay(athletes, new MockCountdownTimer(), new MockCountdownTimer(), true);
+		fop.init(athletes, fop.getAthleteTimer(), new ProxyBreakTimer(fop));
+		// journaling is only set up for real platforms
+		Field journal = FieldOfPlay.class.getDeclaredField("journal");
+		journal.setAccessible(true);
+		journal.set(fop, FOPJournal.open("test"));
+		return fop;
+	}
+
+	private void write(String... lines) throws IOException {
+		Files.write(file, (String.join("\n", lines) + "\n").getBytes(StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,90 @@
+/***
+ * Copyright (c) 2009-2019 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.google.common.eventbus.Subscribe;
+
+import app.owlcms.data.athlete.Athlete;
+import app.owlcms.data.athlete.AthleteRepository;
+import app.owlcms.data.athlete.Gender;
+import app.owlcms.data.jpa.JPAService;
+import app.owlcms.fieldofplay.FieldOfPlay;
+import app.owlcms.fieldofplay.GlobalRankingService;
+import app.owlcms.fieldofplay.UIEvent;
+import app.owlcms.init.OwlcmsFactory;
+
+public class GlobalRankingServiceTest {
+
+	public static class Listener {
+		List<Long> versions = new ArrayList<>();
+
+		@Subscribe
+		public synchronized void rankingsUpdated(UIEvent.GlobalRankingUpdated e) {
+			assertNotNull(e.getRankings());
+			versions.add(e.getVersion());
+			notifyAll();
+		}
+
+		synchronized List<Long> await(int count) throws InterruptedException {
+			long end = System.currentTimeMillis() + 5000;
+			while (versions.size() < count && System.currentTimeMillis() < end) {
+				wait(end - System.currentTimeMillis());
+			}
+			return new ArrayList<>(versions);
+		}
+	}
+
+	@BeforeClass
+	public static void setupTests() {
+		JPAService.init(true, true);
+		TestData.insertInitialData(5, true);
+		List<Athlete> athletes = AthleteRepository.findAll();
+		for (Athlete a : athletes) {
+			a.setGender(Gender.M);
+			AthleteRepository.save(a);
+		}
+	}
+
+	@AfterClass
+	public static void tearDownTests() {
+		JPAService.close();
+	}
+
+	@Test
+	public void requestsAreMerged() throws InterruptedException {
+		FieldOfPlay fop = OwlcmsFactory.getFOPs().iterator().next();
+		Listener listener = new Listener();
+		fop.getUiEventBus().register(listener);
+		GlobalRankingService service = GlobalRankingService.getCurrent();
+		long start = service.getVersion();
+
+		for (int i = 0; i < 5; i++) {
+			service.requestUpdate(null, false);
+		}
+		List<Long> versions = listener.await(1);
+		Thread.sleep(500);
+		assertEquals(1, listener.await(1).size());
+		assertEquals(start + 1, (long) versions.get(0));
+
+		service.requestUpdate(null, true);
+		assertEquals(start + 2, service.getVersion());
+		versions = listener.await(2);
+		assertEquals(start + 2, (long) versions.get(1));
+		fop.getUiEventBus().unregister(listener);
+	}
+
+}
@@ -0,0 +1,198 @@
+/***
+ * Copyright (c) 2009-2019 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+
+import app.owlcms.data.athlete.Athlete;
+import app.owlcms.data.athlete.AthleteRepository;
+import app.owlcms.data.athlete.Gender;
+import app.owlcms.data.athleteSort.AthleteSorter;
+import app.owlcms.data.athleteSort.AthleteSorter.Ranking;
+import app.owlcms.data.athleteSort.IncrementalLiftingOrder;
+import app.owlcms.data.athleteSort.LiftOrderComparator;
+import app.owlcms.data.athleteSort.RankingSnapshot;
+import app.owlcms.data.category.Category;
+import app.owlcms.data.category.CategoryRepository;
+import app.owlcms.data.group.Group;
+import app.owlcms.data.group.GroupRepository;
+import app.owlcms.data.jpa.JPAService;
+import app.owlcms.utils.DebugUtils;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+
+/**
+ * Check that repositioning one athlete at a time gives the same lifting order as
+ * a full sort, and that the packed sort keys agree with the comparator.
+ */
+public class IncrementalLiftingOrderTest {
+	private static Level LoggerLevel = Level.INFO;
+	final Logger logger = (Logger) LoggerFactory.getLogger(IncrementalLiftingOrderTest.class);
+	private List<Athlete> athletes;
+
+	@BeforeClass
+	public static void setupTests() {
+		JPAService.init(true, true);
+	}
+
+	@AfterClass
+	public static void tearDownTests() {
+		JPAService.close();
+	}
+
+	@Before
+	public void setupTest() {
+		logger.setLevel(LoggerLevel);
+
+		TestData.insertInitialData(5, true);
+		JPAService.runInTransaction((em) -> {
+			Group gA = GroupRepository.doFindByName("A", em);
+			Group gB = GroupRepository.doFindByName("B", em);
+			Group gC = GroupRepository.doFindByName("C", em);
+			TestData.deleteAllLifters(em);
+			TestData.insertSampleLifters(em, 5, gA, gB, gC);
+			return null;
+		});
+		athletes = AthleteRepository.findAll();
+		AthleteSorter.assignLotNumbers(athletes);
+		AthleteSorter.assignStartNumbers(athletes);
+	}
+
+	@Test
+	public void liftSequence() {
+		Random random = new Random(42L);
+		for (Athlete a : athletes) {
+			a.setSnatch1Declaration(Integer.toString(60 + random.nextInt(5)));
+			a.setCleanJerk1Declaration(Integer.toString(80 + random.nextInt(5)));
+		}
+		List<Athlete> order = new ArrayList<>(athletes);
+		IncrementalLiftingOrder incremental = new IncrementalLiftingOrder(order);
+		checkSameAsFullSort(order);
+
+		int changes = 0;
+		while (order.get(0).getAttemptsDone() < 6) {
+			if (random.nextInt(3) == 0) {
+				// someone else asks for more weight
+				Athlete a = order.get(random.nextInt(order.size()));
+				if (a.getAttemptsDone() >= 6) {
+					continue;
+				}
+				Integer requested = a.getNextAttemptRequestedWeight();
+				changeWeight(a, Integer.toString(requested + 1 + random.nextInt(3)));
+				assertNotNull(incremental.update(a));
+			} else {
+				Athlete a = order.get(0);
+				if (random.nextBoolean()) {
+					a.successfulLift();
+				} else {
+					a.failedLift();
+				}
+				IncrementalLiftingOrder.Move move = incremental.update(a);
+				assertSame(a, move.getAthlete());
+				assertEquals(0, move.getFrom());
+			}
+			checkSameAsFullSort(order);
+			changes++;
+		}
+		logger.info("{} changes checked", changes);
+	}
+
+	/**
+	 * Ranking only the category of the athlete that lifted gives the same ranks as
+	 * ranking everyone.
+	 */
+	@Test
+	public void categoryRanksOneAtATime() {
+		Random random = new Random(7L);
+		// two categories, the ranks of the other one are kept
+		Category lighter = CategoryRepository.findByGenderAgeBW(Gender.M, 40, 70.0D).get(0);
+		for (int i = 0; i < athletes.size(); i++) {
+			Athlete a = athletes.get(i);
+			if (i % 2 == 0) {
+				a.setBodyWeight(70.0D);
+				a.setCategory(lighter);
+			}
+			a.setSnatch1Declaration(Integer.toString(60 + random.nextInt(5)));
+			a.setCleanJerk1Declaration(Integer.toString(80 + random.nextInt(5)));
+		}
+		assertNotEquals(athletes.get(0).getCategory(), athletes.get(1).getCategory());
+		List<Athlete> order = new ArrayList<>(athletes);
+		AthleteSorter.liftingOrder(order);
+		RankingSnapshot rankings = RankingSnapshot.ofCategoryRanks(athletes);
+		while (order.get(0).getAttemptsDone() < 6) {
+			Athlete a = order.get(0);
+			if (random.nextInt(3) > 0) {
+				a.successfulLift();
+			} else {
+				a.failedLift();
+			}
+			rankings = RankingSnapshot.ofCategoryRanks(athletes, rankings, a);
+			RankingSnapshot expected = RankingSnapshot.ofCategoryRanks(athletes);
+			assertEquals(expected.size(), rankings.size());
+			for (Athlete b : athletes) {
+				for (Ranking r : new Ranking[] { Ranking.SNATCH, Ranking.CLEANJERK, Ranking.TOTAL }) {
+					assertEquals(expected.getRank(b, r), rankings.getRank(b, r));
+					assertEquals(expected.getPoints(b, r), rankings.getPoints(b, r));
+				}
+			}
+			AthleteSorter.liftingOrder(order);
+		}
+	}
+
+	private void changeWeight(Athlete a, String weight) {
+		switch (a.getAttemptsDone() + 1) {
+		case 1:
+			a.setSnatch1Change1(weight);
+			break;
+		case 2:
+			a.setSnatch2Change1(weight);
+			break;
+		case 3:
+			a.setSnatch3Change1(weight);
+			break;
+		case 4:
+			a.setCleanJerk1Change1(weight);
+			break;
+		case 5:
+			a.setCleanJerk2Change1(weight);
+			break;
+		case 6:
+			a.setCleanJerk3Change1(weight);
+			break;
+		}
+	}
+
+	private void checkSameAsFullSort(List<Athlete> order) {
+		// the full sort also assigns the ranks, check ours first
+		for (int i = 0; i < order.size(); i++) {
+			assertEquals((Integer) (i + 1), order.get(i).getLiftOrderRank());
+		}
+		// the packed keys give the same order as the comparator
+		List<Athlete> sorted = new ArrayList<>(order);
+		Collections.sort(sorted, new LiftOrderComparator());
+		assertEquals(DebugUtils.shortDump(sorted), DebugUtils.shortDump(order));
+		for (int i = 0; i < order.size(); i++) {
+			assertSame(sorted.get(i), order.get(i));
+		}
+		assertEquals(sorted, AthleteSorter.liftingOrderCopy(order));
+	}
+
+}
@@ -0,0 +1,44 @@
+/***
+ * Copyright (c) 2009-2019 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import app.owlcms.metrics.LatencyHistogram;
+
+public class LatencyHistogramTest {
+
+	@Test
+	public void percentiles() {
+		LatencyHistogram h = new LatencyHistogram();
+		assertEquals(0, h.getPercentileMicros(99));
+		// 1 to 1000 ms
+		for (int i = 1; i <= 1000; i++) {
+			h.record(i * 1_000_000L);
+		}
+		assertEquals(1000, h.getCount());
+		assertEquals(1_000_000, h.getMaxMicros());
+		assertEquals(500_500, h.getMeanMicros(), 0.001);
+		checkWithin(500_000, h.getPercentileMicros(50));
+		checkWithin(900_000, h.getPercentileMicros(90));
+		checkWithin(990_000, h.getPercentileMicros(99));
+		assertEquals(1_000_000, h.getPercentileMicros(100));
+
+		h.reset();
+		assertEquals(0, h.getCount());
+		h.record(3_000);
+		assertEquals(3, h.getPercentileMicros(50));
+	}
+
+	private void checkWithin(long expected, long actual) {
+		assertTrue(expected + " " + actual, Math.abs(actual - expected) <= expected / 4);
+	}
+
+}
@@ -0,0 +1,89 @@
+/***
+ * Copyright (c) 2009-2019 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import app.owlcms.data.athleteSort.OrderStatisticTree;
+
+/**
+ * Compare the tree with a sorted list.
+ */
+public class OrderStatisticTreeTest {
+
+	private static class Item {
+		int value;
+		final int weight;
+
+		Item(int value, int weight) {
+			this.value = value;
+			this.weight = weight;
+		}
+	}
+
+	@Test
+	public void sameAsSortedList() {
+		Random random = new Random(3L);
+		Comparator<Item> comparator = Comparator.comparingInt(i -> i.value);
+		OrderStatisticTree<Item> tree = new OrderStatisticTree<>(comparator);
+		List<Item> list = new ArrayList<>();
+
+		for (int step = 0; step < 2000; step++) {
+			int op = random.nextInt(4);
+			if (op == 0 && !list.isEmpty()) {
+				Item i = list.remove(random.nextInt(list.size()));
+				tree.remove(i);
+				assertFalse(tree.contains(i));
+			} else if (op == 1 && !list.isEmpty()) {
+				// values change, then the item is moved
+				Item i = list.remove(random.nextInt(list.size()));
+				i.value = random.nextInt(50);
+				insert(list, i, comparator);
+				tree.update(i, i.weight);
+			} else {
+				// few distinct values, to have ties
+				Item i = new Item(random.nextInt(50), random.nextInt(2));
+				insert(list, i, comparator);
+				tree.add(i, i.weight);
+			}
+			check(tree, list);
+		}
+	}
+
+	private void check(OrderStatisticTree<Item> tree, List<Item> list) {
+		assertEquals(list.size(), tree.size());
+		assertEquals(list, tree.toList());
+		int weight = 0;
+		for (int i = 0; i < list.size(); i++) {
+			Item item = list.get(i);
+			assertEquals(i, tree.indexOf(item));
+			assertEquals(weight, tree.weightBefore(item));
+			assertEquals(item, tree.get(i));
+			weight += item.weight;
+		}
+	}
+
+	/**
+	 * insert after the equal items, as the tree does
+	 */
+	private void insert(List<Item> list, Item item, Comparator<Item> comparator) {
+		int i = 0;
+		while (i < list.size() && comparator.compare(list.get(i), item) <= 0) {
+			i++;
+		}
+		list.add(i, item);
+	}
+
+}
@@ -0,0 +1,180 @@
+/***
+ * Copyright (c) 2009-2019 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import app.owlcms.data.athlete.AthleteView;
+import app.owlcms.data.competition.Competition;
+import app.owlcms.displays.RenderCache;
+import app.owlcms.displays.RenderCache.Rendered;
+import elemental.json.Json;
+import elemental.json.JsonArray;
+import elemental.json.JsonObject;
+
+/**
+ * The differences sent to the displays that only update the rows that changed.
+ */
+public class RenderCacheTest {
+
+	private Competition previous;
+	private Competition competition;
+	private RenderCache cache;
+
+	@Before
+	public void setupTest() throws Exception {
+		Field current = Competition.class.getDeclaredField("competition");
+		current.setAccessible(true);
+		previous = (Competition) current.get(null);
+		competition = new Competition();
+		Competition.setCurrent(competition);
+		cache = new RenderCache();
+	}
+
+	@After
+	public void tearDownTest() {
+		Competition.setCurrent(previous);
+	}
+
+	@Test
+	public void changedRowsOnly() {
+		Rendered from = render("a1:60", "a2:61", "a3:62");
+		Rendered to = render("a1:60", "a2:63", "a3:62");
+		JsonObject delta = cache.getDelta(from, to);
+
+		assertEquals(from.getVersion(), (long) delta.getNumber("from"));
+		assertEquals(to.getVersion(), (long) delta.getNumber("to"));
+		assertEquals("[a2:63]", rows(delta.getArray("changed")));
+		assertFalse(delta.hasKey("order"));
+	}
+
+	@Test
+	public void insertedRow() {
+		JsonObject delta = cache.getDelta(render("a1:60", "a3:62"), render("a1:60", "a2:61", "a3:62"));
+		assertEquals("[a2:61]", rows(delta.getArray("changed")));
+		assertEquals("[a1, a2, a3]", keys(delta.getArray("order")));
+	}
+
+	@Test
+	public void removedRow() {
+		JsonObject delta = cache.getDelta(render("a1:60", "a2:61", "a3:62"), render("a1:60", "a3:62"));
+		assertEquals("[]", rows(delta.getArray("changed")));
+		assertEquals("[a1, a3]", keys(delta.getArray("order")));
+	}
+
+	@Test
+	public void movedRow() {
+		JsonObject delta = cache.getDelta(render("a1:60", "a2:61", "a3:62"), render("a2:61", "a1:60", "a3:62"));
+		assertEquals("[]", rows(delta.getArray("changed")));
+		assertEquals("[a2, a1, a3]", keys(delta.getArray("order")));
+	}
+
+	/**
+	 * Category markers have their own keys; a new category adds a marker row.
+	 */
+	@Test
+	public void spacerRows() {
+		Rendered from = render("c67:", "a1:60", "a2:61");
+		Rendered to = render("c67:", "a1:60", "c73:", "a2:61");
+		JsonObject delta = cache.getDelta(from, to);
+		assertEquals("[c73:]", rows(delta.getArray("changed")));
+		assertEquals("[c67, a1, c73, a2]", keys(delta.getArray("order")));
+	}
+
+	/**
+	 * A display that missed a version gets the difference from the one it
+	 * shows; the client asks for all the rows if the versions do not match.
+	 */
+	@Test
+	public void versionGap() {
+		Rendered v1 = render("a1:60", "a2:61");
+		Rendered v2 = render("a1:62", "a2:61");
+		Rendered v3 = render("a1:62", "a2:63");
+		assertTrue(v2.getVersion() > v1.getVersion() && v3.getVersion() > v2.getVersion());
+
+		JsonObject delta = cache.getDelta(v1, v3);
+		assertEquals(v1.getVersion(), (long) delta.getNumber("from"));
+		assertEquals(v3.getVersion(), (long) delta.getNumber("to"));
+		assertEquals("[a1:62, a2:63]", rows(delta.getArray("changed")));
+	}
+
+	@Test
+	public void notRows() {
+		Rendered from = cache.getRendered("board", new ArrayList<>(), (v) -> Json.create("x"));
+		Rendered to = cache.getRendered("board", new ArrayList<>(), (v) -> Json.create("y"));
+		assertNull(cache.getDelta(from, to));
+	}
+
+	/**
+	 * The last difference is kept for each kind of display and setting, like
+	 * the JSON itself.
+	 */
+	@Test
+	public void deltaKeptPerSetting() {
+		Rendered from = render("a1:60", "a2:61");
+		Rendered to = render("a1:60", "a2:62");
+		JsonObject delta = cache.getDelta(from, to);
+
+		competition.setMasters(true);
+		Rendered mastersFrom = render("a1:60", "a2:61");
+		Rendered mastersTo = render("a1:61", "a2:61");
+		assertEquals("[a1:61]", rows(cache.getDelta(mastersFrom, mastersTo).getArray("changed")));
+
+		competition.setMasters(false);
+		assertSame(delta, cache.getDelta(from, to));
+	}
+
+	private String keys(JsonArray order) {
+		List<String> keys = new ArrayList<>();
+		for (int i = 0; i < order.length(); i++) {
+			keys.add(order.getString(i));
+		}
+		return keys.toString();
+	}
+
+	/**
+	 * @param rows "key:value", the value is empty for a category marker
+	 */
+	private Rendered render(String... rows) {
+		JsonArray json = Json.createArray();
+		for (String r : rows) {
+			String[] kv = r.split(":", -1);
+			JsonObject row = Json.createObject();
+			row.put(RenderCache.ROW_KEY, kv[0]);
+			if (kv[1].isEmpty()) {
+				row.put("isSpacer", true);
+			} else {
+				row.put("weight", kv[1]);
+			}
+			json.set(json.length(), row);
+		}
+		// a new list each time, as the field of play does when the order changes
+		List<AthleteView> views = new ArrayList<>();
+		return cache.getRendered("scoreboard", views, (v) -> json);
+	}
+
+	private String rows(JsonArray changed) {
+		List<String> rows = new ArrayList<>();
+		for (int i = 0; i < changed.length(); i++) {
+			JsonObject row = changed.getObject(i);
+			rows.add(row.getString(RenderCache.ROW_KEY) + ":" + (row.hasKey("weight") ? row.getString("weight") : ""));
+		}
+		return rows.toString();
+	}
+}
@@ -0,0 +1,108 @@
+/***
+ * Copyright (c) 2009-2019 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+
+import app.owlcms.data.athlete.Athlete;
+import app.owlcms.data.athlete.AthleteRepository;
+import app.owlcms.data.jpa.JPAService;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+
+/**
+ * Replay a full competition and report the cost of each event.
+ *
+ * Not part of the normal test run; use <code>mvn -Pbenchmark test</code>.
+ * System properties:
+ * <ul>
+ * <li>replay.athletes, replay.platforms, replay.groupSize, replay.seed: the
+ * generated competition (default 320 athletes, 3 platforms, groups of 16)</li>
+ * <li>replay.displays: displays per platform (default 4)</li>
+ * <li>replay.globalRankings: recompute the rankings after each decision
+ * (default true)</li>
+ * <li>replay.script: replay this file instead of a generated script</li>
+ * <li>replay.save: save the script played to this file</li>
+ * <li>replay.maxP99Millis: fail if the 99th percentile of event processing
+ * is above this value</li>
+ * </ul>
+ * The report is logged and written to target/replay-report.txt.
+ */
+public class ReplayBenchmark {
+    private static Level LoggerLevel = Level.INFO;
+    final Logger logger = (Logger) LoggerFactory.getLogger(ReplayBenchmark.class);
+
+    @BeforeClass
+    public static void setupTests() {
+        JPAService.init(true, true);
+    }
+
+    @AfterClass
+    public static void tearDownTests() {
+        JPAService.close();
+    }
+
+    @Test
+    public void replay() throws IOException, InterruptedException {
+        logger.setLevel(LoggerLevel);
+        CompetitionReplay.Setup setup = new CompetitionReplay.Setup();
+        setup.athletes = Integer.getInteger("replay.athletes", setup.athletes);
+        setup.platforms = Integer.getInteger("replay.platforms", setup.platforms);
+        setup.groupSize = Integer.getInteger("replay.groupSize", setup.groupSize);
+        setup.seed = Long.getLong("replay.seed", setup.seed);
+
+        List<CompetitionReplay.Step> script = null;
+        String scriptName = System.getProperty("replay.script");
+        if (scriptName != null && !scriptName.isEmpty()) {
+            script = CompetitionReplay.load(Paths.get(scriptName), setup);
+        }
+        CompetitionReplay replay = new CompetitionReplay(setup, Integer.getInteger("replay.displays", 4),
+                Boolean.parseBoolean(System.getProperty("replay.globalRankings", "true")));
+        replay.createCompetition();
+        if (script == null) {
+            script = replay.generateScript();
+        }
+        String saveName = System.getProperty("replay.save");
+        if (saveName != null && !saveName.isEmpty()) {
+            CompetitionReplay.save(Paths.get(saveName), setup, script);
+        }
+
+        replay.run(script);
+
+        String report = replay.report();
+        logger.info("\n{}", report);
+        Path target = Paths.get("target");
+        if (Files.isDirectory(target)) {
+            Files.write(target.resolve("replay-report.txt"), report.getBytes(StandardCharsets.UTF_8));
+        }
+
+        List<Athlete> athletes = AthleteRepository.findAll();
+        assertEquals(setup.athletes, athletes.size());
+        for (Athlete a : athletes) {
+            assertEquals(a.getFullName(), 6, a.getAttemptsDone().intValue());
+        }
+        String maxP99 = System.getProperty("replay.maxP99Millis");
+        if (maxP99 != null && !maxP99.isEmpty()) {
+            double p99 = replay.getAllFopLatencies().percentile(99) / 1_000_000.0;
+            assertTrue("p99 " + p99 + " ms above " + maxP99, p99 <= Double.parseDouble(maxP99));
+        }
+    }
+
+}
@@ -0,0 +1,109 @@
+/***
+ * Copyright (c) 2009-2019 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import app.owlcms.data.athlete.Athlete;
+import app.owlcms.data.athlete.AthleteRepository;
+import app.owlcms.data.athleteSort.AthleteSorter;
+import app.owlcms.data.group.Group;
+import app.owlcms.data.group.GroupRepository;
+import app.owlcms.data.jpa.JPAService;
+import app.owlcms.fieldofplay.FOPEvent;
+import app.owlcms.fieldofplay.FieldOfPlay;
+import app.owlcms.publicresults.ResultsFeed;
+import app.owlcms.publicresults.ResultsFeed.Snapshot;
+
+public class ResultsFeedTest {
+
+	@BeforeClass
+	public static void setupTests() {
+		JPAService.init(true, true);
+	}
+
+	@AfterClass
+	public static void tearDownTests() {
+		JPAService.close();
+	}
+
+	@Test
+	public void newVersionOnChange() {
+		TestData.insertInitialData(5, true);
+		JPAService.runInTransaction((em) -> {
+			Group gA = GroupRepository.doFindByName("A", em);
+			Group gB = GroupRepository.doFindByName("B", em);
+			Group gC = GroupRepository.doFindByName("C", em);
+			TestData.deleteAllLifters(em);
+			TestData.insertSampleLifters(em, 3, gA, gB, gC);
+			return null;
+		});
+		List<Athlete> athletes = AthleteRepository.findAll();
+		AthleteSorter.assignLotNumbers(athletes);
+		for (Athlete a : athletes) {
+			a.setSnatch1Declaration("60");
+			a.setCleanJerk1Declaration("80");
+		}
+		FieldOfPlay fop = new FieldOfPlay(athletes, new MockCountdownTimer(), new MockCountdownTimer(), true);
+
+		ResultsFeed feed = ResultsFeed.get(fop);
+		Snapshot first = feed.getSnapshot();
+		assertTrue(new String(first.getJson(), StandardCharsets.UTF_8).contains("\"athletes\""));
+
+		List<Snapshot> woken = new ArrayList<>();
+		List<Snapshot> streamed = new ArrayList<>();
+		feed.awaitChange(first.getEtag(), woken::add);
+		feed.addStream(streamed::add);
+		assertEquals(0, woken.size());
+		assertEquals(1, streamed.size());
+
+		Athlete cur = fop.getCurAthlete();
+		cur.setSnatch1Change1("62");
+		fop.getFopEventBus().post(new FOPEvent.WeightChange(this, cur));
+
+		Snapshot second = feed.getSnapshot();
+		assertNotEquals(first.getEtag(), second.getEtag());
+		assertEquals(1, woken.size());
+		assertEquals(second, woken.get(0));
+		assertEquals(second, streamed.get(streamed.size() - 1));
+		assertEquals(1, feed.getViewerCount());
+
+		// another viewer that already has the new version waits
+		feed.awaitChange(second.getEtag(), woken::add);
+		assertEquals(1, woken.size());
+		assertEquals(2, feed.getViewerCount());
+
+		// viewers that are gone remove themselves while the feed sends
+		for (int i = 0; i < 3; i++) {
+			feed.addStream(new Consumer<Snapshot>() {
+				@Override
+				public void accept(Snapshot s) {
+					if (s != second) {
+						feed.removeStream(this);
+					}
+				}
+			});
+		}
+		assertEquals(5, feed.getViewerCount());
+		cur.setSnatch1Change2("63");
+		fop.getFopEventBus().post(new FOPEvent.WeightChange(this, cur));
+		assertNotEquals(second.getEtag(), feed.getSnapshot().getEtag());
+		assertEquals(feed.getSnapshot(), streamed.get(streamed.size() - 1));
+		assertEquals(1, feed.getViewerCount());
+	}
+}
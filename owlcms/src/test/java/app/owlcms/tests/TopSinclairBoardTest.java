@@ -0,0 +1,154 @@
+/***
+ * Copyright (c) 2009-2019 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import app.owlcms.data.athlete.Athlete;
+import app.owlcms.data.athlete.AthleteRepository;
+import app.owlcms.data.athlete.Gender;
+import app.owlcms.data.athleteSort.AthleteSorter;
+import app.owlcms.data.athleteSort.RankingIndex;
+import app.owlcms.data.competition.Competition;
+import app.owlcms.data.group.Group;
+import app.owlcms.data.group.GroupRepository;
+import app.owlcms.data.jpa.JPAService;
+import app.owlcms.displays.topathletes.TopSinclairBoard;
+import app.owlcms.fieldofplay.FOPEvent;
+import app.owlcms.fieldofplay.FieldOfPlay;
+import elemental.json.JsonArray;
+import elemental.json.JsonObject;
+
+/**
+ * Check that the top updated one athlete at a time is the same as the top of
+ * the full list.
+ */
+public class TopSinclairBoardTest {
+
+	@BeforeClass
+	public static void setupTests() {
+		JPAService.init(true, true);
+	}
+
+	@AfterClass
+	public static void tearDownTests() {
+		JPAService.close();
+	}
+
+	private static double score(Athlete a) {
+		return a.getAttemptsDone() > 3 ? a.getSinclair() : a.getSinclairForDelta();
+	}
+
+	@Test
+	public void sameAsFullSort() {
+		TestData.insertInitialData(5, true);
+		JPAService.runInTransaction((em) -> {
+			Group gA = GroupRepository.doFindByName("A", em);
+			Group gB = GroupRepository.doFindByName("B", em);
+			Group gC = GroupRepository.doFindByName("C", em);
+			TestData.deleteAllLifters(em);
+			TestData.insertSampleLifters(em, 8, gA, gB, gC);
+			return null;
+		});
+		List<Athlete> athletes = AthleteRepository.findAll();
+		AthleteSorter.assignLotNumbers(athletes);
+		Random random = new Random(3L);
+		for (Athlete a : athletes) {
+			a.setGender(Gender.M);
+			a.setSnatch1Declaration(Integer.toString(60 + random.nextInt(5)));
+			a.setCleanJerk1Declaration(Integer.toString(80 + random.nextInt(5)));
+			AthleteRepository.save(a);
+		}
+		athletes = AthleteRepository.findAll();
+
+		RankingIndex index = RankingIndex.getCurrent();
+		TopSinclairBoard board = TopSinclairBoard.getCurrent();
+		check(athletes, board.getAthletesJson(Gender.M));
+
+		List<Athlete> order = new ArrayList<>(athletes);
+		AthleteSorter.liftingOrder(order);
+		while (order.get(0).getAttemptsDone() < 6) {
+			Athlete a = order.get(0);
+			if (random.nextInt(3) > 0) {
+				a.successfulLift();
+			} else {
+				a.failedLift();
+			}
+			index.update(a);
+			board.update(a);
+			check(athletes, board.getAthletesJson(Gender.M));
+			AthleteSorter.liftingOrder(order);
+		}
+		assertEquals(0, board.getAthletesJson(Gender.F).length());
+	}
+
+	/**
+	 * A display attached when nothing else uses the global rankings still follows
+	 * the decisions.
+	 */
+	@Test
+	public void attachedBoardFollowsDecisions() {
+		TestData.insertInitialData(5, true);
+		JPAService.runInTransaction((em) -> {
+			Group gA = GroupRepository.doFindByName("A", em);
+			Group gB = GroupRepository.doFindByName("B", em);
+			Group gC = GroupRepository.doFindByName("C", em);
+			TestData.deleteAllLifters(em);
+			TestData.insertSampleLifters(em, 3, gA, gB, gC);
+			return null;
+		});
+		List<Athlete> athletes = AthleteRepository.findAll();
+		AthleteSorter.assignLotNumbers(athletes);
+		for (Athlete a : athletes) {
+			a.setGender(Gender.M);
+			a.setSnatch1Declaration("60");
+			a.setCleanJerk1Declaration("80");
+			AthleteRepository.save(a);
+		}
+		athletes = AthleteRepository.findAll();
+		FieldOfPlay fop = new FieldOfPlay(athletes, new MockCountdownTimer(), new MockCountdownTimer(), true);
+
+		Competition.getCurrent().setGlobalRankingRecompute(false);
+		TopSinclairBoard board = TopSinclairBoard.getCurrent();
+		board.addDisplay();
+		String before = board.getAthletesJson(Gender.M).toJson();
+
+		Athlete cur = fop.getCurAthlete();
+		fop.getFopEventBus().post(new FOPEvent.TimeStarted(null));
+		fop.getFopEventBus().post(new FOPEvent.DownSignal(null));
+		fop.getFopEventBus().post(new FOPEvent.DecisionFullUpdate(this, cur, true, true, true, 0, 0, 0));
+		assertEquals(60, (long) cur.getBestSnatch());
+		assertNotEquals(before, board.getAthletesJson(Gender.M).toJson());
+	}
+
+	private void check(List<Athlete> athletes, JsonArray shown) {
+		List<Athlete> expected = athletes.stream().filter((a) -> score(a) > 0)
+				.sorted(Comparator.<Athlete>comparingDouble((a) -> -score(a)).thenComparing(Athlete::getId))
+				.limit(TopSinclairBoard.TOP_COUNT).collect(Collectors.toList());
+		assertEquals(expected.size(), shown.length());
+		double top = expected.isEmpty() ? 0 : score(expected.get(0));
+		for (int i = 0; i < expected.size(); i++) {
+			Athlete a = expected.get(i);
+			JsonObject ja = shown.getObject(i);
+			assertEquals(a.getFullName(), ja.getString("fullName"));
+			assertEquals(String.format("%.3f", a.getSinclair()), ja.getString("sinclair"));
+			int needed = (int) Math.round(Math.ceil((top - a.getSinclairForDelta()) / a.getSinclairFactor()));
+			assertEquals(needed == 0 ? "-" : Integer.toString(needed), ja.getString("needed"));
+		}
+	}
+}
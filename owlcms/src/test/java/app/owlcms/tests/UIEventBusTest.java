@@ -0,0 +1,123 @@
+/***
+ * Copyright (c) 2009-2019 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.google.common.eventbus.Subscribe;
+
+import app.owlcms.fieldofplay.UIEvent;
+import app.owlcms.fieldofplay.UIEventBus;
+
+public class UIEventBusTest {
+
+	/**
+	 * A display that is stuck on its first event until released.
+	 */
+	public static class SlowDisplay {
+		final CountDownLatch release = new CountDownLatch(1);
+		final CountDownLatch started = new CountDownLatch(1);
+		final List<Object> received = new CopyOnWriteArrayList<>();
+
+		@Subscribe
+		public void decisionReset(UIEvent.DecisionReset e) throws InterruptedException {
+			received.add(e);
+			started.countDown();
+			release.await(10, TimeUnit.SECONDS);
+		}
+
+		@Subscribe
+		public void setTime(UIEvent.SetTime e) {
+			received.add(e);
+		}
+
+		@Subscribe
+		public void switchGroup(UIEvent.SwitchGroup e) {
+			received.add(e);
+		}
+	}
+
+	@Test
+	public void fullStateDroppedFirst() throws InterruptedException {
+		UIEventBus bus = new UIEventBus("test", () -> new UIEvent.SwitchGroup(null, this));
+		SlowDisplay display = new SlowDisplay();
+		bus.register(display);
+		bus.post(new UIEvent.DecisionReset(this));
+		assertTrue(display.started.await(5, TimeUnit.SECONDS));
+
+		// timer updates from two origins do not coalesce, so the queue overflows
+		for (int i = 0; i < 100; i++) {
+			bus.post(new UIEvent.SetTime(i, i % 2 == 0 ? "a" : "b"));
+		}
+		UIEvent.DecisionReset reset = new UIEvent.DecisionReset(this);
+		bus.post(reset);
+		display.release.countDown();
+		waitUntilDelivered(bus, 101);
+
+		assertEquals(1, bus.getDroppedCount());
+		assertEquals(0, bus.getResyncCount());
+		assertTrue(display.received.contains(reset));
+	}
+
+	@Test
+	public void lastFullStateNotDropped() throws InterruptedException {
+		UIEventBus bus = new UIEventBus("test", () -> new UIEvent.SwitchGroup(null, this));
+		SlowDisplay display = new SlowDisplay();
+		bus.register(display);
+		bus.post(new UIEvent.DecisionReset(this));
+		assertTrue(display.started.await(5, TimeUnit.SECONDS));
+
+		// no later timer update replaces this one
+		bus.post(new UIEvent.SetTime(60000, "a"));
+		for (int i = 0; i < 100; i++) {
+			bus.post(new UIEvent.DecisionReset(this));
+		}
+		display.release.countDown();
+		waitUntilDelivered(bus, 2);
+
+		assertEquals(0, bus.getDroppedCount());
+		assertEquals(1, bus.getResyncCount());
+		assertEquals(2, display.received.size());
+		assertTrue(display.received.get(1) instanceof UIEvent.SwitchGroup);
+	}
+
+	@Test
+	public void resyncInsteadOfLosingTransitions() throws InterruptedException {
+		UIEventBus bus = new UIEventBus("test", () -> new UIEvent.SwitchGroup(null, this));
+		SlowDisplay display = new SlowDisplay();
+		bus.register(display);
+		bus.post(new UIEvent.DecisionReset(this));
+		assertTrue(display.started.await(5, TimeUnit.SECONDS));
+
+		for (int i = 0; i < 101; i++) {
+			bus.post(new UIEvent.DecisionReset(this));
+		}
+		display.release.countDown();
+		waitUntilDelivered(bus, 2);
+
+		assertEquals(0, bus.getDroppedCount());
+		assertEquals(1, bus.getResyncCount());
+		assertEquals(2, display.received.size());
+		assertTrue(display.received.get(1) instanceof UIEvent.SwitchGroup);
+	}
+
+	private void waitUntilDelivered(UIEventBus bus, int count) throws InterruptedException {
+		for (int i = 0; i < 100 && bus.getDeliveredCount() < count; i++) {
+			Thread.sleep(50);
+		}
+		// nothing more arrives
+		Thread.sleep(100);
+	}
+}
@@ -30,7 +30,11 @@ import org.slf4j.LoggerFactory;
 
 import com.vaadin.flow.server.startup.ServletContextListeners;
 
+import app.owlcms.relay.ChannelsServlet;
 import app.owlcms.relay.Main;
+import app.owlcms.relay.SseServlet;
+import app.owlcms.relay.UpstreamServlet;
+import app.owlcms.relay.WebSocketRelayServlet;
 import ch.qos.logback.classic.Logger;
 
 /**
@@ -72,12 +76,18 @@ public class EmbeddedJetty {
         Context servletContext = context.getServletContext();
         servletContext.setExtendedListenerTypes(true);
         context.addEventListener(new ServletContextListeners());  
+        context.addServlet(UpstreamServlet.class, "/upstream");
+        context.addServlet(ChannelsServlet.class, "/channels/*");
+        // initialized at startup, viewers connect all at once after a restart
+        context.addServlet(WebSocketRelayServlet.class, "/ws").setInitOrder(1);
+        // event streams are served without holding a thread
+        context.addServlet(SseServlet.class, "/sse").setAsyncSupported(true);
 
         Server server = new Server(port);
         server.setHandler(context);
         ServletContextHandler scHandler = (ServletContextHandler) server.getHandler();
         scHandler.getServletHandler().addFilterWithMapping(HttpsEnforcer.class, "/*",
-            EnumSet.of(DispatcherType.REQUEST));
+            EnumSet.of(DispatcherType.REQUEST)).setAsyncSupported(true);
 
         server.start();
         startLogger.info("started on port {}", port);
@@ -0,0 +1,130 @@
+/***
+ * Copyright (c) 2009-2019 Jean-François Lamy
+ * 
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)  
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.relay;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import elemental.json.Json;
+
+/**
+ * A field of play of an owlcms instance, and the viewers that follow it.
+ * 
+ * The last message of each kind is kept, so a viewer that joins late first gets
+ * the current results, timer and decision.
+ */
+public class Channel {
+
+    /**
+     * The last value of each kind, by kind, in JSON. Built once per change for
+     * all the requests; does not change once created.
+     */
+    public static final class Snapshot {
+        private final byte[] json;
+        private final byte[] gzippedJson;
+
+        Snapshot(byte[] json) {
+            this.json = json;
+            this.gzippedJson = Message.gzip(json);
+        }
+
+        /**
+         * @return the JSON, gzip-compressed; shared, must not be modified
+         */
+        public byte[] getGzippedJson() {
+            return gzippedJson;
+        }
+
+        /**
+         * @return the JSON, UTF-8; shared, must not be modified
+         */
+        public byte[] getJson() {
+            return json;
+        }
+    }
+
+    private final String name;
+    private final Map<String, Message> latest = new LinkedHashMap<>();
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    /** built on first request after a change */
+    private Snapshot snapshot;
+
+    Channel(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the last value of each kind
+     */
+    public synchronized Snapshot getSnapshot() {
+        if (snapshot == null) {
+            ByteArrayOutputStream b = new ByteArrayOutputStream();
+            b.write('{');
+            for (Message m : latest.values()) {
+                if (b.size() > 1) {
+                    b.write(',');
+                }
+                byte[] key = (Json.create(m.getKind()).toJson() + ":").getBytes(StandardCharsets.UTF_8);
+                b.write(key, 0, key.length);
+                b.write(m.getJson(), 0, m.getJson().length);
+            }
+            b.write('}');
+            snapshot = new Snapshot(b.toByteArray());
+        }
+        return snapshot;
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    /**
+     * Send a value to all the viewers.
+     * 
+     * @param kind
+     * @param json UTF-8; must not be modified afterwards
+     */
+    public synchronized void publish(String kind, byte[] json) {
+        Message m = new Message(name, kind, Hub.nextSeq(), json);
+        latest.remove(kind);
+        latest.put(kind, m);
+        snapshot = null;
+        for (Subscriber s : subscribers) {
+            s.offer(m);
+        }
+    }
+
+    /**
+     * Send the last message of each kind, then the new ones, to a viewer.
+     * 
+     * @param s
+     */
+    public synchronized void subscribe(Subscriber s) {
+        for (Message m : latest.values()) {
+            s.offer(m);
+        }
+        subscribers.add(s);
+    }
+
+    void keepAlive() {
+        for (Subscriber s : subscribers) {
+            s.offer(Message.KEEPALIVE);
+        }
+    }
+
+    public void unsubscribe(Subscriber s) {
+        subscribers.remove(s);
+    }
+}
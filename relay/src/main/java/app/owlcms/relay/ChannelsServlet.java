@@ -0,0 +1,73 @@
+/***
+ * Copyright (c) 2009-2019 Jean-François Lamy
+ * 
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)  
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.relay;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import app.owlcms.relay.Channel.Snapshot;
+import elemental.json.Json;
+
+/**
+ * What the relay has, without following the changes.
+ * <ul>
+ * <li><code>GET /channels</code> lists the channels and their number of
+ * viewers.</li>
+ * <li><code>GET /channels/instance/platform</code> returns the last value of
+ * each kind, by kind, gzip-compressed if the client accepts it.</li>
+ * </ul>
+ */
+@SuppressWarnings("serial")
+public class ChannelsServlet extends HttpServlet {
+
+    private static void send(HttpServletResponse resp, byte[] bytes, boolean gzipped) throws IOException {
+        resp.setContentType("application/json");
+        resp.setCharacterEncoding("UTF-8");
+        resp.setHeader("Cache-Control", "no-cache");
+        resp.setHeader("Vary", "Accept-Encoding");
+        if (gzipped) {
+            resp.setHeader("Content-Encoding", "gzip");
+        }
+        resp.setContentLength(bytes.length);
+        resp.getOutputStream().write(bytes);
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        String path = req.getPathInfo();
+        if (path == null || path.equals("/")) {
+            StringBuilder sb = new StringBuilder("[");
+            for (Channel c : Hub.getChannels()) {
+                if (sb.length() > 1) {
+                    sb.append(",");
+                }
+                sb.append("{\"channel\":").append(Json.create(c.getName()).toJson())
+                        .append(",\"viewers\":").append(c.getSubscriberCount()).append("}");
+            }
+            sb.append("]");
+            send(resp, sb.toString().getBytes(StandardCharsets.UTF_8), false);
+            return;
+        }
+        Channel c = Hub.findChannel(path.substring(1));
+        if (c == null) {
+            resp.sendError(HttpServletResponse.SC_NOT_FOUND, "no such channel");
+            return;
+        }
+        // compressed once per change, not per request
+        Snapshot s = c.getSnapshot();
+        String accept = req.getHeader("Accept-Encoding");
+        if (accept != null && accept.contains("gzip")) {
+            send(resp, s.getGzippedJson(), true);
+        } else {
+            send(resp, s.getJson(), false);
+        }
+    }
+}
@@ -1,24 +0,0 @@
-package app.owlcms.relay;
-
-import java.io.IOException;
-import java.io.PrintWriter;
-
-import javax.servlet.ServletException;
-import javax.servlet.annotation.WebServlet;
-import javax.servlet.http.HttpServlet;
-import javax.servlet.http.HttpServletRequest;
-import javax.servlet.http.HttpServletResponse;
-
-@WebServlet("/hello")
-public class HelloServlet extends HttpServlet {
-
-    @Override
-    protected void doGet(HttpServletRequest req, HttpServletResponse resp)
-            throws ServletException, IOException {
-        PrintWriter osw = new PrintWriter(resp.getOutputStream());
-        osw.print("Hello!");
-        osw.flush();
-        osw.close();
-    }
-    
-}
\ No newline at end of file
@@ -0,0 +1,81 @@
+/***
+ * Copyright (c) 2009-2019 Jean-François Lamy
+ * 
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)  
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.relay;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.LoggerFactory;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+
+/**
+ * The channels of the relay.
+ * 
+ * A channel is named after the owlcms instance and the field of play
+ * (<code>instance/platform</code>); it is created when owlcms first sends a
+ * value for it.
+ */
+public class Hub {
+
+    final private static Logger logger = (Logger) LoggerFactory.getLogger(Hub.class);
+    static {
+        logger.setLevel(Level.INFO);
+    }
+
+    /** seconds between keepalive messages to the viewers */
+    static final int KEEPALIVE_SECONDS = Main.getIntegerParam("relayKeepAlive", 30);
+
+    private static final Map<String, Channel> channels = new ConcurrentHashMap<>();
+    private static final AtomicLong seq = new AtomicLong();
+    private static final ScheduledExecutorService keepAlive = Executors.newSingleThreadScheduledExecutor((r) -> {
+        Thread t = new Thread(r, "relay-keepalive");
+        t.setDaemon(true);
+        return t;
+    });
+    static {
+        keepAlive.scheduleAtFixedRate(() -> {
+            for (Channel c : channels.values()) {
+                c.keepAlive();
+            }
+        }, KEEPALIVE_SECONDS, KEEPALIVE_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * @param name
+     * @return the channel, null if owlcms has not sent anything for it
+     */
+    public static Channel findChannel(String name) {
+        return name != null ? channels.get(name) : null;
+    }
+
+    /**
+     * @param name
+     * @return the channel, created if needed
+     */
+    public static Channel getChannel(String name) {
+        return channels.computeIfAbsent(name, (n) -> {
+            logger.info("channel {} created", n);
+            return new Channel(n);
+        });
+    }
+
+    public static Collection<Channel> getChannels() {
+        return new ArrayList<>(channels.values());
+    }
+
+    static long nextSeq() {
+        return seq.incrementAndGet();
+    }
+}
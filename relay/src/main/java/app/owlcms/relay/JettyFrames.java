@@ -0,0 +1,48 @@
+/***
+ * Copyright (c) 2009-2019 Jean-François Lamy
+ * 
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)  
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.relay;
+
+import java.nio.ByteBuffer;
+
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+import org.eclipse.jetty.websocket.common.WebSocketFrame;
+import org.eclipse.jetty.websocket.common.WebSocketRemoteEndpoint;
+import org.eclipse.jetty.websocket.common.frames.BinaryFrame;
+import org.eclipse.jetty.websocket.common.frames.TextFrame;
+
+/**
+ * The only use of Jetty's internal websocket classes (websocket-common), written
+ * against Jetty 9.4.24.v20191120; check it when Jetty is upgraded.
+ *
+ * The public API encodes the text of each call ({@link
+ * org.eclipse.jetty.websocket.api.RemoteEndpoint#sendString(String, WriteCallback)})
+ * or copies nothing but allows a single blocking write; the relay sends the same
+ * buffer to every viewer, so the frame is built around it and handed to the
+ * asynchronous write path.
+ */
+final class JettyFrames {
+
+    /**
+     * Send a frame without copying or encoding the payload. The caller must not
+     * start another write before the callback is called, the message lock of
+     * the public API is not taken.
+     *
+     * @param session  an open session; its remote endpoint is Jetty's
+     *                 {@link WebSocketRemoteEndpoint}
+     * @param payload  UTF-8 text, or binary data; not modified
+     * @param binary   binary frame instead of text
+     * @param callback called once the frame is on the socket, or has failed
+     */
+    static void send(Session session, ByteBuffer payload, boolean binary, WriteCallback callback) {
+        WebSocketFrame frame = binary ? new BinaryFrame().setPayload(payload) : new TextFrame().setPayload(payload);
+        ((WebSocketRemoteEndpoint) session.getRemote()).uncheckedSendFrame(frame, callback);
+    }
+
+    private JettyFrames() {
+    }
+}
@@ -98,6 +98,10 @@ public class Main {
         // this is required for running on Heroku which assigns us the port at run time.
         // default is 8080
         serverPort = getIntegerParam("port", 8080);
+        String relayKey = getStringParam("relayKey");
+        if (relayKey == null || relayKey.isEmpty()) {
+            logger.warn("relayKey is not set, connections from owlcms will be refused");
+        }
     }
 
     /**
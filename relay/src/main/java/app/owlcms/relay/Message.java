@@ -0,0 +1,149 @@
+/***
+ * Copyright (c) 2009-2019 Jean-François Lamy
+ * 
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)  
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.relay;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+import elemental.json.Json;
+
+/**
+ * A value received from owlcms, in the formats sent to the viewers.
+ * 
+ * Each format is encoded once, when the message is received, into a read-only
+ * direct buffer shared by all the viewers of the channel. The getters return
+ * duplicates: a viewer gets its own position, but the content is never copied
+ * and is written as is to the socket.
+ */
+public final class Message {
+
+    /** sent to idle viewers so that proxies keep the connection open */
+    static final Message KEEPALIVE = new Message();
+
+    /**
+     * @param bytes
+     * @return the bytes, gzip-compressed
+     */
+    static byte[] gzip(byte[] bytes) {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4 + 64);
+            try (GZIPOutputStream gz = new GZIPOutputStream(out)) {
+                gz.write(bytes);
+            }
+            return out.toByteArray();
+        } catch (IOException e) {
+            // cannot happen in memory
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static ByteBuffer shared(byte[] bytes) {
+        ByteBuffer b = ByteBuffer.allocateDirect(bytes.length);
+        b.put(bytes).flip();
+        return b.asReadOnlyBuffer();
+    }
+
+    private static byte[] utf8(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private final String channel;
+    private final String kind;
+    private final long seq;
+    private final byte[] json;
+    private final ByteBuffer text;
+    private final ByteBuffer gzippedText;
+    private final ByteBuffer event;
+
+    /**
+     * @param channel the instance and field of play
+     * @param kind    results, timer, decision...
+     * @param seq     increases with each message of the relay
+     * @param json    the value, UTF-8; must not be modified afterwards
+     */
+    Message(String channel, String kind, long seq, byte[] json) {
+        this.channel = channel;
+        this.kind = kind;
+        this.seq = seq;
+        this.json = json;
+
+        ByteArrayOutputStream b = new ByteArrayOutputStream(json.length + 128);
+        writeAll(b, utf8("{\"channel\":" + Json.create(channel).toJson() + ",\"kind\":"
+                + Json.create(kind).toJson() + ",\"seq\":" + seq + ",\"data\":"));
+        writeAll(b, json);
+        writeAll(b, utf8("}"));
+        byte[] textBytes = b.toByteArray();
+        this.text = shared(textBytes);
+        this.gzippedText = shared(gzip(textBytes));
+
+        b.reset();
+        writeAll(b, utf8("id: " + seq + "\nevent: " + kind + "\ndata: "));
+        writeAll(b, json);
+        writeAll(b, utf8("\n\n"));
+        this.event = shared(b.toByteArray());
+    }
+
+    private Message() {
+        this.channel = "";
+        this.kind = "";
+        this.seq = 0;
+        this.json = utf8("{}");
+        byte[] textBytes = utf8("{\"kind\":\"keepalive\"}");
+        this.text = shared(textBytes);
+        this.gzippedText = shared(gzip(textBytes));
+        this.event = shared(utf8(": keepalive\n\n"));
+    }
+
+    public String getChannel() {
+        return channel;
+    }
+
+    /**
+     * @return the message as a server-sent event, UTF-8
+     */
+    public ByteBuffer getEvent() {
+        return event.duplicate();
+    }
+
+    /**
+     * @return the text message, gzip-compressed
+     */
+    public ByteBuffer getGzippedText() {
+        return gzippedText.duplicate();
+    }
+
+    /**
+     * @return the value as received, UTF-8; shared, must not be modified
+     */
+    public byte[] getJson() {
+        return json;
+    }
+
+    public String getKind() {
+        return kind;
+    }
+
+    public long getSeq() {
+        return seq;
+    }
+
+    /**
+     * @return the message as a websocket text frame, UTF-8: the channel, kind and
+     *         sequence number, and the value as <code>data</code>
+     */
+    public ByteBuffer getText() {
+        return text.duplicate();
+    }
+
+    private void writeAll(ByteArrayOutputStream b, byte[] bytes) {
+        b.write(bytes, 0, bytes.length);
+    }
+}
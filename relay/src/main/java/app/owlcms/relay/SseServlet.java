@@ -0,0 +1,67 @@
+/***
+ * Copyright (c) 2009-2019 Jean-François Lamy
+ * 
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)  
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.relay;
+
+import java.io.IOException;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Viewers following a channel with server-sent events:
+ * <code>/sse?channel=instance/platform</code>.
+ * 
+ * Each message is an event named after its kind, with the value as data. The
+ * last message of each kind is sent first.
+ */
+@SuppressWarnings("serial")
+public class SseServlet extends HttpServlet {
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        Channel channel = Hub.findChannel(req.getParameter("channel"));
+        if (channel == null) {
+            resp.sendError(HttpServletResponse.SC_NOT_FOUND, "no such channel");
+            return;
+        }
+        resp.setContentType("text/event-stream");
+        resp.setCharacterEncoding("UTF-8");
+        resp.setHeader("Cache-Control", "no-cache");
+        // no buffering by proxies
+        resp.setHeader("X-Accel-Buffering", "no");
+        resp.flushBuffer();
+        AsyncContext context = req.startAsync();
+        context.setTimeout(0);
+        SseSubscriber subscriber = new SseSubscriber(channel, context);
+        resp.getOutputStream().setWriteListener(subscriber);
+        context.addListener(new AsyncListener() {
+            @Override
+            public void onComplete(AsyncEvent event) {
+                channel.unsubscribe(subscriber);
+            }
+
+            @Override
+            public void onError(AsyncEvent event) {
+                channel.unsubscribe(subscriber);
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+            }
+
+            @Override
+            public void onTimeout(AsyncEvent event) {
+                subscriber.close();
+            }
+        });
+        channel.subscribe(subscriber);
+    }
+}
@@ -0,0 +1,110 @@
+/***
+ * Copyright (c) 2009-2019 Jean-François Lamy
+ * 
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)  
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.relay;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.WriteListener;
+
+import org.eclipse.jetty.server.HttpOutput;
+import org.slf4j.LoggerFactory;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+
+/**
+ * A viewer following a channel with server-sent events.
+ * 
+ * The response is written in non-blocking mode: the buffer of the message is
+ * handed to Jetty, which writes it when the socket can take it and then calls
+ * {@link #onWritePossible()}. No thread waits for a slow viewer.
+ */
+public class SseSubscriber extends Subscriber implements WriteListener {
+
+    final private static Logger logger = (Logger) LoggerFactory.getLogger(SseSubscriber.class);
+    static {
+        logger.setLevel(Level.INFO);
+    }
+
+    private final Channel channel;
+    private final AsyncContext context;
+    private final HttpOutput out;
+    /** the event to write, null once handed to Jetty */
+    private ByteBuffer next;
+    /** an event has been handed to Jetty and is not written yet */
+    private boolean pending;
+
+    /**
+     * @param channel
+     * @param context the response, whose output is in non-blocking mode with
+     *                this subscriber as listener
+     * @throws IOException
+     */
+    SseSubscriber(Channel channel, AsyncContext context) throws IOException {
+        this.channel = channel;
+        this.context = context;
+        // Jetty's own output writes a ByteBuffer without copying it
+        this.out = (HttpOutput) context.getResponse().getOutputStream();
+    }
+
+    @Override
+    public void close() {
+        channel.unsubscribe(this);
+        try {
+            context.complete();
+        } catch (IllegalStateException e) {
+            // already completed by the container
+        }
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        logger.debug("viewer gone {}", t.toString());
+        close();
+    }
+
+    /**
+     * Called by Jetty when the previous write is done, and by
+     * {@link #write(Message)}.
+     */
+    @Override
+    public synchronized void onWritePossible() {
+        try {
+            if (!out.isReady()) {
+                // called again when ready
+                return;
+            }
+            if (pending) {
+                pending = false;
+                written();
+                return;
+            }
+            if (next != null) {
+                ByteBuffer b = next;
+                next = null;
+                pending = true;
+                out.write(b);
+                if (out.isReady()) {
+                    // written without waiting
+                    pending = false;
+                    written();
+                }
+            }
+        } catch (IOException | IllegalStateException e) {
+            logger.debug("viewer gone {}", e.toString());
+            close();
+        }
+    }
+
+    @Override
+    protected synchronized void write(Message m) {
+        next = m.getEvent();
+        onWritePossible();
+    }
+}
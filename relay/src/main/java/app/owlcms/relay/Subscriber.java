@@ -0,0 +1,97 @@
+/***
+ * Copyright (c) 2009-2019 Jean-François Lamy
+ * 
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)  
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.relay;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * A viewer connected to a channel.
+ * 
+ * Messages are written one at a time. While a write is in progress, only the
+ * last message of each kind is kept: a slow viewer skips intermediate values
+ * instead of accumulating them, and never delays the other viewers.
+ */
+public abstract class Subscriber {
+
+    private final LinkedHashMap<String, Message> pending = new LinkedHashMap<>();
+    private boolean writing;
+    /** true while {@link #write(Message)} is called from {@link #writeNext()} */
+    private boolean inWrite;
+    /** the write completed before {@link #write(Message)} returned */
+    private boolean completedInWrite;
+
+    /**
+     * Queue a message; called by the channel, does not block.
+     * 
+     * @param m
+     */
+    public void offer(Message m) {
+        synchronized (this) {
+            // the newest kind goes last
+            pending.remove(m.getKind());
+            pending.put(m.getKind(), m);
+            if (writing) {
+                return;
+            }
+            writing = true;
+        }
+        writeNext();
+    }
+
+    /**
+     * Stop receiving messages and release the connection.
+     */
+    public abstract void close();
+
+    /**
+     * Start writing a message. Must not block; {@link #written()} or
+     * {@link #close()} is called when done.
+     * 
+     * @param m
+     */
+    protected abstract void write(Message m);
+
+    /**
+     * Called when the current write has completed, possibly from
+     * {@link #write(Message)} itself.
+     */
+    protected void written() {
+        synchronized (this) {
+            if (inWrite) {
+                // unwind, writeNext() continues with the next message
+                completedInWrite = true;
+                return;
+            }
+        }
+        writeNext();
+    }
+
+    private void writeNext() {
+        while (true) {
+            Message m;
+            synchronized (this) {
+                Iterator<Message> it = pending.values().iterator();
+                if (!it.hasNext()) {
+                    writing = false;
+                    return;
+                }
+                m = it.next();
+                it.remove();
+                inWrite = true;
+                completedInWrite = false;
+            }
+            write(m);
+            synchronized (this) {
+                inWrite = false;
+                if (!completedInWrite) {
+                    return;
+                }
+            }
+        }
+    }
+}
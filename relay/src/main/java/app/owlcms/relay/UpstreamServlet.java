@@ -0,0 +1,118 @@
+/***
+ * Copyright (c) 2009-2019 Jean-François Lamy
+ * 
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)  
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.relay;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.slf4j.LoggerFactory;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+
+/**
+ * The connection from owlcms: <code>POST /upstream?instance=name</code>, with
+ * the header <code>Authorization: Bearer relayKey</code>. Connections are
+ * refused unless the <code>relayKey</code> parameter is set, and the key is
+ * compared in constant time.
+ * 
+ * The request body is never finished; it is a sequence of messages, each made of
+ * a topic (<code>platform/kind</code>, see
+ * {@link java.io.DataOutputStream#writeUTF(String)}), the length of the value
+ * and the value in JSON. A message with an empty topic keeps the connection
+ * alive. The value is sent to the viewers of channel
+ * <code>instance/platform</code>.
+ */
+@SuppressWarnings("serial")
+public class UpstreamServlet extends HttpServlet {
+
+    final private static Logger logger = (Logger) LoggerFactory.getLogger(UpstreamServlet.class);
+    static {
+        logger.setLevel(Level.INFO);
+    }
+
+    private static final int MAX_LENGTH = 16 * 1024 * 1024;
+    private static final String BEARER = "Bearer ";
+
+    /**
+     * @param key           the key of the relay
+     * @param authorization the Authorization header, may be null
+     * @return true if the header has the key
+     */
+    static boolean isAuthorized(String key, String authorization) {
+        if (authorization == null || !authorization.startsWith(BEARER)) {
+            return false;
+        }
+        // the digests have the same length, the time taken does not depend on the key
+        return MessageDigest.isEqual(digest(key), digest(authorization.substring(BEARER.length())));
+    }
+
+    private static byte[] digest(String s) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(s.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            // required of every Java platform
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        if (!"application/octet-stream".equals(req.getContentType())) {
+            // a form would be read as parameters
+            resp.sendError(HttpServletResponse.SC_UNSUPPORTED_MEDIA_TYPE);
+            return;
+        }
+        String key = Main.getStringParam("relayKey");
+        if (key == null || key.isEmpty()) {
+            logger.warn("upstream from {} refused, relayKey is not set", req.getRemoteAddr());
+            resp.sendError(HttpServletResponse.SC_FORBIDDEN, "relayKey is not set on the relay");
+            return;
+        }
+        if (!isAuthorized(key, req.getHeader("Authorization"))) {
+            logger.warn("upstream from {} refused, wrong key", req.getRemoteAddr());
+            resp.sendError(HttpServletResponse.SC_FORBIDDEN);
+            return;
+        }
+        String instance = req.getParameter("instance");
+        if (instance == null || instance.isEmpty() || instance.contains("/")) {
+            resp.sendError(HttpServletResponse.SC_BAD_REQUEST, "instance name required, without /");
+            return;
+        }
+        logger.info("upstream {} connected from {}", instance, req.getRemoteAddr());
+        DataInputStream in = new DataInputStream(new BufferedInputStream(req.getInputStream()));
+        try {
+            while (true) {
+                String topic = in.readUTF();
+                int length = in.readInt();
+                if (length < 0 || length > MAX_LENGTH) {
+                    throw new IOException("invalid length " + length);
+                }
+                byte[] json = new byte[length];
+                in.readFully(json);
+                int slash = topic.lastIndexOf('/');
+                if (slash > 0) {
+                    Hub.getChannel(instance + "/" + topic.substring(0, slash))
+                            .publish(topic.substring(slash + 1), json);
+                }
+            }
+        } catch (EOFException e) {
+            logger.info("upstream {} disconnected", instance);
+        } catch (IOException e) {
+            logger.warn("upstream {} lost: {}", instance, e.toString());
+        }
+    }
+}
@@ -0,0 +1,50 @@
+/***
+ * Copyright (c) 2009-2019 Jean-François Lamy
+ * 
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)  
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.relay;
+
+import java.io.IOException;
+import java.util.Collections;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.websocket.servlet.WebSocketServlet;
+import org.eclipse.jetty.websocket.servlet.WebSocketServletFactory;
+
+/**
+ * Viewers following a channel with a websocket: <code>/ws?channel=instance/platform</code>.
+ * 
+ * The last message of each kind is sent on connection, then every new one. With
+ * <code>encoding=gzip</code>, the messages are sent as binary frames holding
+ * the gzipped text, compressed once for all the viewers.
+ */
+@SuppressWarnings("serial")
+public class WebSocketRelayServlet extends WebSocketServlet {
+
+    @Override
+    public void configure(WebSocketServletFactory factory) {
+        // the relay sends keepalive messages, idle connections are dead ones
+        factory.getPolicy().setIdleTimeout(Hub.KEEPALIVE_SECONDS * 3000L);
+        factory.setCreator((req, resp) -> {
+            // no extension is accepted: compression (permessage-deflate) would
+            // compress each message again for each viewer. Negotiated here rather
+            // than removed from the deprecated factory.getExtensionFactory().
+            resp.setExtensions(Collections.emptyList());
+            HttpServletRequest request = req.getHttpServletRequest();
+            Channel channel = Hub.findChannel(request.getParameter("channel"));
+            if (channel == null) {
+                try {
+                    resp.sendError(HttpServletResponse.SC_NOT_FOUND, "no such channel");
+                } catch (IOException e) {
+                    // viewer gone
+                }
+                return null;
+            }
+            return new WebSocketSubscriber(channel, "gzip".equals(request.getParameter("encoding")));
+        });
+    }
+}
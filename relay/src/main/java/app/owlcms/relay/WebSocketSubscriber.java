@@ -0,0 +1,99 @@
+/***
+ * Copyright (c) 2009-2019 Jean-François Lamy
+ * 
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)  
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.relay;
+
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.WebSocketListener;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+import org.slf4j.LoggerFactory;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+
+/**
+ * A viewer connected with a websocket.
+ * 
+ * The frames are built around the buffers of the message and handed to Jetty's
+ * asynchronous write path (see {@link JettyFrames}); {@link #writeSuccess()} is
+ * called once they are on the socket. Unlike {@link org.eclipse.jetty.websocket.api.RemoteEndpoint#sendString(String, WriteCallback)},
+ * nothing is encoded for each viewer.
+ */
+public class WebSocketSubscriber extends Subscriber implements WebSocketListener, WriteCallback {
+
+    final private static Logger logger = (Logger) LoggerFactory.getLogger(WebSocketSubscriber.class);
+    static {
+        logger.setLevel(Level.INFO);
+    }
+
+    private final Channel channel;
+    /** binary frames with the gzipped text, decompressed by the viewer */
+    private final boolean gzipped;
+    private volatile Session session;
+
+    WebSocketSubscriber(Channel channel, boolean gzipped) {
+        this.channel = channel;
+        this.gzipped = gzipped;
+    }
+
+    @Override
+    public void close() {
+        channel.unsubscribe(this);
+        Session s = session;
+        if (s != null) {
+            s.close();
+        }
+    }
+
+    @Override
+    public void onWebSocketBinary(byte[] payload, int offset, int len) {
+        // viewers only listen
+    }
+
+    @Override
+    public void onWebSocketClose(int statusCode, String reason) {
+        channel.unsubscribe(this);
+    }
+
+    @Override
+    public void onWebSocketConnect(Session session) {
+        this.session = session;
+        channel.subscribe(this);
+    }
+
+    @Override
+    public void onWebSocketError(Throwable cause) {
+        logger.debug("viewer gone {}", cause.toString());
+        channel.unsubscribe(this);
+    }
+
+    @Override
+    public void onWebSocketText(String message) {
+        // viewers only listen
+    }
+
+    @Override
+    public void writeFailed(Throwable x) {
+        logger.debug("viewer gone {}", x.toString());
+        close();
+    }
+
+    @Override
+    public void writeSuccess() {
+        written();
+    }
+
+    @Override
+    protected void write(Message m) {
+        Session s = session;
+        if (s == null || !s.isOpen()) {
+            channel.unsubscribe(this);
+            return;
+        }
+        // one write at a time per viewer, so the message lock of sendString is not needed
+        JettyFrames.send(s, gzipped ? m.getGzippedText() : m.getText(), gzipped, this);
+    }
+}
@@ -0,0 +1,210 @@
+/***
+ * Copyright (c) 2009-2019 Jean-François Lamy
+ * 
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)  
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.relay;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.WebSocketAdapter;
+import org.eclipse.jetty.websocket.client.WebSocketClient;
+import org.slf4j.LoggerFactory;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+
+/**
+ * Fan-out benchmark: many local websocket viewers on one channel.
+ * 
+ * Starts the relay servlets on a free port, connects the viewers, then publishes
+ * results of a given size at a fixed interval, as owlcms would. Reports the
+ * messages delivered per second, the delivery latency (publish to receipt by
+ * the viewer) and the heap used per connection. The viewers run in the same
+ * JVM, so the heap includes both ends of each connection.
+ * 
+ * Not a unit test; run as a Java application with the test classpath, for
+ * example <code>java -DbenchClients=5000 ... app.owlcms.relay.RelayBenchmark</code>.
+ * <ul>
+ * <li><code>benchClients</code>: viewers (2000)</li>
+ * <li><code>benchMessages</code>: messages published (500)</li>
+ * <li><code>benchSize</code>: bytes per message (4096)</li>
+ * <li><code>benchInterval</code>: milliseconds between messages (20)</li>
+ * </ul>
+ * A viewer that falls behind skips messages (see {@link Subscriber}); skipped
+ * messages are counted but have no latency.
+ */
+public class RelayBenchmark {
+
+    /**
+     * A viewer; records the latency of each message from the index carried in
+     * the data.
+     */
+    private static class Viewer extends WebSocketAdapter {
+        @Override
+        public void onWebSocketText(String message) {
+            long now = System.nanoTime();
+            int ix = message.indexOf(INDEX_KEY);
+            if (ix < 0) {
+                // keepalive
+                return;
+            }
+            int start = ix + INDEX_KEY.length();
+            int end = message.indexOf(',', start);
+            int i = Integer.parseInt(message.substring(start, end));
+            if (i < 0) {
+                // value present before the measurement
+                return;
+            }
+            int n = received.getAndIncrement();
+            if (n < latencies.length) {
+                latencies[n] = now - sentAt[i];
+            }
+            lastReceived.set(now);
+        }
+    }
+
+    private static final String INDEX_KEY = "\"i\":";
+
+    private static long[] sentAt;
+    private static long[] latencies;
+    private static final AtomicInteger received = new AtomicInteger();
+    private static final AtomicLong lastReceived = new AtomicLong();
+
+    public static void main(String[] args) throws Exception {
+        ((Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(Level.WARN);
+        int clients = Main.getIntegerParam("benchClients", 2000);
+        int messages = Main.getIntegerParam("benchMessages", 500);
+        int size = Main.getIntegerParam("benchSize", 4096);
+        int interval = Main.getIntegerParam("benchInterval", 20);
+        sentAt = new long[messages];
+        latencies = new long[clients * messages];
+
+        Server server = new Server(0);
+        ServletContextHandler context = new ServletContextHandler();
+        context.addServlet(WebSocketRelayServlet.class, "/ws").setInitOrder(1);
+        server.setHandler(context);
+        server.start();
+        int port = ((ServerConnector) server.getConnectors()[0]).getLocalPort();
+
+        Channel channel = Hub.getChannel("bench/A");
+        channel.publish("results", json(-1, size));
+
+        HttpClient http = new HttpClient();
+        // upgraded connections are never returned to the pool
+        http.setMaxConnectionsPerDestination(clients);
+        http.start();
+        WebSocketClient client = new WebSocketClient(http);
+        client.setMaxTextMessageBufferSize(size * 2);
+        client.getPolicy().setMaxTextMessageSize(size * 2);
+        client.start();
+        long heapBefore = usedHeap();
+        URI uri = new URI("ws://localhost:" + port + "/ws?channel=bench/A");
+        List<Session> sessions = new ArrayList<>(clients);
+        List<Future<Session>> connecting = new ArrayList<>();
+        for (int c = 0; c < clients; c++) {
+            connecting.add(client.connect(new Viewer(), uri));
+            // do not overflow the accept queue
+            if (connecting.size() == 100 || c == clients - 1) {
+                for (Future<Session> f : connecting) {
+                    sessions.add(f.get(30, TimeUnit.SECONDS));
+                }
+                connecting.clear();
+            }
+        }
+        Thread.sleep(1000);
+        long heapPerConnection = (usedHeap() - heapBefore) / clients;
+        System.out.println(String.format("%d viewers connected, %d viewers on channel", sessions.size(),
+                channel.getSubscriberCount()));
+
+        byte[][] payloads = new byte[messages][];
+        for (int i = 0; i < messages; i++) {
+            payloads[i] = json(i, size);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < messages; i++) {
+            sentAt[i] = System.nanoTime();
+            channel.publish("results", payloads[i]);
+            long next = start + (i + 1) * TimeUnit.MILLISECONDS.toNanos(interval);
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+        }
+        double publishSeconds = (System.nanoTime() - start) / 1e9;
+        long expected = (long) clients * messages;
+        long idleSince = System.nanoTime();
+        int seen = -1;
+        while (received.get() < expected && System.nanoTime() - idleSince < TimeUnit.SECONDS.toNanos(5)) {
+            Thread.sleep(50);
+            if (received.get() != seen) {
+                seen = received.get();
+                idleSince = System.nanoTime();
+            }
+        }
+
+        int n = Math.min(received.get(), latencies.length);
+        double seconds = (lastReceived.get() - start) / 1e9;
+        long[] sorted = Arrays.copyOf(latencies, n);
+        Arrays.sort(sorted);
+        System.out.println(String.format("%d messages of %d bytes to %d viewers every %d ms", messages, size,
+                clients, interval));
+        System.out.println(String.format("delivered %d of %d (%d skipped by slow viewers) in %.2f s", n, expected,
+                expected - n, seconds));
+        System.out.println(String.format("published in %.2f s (%.2f s planned)", publishSeconds,
+                messages * interval / 1000.0));
+        System.out.println(String.format("throughput     %.0f messages/s", n / seconds));
+        if (n > 0) {
+            System.out.println(String.format("latency p50    %.2f ms", percentile(sorted, 0.50) / 1e6));
+            System.out.println(String.format("latency p99    %.2f ms", percentile(sorted, 0.99) / 1e6));
+            System.out.println(String.format("latency max    %.2f ms", sorted[n - 1] / 1e6));
+        }
+        System.out.println(String.format("heap           %d bytes per connection", heapPerConnection));
+
+        client.stop();
+        http.stop();
+        server.stop();
+        System.exit(0);
+    }
+
+    /**
+     * @param i    the index of the message
+     * @param size
+     * @return a JSON object of about <code>size</code> bytes
+     */
+    private static byte[] json(int i, int size) {
+        StringBuilder sb = new StringBuilder("{" + INDEX_KEY + i + ",\"pad\":\"");
+        while (sb.length() < size - 2) {
+            sb.append('x');
+        }
+        sb.append("\"}");
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1)];
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(200);
+        }
+        return rt.totalMemory() - rt.freeMemory();
+    }
+}